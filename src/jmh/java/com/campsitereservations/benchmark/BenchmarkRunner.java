@@ -0,0 +1,37 @@
+package com.campsitereservations.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching the first argument at 1, 8, 64 and 400 threads, the last being the Tomcat thread
+ * pool size. {@link RestartBenchmark} times restarts from files on disk, which cannot overlap, so it only runs on
+ * one thread. The GC profiler adds gc.alloc.rate.norm, the bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+
+    private static final int[] THREAD_COUNTS = {1, 8, 64, 400};
+    private static final String SINGLE_THREADED = RestartBenchmark.class.getName();
+
+    public static void main(String[] args) throws RunnerException {
+
+        String include = args.length > 0 ? args[0] : ".*";
+        for (int threadCount : THREAD_COUNTS) {
+            OptionsBuilder options = new OptionsBuilder();
+            options.include(include)
+                    .threads(threadCount)
+                    .addProfiler(GCProfiler.class);
+            if (threadCount > 1) {
+                options.exclude(SINGLE_THREADED);
+            }
+            try {
+                new Runner(options.build()).run();
+            } catch (NoBenchmarksException onlySingleThreaded) {
+                // Everything that matched runs on one thread only.
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.contracts.ReservationAddUpdateResponse;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.service.ReservationOperationsService;
+import com.campsitereservations.validation.FieldsValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A release-day stampede: the popular weekend is already booked and {@code conflictRatio} of the requests still go
+ * for it. Compares failures signalled by exception, as callers of {@code addReservation} and
+ * {@code validInputFields} see them, with the {@link Result} returned by {@code tryAddReservation} and
+ * {@code checkInputFields}, and runs the whole service path, which now uses results. Successful bookings are
+ * cancelled straight away so the calendar stays the same.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookingConflictBenchmark {
+
+    @Param({"0.75"})
+    private double conflictRatio;
+
+    private CampsiteInMemoryDatabase database;
+    private ReservationOperationsService reservationOperationsService;
+    private BookingWindows bookingWindows;
+    private long nextId;
+
+    @Setup
+    public void setUp() {
+
+        database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 1);
+        database.initialize();
+        reservationOperationsService = new ReservationOperationsService(database, new ReservationsMapper(),
+                new AvailableDatesCache(database, 4096), Jackson2ObjectMapperBuilder.json().build());
+
+        bookingWindows = new BookingWindows(LocalDate.now());
+        database.addReservation(bookingWindows.reservation("popular", bookingWindows.next(1.0)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Object addReservationThrowing() {
+
+        ReservationDetails reservationDetails = nextReservation();
+        try {
+            database.addReservation(reservationDetails);
+            return database.deleteReservation(reservationDetails.getReservationId());
+        } catch (RuntimeException runtimeException) {
+            return runtimeException.getMessage();
+        }
+    }
+
+    @Benchmark
+    public Object addReservationResult() {
+
+        ReservationDetails reservationDetails = nextReservation();
+        Result<ReservationDetails> booked = database.tryAddReservation(reservationDetails);
+        return booked.isSuccess() ? database.tryDeleteReservation(reservationDetails.getReservationId())
+                : booked.getMessage();
+    }
+
+    @Benchmark
+    public Object serviceAddReservation() {
+
+        int window = bookingWindows.next(conflictRatio);
+        ReservationAddUpdateResponse response = reservationOperationsService.addReservation("Amit", "Ganvir",
+                "test@test.com", bookingWindows.checkinString(window), bookingWindows.checkoutString(window), 1);
+        return response.getReservationModel() != null
+                ? reservationOperationsService.cancelReservation(response.getReservationModel().getReservationId())
+                : response;
+    }
+
+    @Benchmark
+    public Object invalidEmailThrowing() {
+        try {
+            return FieldsValidator.validInputFields("Amit", "Ganvir", "amit.ganvir@example",
+                    bookingWindows.checkinString(0), bookingWindows.checkoutString(0));
+        } catch (Exception exception) {
+            return exception.getMessage();
+        }
+    }
+
+    @Benchmark
+    public Object invalidEmailResult() {
+        return FieldsValidator.checkInputFields("Amit", "Ganvir", "amit.ganvir@example",
+                bookingWindows.checkinString(0), bookingWindows.checkoutString(0)).getMessage();
+    }
+
+    private ReservationDetails nextReservation() {
+        return bookingWindows.reservation(Long.toString(nextId++), bookingWindows.next(conflictRatio))
+                .toBuilder().campsiteId(1).build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The three-day stays a benchmark thread asks for. With probability {@code overlapRatio} a request goes for the
+ * popular weekend everybody wants; otherwise it picks any check-in the booking rules allow.
+ */
+final class BookingWindows {
+
+    static final int WINDOW_COUNT = 28;
+    private static final int POPULAR_WINDOW = 4;
+
+    private final LocalDate firstDate;
+    private final LocalDate lastDate;
+    private final LocalDate[] checkinDates = new LocalDate[WINDOW_COUNT];
+    private final LocalDate[] checkoutDates = new LocalDate[WINDOW_COUNT];
+    private final String[] checkinStrings = new String[WINDOW_COUNT];
+    private final String[] checkoutStrings = new String[WINDOW_COUNT];
+    private final Customer customer = Customer.builder()
+            .firstName("Amit").lastName("Ganvir").email("test@test.com").build();
+
+    BookingWindows(LocalDate today) {
+        firstDate = today;
+        lastDate = today.plusDays(31);
+        for (int window = 0; window < WINDOW_COUNT; window++) {
+            checkinDates[window] = today.plusDays(1 + window);
+            checkoutDates[window] = checkinDates[window].plusDays(2);
+            checkinStrings[window] = checkinDates[window].toString();
+            checkoutStrings[window] = checkoutDates[window].toString();
+        }
+    }
+
+    int next(double overlapRatio) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return random.nextDouble() < overlapRatio ? POPULAR_WINDOW : random.nextInt(WINDOW_COUNT);
+    }
+
+    LocalDate firstDate() {
+        return firstDate;
+    }
+
+    LocalDate lastDate() {
+        return lastDate;
+    }
+
+    LocalDate checkinDate(int window) {
+        return checkinDates[window];
+    }
+
+    LocalDate checkoutDate(int window) {
+        return checkoutDates[window];
+    }
+
+    String checkinString(int window) {
+        return checkinStrings[window];
+    }
+
+    String checkoutString(int window) {
+        return checkoutStrings[window];
+    }
+
+    ReservationDetails reservation(String reservationId, int window) {
+        return ReservationDetails
+                .builder()
+                .reservationId(reservationId)
+                .customer(customer)
+                .reservationsDates(ReservationsDates.builder()
+                        .checkinDate(checkinDates[window]).checkoutDate(checkoutDates[window]).build())
+                .build();
+    }
+}
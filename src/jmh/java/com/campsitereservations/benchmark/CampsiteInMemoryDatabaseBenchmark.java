@@ -0,0 +1,106 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.ReservationDetails;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CampsiteInMemoryDatabase} on its own. Rejected bookings are part of the workload: they return the
+ * exception instead of failing the benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CampsiteInMemoryDatabaseBenchmark {
+
+    @Param({"LOCKING", "LOCK_FREE", "SEQUENCER"})
+    private BookingMode bookingMode;
+
+    @Param({"1", "64"})
+    private int campsiteCount;
+
+    @Param({"0.05", "0.5"})
+    private double overlapRatio;
+
+    private CampsiteInMemoryDatabase database;
+    private BookingWindows bookingWindows;
+
+    @Setup
+    public void setUp() {
+        database = new CampsiteInMemoryDatabase(bookingMode, campsiteCount);
+        database.initialize();
+        bookingWindows = new BookingWindows(LocalDate.now());
+    }
+
+    @State(Scope.Thread)
+    public static class Booker {
+
+        private static final AtomicInteger BOOKERS = new AtomicInteger();
+
+        private final String idPrefix = "booker-" + BOOKERS.incrementAndGet() + "-";
+        private long sequence;
+        private ReservationDetails heldReservation;
+
+        String nextId() {
+            return idPrefix + sequence++;
+        }
+    }
+
+    @Benchmark
+    public Object addAndCancel(Booker booker) {
+
+        ReservationDetails reservationDetails = bookingWindows.reservation(booker.nextId(),
+                bookingWindows.next(overlapRatio));
+        try {
+            ReservationDetails bookedReservation = database.addReservation(reservationDetails);
+            database.deleteReservation(bookedReservation.getReservationId());
+            return bookedReservation;
+        } catch (RuntimeException rejected) {
+            return rejected;
+        }
+    }
+
+    @Benchmark
+    public List<LocalDate> getCampsiteAvailability() {
+        return database.getCampsiteAvailability(bookingWindows.firstDate(), bookingWindows.lastDate());
+    }
+
+    /*
+        Every thread moves its own reservation around. Threads that could not get one yet keep trying to book.
+     */
+    @Benchmark
+    public Object updateReservation(Booker booker) {
+
+        int window = bookingWindows.next(overlapRatio);
+        try {
+            if (booker.heldReservation == null) {
+                booker.heldReservation = database.addReservation(bookingWindows.reservation(booker.nextId(), window));
+            } else {
+                booker.heldReservation = database.updateReservation(booker.heldReservation,
+                        bookingWindows.reservation(booker.heldReservation.getReservationId(), window));
+            }
+            return booker.heldReservation;
+        } catch (RuntimeException rejected) {
+            return rejected;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.validation.FieldsValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FieldsValidator} against {@link LegacyFieldsValidator} for a valid booking, where the new one should
+ * allocate nothing, and for a booking with a bad email.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FieldsValidatorBenchmark {
+
+    private String checkinDate;
+    private String checkoutDate;
+
+    @Setup
+    public void setUp() {
+        checkinDate = LocalDate.now().plusDays(5).toString();
+        checkoutDate = LocalDate.now().plusDays(7).toString();
+    }
+
+    @Benchmark
+    public boolean validBooking() throws Exception {
+        return FieldsValidator.validInputFields("Amit", "Ganvir", "amit.ganvir@example.com", checkinDate,
+                checkoutDate);
+    }
+
+    @Benchmark
+    public boolean legacyValidBooking() throws Exception {
+        return LegacyFieldsValidator.validInputFields("Amit", "Ganvir", "amit.ganvir@example.com", checkinDate,
+                checkoutDate);
+    }
+
+    @Benchmark
+    public Object invalidEmail() {
+        try {
+            return FieldsValidator.validInputFields("Amit", "Ganvir", "amit.ganvir@example", checkinDate,
+                    checkoutDate);
+        } catch (Exception exception) {
+            return exception;
+        }
+    }
+
+    @Benchmark
+    public Object legacyInvalidEmail() {
+        try {
+            return LegacyFieldsValidator.validInputFields("Amit", "Ganvir", "amit.ganvir@example", checkinDate,
+                    checkoutDate);
+        } catch (Exception exception) {
+            return exception;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.db.TimerWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of hold expiry with {@code liveHolds} holds of ten to twenty minutes pending: a hold placed and then
+ * confirmed, which schedules and cancels its timeout, on the {@link TimerWheel} and on a
+ * {@link ScheduledThreadPoolExecutor} whose heap of pending tasks grows with the holds, and one tick of the wheel.
+ * The wheel runs on a manual clock, and every hold that expires is replaced, so the live holds stay the same.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HoldExpiryBenchmark {
+
+    private static final long TICK_MILLIS = 100;
+    private static final long HOLD_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Param({"100000"})
+    private int liveHolds;
+
+    private final AtomicLong clock = new AtomicLong();
+    private TimerWheel<Object> timerWheel;
+    private ScheduledThreadPoolExecutor executor;
+
+    @Setup
+    public void setUp() {
+
+        timerWheel = new TimerWheel<>(TICK_MILLIS, 1024, clock::get, item -> timerWheel.schedule(item, HOLD_MILLIS));
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+
+        for (int hold = 0; hold < liveHolds; hold++) {
+            long holdMillis = HOLD_MILLIS + ThreadLocalRandom.current().nextLong(HOLD_MILLIS);
+            timerWheel.schedule(hold, holdMillis);
+            executor.schedule(() -> { }, holdMillis, TimeUnit.MILLISECONDS);
+        }
+        timerWheel.advance();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /*
+        Includes the ticking thread's share: filing the timeout into its bucket and taking it out again.
+     */
+    @Benchmark
+    public int timerWheelHold() {
+        TimerWheel.Timeout<Object> expiry = timerWheel.schedule(this, HOLD_MILLIS);
+        timerWheel.advance();
+        expiry.cancel();
+        return timerWheel.advance();
+    }
+
+    @Benchmark
+    public boolean scheduledExecutorHold() {
+        ScheduledFuture<?> expiry = executor.schedule(() -> { }, HOLD_MILLIS, TimeUnit.MILLISECONDS);
+        return expiry.cancel(false);
+    }
+
+    /*
+        Moves the clock one tick on, so every call runs one bucket: about liveHolds / 1024 timeouts, of which one in
+        six to twelve is due.
+     */
+    @Benchmark
+    public int timerWheelTick() {
+        clock.addAndGet(TICK_MILLIS);
+        return timerWheel.advance();
+    }
+}
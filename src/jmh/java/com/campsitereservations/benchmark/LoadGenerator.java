@@ -0,0 +1,125 @@
+package com.campsitereservations.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Drives a running server over the given number of keep-alive connections for the given number of seconds, nine
+ * available-dates reads for every booking, and prints throughput and latency percentiles. Start the server once
+ * with {@code spring.main.web-application-type=servlet} and once with {@code reactive} to compare the two stacks.
+ */
+public class LoadGenerator {
+
+    private static final int BUCKET_MICROS = 100;
+    private static final int BUCKET_COUNT = 100_000;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKET_COUNT + 1);
+    private final AtomicLong errorCount = new AtomicLong();
+    private final BookingWindows bookingWindows = new BookingWindows(LocalDate.now());
+    private final WebClient webClient;
+
+    private LoadGenerator(String url, int connections) {
+        HttpClient httpClient = HttpClient.create(ConnectionProvider.fixed("load", connections));
+        webClient = WebClient.builder()
+                .baseUrl(url)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    public static void main(String[] args) {
+
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        // Without a logback configuration Netty logs every request at debug level, which would be the bottleneck.
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        new LoadGenerator(url, connections).run(connections, Duration.ofSeconds(seconds));
+    }
+
+    private void run(int connections, Duration duration) {
+
+        long start = System.nanoTime();
+        Long requestCount = Flux.<Integer>generate(sink -> sink.next(0))
+                .take(duration)
+                .flatMap(ignored -> timedRequest(), connections)
+                .count()
+                .block();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d requests in %.1f s over %d connections: %.0f requests/s, %d errors%n",
+                requestCount, elapsedSeconds, connections, requestCount / elapsedSeconds, errorCount.get());
+        for (double percentile : PERCENTILES) {
+            System.out.printf("p%s latency: %.1f ms%n", percentile, latencyMillis(requestCount, percentile));
+        }
+    }
+
+    private Mono<Integer> timedRequest() {
+
+        long requestStart = System.nanoTime();
+        return request()
+                .doOnError(error -> errorCount.incrementAndGet())
+                .onErrorReturn(0)
+                .doOnSuccess(length -> {
+                    long bucket = (System.nanoTime() - requestStart) / 1000 / BUCKET_MICROS;
+                    latencyBuckets.incrementAndGet((int) Math.min(bucket, BUCKET_COUNT));
+                });
+    }
+
+    private Mono<Integer> request() {
+
+        int window = bookingWindows.next(0.05);
+        String checkinDate = bookingWindows.checkinString(window);
+        String checkoutDate = bookingWindows.checkoutString(window);
+
+        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+            return webClient.post()
+                    .uri(uri -> uri.path("/v1/api/add-reservation")
+                            .queryParam("firstName", "Amit")
+                            .queryParam("lastName", "Ganvir")
+                            .queryParam("email", "test@test.com")
+                            .queryParam("checkinDate", checkinDate)
+                            .queryParam("checkoutDate", checkoutDate)
+                            .build())
+                    .retrieve()
+                    .bodyToMono(byte[].class)
+                    .map(body -> body.length);
+        }
+        return webClient.get()
+                .uri(uri -> uri.path("/v1/api/available-dates")
+                        .queryParam("checkinDate", checkinDate)
+                        .queryParam("checkoutDate", checkoutDate)
+                        .build())
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .map(body -> body.length);
+    }
+
+    private double latencyMillis(long requestCount, double percentile) {
+
+        long rank = (long) Math.ceil(requestCount * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket <= BUCKET_COUNT; bucket++) {
+            seen += latencyBuckets.get(bucket);
+            if (seen >= rank) {
+                return (bucket + 1) * BUCKET_MICROS / 1000.0;
+            }
+        }
+        return BUCKET_COUNT * BUCKET_MICROS / 1000.0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.HeapReservationStore;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.metrics.ReservationMetrics;
+import com.campsitereservations.persistence.ReservationArchive;
+import com.campsitereservations.persistence.ReservationJournal;
+import com.campsitereservations.service.ReservationOperationsService;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the meters cost on the hot paths: the same service with {@link ReservationMetrics#NONE} and with a
+ * Prometheus registry, on a booking followed by its cancel and on an available-dates cache hit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    @Param({"NONE", "PROMETHEUS"})
+    private String registry;
+
+    private CampsiteInMemoryDatabase database;
+    private ReservationOperationsService reservationOperationsService;
+    private BookingWindows bookingWindows;
+    private String firstDate;
+    private String lastDate;
+
+    @Setup
+    public void setUp() {
+
+        ReservationMetrics reservationMetrics = registry.equals("NONE") ? ReservationMetrics.NONE
+                : new ReservationMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 1, ReservationJournal.NONE,
+                new HeapReservationStore(), ReservationArchive.NONE, reservationMetrics);
+        database.initialize();
+        reservationOperationsService = new ReservationOperationsService(database, new ReservationsMapper(),
+                new AvailableDatesCache(database, 4096), Jackson2ObjectMapperBuilder.json().build(),
+                reservationMetrics);
+
+        bookingWindows = new BookingWindows(LocalDate.now());
+        firstDate = bookingWindows.firstDate().toString();
+        lastDate = bookingWindows.lastDate().toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Object addAndCancel() {
+
+        int window = bookingWindows.next(0.05);
+        String reservationId = reservationOperationsService.addReservation("Amit", "Ganvir", "test@test.com",
+                bookingWindows.checkinString(window), bookingWindows.checkoutString(window), null)
+                .getReservationModel().getReservationId();
+        return reservationOperationsService.cancelReservation(reservationId);
+    }
+
+    @Benchmark
+    public byte[] availableDatesCacheHit() {
+        return reservationOperationsService.getAvailableDatesJson(firstDate, lastDate, null);
+    }
+}
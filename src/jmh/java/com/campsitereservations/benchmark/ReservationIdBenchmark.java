@@ -0,0 +1,60 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.id.RandomUuidIdGenerator;
+import com.campsitereservations.id.ReservationIdGenerator;
+import com.campsitereservations.id.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the id of a new reservation: a {@link SnowflakeIdGenerator} id, as a long and as text, against the
+ * random UUID every booking used to take, from one thread and from eight sharing the generator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationIdBenchmark {
+
+    private final SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(1);
+    private final ReservationIdGenerator randomUuid = new RandomUuidIdGenerator();
+
+    @Benchmark
+    public long snowflakeLongId() {
+        return snowflake.nextLongId();
+    }
+
+    @Benchmark
+    public String snowflakeId() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    public String randomUuidId() {
+        return randomUuid.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String contendedSnowflakeId() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String contendedRandomUuidId() {
+        return randomUuid.nextId();
+    }
+}
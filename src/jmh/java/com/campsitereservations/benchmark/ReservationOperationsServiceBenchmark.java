@@ -0,0 +1,108 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.contracts.AvailableReservationDatesResponse;
+import com.campsitereservations.contracts.ReservationAddUpdateResponse;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.service.ReservationOperationsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole request path below the controller: field validation, mapping, the database and, for the JSON
+ * variant, the available-dates cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationOperationsServiceBenchmark {
+
+    @Param({"LOCKING", "LOCK_FREE", "SEQUENCER"})
+    private BookingMode bookingMode;
+
+    @Param({"1", "64"})
+    private int campsiteCount;
+
+    @Param({"0.05", "0.5"})
+    private double overlapRatio;
+
+    private ReservationOperationsService reservationOperationsService;
+    private BookingWindows bookingWindows;
+    private String firstDate;
+    private String lastDate;
+
+    @Setup
+    public void setUp() {
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, campsiteCount);
+        database.initialize();
+        reservationOperationsService = new ReservationOperationsService(database, new ReservationsMapper(),
+                new AvailableDatesCache(database, 4096), Jackson2ObjectMapperBuilder.json().build());
+
+        bookingWindows = new BookingWindows(LocalDate.now());
+        firstDate = bookingWindows.firstDate().toString();
+        lastDate = bookingWindows.lastDate().toString();
+    }
+
+    @State(Scope.Thread)
+    public static class Booker {
+        private String heldReservationId;
+    }
+
+    @Benchmark
+    public AvailableReservationDatesResponse getAvailableDates() {
+        return reservationOperationsService.getAvailableDates(firstDate, lastDate, null);
+    }
+
+    @Benchmark
+    public byte[] getAvailableDatesJson() {
+        return reservationOperationsService.getAvailableDatesJson(firstDate, lastDate, null);
+    }
+
+    @Benchmark
+    public Object addAndCancel() {
+
+        int window = bookingWindows.next(overlapRatio);
+        ReservationAddUpdateResponse response = reservationOperationsService.addReservation("Amit", "Ganvir",
+                "test@test.com", bookingWindows.checkinString(window), bookingWindows.checkoutString(window), null);
+
+        if (response.getReservationModel() != null) {
+            return reservationOperationsService.cancelReservation(response.getReservationModel().getReservationId());
+        }
+        return response;
+    }
+
+    @Benchmark
+    public ReservationAddUpdateResponse updateReservation(Booker booker) {
+
+        int window = bookingWindows.next(overlapRatio);
+        ReservationAddUpdateResponse response = booker.heldReservationId == null
+                ? reservationOperationsService.addReservation("Amit", "Ganvir", "test@test.com",
+                        bookingWindows.checkinString(window), bookingWindows.checkoutString(window), null)
+                : reservationOperationsService.updateReservation(booker.heldReservationId, "Amit", "Ganvir",
+                        "test@test.com", bookingWindows.checkinString(window), bookingWindows.checkoutString(window),
+                        null);
+
+        if (booker.heldReservationId == null && response.getErrorDetails() == null) {
+            booker.heldReservationId = response.getReservationModel().getReservationId();
+        }
+        return response;
+    }
+}
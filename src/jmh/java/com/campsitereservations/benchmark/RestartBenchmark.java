@@ -0,0 +1,121 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.persistence.Durability;
+import com.campsitereservations.persistence.MappedReservationStore;
+import com.campsitereservations.persistence.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to get reservations back after a restart: replaying a write-ahead log of {@code entries} changes, half of
+ * them cancels, and opening a memory-mapped store of {@code records} reservations. Each run times one cold
+ * restart; {@link BenchmarkRunner} runs these on a single thread only, since restarts of the same files cannot
+ * overlap.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RestartBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LogFiles {
+
+        @Param({"1000000"})
+        private int entries;
+
+        private Path directory;
+
+        @Setup
+        public void setUp() throws IOException {
+
+            directory = BenchmarkDirectories.create("restart-benchmark-log");
+            WriteAheadLog writeAheadLog = new WriteAheadLog(directory, Durability.ASYNC, 3600);
+            writeAheadLog.recover();
+
+            BookingWindows bookingWindows = new BookingWindows(LocalDate.now());
+            for (int count = 0; count < entries; count += 2) {
+                ReservationDetails reservationDetails = bookingWindows.reservation("reservation-" + count,
+                        count % BookingWindows.WINDOW_COUNT);
+                writeAheadLog.reservationAdded(reservationDetails);
+                if (count % 4 == 0) {
+                    writeAheadLog.reservationCancelled(reservationDetails.getReservationId());
+                } else {
+                    writeAheadLog.reservationUpdated(reservationDetails);
+                }
+            }
+            writeAheadLog.close();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            BenchmarkDirectories.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MappedStoreFiles {
+
+        @Param({"1000000"})
+        private int records;
+
+        private Path directory;
+
+        @Setup
+        public void setUp() throws IOException {
+
+            directory = BenchmarkDirectories.create("restart-benchmark-mapped");
+            MappedReservationStore store = new MappedReservationStore(directory);
+
+            BookingWindows bookingWindows = new BookingWindows(LocalDate.now());
+            for (int count = 0; count < records; count++) {
+                ReservationDetails reservationDetails = bookingWindows.reservation(UUID.randomUUID().toString(),
+                        count % BookingWindows.WINDOW_COUNT);
+                store.insert(reservationDetails.toBuilder().campsiteId(1 + count % 8).build());
+            }
+            store.close();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            BenchmarkDirectories.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public int recoverWriteAheadLog(LogFiles logFiles) {
+
+        WriteAheadLog writeAheadLog = new WriteAheadLog(logFiles.directory, Durability.ASYNC, 3600);
+        Collection<ReservationDetails> recovered = writeAheadLog.recover();
+        writeAheadLog.close();
+        return recovered.size();
+    }
+
+    @Benchmark
+    public int openMappedStore(MappedStoreFiles mappedStoreFiles) {
+
+        MappedReservationStore store = new MappedReservationStore(mappedStoreFiles.directory);
+        int size = store.size();
+        store.close();
+        return size;
+    }
+}
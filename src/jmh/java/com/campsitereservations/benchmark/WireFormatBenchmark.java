@@ -0,0 +1,134 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.contracts.AvailableReservationDatesResponse;
+import com.campsitereservations.contracts.ReservationAddUpdateResponse;
+import com.campsitereservations.contracts.ReservationModel;
+import com.campsitereservations.contracts.ReservationsResponse;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.mapper.BinaryResponseWriter;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of the response contracts with Jackson against {@link BinaryResponseWriter}. Bytes on the
+ * wire for each response are printed once per fork; the CPU side is the score, with gc.alloc.rate.norm from the
+ * GC profiler for allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    private static final int WINDOW_DAYS = 32;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private long firstDay;
+    private long[] freeDays;
+    private AvailableReservationDatesResponse availableDates;
+    private ReservationAddUpdateResponse reservation;
+    private ReservationsResponse reservations;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        ReservationsMapper reservationsMapper = new ReservationsMapper();
+        LocalDate today = LocalDate.now();
+        firstDay = today.toEpochDay();
+
+        // Every third day booked, the rest free.
+        freeDays = new long[1];
+        List<LocalDate> dates = new ArrayList<>();
+        for (int day = 0; day < WINDOW_DAYS; day++) {
+            if (day % 3 != 0) {
+                freeDays[0] |= 1L << day;
+                dates.add(today.plusDays(day));
+            }
+        }
+        availableDates = reservationsMapper.mapToAvailableReservationDatesResponse(today.toString(),
+                today.plusDays(WINDOW_DAYS - 1).toString(), dates);
+
+        List<ReservationDetails> found = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            found.add(reservation(today.plusDays(1 + 3 * index)));
+        }
+        reservation = reservationsMapper.mapToAddReservationResponse(found.get(0));
+        reservations = reservationsMapper.mapToReservationsResponse("test@test.com", found);
+
+        System.out.printf("%nBytes on the wire            JSON  binary%n");
+        System.out.printf("available-dates (%d days)  %6d  %6d%n", WINDOW_DAYS,
+                objectMapper.writeValueAsBytes(availableDates).length,
+                BinaryResponseWriter.encodeAvailableDates(firstDay, freeDays).length);
+        System.out.printf("add-reservation            %6d  %6d%n",
+                objectMapper.writeValueAsBytes(reservation).length, BinaryResponseWriter.encode(reservation).length);
+        System.out.printf("reservations-by-email (10) %6d  %6d%n",
+                objectMapper.writeValueAsBytes(reservations).length, BinaryResponseWriter.encode(reservations).length);
+    }
+
+    @Benchmark
+    public byte[] availableDatesJson() throws Exception {
+        return objectMapper.writeValueAsBytes(availableDates);
+    }
+
+    @Benchmark
+    public byte[] availableDatesBinary() {
+        return BinaryResponseWriter.encode(availableDates);
+    }
+
+    @Benchmark
+    public byte[] availableDatesBitmap() {
+        return BinaryResponseWriter.encodeAvailableDates(firstDay, freeDays);
+    }
+
+    @Benchmark
+    public byte[] reservationJson() throws Exception {
+        return objectMapper.writeValueAsBytes(reservation);
+    }
+
+    @Benchmark
+    public byte[] reservationBinary() {
+        return BinaryResponseWriter.encode(reservation);
+    }
+
+    @Benchmark
+    public byte[] reservationsJson() throws Exception {
+        return objectMapper.writeValueAsBytes(reservations);
+    }
+
+    @Benchmark
+    public byte[] reservationsBinary() {
+        return BinaryResponseWriter.encode(reservations);
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(1)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.campsitereservations.benchmark;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.persistence.Durability;
+import com.campsitereservations.persistence.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Add and cancel through {@link CampsiteInMemoryDatabase} with every change journalled to a {@link WriteAheadLog}
+ * in a temporary directory, for each {@link Durability}. Most requests go for different dates, so the figures show
+ * the cost of the journal rather than of booking conflicts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteAheadLogBenchmark {
+
+    private static final double OVERLAP_RATIO = 0.05;
+
+    @Param({"FSYNC_PER_OP", "GROUP_COMMIT", "ASYNC"})
+    private Durability durability;
+
+    private Path directory;
+    private WriteAheadLog writeAheadLog;
+    private CampsiteInMemoryDatabase database;
+    private BookingWindows bookingWindows;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkDirectories.create("write-ahead-log-benchmark");
+        writeAheadLog = new WriteAheadLog(directory, durability, 3600);
+        database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 64, writeAheadLog);
+        database.initialize();
+        bookingWindows = new BookingWindows(LocalDate.now());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        database.close();
+        writeAheadLog.close();
+        BenchmarkDirectories.delete(directory);
+    }
+
+    @Benchmark
+    public Object addAndCancel(CampsiteInMemoryDatabaseBenchmark.Booker booker) {
+
+        ReservationDetails reservationDetails = bookingWindows.reservation(booker.nextId(),
+                bookingWindows.next(OVERLAP_RATIO));
+        try {
+            ReservationDetails bookedReservation = database.addReservation(reservationDetails);
+            database.deleteReservation(bookedReservation.getReservationId());
+            return bookedReservation;
+        } catch (RuntimeException rejected) {
+            return rejected;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.campsitereservations.cache;
+
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.ReservationsDates;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serialized available-dates responses keyed by their (checkin, checkout, campsite) window.
+ *
+ * <p>Nothing here locks. Every campsite, and "any campsite", has a generation of its own and an index of its
+ * windows: a booking bumps its campsite's generation and the any-campsite one, then drops the overlapping windows
+ * of those two indexes alone. A put only shows its response once it has checked that the generation the caller
+ * read with {@link #generation(Integer)} still holds, so a response computed just before a booking can never be
+ * served after that booking's invalidation. When full, windows are evicted in second-chance (CLOCK) order: one read
+ * since the clock hand last passed spares a window for another round, so the windows dropped are those not read
+ * lately, without scanning for the least recently read one.
+ */
+@Component
+public class AvailableDatesCache {
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    // Index 0 holds the any-campsite windows, index n those of campsite n.
+    private final AtomicLongArray generations;
+    private final List<Set<Entry>> windows;
+    // The clock hand: every cached entry in order of insertion, plus entries already dropped but not yet passed.
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public AvailableDatesCache(CampsiteInMemoryDatabase campsiteInMemoryDatabase,
+                               @Value("${campsite.cache.available-dates.max-entries:4096}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.generations = new AtomicLongArray(campsiteInMemoryDatabase.getCampsiteCount() + 1);
+        this.windows = new ArrayList<>(generations.length());
+        for (int campsite = 0; campsite < generations.length(); campsite++) {
+            windows.add(ConcurrentHashMap.newKeySet());
+        }
+        campsiteInMemoryDatabase.addAvailabilityListener(this::invalidate);
+    }
+
+    /**
+     * Returns the cached response for the window, or null on a miss. A null campsite id means "any campsite".
+     */
+    public byte[] get(LocalDate checkinDate, LocalDate checkoutDate, Integer campsiteId) {
+
+        Entry entry = entries.get(new Key(checkinDate.toEpochDay(), checkoutDate.toEpochDay(), campsiteKey(campsiteId)));
+        if (entry == null || !entry.published) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.response;
+    }
+
+    /**
+     * The generation of the campsite's windows, to read before computing a response to {@link #put}.
+     */
+    public long generation(Integer campsiteId) {
+
+        int campsite = campsiteKey(campsiteId);
+        return campsite >= 0 && campsite < generations.length() ? generations.get(campsite) : 0;
+    }
+
+    /**
+     * Caches the response unless an invalidation of its campsite happened after {@code expectedGeneration} was read.
+     */
+    public void put(LocalDate checkinDate, LocalDate checkoutDate, Integer campsiteId, byte[] response,
+                    long expectedGeneration) {
+
+        int campsite = campsiteKey(campsiteId);
+        if (campsite < 0 || campsite >= generations.length()) {
+            return;
+        }
+        Entry entry = new Entry(new Key(checkinDate.toEpochDay(), checkoutDate.toEpochDay(), campsite), response);
+        // A window already cached is never replaced: a published entry is still current, since an invalidation would
+        // have dropped it, and an unpublished one is another put's to publish or drop.
+        if (entries.putIfAbsent(entry.key, entry) != null) {
+            return;
+        }
+        windows.get(campsite).add(entry);
+
+        // Indexed before the check, so an invalidation the check misses is one whose scan finds the entry.
+        if (generations.get(campsite) != expectedGeneration) {
+            remove(entry);
+            return;
+        }
+        entry.published = true;
+        clock.add(entry);
+        clockSize.incrementAndGet();
+        evict();
+    }
+
+    /**
+     * Drops every window of the campsite, and every any-campsite window, that overlaps the changed dates.
+     */
+    public void invalidate(int campsiteId, ReservationsDates reservationsDates) {
+
+        long fromDay = reservationsDates.getCheckinDate().toEpochDay();
+        long toDay = reservationsDates.getCheckoutDate().toEpochDay();
+
+        generations.incrementAndGet(campsiteId);
+        generations.incrementAndGet(0);
+        invalidate(windows.get(campsiteId), fromDay, toDay);
+        invalidate(windows.get(0), fromDay, toDay);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    private void invalidate(Set<Entry> campsiteWindows, long fromDay, long toDay) {
+        for (Entry entry : campsiteWindows) {
+            if (entry.key.checkinDay <= toDay && entry.key.checkoutDay >= fromDay && remove(entry)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    /*
+        Moves the clock hand until the cache fits, and while the hand trails more dropped entries than there are
+        live ones, so invalidations cannot grow it without bound.
+     */
+    private void evict() {
+
+        while (entries.size() > maxEntries || clockSize.get() > 2 * maxEntries) {
+            Entry entry = clock.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entries.get(entry.key) != entry) {
+                clockSize.decrementAndGet();
+            } else if (entries.size() <= maxEntries) {
+                clock.add(entry);
+            } else if (entry.referenced) {
+                entry.referenced = false;
+                clock.add(entry);
+            } else {
+                clockSize.decrementAndGet();
+                if (remove(entry)) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private boolean remove(Entry entry) {
+
+        if (!entries.remove(entry.key, entry)) {
+            return false;
+        }
+        windows.get(entry.key.campsiteId).remove(entry);
+        return true;
+    }
+
+    private static int campsiteKey(Integer campsiteId) {
+        return campsiteId != null ? campsiteId : 0;
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class Key {
+        private final long checkinDay;
+        private final long checkoutDay;
+        private final int campsiteId;
+    }
+
+    // Compared by identity, so dropping an entry from an index never drops a later one for the same window.
+    private static final class Entry {
+
+        private final Key key;
+        private final byte[] response;
+        private volatile boolean published;
+        private volatile boolean referenced;
+
+        private Entry(Key key, byte[] response) {
+            this.key = key;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.campsitereservations.cache;
+
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Responses to changes sent with an {@value #HEADER} header, keyed by that header, so a client retrying a booking
+ * after a timeout gets the response of the first attempt instead of booking again.
+ *
+ * <p>The first request with a key runs; requests with the same key arriving while it runs wait for its response
+ * rather than running too, so a burst of retries takes the day locks once. A response is kept for ttl after the
+ * first request; when more than max-entries keys are kept, the oldest finished ones are dropped first, and one still
+ * running is never dropped. A key sent with a different request than the one it was first used for is turned away.
+ * Requests without the header are not kept.
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final char SEPARATOR = '\u001f';
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // In the order the keys were first used, which, as every key lives as long, is also the order they expire in.
+    private final ConcurrentLinkedQueue<Map.Entry<String, Entry>> expiryOrder = new ConcurrentLinkedQueue<>();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public IdempotencyCache(@Value("${campsite.idempotency.max-entries:100000}") int maxEntries,
+                            @Value("${campsite.idempotency.ttl-seconds:86400}") long ttlSeconds) {
+        this(maxEntries, TimeUnit.SECONDS.toNanos(ttlSeconds), System::nanoTime);
+    }
+
+    public IdempotencyCache(int maxEntries, long ttlNanos, LongSupplier nanoClock) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Describes a request by its endpoint and parameters, to tell whether a key is sent again with the same one.
+     */
+    public static String request(String endpoint, Object... parameters) {
+
+        StringBuilder request = new StringBuilder(endpoint);
+        for (Object parameter : parameters) {
+            request.append(SEPARATOR).append(parameter);
+        }
+        return request.toString();
+    }
+
+    /**
+     * Runs the operation, or returns the response it gave for an earlier request with the same key, waiting for it
+     * if that request is still running. Fails with {@link FailureReason#IDEMPOTENCY_KEY_REUSED} when the key was
+     * first used for a different request. A null or empty key always runs the operation.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> execute(String idempotencyKey, String request, Supplier<T> operation) {
+
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return Result.success(operation.get());
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return Result.failure(FailureReason.IDEMPOTENCY_KEY,
+                    HEADER + " should be at most " + MAX_KEY_LENGTH + " characters long");
+        }
+
+        while (true) {
+            long now = nanoClock.getAsLong();
+            Entry entry = entries.get(idempotencyKey);
+            if (entry == null) {
+                Entry created = new Entry(request, now + ttlNanos);
+                if (entries.putIfAbsent(idempotencyKey, created) != null) {
+                    continue;
+                }
+                expiryOrder.add(new AbstractMap.SimpleImmutableEntry<>(idempotencyKey, created));
+                evict(now);
+                return Result.success(run(idempotencyKey, created, operation));
+            }
+            if (entry.expiresAtNanos - now <= 0 && entry.response.isDone()) {
+                entries.remove(idempotencyKey, entry);
+                continue;
+            }
+            if (!entry.request.equals(request)) {
+                return Result.failure(FailureReason.IDEMPOTENCY_KEY_REUSED, HEADER + " " + idempotencyKey
+                        + " was already used for a different request. Please send a new key");
+            }
+            replays.increment();
+            return Result.success((T) await(entry.response));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Requests answered with the response of an earlier one, whether it had finished or was still running.
+     */
+    public long getReplayCount() {
+        return replays.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /*
+        An operation that throws keeps nothing, so a retry runs it again; requests already waiting get the same error.
+     */
+    private <T> T run(String idempotencyKey, Entry entry, Supplier<T> operation) {
+
+        T response;
+        try {
+            response = operation.get();
+        } catch (RuntimeException | Error throwable) {
+            entries.remove(idempotencyKey, entry);
+            entry.response.completeExceptionally(throwable);
+            throw throwable;
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    private static Object await(CompletableFuture<Object> response) {
+        try {
+            return response.join();
+        } catch (CompletionException completionException) {
+            Throwable cause = completionException.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw completionException;
+        }
+    }
+
+    /*
+        Entries still running are passed over, not dropped: a retry of one must wait for it rather than run again.
+     */
+    private void evict(long now) {
+
+        Iterator<Map.Entry<String, Entry>> oldest = expiryOrder.iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Entry> entry = oldest.next();
+            if (entries.size() <= maxEntries && entry.getValue().expiresAtNanos - now > 0) {
+                return;
+            }
+            if (!entry.getValue().response.isDone()) {
+                continue;
+            }
+            oldest.remove();
+            if (entries.remove(entry.getKey(), entry.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String request;
+        private final long expiresAtNanos;
+        private final CompletableFuture<Object> response = new CompletableFuture<>();
+
+        private Entry(String request, long expiresAtNanos) {
+            this.request = request;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.campsitereservations.config;
+
+import com.campsitereservations.id.IdFormat;
+import com.campsitereservations.id.RandomUuidIdGenerator;
+import com.campsitereservations.id.ReservationIdGenerator;
+import com.campsitereservations.id.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public ReservationIdGenerator reservationIdGenerator(
+            @Value("${campsite.ids.format:SNOWFLAKE}") IdFormat idFormat,
+            @Value("${campsite.ids.node-id:0}") int nodeId) {
+
+        return idFormat == IdFormat.SNOWFLAKE ? new SnowflakeIdGenerator(nodeId) : new RandomUuidIdGenerator();
+    }
+}
@@ -0,0 +1,29 @@
+package com.campsitereservations.config;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.metrics.ReservationEngineMeters;
+import com.campsitereservations.metrics.ReservationMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public ReservationMetrics reservationMetrics(MeterRegistry meterRegistry) {
+        return new ReservationMetrics(meterRegistry);
+    }
+
+    @Bean
+    public ReservationEngineMeters reservationEngineMeters(CampsiteInMemoryDatabase campsiteInMemoryDatabase,
+                                                           AvailableDatesCache availableDatesCache,
+                                                           MeterRegistry meterRegistry) {
+
+        ReservationEngineMeters reservationEngineMeters =
+                new ReservationEngineMeters(campsiteInMemoryDatabase, availableDatesCache);
+        reservationEngineMeters.bindTo(meterRegistry);
+        return reservationEngineMeters;
+    }
+}
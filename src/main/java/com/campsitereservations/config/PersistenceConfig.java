@@ -0,0 +1,57 @@
+package com.campsitereservations.config;
+
+import com.campsitereservations.db.HeapReservationStore;
+import com.campsitereservations.db.ReservationStore;
+import com.campsitereservations.persistence.Durability;
+import com.campsitereservations.persistence.FileReservationArchive;
+import com.campsitereservations.persistence.MappedReservationStore;
+import com.campsitereservations.persistence.PersistenceMode;
+import com.campsitereservations.persistence.ReservationArchive;
+import com.campsitereservations.persistence.ReservationJournal;
+import com.campsitereservations.persistence.WriteAheadLog;
+import com.campsitereservations.replication.ReplicationPrimary;
+import com.campsitereservations.replication.ReplicationRole;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class PersistenceConfig {
+
+    @Value("${campsite.persistence.mode:NONE}")
+    private PersistenceMode persistenceMode;
+
+    @Value("${campsite.persistence.directory:data}")
+    private String directory;
+
+    @Bean
+    public ReservationJournal reservationJournal(
+            @Value("${campsite.persistence.durability:GROUP_COMMIT}") Durability durability,
+            @Value("${campsite.persistence.snapshot-interval-seconds:300}") long snapshotIntervalSeconds,
+            @Value("${campsite.replication.role:NONE}") ReplicationRole replicationRole,
+            @Value("${campsite.replication.port:7400}") int replicationPort) {
+
+        ReservationJournal reservationJournal = persistenceMode == PersistenceMode.WAL
+                ? new WriteAheadLog(Paths.get(directory), durability, snapshotIntervalSeconds)
+                : ReservationJournal.NONE;
+        return replicationRole == ReplicationRole.PRIMARY
+                ? new ReplicationPrimary(reservationJournal, replicationPort)
+                : reservationJournal;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReservationArchive reservationArchive() {
+
+        return persistenceMode != PersistenceMode.NONE ? new FileReservationArchive(Paths.get(directory))
+                : ReservationArchive.NONE;
+    }
+
+    @Bean
+    public ReservationStore reservationStore() {
+
+        return persistenceMode == PersistenceMode.MAPPED ? new MappedReservationStore(Paths.get(directory))
+                : new HeapReservationStore();
+    }
+}
@@ -0,0 +1,44 @@
+package com.campsitereservations.config;
+
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.persistence.ReservationJournal;
+import com.campsitereservations.replication.ReadConsistency;
+import com.campsitereservations.replication.ReplicationFollower;
+import com.campsitereservations.replication.ReplicationNode;
+import com.campsitereservations.replication.ReplicationPrimary;
+import com.campsitereservations.replication.ReplicationRole;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ReplicationConfig {
+
+    @Value("${campsite.replication.role:NONE}")
+    private ReplicationRole replicationRole;
+
+    /*
+        A primary's journal does the replicating (see PersistenceConfig); a follower starts copying once the
+        database has loaded what it kept locally.
+     */
+    @Bean
+    public ReplicationNode replicationNode(
+            CampsiteInMemoryDatabase campsiteInMemoryDatabase, ReservationJournal reservationJournal,
+            @Value("${campsite.replication.primary-host:localhost}") String primaryHost,
+            @Value("${campsite.replication.port:7400}") int port,
+            @Value("${campsite.replication.read-consistency:READ_YOUR_WRITES}") ReadConsistency readConsistency,
+            @Value("${campsite.replication.max-staleness-millis:1000}") long maxStalenessMillis,
+            @Value("${campsite.replication.read-timeout-millis:2000}") long readTimeoutMillis) {
+
+        if (replicationRole == ReplicationRole.PRIMARY) {
+            return (ReplicationPrimary) reservationJournal;
+        }
+        if (replicationRole == ReplicationRole.FOLLOWER) {
+            ReplicationFollower replicationFollower = new ReplicationFollower(campsiteInMemoryDatabase, primaryHost,
+                    port, readConsistency, maxStalenessMillis, readTimeoutMillis);
+            replicationFollower.start();
+            return replicationFollower;
+        }
+        return ReplicationNode.NONE;
+    }
+}
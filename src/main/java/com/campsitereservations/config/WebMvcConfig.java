@@ -0,0 +1,37 @@
+package com.campsitereservations.config;
+
+import com.campsitereservations.controller.BinaryResponseHttpMessageConverter;
+import com.campsitereservations.controller.ReplicationInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private ReplicationInterceptor replicationInterceptor;
+
+    @Autowired
+    public WebMvcConfig(ReplicationInterceptor replicationInterceptor) {
+        this.replicationInterceptor = replicationInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(replicationInterceptor).addPathPatterns("/v1/api/**");
+    }
+
+    /*
+        Added last, so clients sending no Accept header or Accept: * / * keep getting JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new BinaryResponseHttpMessageConverter());
+    }
+}
@@ -0,0 +1,11 @@
+package com.campsitereservations.contracts;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class AvailableDateRangeModel {
+    private String fromDate;
+    private String toDate;
+}
@@ -0,0 +1,14 @@
+package com.campsitereservations.contracts;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class AvailableDateRangesResponse {
+    private String message;
+    private List<AvailableDateRangeModel> availableRanges;
+    private ErrorDetails errorDetails;
+}
@@ -0,0 +1,23 @@
+package com.campsitereservations.contracts;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReservationItem {
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String checkinDate;
+    private String checkoutDate;
+    private Integer campsiteId;
+}
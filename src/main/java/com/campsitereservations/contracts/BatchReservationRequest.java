@@ -0,0 +1,22 @@
+package com.campsitereservations.contracts;
+
+import com.campsitereservations.db.BatchMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReservationRequest {
+    private BatchMode batchMode;
+    private List<BatchReservationItem> reservations;
+}
@@ -0,0 +1,14 @@
+package com.campsitereservations.contracts;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class BatchReservationResponse {
+    private String message;
+    private List<ReservationAddUpdateResponse> results;
+    private ErrorDetails errorDetails;
+}
@@ -0,0 +1,14 @@
+package com.campsitereservations.contracts;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class HoldResponse {
+    private String message;
+    private String holdId;
+    private String expiresAt;
+    private ReservationModel reservationModel;
+    private ErrorDetails errorDetails;
+}
@@ -7,6 +7,7 @@ import lombok.Getter;
 @Builder
 public class ReservationModel {
     private String reservationId;
+    private Integer campsiteId;
     private String firstName;
     private String lastName;
     private String email;
@@ -0,0 +1,14 @@
+package com.campsitereservations.contracts;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class ReservationsResponse {
+    private String message;
+    private List<ReservationModel> reservations;
+    private ErrorDetails errorDetails;
+}
@@ -0,0 +1,16 @@
+package com.campsitereservations.contracts;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class WaitlistResponse {
+    private String message;
+    private String waitlistId;
+    private String status;
+    private ReservationModel reservationModel;
+    private String holdId;
+    private String holdExpiresAt;
+    private ErrorDetails errorDetails;
+}
@@ -0,0 +1,44 @@
+package com.campsitereservations.controller;
+
+import com.campsitereservations.mapper.BinaryResponseWriter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Writes the response contracts in the format of {@link BinaryResponseWriter} for clients that accept it.
+ * Requests stay JSON or query parameters, so nothing is read.
+ */
+public class BinaryResponseHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public BinaryResponseHttpMessageConverter() {
+        super(MediaType.parseMediaType(BinaryResponseWriter.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> responseType) {
+        return BinaryResponseWriter.supports(responseType);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> responseType, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Binary requests are not supported", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object response, HttpOutputMessage outputMessage) throws IOException {
+
+        byte[] encoded = BinaryResponseWriter.encode(response);
+        outputMessage.getHeaders().setContentLength(encoded.length);
+        outputMessage.getBody().write(encoded);
+    }
+}
@@ -0,0 +1,101 @@
+package com.campsitereservations.controller;
+
+import com.campsitereservations.contracts.ErrorDetails;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.replication.ReplicationNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Replication on the servlet stack. A read waits until this node has reached the position given in the
+ * {@value ReplicationNode#POSITION_HEADER} header and is as fresh as the follower promises, or is answered with 503;
+ * every response is sent with the position the node was at once the request was handled.
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ReplicationInterceptor implements HandlerInterceptor, ResponseBodyAdvice<Object> {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private ReplicationNode replicationNode;
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    public ReplicationInterceptor(ReplicationNode replicationNode, ObjectMapper objectMapper) {
+        this.replicationNode = replicationNode;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        Long minimumPosition;
+        try {
+            minimumPosition = minimumPosition(request.getHeader(ReplicationNode.POSITION_HEADER));
+        } catch (NumberFormatException numberFormatException) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Invalid " + ReplicationNode.POSITION_HEADER + " header : "
+                    + request.getHeader(ReplicationNode.POSITION_HEADER));
+            return false;
+        }
+        Result<Void> readable = replicationNode.isReadable(minimumPosition) ? Result.success()
+                : replicationNode.awaitReadable(minimumPosition);
+        if (!readable.isSuccess()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            writeError(response, HttpStatus.SERVICE_UNAVAILABLE, readable.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.getContainingClass() == ReservationsController.class;
+    }
+
+    /*
+        Called after the handler returns and before the body is written, so a write's own change is included.
+     */
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+
+        response.getHeaders().set(ReplicationNode.POSITION_HEADER, Long.toString(replicationNode.getPosition()));
+        return body;
+    }
+
+    static Long minimumPosition(String header) {
+        return header == null || header.isEmpty() ? null : Long.valueOf(header.trim());
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String errorMessage)
+            throws IOException {
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.setHeader(ReplicationNode.POSITION_HEADER, Long.toString(replicationNode.getPosition()));
+        objectMapper.writeValue(response.getOutputStream(), Collections.singletonMap("errorDetails",
+                ErrorDetails.builder().errorMessage(errorMessage).build()));
+    }
+}
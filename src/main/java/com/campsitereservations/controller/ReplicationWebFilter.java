@@ -0,0 +1,92 @@
+package com.campsitereservations.controller;
+
+import com.campsitereservations.contracts.ErrorDetails;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.replication.ReplicationNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.UncheckedIOException;
+import java.util.Collections;
+
+/**
+ * Replication on WebFlux, as {@link ReplicationInterceptor} does it on the servlet stack. A read that has to wait
+ * for the follower to catch up waits on the booking scheduler, never on an event loop.
+ */
+public class ReplicationWebFilter implements WebFilter {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String API_PATH = "/v1/api/";
+
+    private final ReplicationNode replicationNode;
+    private final ObjectMapper objectMapper;
+    private final Scheduler bookingScheduler;
+
+    public ReplicationWebFilter(ReplicationNode replicationNode, ObjectMapper objectMapper,
+                                Scheduler bookingScheduler) {
+        this.replicationNode = replicationNode;
+        this.objectMapper = objectMapper;
+        this.bookingScheduler = bookingScheduler;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        if (!exchange.getRequest().getPath().value().startsWith(API_PATH)) {
+            return chain.filter(exchange);
+        }
+        ServerHttpResponse response = exchange.getResponse();
+        response.beforeCommit(() -> {
+            response.getHeaders().set(ReplicationNode.POSITION_HEADER,
+                    Long.toString(replicationNode.getPosition()));
+            return Mono.empty();
+        });
+        if (exchange.getRequest().getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+
+        String header = exchange.getRequest().getHeaders().getFirst(ReplicationNode.POSITION_HEADER);
+        Long minimumPosition;
+        try {
+            minimumPosition = ReplicationInterceptor.minimumPosition(header);
+        } catch (NumberFormatException numberFormatException) {
+            return writeError(response, HttpStatus.BAD_REQUEST,
+                    "Invalid " + ReplicationNode.POSITION_HEADER + " header : " + header);
+        }
+        if (replicationNode.isReadable(minimumPosition)) {
+            return chain.filter(exchange);
+        }
+        return Mono.fromCallable(() -> replicationNode.awaitReadable(minimumPosition))
+                .subscribeOn(bookingScheduler)
+                .flatMap(readable -> readable.isSuccess() ? chain.filter(exchange) : replicaBehind(response, readable));
+    }
+
+    private Mono<Void> replicaBehind(ServerHttpResponse response, Result<Void> readable) {
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return writeError(response, HttpStatus.SERVICE_UNAVAILABLE, readable.getMessage());
+    }
+
+    private Mono<Void> writeError(ServerHttpResponse response, HttpStatus status, String errorMessage) {
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Collections.singletonMap("errorDetails",
+                    ErrorDetails.builder().errorMessage(errorMessage).build()));
+        } catch (JsonProcessingException jsonProcessingException) {
+            throw new UncheckedIOException(jsonProcessingException);
+        }
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON_UTF8);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
@@ -1,32 +1,155 @@
 package com.campsitereservations.controller;
 
+import com.campsitereservations.cache.IdempotencyCache;
+import com.campsitereservations.contracts.AvailableDateRangesResponse;
 import com.campsitereservations.contracts.AvailableReservationDatesResponse;
+import com.campsitereservations.contracts.BatchReservationRequest;
+import com.campsitereservations.contracts.BatchReservationResponse;
 import com.campsitereservations.contracts.DeleteReservationResponse;
+import com.campsitereservations.contracts.HoldResponse;
 import com.campsitereservations.contracts.ReservationAddUpdateResponse;
+import com.campsitereservations.contracts.ReservationsResponse;
+import com.campsitereservations.contracts.WaitlistResponse;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.exceptions.InvalidInputException;
+import com.campsitereservations.mapper.AvailabilityExportWriter;
+import com.campsitereservations.mapper.BinaryResponseWriter;
+import com.campsitereservations.mapper.ReservationsMapper;
 import com.campsitereservations.service.ReservationOperationsService;
+import com.campsitereservations.service.WaitlistService;
+import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/v1/api/")
 public class ReservationsController {
 
     private ReservationOperationsService reservationOperationsService;
+    private WaitlistService waitlistService;
+    private IdempotencyCache idempotencyCache;
+    private ReservationsMapper reservationsMapper;
 
     @Autowired
-    public ReservationsController(ReservationOperationsService reservationOperationsService) {
+    public ReservationsController(ReservationOperationsService reservationOperationsService,
+                                  WaitlistService waitlistService, IdempotencyCache idempotencyCache,
+                                  ReservationsMapper reservationsMapper) {
         this.reservationOperationsService = reservationOperationsService;
+        this.waitlistService = waitlistService;
+        this.idempotencyCache = idempotencyCache;
+        this.reservationsMapper = reservationsMapper;
     }
 
     @GetMapping("available-dates")
-    public ResponseEntity<AvailableReservationDatesResponse> getAvailableDates(@RequestParam("checkinDate") String checkinDate, @RequestParam("checkoutDate") String checkoutDate) {
+    @ApiOperation(value = "getAvailableDates", response = AvailableReservationDatesResponse.class)
+    public ResponseEntity<byte[]> getAvailableDates(@RequestParam("checkinDate") String checkinDate, @RequestParam("checkoutDate") String checkoutDate,
+                                                    @RequestParam(value = "campsiteId", required = false) Integer campsiteId,
+                                                    WebRequest webRequest) {
+
+        // The ETag is read before the dates, so it can only be older than the response it goes out with.
+        String eTag = reservationOperationsService.getAvailableDatesETag(campsiteId);
+        if (eTag != null && webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        byte[] availableReservationDatesResponse = reservationOperationsService
+                .getAvailableDatesJson(checkinDate, checkoutDate, campsiteId);
+
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON_UTF8)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .body(availableReservationDatesResponse);
+    }
+
+    /**
+     * available-dates for clients accepting {@link BinaryResponseWriter#MEDIA_TYPE}: the free days as a bitmap
+     * read straight from the calendars, without building the list of dates.
+     */
+    @GetMapping(value = "available-dates", produces = BinaryResponseWriter.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getAvailableDatesBinary(@RequestParam("checkinDate") String checkinDate, @RequestParam("checkoutDate") String checkoutDate,
+                                                          @RequestParam(value = "campsiteId", required = false) Integer campsiteId,
+                                                          WebRequest webRequest) {
+
+        String eTag = reservationOperationsService.getAvailableDatesBinaryETag(campsiteId);
+        if (eTag != null && webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        byte[] availableReservationDatesResponse = reservationOperationsService
+                .getAvailableDatesBinary(checkinDate, checkoutDate, campsiteId);
+
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.parseMediaType(BinaryResponseWriter.MEDIA_TYPE))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .body(availableReservationDatesResponse);
+    }
+
+    @GetMapping("available-date-ranges")
+    public ResponseEntity<AvailableDateRangesResponse> getAvailableDateRanges(@RequestParam("checkinDate") String checkinDate,
+                                                                              @RequestParam("checkoutDate") String checkoutDate,
+                                                                              @RequestParam(value = "campsiteId", required = false) Integer campsiteId,
+                                                                              WebRequest webRequest) {
+
+        String eTag = reservationOperationsService.getAvailableDatesETag(campsiteId);
+        if (eTag != null && webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        AvailableDateRangesResponse availableDateRangesResponse = reservationOperationsService
+                .getAvailableDateRanges(checkinDate, checkoutDate, campsiteId);
+
+        return new ResponseEntity<>(availableDateRangesResponse, HttpStatus.OK);
+    }
+
+    /**
+     * Free ranges of every campsite, or of the given one, streamed as newline-delimited JSON in campsite and date
+     * order. Meant for partners pulling the whole calendar; the response is written while it is read.
+     */
+    @GetMapping("availability-export")
+    public ResponseEntity<StreamingResponseBody> exportAvailability(@RequestParam(value = "checkinDate", required = false) String checkinDate,
+                                                                    @RequestParam(value = "checkoutDate", required = false) String checkoutDate,
+                                                                    @RequestParam(value = "campsiteId", required = false) Integer campsiteId) {
+
+        Result<ReservationsDates> exportDates = reservationOperationsService.validateAvailabilityExport(checkinDate,
+                checkoutDate, campsiteId);
+        if (!exportDates.isSuccess()) {
+            byte[] failedResponse = reservationOperationsService.availabilityExportFailedJson(checkinDate,
+                    checkoutDate, exportDates);
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .body(outputStream -> outputStream.write(failedResponse));
+        }
+
+        StreamingResponseBody availabilityExport = outputStream ->
+                reservationOperationsService.exportAvailability(exportDates.getValue(), campsiteId, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(AvailabilityExportWriter.MEDIA_TYPE))
+                .body(availabilityExport);
+    }
+
+    @GetMapping("reservations-by-email")
+    public ResponseEntity<ReservationsResponse> getReservationsByEmail(@RequestParam("email") String email) {
+
+        ReservationsResponse reservationsResponse = reservationOperationsService.findReservationsByEmail(email);
+
+        return new ResponseEntity<>(reservationsResponse, HttpStatus.OK);
+    }
+
+    @GetMapping("reservations-on-date")
+    public ResponseEntity<ReservationsResponse> getReservationsOnDate(@RequestParam("date") String date) {
 
-        AvailableReservationDatesResponse availableReservationDatesResponse = reservationOperationsService
-                .getAvailableDates(checkinDate, checkoutDate);
+        ReservationsResponse reservationsResponse = reservationOperationsService.findReservationsOnDate(date);
 
-        return new ResponseEntity<>(availableReservationDatesResponse, HttpStatus.OK);
+        return new ResponseEntity<>(reservationsResponse, HttpStatus.OK);
     }
 
     @PostMapping("add-reservation")
@@ -34,34 +157,136 @@ public class ReservationsController {
                                                                        @RequestParam("lastName") String lastName,
                                                                        @RequestParam("email") String email,
                                                                        @RequestParam("checkinDate") String checkinDate,
-                                                                       @RequestParam("checkoutDate") String checkoutDate) {
+                                                                       @RequestParam("checkoutDate") String checkoutDate,
+                                                                       @RequestParam(value = "campsiteId", required = false) Integer campsiteId,
+                                                                       @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
 
-        ReservationAddUpdateResponse reservationAddUpdateResponse = reservationOperationsService
-                .addReservation(firstName, lastName, email, checkinDate, checkoutDate);
+        return idempotent(idempotencyKey,
+                IdempotencyCache.request("add-reservation", firstName, lastName, email, checkinDate, checkoutDate,
+                        campsiteId),
+                () -> reservationOperationsService
+                        .addReservation(firstName, lastName, email, checkinDate, checkoutDate, campsiteId),
+                reservationsMapper::mapToAddReservationExceptionResponse);
+    }
+
+    @PostMapping("batch-reservations")
+    public ResponseEntity<BatchReservationResponse> addReservations(@RequestBody BatchReservationRequest batchReservationRequest,
+                                                                    @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
 
-        return new ResponseEntity<>(reservationAddUpdateResponse, HttpStatus.OK);
+        return idempotent(idempotencyKey, IdempotencyCache.request("batch-reservations", batchReservationRequest),
+                () -> reservationOperationsService.addReservations(batchReservationRequest),
+                reservationsMapper::mapToBatchReservationFailedResponse);
     }
 
     @DeleteMapping("cancel-reservation")
-    public ResponseEntity<DeleteReservationResponse> cancelReservation(@RequestParam("reservationId") String reservationId) {
+    public ResponseEntity<DeleteReservationResponse> cancelReservation(@RequestParam("reservationId") String reservationId,
+                                                                       @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
+
+        return idempotent(idempotencyKey, IdempotencyCache.request("cancel-reservation", reservationId),
+                () -> reservationOperationsService.cancelReservation(reservationId),
+                exception -> reservationsMapper.mapToDeleteReservationFailedResponse(reservationId, exception));
+    }
+
+    @PostMapping("place-hold")
+    public ResponseEntity<HoldResponse> placeHold(@RequestParam("firstName") String firstName,
+                                                  @RequestParam("lastName") String lastName,
+                                                  @RequestParam("email") String email,
+                                                  @RequestParam("checkinDate") String checkinDate,
+                                                  @RequestParam("checkoutDate") String checkoutDate,
+                                                  @RequestParam(value = "campsiteId", required = false) Integer campsiteId,
+                                                  @RequestParam(value = "ttlSeconds", required = false) Long ttlSeconds,
+                                                  @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
+
+        return idempotent(idempotencyKey,
+                IdempotencyCache.request("place-hold", firstName, lastName, email, checkinDate, checkoutDate,
+                        campsiteId, ttlSeconds),
+                () -> reservationOperationsService
+                        .placeHold(firstName, lastName, email, checkinDate, checkoutDate, campsiteId, ttlSeconds),
+                reservationsMapper::mapToHoldExceptionResponse);
+    }
+
+    @PostMapping("confirm-hold")
+    public ResponseEntity<ReservationAddUpdateResponse> confirmHold(@RequestParam("holdId") String holdId,
+                                                                    @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
+
+        return idempotent(idempotencyKey, IdempotencyCache.request("confirm-hold", holdId),
+                () -> reservationOperationsService.confirmHold(holdId),
+                reservationsMapper::mapToAddReservationExceptionResponse);
+    }
 
-        DeleteReservationResponse deleteReservationResponse = reservationOperationsService
-                .cancelReservation(reservationId);
+    @DeleteMapping("release-hold")
+    public ResponseEntity<HoldResponse> releaseHold(@RequestParam("holdId") String holdId,
+                                                    @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
 
-        return new ResponseEntity<>(deleteReservationResponse, HttpStatus.OK);
+        return idempotent(idempotencyKey, IdempotencyCache.request("release-hold", holdId),
+                () -> reservationOperationsService.releaseHold(holdId),
+                exception -> reservationsMapper.mapToReleaseHoldFailedResponse(holdId, exception));
+    }
+
+    @PostMapping("join-waitlist")
+    public ResponseEntity<WaitlistResponse> joinWaitlist(@RequestParam("firstName") String firstName,
+                                                         @RequestParam("lastName") String lastName,
+                                                         @RequestParam("email") String email,
+                                                         @RequestParam("checkinDate") String checkinDate,
+                                                         @RequestParam("checkoutDate") String checkoutDate,
+                                                         @RequestParam(value = "campsiteId", required = false) Integer campsiteId,
+                                                         @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
+
+        return idempotent(idempotencyKey,
+                IdempotencyCache.request("join-waitlist", firstName, lastName, email, checkinDate, checkoutDate,
+                        campsiteId),
+                () -> waitlistService.joinWaitlist(firstName, lastName, email, checkinDate, checkoutDate, campsiteId),
+                reservationsMapper::mapToWaitlistExceptionResponse);
+    }
+
+    @GetMapping("waitlist-entry")
+    public ResponseEntity<WaitlistResponse> getWaitlistEntry(@RequestParam("waitlistId") String waitlistId) {
+
+        WaitlistResponse waitlistResponse = waitlistService.getWaitlistEntry(waitlistId);
+
+        return new ResponseEntity<>(waitlistResponse, HttpStatus.OK);
+    }
+
+    @DeleteMapping("leave-waitlist")
+    public ResponseEntity<WaitlistResponse> leaveWaitlist(@RequestParam("waitlistId") String waitlistId,
+                                                          @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
+
+        return idempotent(idempotencyKey, IdempotencyCache.request("leave-waitlist", waitlistId),
+                () -> waitlistService.leaveWaitlist(waitlistId),
+                reservationsMapper::mapToWaitlistExceptionResponse);
     }
 
     @PutMapping("update-reservation")
     public ResponseEntity<ReservationAddUpdateResponse> updateReservation(String reservationId, String firstName,
                                                                           String lastName, String email,
-                                                                          String checkinDate, String checkoutDate) {
-
-        ReservationAddUpdateResponse reservationAddUpdateResponse = reservationOperationsService
-                .updateReservation(reservationId, firstName,
-                        lastName, email,
-                        checkinDate, checkoutDate);
+                                                                          String checkinDate, String checkoutDate,
+                                                                          Integer campsiteId,
+                                                                          @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
 
-        return new ResponseEntity<>(reservationAddUpdateResponse, HttpStatus.OK);
+        return idempotent(idempotencyKey,
+                IdempotencyCache.request("update-reservation", reservationId, firstName, lastName, email,
+                        checkinDate, checkoutDate, campsiteId),
+                () -> reservationOperationsService
+                        .updateReservation(reservationId, firstName,
+                                lastName, email,
+                                checkinDate, checkoutDate, campsiteId),
+                exception -> reservationsMapper.mapToUpdateExceptionResponse(null, exception));
     }
 
+    /*
+        Changes sent with an Idempotency-Key run once per key; see IdempotencyCache. A malformed or reused key is
+        answered with the endpoint's usual failure response.
+     */
+    private <T> ResponseEntity<T> idempotent(String idempotencyKey, String request, Supplier<T> operation,
+                                             Function<Exception, T> failedResponse) {
+
+        Result<T> response = idempotencyCache.execute(idempotencyKey, request, operation);
+        if (response.isSuccess()) {
+            return new ResponseEntity<>(response.getValue(), HttpStatus.OK);
+        }
+        HttpStatus status = response.getFailureReason() == FailureReason.IDEMPOTENCY_KEY_REUSED
+                ? HttpStatus.UNPROCESSABLE_ENTITY : HttpStatus.BAD_REQUEST;
+        return new ResponseEntity<>(failedResponse.apply(new InvalidInputException(
+                response.getFailureReason().getTag(), response.getMessage())), status);
+    }
 }
@@ -0,0 +1,319 @@
+package com.campsitereservations.controller;
+
+import com.campsitereservations.cache.IdempotencyCache;
+import com.campsitereservations.contracts.BatchReservationRequest;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.exceptions.InvalidInputException;
+import com.campsitereservations.mapper.AvailabilityExportWriter;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.service.ReservationOperationsService;
+import com.campsitereservations.service.WaitlistService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * WebFlux counterpart of {@link ReservationsController}, with the same endpoints, parameters and responses.
+ *
+ * <p>available-dates and the reservation lookups only read snapshots, indexes and the response cache, so they run
+ * on the event loop. Bookings may wait for day locks or the journal, so they run on a bounded worker scheduler:
+ * connections waiting for a worker hold no thread at all. Changes honour the {@value IdempotencyCache#HEADER} header
+ * as the servlet endpoints do.
+ */
+public class ReservationsHandler {
+
+    private final ReservationOperationsService reservationOperationsService;
+    private final WaitlistService waitlistService;
+    private final Scheduler bookingScheduler;
+    private final IdempotencyCache idempotencyCache;
+    private final ReservationsMapper reservationsMapper;
+    private final DataBufferFactory dataBufferFactory = new DefaultDataBufferFactory();
+
+    public ReservationsHandler(ReservationOperationsService reservationOperationsService,
+                               WaitlistService waitlistService, Scheduler bookingScheduler,
+                               IdempotencyCache idempotencyCache, ReservationsMapper reservationsMapper) {
+        this.reservationOperationsService = reservationOperationsService;
+        this.waitlistService = waitlistService;
+        this.bookingScheduler = bookingScheduler;
+        this.idempotencyCache = idempotencyCache;
+        this.reservationsMapper = reservationsMapper;
+    }
+
+    public Mono<ServerResponse> getAvailableDates(ServerRequest request) {
+
+        String checkinDate = requiredParam(request, "checkinDate");
+        String checkoutDate = requiredParam(request, "checkoutDate");
+        Integer campsiteId = campsiteIdParam(request);
+
+        String eTag = reservationOperationsService.getAvailableDatesETag(campsiteId);
+        if (eTag != null && request.headers().header("If-None-Match").contains(eTag)) {
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        byte[] availableReservationDatesResponse = reservationOperationsService
+                .getAvailableDatesJson(checkinDate, checkoutDate, campsiteId);
+
+        ServerResponse.BodyBuilder response = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8);
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        return response.syncBody(availableReservationDatesResponse);
+    }
+
+    public Mono<ServerResponse> getAvailableDateRanges(ServerRequest request) {
+
+        String checkinDate = requiredParam(request, "checkinDate");
+        String checkoutDate = requiredParam(request, "checkoutDate");
+        Integer campsiteId = campsiteIdParam(request);
+
+        String eTag = reservationOperationsService.getAvailableDatesETag(campsiteId);
+        if (eTag != null && request.headers().header("If-None-Match").contains(eTag)) {
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        ServerResponse.BodyBuilder response = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8);
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        return response.syncBody(reservationOperationsService
+                .getAvailableDateRanges(checkinDate, checkoutDate, campsiteId));
+    }
+
+    /*
+        One buffer per campsite, produced on demand: a slow partner holds back the campsites not yet written
+        instead of having them queue up in memory.
+     */
+    public Mono<ServerResponse> exportAvailability(ServerRequest request) {
+
+        String checkinDate = request.queryParam("checkinDate").orElse(null);
+        String checkoutDate = request.queryParam("checkoutDate").orElse(null);
+        Integer campsiteId = campsiteIdParam(request);
+
+        Result<ReservationsDates> exportDates = reservationOperationsService.validateAvailabilityExport(checkinDate,
+                checkoutDate, campsiteId);
+        if (!exportDates.isSuccess()) {
+            return ServerResponse.badRequest().contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .syncBody(reservationOperationsService.availabilityExportFailedJson(checkinDate, checkoutDate,
+                            exportDates));
+        }
+
+        Flux<Integer> campsiteIds = campsiteId != null ? Flux.just(campsiteId)
+                : Flux.range(1, reservationOperationsService.getCampsiteCount());
+        Flux<DataBuffer> availabilityExport = campsiteIds.map(exportedCampsiteId -> {
+            DataBuffer dataBuffer = dataBufferFactory.allocateBuffer();
+            try {
+                reservationOperationsService.exportAvailability(exportDates.getValue(), exportedCampsiteId,
+                        dataBuffer.asOutputStream());
+            } catch (IOException ioException) {
+                DataBufferUtils.release(dataBuffer);
+                throw new UncheckedIOException(ioException);
+            }
+            return dataBuffer;
+        });
+        return ServerResponse.ok().contentType(MediaType.parseMediaType(AvailabilityExportWriter.MEDIA_TYPE))
+                .body(BodyInserters.fromDataBuffers(availabilityExport));
+    }
+
+    public Mono<ServerResponse> getReservationsByEmail(ServerRequest request) {
+
+        String email = requiredParam(request, "email");
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(reservationOperationsService.findReservationsByEmail(email));
+    }
+
+    public Mono<ServerResponse> getReservationsOnDate(ServerRequest request) {
+
+        String date = requiredParam(request, "date");
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(reservationOperationsService.findReservationsOnDate(date));
+    }
+
+    public Mono<ServerResponse> addReservation(ServerRequest request) {
+
+        String firstName = requiredParam(request, "firstName");
+        String lastName = requiredParam(request, "lastName");
+        String email = requiredParam(request, "email");
+        String checkinDate = requiredParam(request, "checkinDate");
+        String checkoutDate = requiredParam(request, "checkoutDate");
+        Integer campsiteId = campsiteIdParam(request);
+
+        return onBookingScheduler(request,
+                IdempotencyCache.request("add-reservation", firstName, lastName, email, checkinDate, checkoutDate,
+                        campsiteId),
+                () -> reservationOperationsService
+                        .addReservation(firstName, lastName, email, checkinDate, checkoutDate, campsiteId),
+                reservationsMapper::mapToAddReservationExceptionResponse);
+    }
+
+    public Mono<ServerResponse> addReservations(ServerRequest request) {
+
+        String idempotencyKey = request.headers().asHttpHeaders().getFirst(IdempotencyCache.HEADER);
+
+        return request.bodyToMono(BatchReservationRequest.class)
+                .publishOn(bookingScheduler)
+                .map(batchReservationRequest -> idempotencyCache.execute(idempotencyKey,
+                        IdempotencyCache.request("batch-reservations", batchReservationRequest),
+                        () -> (Object) reservationOperationsService.addReservations(batchReservationRequest)))
+                .flatMap(response -> respond(response, reservationsMapper::mapToBatchReservationFailedResponse));
+    }
+
+    public Mono<ServerResponse> cancelReservation(ServerRequest request) {
+
+        String reservationId = requiredParam(request, "reservationId");
+
+        return onBookingScheduler(request, IdempotencyCache.request("cancel-reservation", reservationId),
+                () -> reservationOperationsService.cancelReservation(reservationId),
+                exception -> reservationsMapper.mapToDeleteReservationFailedResponse(reservationId, exception));
+    }
+
+    public Mono<ServerResponse> updateReservation(ServerRequest request) {
+
+        String reservationId = request.queryParam("reservationId").orElse(null);
+        String firstName = request.queryParam("firstName").orElse(null);
+        String lastName = request.queryParam("lastName").orElse(null);
+        String email = request.queryParam("email").orElse(null);
+        String checkinDate = request.queryParam("checkinDate").orElse(null);
+        String checkoutDate = request.queryParam("checkoutDate").orElse(null);
+        Integer campsiteId = campsiteIdParam(request);
+
+        return onBookingScheduler(request,
+                IdempotencyCache.request("update-reservation", reservationId, firstName, lastName, email,
+                        checkinDate, checkoutDate, campsiteId),
+                () -> reservationOperationsService.updateReservation(reservationId, firstName, lastName, email,
+                        checkinDate, checkoutDate, campsiteId),
+                exception -> reservationsMapper.mapToUpdateExceptionResponse(null, exception));
+    }
+
+    public Mono<ServerResponse> placeHold(ServerRequest request) {
+
+        String firstName = requiredParam(request, "firstName");
+        String lastName = requiredParam(request, "lastName");
+        String email = requiredParam(request, "email");
+        String checkinDate = requiredParam(request, "checkinDate");
+        String checkoutDate = requiredParam(request, "checkoutDate");
+        Integer campsiteId = campsiteIdParam(request);
+        Long ttlSeconds;
+        try {
+            ttlSeconds = request.queryParam("ttlSeconds").map(Long::valueOf).orElse(null);
+        } catch (NumberFormatException numberFormatException) {
+            throw new ServerWebInputException("Invalid ttlSeconds");
+        }
+
+        return onBookingScheduler(request,
+                IdempotencyCache.request("place-hold", firstName, lastName, email, checkinDate, checkoutDate,
+                        campsiteId, ttlSeconds),
+                () -> reservationOperationsService
+                        .placeHold(firstName, lastName, email, checkinDate, checkoutDate, campsiteId, ttlSeconds),
+                reservationsMapper::mapToHoldExceptionResponse);
+    }
+
+    public Mono<ServerResponse> confirmHold(ServerRequest request) {
+
+        String holdId = requiredParam(request, "holdId");
+
+        return onBookingScheduler(request, IdempotencyCache.request("confirm-hold", holdId),
+                () -> reservationOperationsService.confirmHold(holdId),
+                reservationsMapper::mapToAddReservationExceptionResponse);
+    }
+
+    public Mono<ServerResponse> releaseHold(ServerRequest request) {
+
+        String holdId = requiredParam(request, "holdId");
+
+        return onBookingScheduler(request, IdempotencyCache.request("release-hold", holdId),
+                () -> reservationOperationsService.releaseHold(holdId),
+                exception -> reservationsMapper.mapToReleaseHoldFailedResponse(holdId, exception));
+    }
+
+    public Mono<ServerResponse> joinWaitlist(ServerRequest request) {
+
+        String firstName = requiredParam(request, "firstName");
+        String lastName = requiredParam(request, "lastName");
+        String email = requiredParam(request, "email");
+        String checkinDate = requiredParam(request, "checkinDate");
+        String checkoutDate = requiredParam(request, "checkoutDate");
+        Integer campsiteId = campsiteIdParam(request);
+
+        return onBookingScheduler(request,
+                IdempotencyCache.request("join-waitlist", firstName, lastName, email, checkinDate, checkoutDate,
+                        campsiteId),
+                () -> waitlistService.joinWaitlist(firstName, lastName, email, checkinDate, checkoutDate, campsiteId),
+                reservationsMapper::mapToWaitlistExceptionResponse);
+    }
+
+    public Mono<ServerResponse> getWaitlistEntry(ServerRequest request) {
+
+        String waitlistId = requiredParam(request, "waitlistId");
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(waitlistService.getWaitlistEntry(waitlistId));
+    }
+
+    public Mono<ServerResponse> leaveWaitlist(ServerRequest request) {
+
+        String waitlistId = requiredParam(request, "waitlistId");
+
+        return onBookingScheduler(request, IdempotencyCache.request("leave-waitlist", waitlistId),
+                () -> waitlistService.leaveWaitlist(waitlistId),
+                reservationsMapper::mapToWaitlistExceptionResponse);
+    }
+
+    /*
+        Changes sent with an Idempotency-Key run once per key; see IdempotencyCache. A malformed or reused key is
+        answered with the endpoint's usual failure response, as ReservationsController does.
+     */
+    private Mono<ServerResponse> onBookingScheduler(ServerRequest request, String idempotentRequest,
+                                                    Supplier<Object> operation,
+                                                    Function<Exception, Object> failedResponse) {
+
+        String idempotencyKey = request.headers().asHttpHeaders().getFirst(IdempotencyCache.HEADER);
+
+        return Mono.fromCallable(() -> idempotencyCache.execute(idempotencyKey, idempotentRequest, operation))
+                .subscribeOn(bookingScheduler)
+                .flatMap(response -> respond(response, failedResponse));
+    }
+
+    private static Mono<ServerResponse> respond(Result<Object> response, Function<Exception, Object> failedResponse) {
+
+        if (response.isSuccess()) {
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(response.getValue());
+        }
+        HttpStatus status = response.getFailureReason() == FailureReason.IDEMPOTENCY_KEY_REUSED
+                ? HttpStatus.UNPROCESSABLE_ENTITY : HttpStatus.BAD_REQUEST;
+        return ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(failedResponse.apply(new InvalidInputException(response.getFailureReason().getTag(),
+                        response.getMessage())));
+    }
+
+    private static String requiredParam(ServerRequest request, String name) {
+        return request.queryParam(name).orElseThrow(() ->
+                new ServerWebInputException("Required String parameter '" + name + "' is not present"));
+    }
+
+    private static Integer campsiteIdParam(ServerRequest request) {
+        try {
+            return request.queryParam("campsiteId").map(Integer::valueOf).orElse(null);
+        } catch (NumberFormatException numberFormatException) {
+            throw new ServerWebInputException("Invalid campsiteId");
+        }
+    }
+}
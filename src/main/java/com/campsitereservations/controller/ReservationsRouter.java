@@ -0,0 +1,76 @@
+package com.campsitereservations.controller;
+
+import com.campsitereservations.cache.IdempotencyCache;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.replication.ReplicationNode;
+import com.campsitereservations.service.ReservationOperationsService;
+import com.campsitereservations.service.WaitlistService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Serves the reservation API on WebFlux and Netty when {@code spring.main.web-application-type=reactive}. Tomcat
+ * stays on the classpath for the servlet stack, so Netty is picked explicitly rather than left to auto-configuration.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReservationsRouter {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler bookingScheduler(@Value("${campsite.reactive.booking-threads:64}") int bookingThreads) {
+        return Schedulers.newParallel("booking", bookingThreads);
+    }
+
+    @Bean
+    public ReservationsHandler reservationsHandler(ReservationOperationsService reservationOperationsService,
+                                                   WaitlistService waitlistService, Scheduler bookingScheduler,
+                                                   IdempotencyCache idempotencyCache,
+                                                   ReservationsMapper reservationsMapper) {
+        return new ReservationsHandler(reservationOperationsService, waitlistService, bookingScheduler,
+                idempotencyCache, reservationsMapper);
+    }
+
+    @Bean
+    public ReplicationWebFilter replicationWebFilter(ReplicationNode replicationNode, ObjectMapper objectMapper,
+                                                     Scheduler bookingScheduler) {
+        return new ReplicationWebFilter(replicationNode, objectMapper, bookingScheduler);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reservationsRoutes(ReservationsHandler reservationsHandler) {
+        return route(GET("/v1/api/available-dates"), reservationsHandler::getAvailableDates)
+                .andRoute(GET("/v1/api/available-date-ranges"), reservationsHandler::getAvailableDateRanges)
+                .andRoute(GET("/v1/api/availability-export"), reservationsHandler::exportAvailability)
+                .andRoute(GET("/v1/api/reservations-by-email"), reservationsHandler::getReservationsByEmail)
+                .andRoute(GET("/v1/api/reservations-on-date"), reservationsHandler::getReservationsOnDate)
+                .andRoute(POST("/v1/api/add-reservation"), reservationsHandler::addReservation)
+                .andRoute(POST("/v1/api/batch-reservations"), reservationsHandler::addReservations)
+                .andRoute(DELETE("/v1/api/cancel-reservation"), reservationsHandler::cancelReservation)
+                .andRoute(PUT("/v1/api/update-reservation"), reservationsHandler::updateReservation)
+                .andRoute(POST("/v1/api/place-hold"), reservationsHandler::placeHold)
+                .andRoute(POST("/v1/api/confirm-hold"), reservationsHandler::confirmHold)
+                .andRoute(DELETE("/v1/api/release-hold"), reservationsHandler::releaseHold)
+                .andRoute(POST("/v1/api/join-waitlist"), reservationsHandler::joinWaitlist)
+                .andRoute(GET("/v1/api/waitlist-entry"), reservationsHandler::getWaitlistEntry)
+                .andRoute(DELETE("/v1/api/leave-waitlist"), reservationsHandler::leaveWaitlist);
+    }
+}
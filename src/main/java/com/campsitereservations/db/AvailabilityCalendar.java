@@ -0,0 +1,356 @@
+package com.campsitereservations.db;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Day-offset bitmap of campsite availability. A set bit means the day is free.
+ *
+ * <p>Days are addressed by epoch day and stored in a ring of {@code capacityDays} bits, so the calendar covers
+ * {@code [firstDay, firstDay + capacityDays)} and can be moved forward without copying. Range checks and updates
+ * work a whole 64-day word at a time and never allocate. Words are updated atomically because neighbouring days
+ * share a word while being guarded by different day locks.
+ */
+public class AvailabilityCalendar {
+
+    public static final long NO_DAY = Long.MIN_VALUE;
+
+    private final int capacityDays;
+    private final AtomicLongArray words;
+    // Lock-free claims that have started on each word and not yet either gone through or rolled back.
+    private final AtomicIntegerArray claimsInFlight;
+    private volatile long firstDay;
+
+    public AvailabilityCalendar(long firstDay, int capacityDays) {
+        this.capacityDays = (capacityDays + 63) & ~63;
+        this.words = new AtomicLongArray(this.capacityDays >>> 6);
+        this.claimsInFlight = new AtomicIntegerArray(words.length());
+        this.firstDay = firstDay;
+    }
+
+    private AvailabilityCalendar(AvailabilityCalendar calendar) {
+        this.capacityDays = calendar.capacityDays;
+        this.firstDay = calendar.firstDay;
+        this.words = new AtomicLongArray(calendar.words.length());
+        this.claimsInFlight = new AtomicIntegerArray(words.length());
+        for (int word = 0; word < words.length(); word++) {
+            words.lazySet(word, calendar.words.get(word));
+        }
+    }
+
+    /**
+     * Copies the calendar word by word. The copy is only point-in-time if nobody changes the calendar meanwhile.
+     */
+    public AvailabilityCalendar copy() {
+        return new AvailabilityCalendar(this);
+    }
+
+    /**
+     * Returns a copy of this calendar with the days in {@code [fromDay, toDay]} taken from {@code source}, a
+     * calendar of the same capacity. Other days keep the bits of this calendar. Once {@code source} has moved
+     * forward, or the days cover the whole ring, the copy is taken from {@code source} alone.
+     */
+    public AvailabilityCalendar copyDays(AvailabilityCalendar source, long fromDay, long toDay) {
+
+        if (source.firstDay != firstDay || toDay - fromDay + 1 >= capacityDays) {
+            return source.copy();
+        }
+
+        AvailabilityCalendar copy = new AvailabilityCalendar(this);
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            long mask = mask(slot, span);
+            int word = slot >>> 6;
+            copy.words.lazySet(word, (copy.words.get(word) & ~mask) | (source.words.get(word) & mask));
+            day += span;
+        }
+        return copy;
+    }
+
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    public long getLastDay() {
+        return firstDay + capacityDays - 1;
+    }
+
+    /**
+     * Moves the first day forward. The days left behind are marked taken first, since their slots come back as
+     * the days after the old last day, which stay taken until released.
+     */
+    public void advance(long newFirstDay) {
+
+        long oldFirstDay = firstDay;
+        if (newFirstDay <= oldFirstDay) {
+            return;
+        }
+        book(oldFirstDay, Math.min(newFirstDay - 1, getLastDay()));
+        firstDay = newFirstDay;
+    }
+
+    public boolean isAvailable(long fromDay, long toDay) {
+        return isAvailableExcept(fromDay, toDay, NO_DAY, NO_DAY);
+    }
+
+    /**
+     * Same as {@link #isAvailable(long, long)}, but days inside {@code [heldFromDay, heldToDay]} count as free.
+     * Used when a reservation moves and may keep some of the days it already holds.
+     */
+    public boolean isAvailableExcept(long fromDay, long toDay, long heldFromDay, long heldToDay) {
+
+        if (fromDay > toDay || fromDay < firstDay || toDay > getLastDay()) {
+            return false;
+        }
+
+        long day = fromDay;
+        while (day <= toDay) {
+            int slot = slot(day);
+            int span = span(slot, day, toDay);
+            long mask = mask(slot, span) & ~overlapMask(day, day + span - 1, heldFromDay, heldToDay);
+
+            if ((words.get(slot >>> 6) & mask) != mask) {
+                return false;
+            }
+            day += span;
+        }
+        return true;
+    }
+
+    public void book(long fromDay, long toDay) {
+
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            words.getAndAccumulate(slot >>> 6, ~mask(slot, span), (current, bits) -> current & bits);
+            day += span;
+        }
+    }
+
+    public void release(long fromDay, long toDay) {
+
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            words.getAndAccumulate(slot >>> 6, mask(slot, span), (current, bits) -> current | bits);
+            day += span;
+        }
+    }
+
+    /**
+     * Lock-free claim of {@code [fromDay, toDay]}. Words are claimed in ascending order with compare-and-set; if a
+     * day turns out to be taken, the words claimed so far are released again. The claim then waits for the other
+     * claims on that word to finish, and tries again if they rolled back and left the days free, so it only fails
+     * on days that stay taken. Two claims can never both succeed.
+     */
+    public boolean tryBook(long fromDay, long toDay) {
+        return tryBookExcept(fromDay, toDay, NO_DAY, NO_DAY);
+    }
+
+    /**
+     * Same as {@link #tryBook(long, long)}, but days inside {@code [heldFromDay, heldToDay]} are left alone because
+     * the caller already holds them.
+     */
+    public boolean tryBookExcept(long fromDay, long toDay, long heldFromDay, long heldToDay) {
+
+        if (fromDay > toDay || fromDay < firstDay || toDay > getLastDay()) {
+            return false;
+        }
+
+        long conflictDay;
+        while ((conflictDay = claim(fromDay, toDay, heldFromDay, heldToDay)) != NO_DAY) {
+            int slot = slot(conflictDay);
+            int span = span(slot, conflictDay, toDay);
+            long mask = mask(slot, span) & ~overlapMask(conflictDay, conflictDay + span - 1, heldFromDay, heldToDay);
+            if (!claimedDaysFreed(slot >>> 6, mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        One pass over the words of the claim. Returns NO_DAY once every word is claimed, or the first day of the
+        word that was taken, after handing back the words claimed so far. Each word counts the claim as in flight
+        from before its compare-and-set until the claim has gone through or rolled back.
+     */
+    private long claim(long fromDay, long toDay, long heldFromDay, long heldToDay) {
+
+        long day = fromDay;
+        while (day <= toDay) {
+            int slot = slot(day);
+            int span = span(slot, day, toDay);
+            long mask = mask(slot, span) & ~overlapMask(day, day + span - 1, heldFromDay, heldToDay);
+            int word = slot >>> 6;
+
+            claimsInFlight.incrementAndGet(word);
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != mask) {
+                    // Someone else got there first; hand back the words this call already claimed.
+                    if (day > fromDay) {
+                        releaseExcept(fromDay, day - 1, heldFromDay, heldToDay);
+                    }
+                    endClaim(fromDay, day);
+                    return day;
+                }
+            } while (!words.compareAndSet(word, current, current & ~mask));
+
+            day += span;
+        }
+        endClaim(fromDay, toDay);
+        return NO_DAY;
+    }
+
+    /*
+        Counts a claim of [fromDay, toDay] as no longer in flight on its words.
+     */
+    private void endClaim(long fromDay, long toDay) {
+
+        long day = fromDay;
+        while (day <= toDay) {
+            int slot = slot(day);
+            claimsInFlight.decrementAndGet(slot >>> 6);
+            day += span(slot, day, toDay);
+        }
+    }
+
+    /*
+        Waits while the days of the mask are taken and claims are in flight on the word, since those claims may
+        still roll back. True when the days are free again, false when they stayed taken by a claim that went
+        through or by a booking. Claims in flight never wait themselves, so the wait always ends.
+     */
+    private boolean claimedDaysFreed(int word, long mask) {
+
+        while ((words.get(word) & mask) != mask) {
+            if (claimsInFlight.get(word) == 0) {
+                return (words.get(word) & mask) == mask;
+            }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    public void releaseExcept(long fromDay, long toDay, long heldFromDay, long heldToDay) {
+
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            long mask = mask(slot, span) & ~overlapMask(day, day + span - 1, heldFromDay, heldToDay);
+            words.getAndAccumulate(slot >>> 6, mask, (current, bits) -> current | bits);
+            day += span;
+        }
+    }
+
+    /**
+     * Returns the first free day in {@code [fromDay, toDay]}, or {@link #NO_DAY} when every day is taken.
+     */
+    public long nextAvailableDay(long fromDay, long toDay) {
+
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            long freeBits = words.get(slot >>> 6) & mask(slot, span);
+
+            if (freeBits != 0) {
+                return day + Long.numberOfTrailingZeros(freeBits) - (slot & 63);
+            }
+            day += span;
+        }
+        return NO_DAY;
+    }
+
+    /**
+     * Returns the first taken day in {@code [fromDay, toDay]}, or {@link #NO_DAY} when every day is free. Together
+     * with {@link #nextAvailableDay(long, long)} this walks free ranges a word at a time.
+     */
+    public long nextBookedDay(long fromDay, long toDay) {
+
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            long bookedBits = ~words.get(slot >>> 6) & mask(slot, span);
+
+            if (bookedBits != 0) {
+                return day + Long.numberOfTrailingZeros(bookedBits) - (slot & 63);
+            }
+            day += span;
+        }
+        return NO_DAY;
+    }
+
+    /**
+     * ORs the free days of {@code [fromDay, toDay]} into {@code target}, where bit {@code n} stands for
+     * {@code fromDay + n}. Merging several calendars this way answers "is any campsite free" a word at a time.
+     */
+    public void orAvailableInto(long fromDay, long toDay, long[] target) {
+
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            long freeBits = (words.get(slot >>> 6) & mask(slot, span)) >>> (slot & 63);
+
+            long offset = day - fromDay;
+            int targetWord = (int) (offset >>> 6);
+            int targetBit = (int) (offset & 63);
+            target[targetWord] |= freeBits << targetBit;
+            if (targetBit + span > 64) {
+                target[targetWord + 1] |= freeBits >>> (64 - targetBit);
+            }
+            day += span;
+        }
+    }
+
+    public int countAvailable(long fromDay, long toDay) {
+
+        int count = 0;
+        long day = Math.max(fromDay, firstDay);
+        long lastDay = Math.min(toDay, getLastDay());
+        while (day <= lastDay) {
+            int slot = slot(day);
+            int span = span(slot, day, lastDay);
+            count += Long.bitCount(words.get(slot >>> 6) & mask(slot, span));
+            day += span;
+        }
+        return count;
+    }
+
+    private int slot(long day) {
+        return (int) Math.floorMod(day, (long) capacityDays);
+    }
+
+    private static int span(int slot, long day, long lastDay) {
+        return (int) Math.min(lastDay - day + 1, 64 - (slot & 63));
+    }
+
+    private static long mask(int slot, int span) {
+        long bits = span == 64 ? -1L : (1L << span) - 1;
+        return bits << (slot & 63);
+    }
+
+    private long overlapMask(long fromDay, long toDay, long heldFromDay, long heldToDay) {
+
+        long overlapFrom = Math.max(fromDay, heldFromDay);
+        long overlapTo = Math.min(toDay, heldToDay);
+        if (heldFromDay == NO_DAY || overlapFrom > overlapTo) {
+            return 0L;
+        }
+        return mask(slot(overlapFrom), (int) (overlapTo - overlapFrom + 1));
+    }
+}
@@ -0,0 +1,10 @@
+package com.campsitereservations.db;
+
+/**
+ * Told after the free days of a campsite may have changed between the given dates.
+ */
+@FunctionalInterface
+public interface AvailabilityListener {
+
+    void availabilityChanged(int campsiteId, ReservationsDates reservationsDates);
+}
@@ -0,0 +1,53 @@
+package com.campsitereservations.db;
+
+/**
+ * Immutable copy of a campsite calendar, published after every committed change. Reads never lock. With day locks
+ * or the sequencer they never see a half-applied booking; in LOCK_FREE mode they may briefly see a claim that is
+ * then rolled back, until the next snapshot (see {@link CampsiteShard#publishChange}).
+ */
+public class AvailabilitySnapshot {
+
+    private final long version;
+    private final AvailabilityCalendar calendar;
+
+    AvailabilitySnapshot(long version, AvailabilityCalendar calendar) {
+        this.version = version;
+        this.calendar = calendar;
+    }
+
+    AvailabilityCalendar getCalendar() {
+        return calendar;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getFirstDay() {
+        return calendar.getFirstDay();
+    }
+
+    public long getLastDay() {
+        return calendar.getLastDay();
+    }
+
+    public boolean isAvailable(long fromDay, long toDay) {
+        return calendar.isAvailable(fromDay, toDay);
+    }
+
+    public long nextAvailableDay(long fromDay, long toDay) {
+        return calendar.nextAvailableDay(fromDay, toDay);
+    }
+
+    public long nextBookedDay(long fromDay, long toDay) {
+        return calendar.nextBookedDay(fromDay, toDay);
+    }
+
+    public void orAvailableInto(long fromDay, long toDay, long[] target) {
+        calendar.orAvailableInto(fromDay, toDay, target);
+    }
+
+    public int countAvailable(long fromDay, long toDay) {
+        return calendar.countAvailable(fromDay, toDay);
+    }
+}
@@ -0,0 +1,10 @@
+package com.campsitereservations.db;
+
+/**
+ * Receives the free ranges of a campsite in date order, as inclusive epoch days.
+ */
+@FunctionalInterface
+public interface AvailableRangeVisitor {
+
+    void availableRange(int campsiteId, long fromDay, long toDay);
+}
@@ -0,0 +1,17 @@
+package com.campsitereservations.db;
+
+/**
+ * How {@link CampsiteInMemoryDatabase#addReservations} treats a batch in which some reservations cannot be booked.
+ */
+public enum BatchMode {
+
+    /**
+     * Book every reservation of the batch or none of them.
+     */
+    ALL_OR_NOTHING,
+
+    /**
+     * Book the reservations that fit and report the others.
+     */
+    BEST_EFFORT
+}
@@ -0,0 +1,15 @@
+package com.campsitereservations.db;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Outcome of one reservation of a batch: the reservation as booked, or why it was not.
+ */
+@Getter
+@Builder
+public class BatchReservationResult {
+    private ReservationDetails reservationDetails;
+    private String errorMessage;
+    private FailureReason failureReason;
+}
@@ -0,0 +1,23 @@
+package com.campsitereservations.db;
+
+/**
+ * How {@link CampsiteInMemoryDatabase} commits bookings. Selected with the {@code campsite.booking.mode} property.
+ */
+public enum BookingMode {
+
+    /**
+     * Check-then-act under the locks of every day the booking touches.
+     */
+    LOCKING,
+
+    /**
+     * Optimistic compare-and-set claim on the calendar words, retried on interference and never blocking.
+     */
+    LOCK_FREE,
+
+    /**
+     * Bookings are queued on a ring buffer and applied in order by a single writer thread, which needs no locks and
+     * publishes availability once per batch of queued bookings.
+     */
+    SEQUENCER
+}
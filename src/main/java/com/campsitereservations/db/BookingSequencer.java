@@ -0,0 +1,166 @@
+package com.campsitereservations.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer in the style of the LMAX disruptor. Producers claim a
+ * sequence with one compare-and-set, fill its slot and publish it. A single writer thread hands every published
+ * slot to the batch handler in sequence order, as many as are queued per call, so work that can be done once per
+ * batch is amortised over all of them. Producers wait while the ring is full. Once the sequencer is closed nothing
+ * more can be claimed, so every entry that was claimed is still handled before the writer stops.
+ */
+class BookingSequencer<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingSequencer.class);
+    private static final int IDLE_SPINS = 200;
+    private static final long FULL_RING_PARK_NANOS = 1_000;
+    private static final long STOPPED = Long.MAX_VALUE;
+
+    private final Object[] slots;
+    private final AtomicLongArray publishedSequences;
+    private final int mask;
+    private final AtomicLong claimedSequence = new AtomicLong(-1);
+    private final Consumer<List<T>> batchHandler;
+    private final Thread writer;
+    private volatile long consumedSequence = -1;
+    private volatile boolean writerParked;
+    private volatile long lastSequence = STOPPED;
+
+    BookingSequencer(String name, int capacity, Consumer<List<T>> batchHandler) {
+
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two");
+        }
+        this.slots = new Object[capacity];
+        this.publishedSequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.batchHandler = batchHandler;
+
+        for (int index = 0; index < capacity; index++) {
+            publishedSequences.set(index, -1);
+        }
+
+        writer = new Thread(this::run, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the entry for the writer. Returns false, without queueing it, once the sequencer is closed.
+     */
+    boolean publish(T entry) {
+
+        // Checking for close and claiming is one step, so no claim can slip in after the writer has drained.
+        long sequence;
+        do {
+            sequence = claimedSequence.get();
+            if (sequence == STOPPED) {
+                return false;
+            }
+        } while (!claimedSequence.compareAndSet(sequence, sequence + 1));
+        sequence++;
+
+        while (sequence - slots.length > consumedSequence) {
+            LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+        }
+
+        int index = (int) sequence & mask;
+        slots[index] = entry;
+        publishedSequences.set(index, sequence);
+
+        // Pairs with the writer setting writerParked before its last look at the ring.
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    boolean isWriterThread() {
+        return Thread.currentThread() == writer;
+    }
+
+    /**
+     * Stops taking entries and stops the writer once it has handled every entry claimed before.
+     */
+    void close() {
+        long claimed = claimedSequence.getAndSet(STOPPED);
+        if (claimed != STOPPED) {
+            lastSequence = claimed;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+
+        List<T> batch = new ArrayList<>(slots.length);
+        long nextSequence = 0;
+        int idleSpins = 0;
+
+        while (true) {
+            nextSequence = takePublished(nextSequence, batch);
+
+            if (batch.isEmpty()) {
+                if (nextSequence > lastSequence) {
+                    return;
+                }
+                if (++idleSpins < IDLE_SPINS) {
+                    Thread.yield();
+                    continue;
+                }
+                writerParked = true;
+                if (nextSequence <= lastSequence && !isPublished(nextSequence)) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                idleSpins = 0;
+                continue;
+            }
+
+            idleSpins = 0;
+            try {
+                batchHandler.accept(batch);
+            } catch (RuntimeException runtimeException) {
+                LOGGER.error("Booking sequencer batch failed", runtimeException);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /*
+        Moves the contiguous run of published entries starting at the given sequence into the batch and frees their
+        slots for producers. Returns the first sequence not taken.
+     */
+    @SuppressWarnings("unchecked")
+    private long takePublished(long sequence, List<T> batch) {
+
+        long firstSequence = sequence;
+        while (sequence - firstSequence < slots.length && isPublished(sequence)) {
+            int index = (int) sequence & mask;
+            batch.add((T) slots[index]);
+            slots[index] = null;
+            sequence++;
+        }
+        if (sequence != firstSequence) {
+            consumedSequence = sequence - 1;
+        }
+        return sequence;
+    }
+
+    private boolean isPublished(long sequence) {
+        return publishedSequences.get((int) sequence & mask) == sequence;
+    }
+}
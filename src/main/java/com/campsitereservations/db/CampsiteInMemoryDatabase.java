@@ -1,200 +1,1657 @@
 package com.campsitereservations.db;
 
+import com.campsitereservations.metrics.ReservationMetrics;
+import com.campsitereservations.persistence.ReservationArchive;
+import com.campsitereservations.persistence.ReservationJournal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
-
-import static com.campsitereservations.util.DateUtil.isEqualOrAfter;
-import static com.campsitereservations.util.DateUtil.isEqualOrBefore;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Component
 @Scope("singleton")
 public class CampsiteInMemoryDatabase {
 
-    private HashMap<String, ReservationDetails> reservations;
-    private HashSet<LocalDate> campsiteAvailabilityData;
-    private Lock lock = new ReentrantLock();
+    private static final int BOOKING_HORIZON_DAYS = 32;
+    private static final int CALENDAR_CAPACITY_DAYS = 3 * 366;
+    private static final int PARALLEL_SEARCH_THRESHOLD = 32;
+    private static final int SEQUENCER_RING_SIZE = 1024;
+    private static final long HOLD_TICK_MILLIS = 100;
+    private static final int HOLD_WHEEL_SIZE = 1024;
+    private static final CompletableFuture<Void> NOTHING_TO_SAVE = CompletableFuture.completedFuture(null);
+    private static final String DATES_TAKEN_MESSAGE = "Campsite already booked for given dates. Please try other dates";
+    private static final String NEW_DATES_TAKEN_MESSAGE = "Campsite is not available for new checkin and checkout dates";
+    private static final String CONCURRENT_CHANGE_MESSAGE = "Reservation was modified by another request. Please try again";
+    private static final String READ_ONLY_REPLICA_MESSAGE = "This node is a read-only replica. Please send changes to the primary";
+    private static final String SHUTTING_DOWN_MESSAGE = "Reservations are shutting down. Please try again later";
+
+    private final ReservationStore reservations;
+    private final EmailIndex emailIndex = new EmailIndex();
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private TimerWheel<Hold> holdExpiry;
+    private CampsiteShard[] campsiteShards;
+    private final BookingMode bookingMode;
+    private final int campsiteCount;
+    private final ReservationJournal reservationJournal;
+    private final ReservationArchive reservationArchive;
+    private final ReservationMetrics reservationMetrics;
+    private final List<AvailabilityListener> availabilityListeners = new CopyOnWriteArrayList<>();
+    private final List<FreedDaysListener> freedDaysListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong availabilityVersion = new AtomicLong();
+    // Bumped after every snapshot a shard publishes, unlike the versions, which are drawn before the publish.
+    private final AtomicLong publishedSnapshots = new AtomicLong();
+    private final Object horizonLock = new Object();
+    private volatile long horizonFirstDay;
+    private volatile long horizonLastDay;
+    private volatile boolean replica;
+
+    // SEQUENCER mode only. The last two are touched by the writer thread alone.
+    private BookingSequencer<SequencedOperation<?>> sequencer;
+    private SequencedOperation<?> currentOperation;
+    private final List<Map.Entry<CampsiteShard, ReservationsDates>> pendingChanges = new ArrayList<>();
+
+    public CampsiteInMemoryDatabase() {
+        this(BookingMode.LOCKING);
+    }
+
+    public CampsiteInMemoryDatabase(BookingMode bookingMode) {
+        this(bookingMode, 1);
+    }
 
+    public CampsiteInMemoryDatabase(BookingMode bookingMode, int campsiteCount) {
+        this(bookingMode, campsiteCount, ReservationJournal.NONE);
+    }
+
+    public CampsiteInMemoryDatabase(BookingMode bookingMode, int campsiteCount,
+                                    ReservationJournal reservationJournal) {
+        this(bookingMode, campsiteCount, reservationJournal, new HeapReservationStore());
+    }
+
+    public CampsiteInMemoryDatabase(BookingMode bookingMode, int campsiteCount,
+                                    ReservationJournal reservationJournal, ReservationStore reservationStore) {
+        this(bookingMode, campsiteCount, reservationJournal, reservationStore, ReservationArchive.NONE);
+    }
+
+    public CampsiteInMemoryDatabase(BookingMode bookingMode, int campsiteCount,
+                                    ReservationJournal reservationJournal, ReservationStore reservationStore,
+                                    ReservationArchive reservationArchive) {
+        this(bookingMode, campsiteCount, reservationJournal, reservationStore, reservationArchive,
+                ReservationMetrics.NONE);
+    }
+
+    @Autowired
+    public CampsiteInMemoryDatabase(@Value("${campsite.booking.mode:LOCKING}") BookingMode bookingMode,
+                                    @Value("${campsite.sites.count:1}") int campsiteCount,
+                                    ReservationJournal reservationJournal,
+                                    ReservationStore reservationStore,
+                                    ReservationArchive reservationArchive,
+                                    ReservationMetrics reservationMetrics) {
+        this.bookingMode = bookingMode;
+        this.campsiteCount = campsiteCount;
+        this.reservationJournal = reservationJournal;
+        this.reservations = reservationStore;
+        this.reservationArchive = reservationArchive;
+        this.reservationMetrics = reservationMetrics;
+    }
 
     @PostConstruct
     public void initialize() {
-        reservations = new HashMap<>();
-        campsiteAvailabilityData = initializeCampsiteAvailabilityData();
+        campsiteShards = new CampsiteShard[campsiteCount];
+        horizonFirstDay = LocalDate.now().toEpochDay();
+        horizonLastDay = horizonFirstDay + BOOKING_HORIZON_DAYS - 1;
+
+        for (int index = 0; index < campsiteCount; index++) {
+            campsiteShards[index] = new CampsiteShard(index + 1, initializeCampsiteAvailabilityData(),
+                    reservationMetrics, bookingMode);
+        }
+
+        // A mapped store already holds its reservations; only their days need booking again.
+        for (ReservationDetails reservationDetails : reservations.values()) {
+            if (restoreCampsiteAvailabilityData(reservationDetails)) {
+                indexReservation(reservationDetails);
+            }
+        }
+        for (ReservationDetails reservationDetails : reservationJournal.recover()) {
+            if (restoreCampsiteAvailabilityData(reservationDetails)) {
+                reservations.insert(reservationDetails);
+                indexReservation(reservationDetails);
+            }
+        }
+        reservationJournal.startSnapshots(reservations::values);
+
+        // Reservations that ended while the application was down go to the archive straight away.
+        for (ReservationDetails reservationDetails : new ArrayList<>(reservations.values())) {
+            if (reservationDetails.getReservationsDates().getCheckoutDate().toEpochDay() < horizonFirstDay) {
+                archiveReservation(reservationDetails);
+            }
+        }
+
+        for (CampsiteShard shard : campsiteShards) {
+            shard.publishSnapshot(availabilityVersion::incrementAndGet);
+            publishedSnapshots.incrementAndGet();
+        }
+
+        if (bookingMode == BookingMode.SEQUENCER) {
+            sequencer = new BookingSequencer<>("booking-sequencer", SEQUENCER_RING_SIZE, this::applySequenced);
+        }
+        holdExpiry = new TimerWheel<>(HOLD_TICK_MILLIS, HOLD_WHEEL_SIZE, System::currentTimeMillis, hold -> {
+            if (releaseHold(hold)) {
+                reservationMetrics.holdExpired();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        holdExpiry.close();
+        if (sequencer != null) {
+            sequencer.close();
+        }
+    }
+
+    /*
+        In SEQUENCER mode every add, update and cancel is queued and applied by the single writer thread, which
+        calls back into the same method. Off the writer thread this returns true and the caller should queue.
+     */
+    private boolean offSequencer() {
+        return sequencer != null && !sequencer.isWriterThread();
     }
 
-    private HashSet<LocalDate> initializeCampsiteAvailabilityData() {
-        HashSet<LocalDate> campsiteAvailabilityData = new HashSet<>();
-        LocalDate startDate = LocalDate.now();
-        LocalDate endDate = LocalDate.now().plusDays(32);
+    private <T> T sequenced(Supplier<T> operation) {
+        return sequenced(operation, () -> CampsiteInMemoryDatabase.<T>shuttingDown().orElseThrow());
+    }
 
-        while (startDate.isBefore(endDate)) {
-            campsiteAvailabilityData.add(startDate);
-            startDate = startDate.plusDays(1);
+    /*
+        As sequenced(operation), but returns what whenStopped supplies if the sequencer was closed before the
+        operation could be queued.
+     */
+    private <T> T sequenced(Supplier<T> operation, Supplier<T> whenStopped) {
+
+        SequencedOperation<T> sequencedOperation = new SequencedOperation<>(operation);
+        if (!sequencer.publish(sequencedOperation)) {
+            return whenStopped.get();
+        }
+        T result = sequencedOperation.await();
+        for (Runnable awaitSave : sequencedOperation.getPendingSaves()) {
+            awaitSave.run();
         }
+        return result;
+    }
+
+    /*
+        Applies a batch of queued operations without any locking, since nothing else writes the calendars, then
+        publishes one snapshot per campsite the batch changed before completing the callers, so they read their
+        own writes.
+     */
+    private void applySequenced(List<SequencedOperation<?>> operations) {
+
+        try {
+            for (SequencedOperation<?> operation : operations) {
+                currentOperation = operation;
+                operation.apply();
+            }
+
+            Set<CampsiteShard> changedShards = new LinkedHashSet<>();
+            for (Map.Entry<CampsiteShard, ReservationsDates> change : pendingChanges) {
+                changedShards.add(change.getKey());
+            }
+            for (CampsiteShard shard : changedShards) {
+                shard.publishSnapshot(availabilityVersion::incrementAndGet);
+                publishedSnapshots.incrementAndGet();
+            }
+            for (Map.Entry<CampsiteShard, ReservationsDates> change : pendingChanges) {
+                notifyAvailabilityListeners(change.getKey(), change.getValue());
+            }
+        } finally {
+            currentOperation = null;
+            pendingChanges.clear();
+            for (SequencedOperation<?> operation : operations) {
+                operation.complete();
+            }
+        }
+    }
+
+    private boolean restoreCampsiteAvailabilityData(ReservationDetails reservationDetails) {
+
+        Integer campsiteId = reservationDetails.getCampsiteId();
+        if (campsiteId == null || campsiteId < 1 || campsiteId > campsiteShards.length) {
+            return false;
+        }
+        return deleteCampsiteAvailabilityData(campsiteShards[campsiteId - 1], reservationDetails.getReservationsDates());
+    }
+
+    private AvailabilityCalendar initializeCampsiteAvailabilityData() {
+        AvailabilityCalendar campsiteAvailabilityData = new AvailabilityCalendar(horizonFirstDay,
+                CALENDAR_CAPACITY_DAYS);
+        campsiteAvailabilityData.release(horizonFirstDay, horizonLastDay);
 
         return campsiteAvailabilityData;
     }
 
+    /**
+     * Moves the booking window so it starts on the given day. Days left behind are closed, the days entering the
+     * window are opened, and reservations that checked out before the given day are archived and dropped from the
+     * live store. Work is proportional to the days moved and the campsites, not to the stored reservations, and no
+     * booking is blocked meanwhile. Returns the number of reservations archived.
+     */
+    public int advanceHorizon(LocalDate firstDate) {
+
+        if (offSequencer()) {
+            return sequenced(() -> advanceHorizon(firstDate));
+        }
+
+        synchronized (horizonLock) {
+            long oldFirstDay = horizonFirstDay;
+            long oldLastDay = horizonLastDay;
+            long newFirstDay = firstDate.toEpochDay();
+            long newLastDay = newFirstDay + BOOKING_HORIZON_DAYS - 1;
+            if (newFirstDay <= oldFirstDay) {
+                return 0;
+            }
+
+            /*
+                Days past the old window are closed again: a cancel that raced with an earlier move may have released
+                a day just left behind, whose slot now stands for a far future day.
+             */
+            for (CampsiteShard shard : campsiteShards) {
+                DayLockTable.DayLocks dayLocks = lockWholeCalendar(shard);
+                try {
+                    AvailabilityCalendar calendar = shard.getCalendar();
+                    calendar.advance(newFirstDay);
+                    calendar.book(oldLastDay + 1, calendar.getLastDay());
+                    publishWholeCalendar(shard);
+                } finally {
+                    dayLocks.unlock();
+                }
+            }
+
+            // A reservation is found on its checkout day, the last day it occupies.
+            int archived = 0;
+            long lastExpiredDay = Math.min(newFirstDay - 1, oldFirstDay + CALENDAR_CAPACITY_DAYS - 1);
+            for (long day = oldFirstDay; day <= lastExpiredDay; day++) {
+                for (CampsiteShard shard : campsiteShards) {
+                    String reservationId = shard.getOccupancyIndex().occupant(day);
+                    ReservationDetails reservationDetails = reservationId != null ? reservations.get(reservationId)
+                            : null;
+                    if (reservationDetails != null
+                            && reservationDetails.getReservationsDates().getCheckoutDate().toEpochDay() == day
+                            && archiveReservation(reservationDetails)) {
+                        archived++;
+                    }
+                }
+            }
+
+            // New days open only once the expired ones have left the occupancy index slots they share.
+            for (CampsiteShard shard : campsiteShards) {
+                DayLockTable.DayLocks dayLocks = lockWholeCalendar(shard);
+                try {
+                    shard.getCalendar().release(Math.max(oldLastDay + 1, newFirstDay), newLastDay);
+                    publishWholeCalendar(shard);
+                } finally {
+                    dayLocks.unlock();
+                }
+            }
+            horizonFirstDay = newFirstDay;
+            horizonLastDay = newLastDay;
+
+            ReservationsDates changedDates = ReservationsDates.builder()
+                    .checkinDate(LocalDate.ofEpochDay(oldFirstDay)).checkoutDate(LocalDate.ofEpochDay(newLastDay))
+                    .build();
+            for (CampsiteShard shard : campsiteShards) {
+                availabilityChanged(shard, changedDates);
+            }
+            return archived;
+        }
+    }
+
+    /*
+        Moving the window changes every day of the calendar at once, so in LOCKING mode it waits for bookings in
+        flight and keeps new ones out meanwhile. It happens once a day.
+     */
+    private DayLockTable.DayLocks lockWholeCalendar(CampsiteShard shard) {
+        return bookingMode == BookingMode.LOCKING ? shard.getDayLockTable().lockAll() : DayLockTable.DayLocks.NONE;
+    }
+
+    /*
+        Publishes the moved calendar before any booking can copy its own days into a snapshot of the old window.
+        The sequencer's writer publishes once its batch is done.
+     */
+    private void publishWholeCalendar(CampsiteShard shard) {
+        if (sequencer == null || !sequencer.isWriterThread()) {
+            shard.publishSnapshot(availabilityVersion::incrementAndGet);
+            publishedSnapshots.incrementAndGet();
+        }
+    }
+
+    public LocalDate getHorizonFirstDate() {
+        return LocalDate.ofEpochDay(horizonFirstDay);
+    }
+
+    /*
+        Archives the reservation, then removes it from the store and the indexes. Its days are in the past and
+        already closed, so the calendar is left alone. Returns false when it changed in the meantime.
+     */
+    private boolean archiveReservation(ReservationDetails reservationDetails) {
+
+        reservationArchive.archive(reservationDetails);
+        CompletableFuture<Void> saved = replaceReservation(reservationDetails, null);
+        if (saved == null) {
+            return false;
+        }
+        awaitSaved(saved, () -> insertReservation(reservationDetails));
+        return true;
+    }
+
+    public int getCampsiteCount() {
+        return campsiteCount;
+    }
+
+    public int getReservationCount() {
+        return reservations.size();
+    }
+
+    public int getHoldCount() {
+        return holds.size();
+    }
+
+    /**
+     * Free campsite-days left in the booking window, summed over every campsite, as of the published snapshots.
+     */
+    public long getAvailableCampsiteDays() {
+
+        long firstDay = horizonFirstDay;
+        long lastDay = horizonLastDay;
+        long availableDays = 0;
+        for (CampsiteShard shard : campsiteShards) {
+            availableDays += shard.getSnapshot().countAvailable(firstDay, lastDay);
+        }
+        return availableDays;
+    }
+
+    public void addAvailabilityListener(AvailabilityListener availabilityListener) {
+        availabilityListeners.add(availabilityListener);
+    }
+
+    /*
+        Called once the calendar change is visible, and also after failed lock-free claims, whose briefly taken
+        days a concurrent snapshot may have copied. Publishes a new snapshot of the campsite, then tells listeners.
+     */
+    private void availabilityChanged(CampsiteShard shard, ReservationsDates reservationsDates) {
+
+        if (sequencer != null && sequencer.isWriterThread()) {
+            pendingChanges.add(new AbstractMap.SimpleImmutableEntry<>(shard, reservationsDates));
+            return;
+        }
+        shard.publishChange(availabilityVersion::incrementAndGet, reservationsDates.getCheckinDate().toEpochDay(),
+                reservationsDates.getCheckoutDate().toEpochDay());
+        publishedSnapshots.incrementAndGet();
+        notifyAvailabilityListeners(shard, reservationsDates);
+    }
+
+    public void addFreedDaysListener(FreedDaysListener freedDaysListener) {
+        freedDaysListeners.add(freedDaysListener);
+    }
+
+    /*
+        Called once the days are back in the calendar. Unlike availability listeners, these are told straight away
+        on the sequencer's writer thread too, so they must not book from the calling thread.
+     */
+    private void daysFreed(CampsiteShard shard, ReservationsDates freedDates) {
+        for (FreedDaysListener freedDaysListener : freedDaysListeners) {
+            freedDaysListener.daysFreed(shard.getCampsiteId(), freedDates);
+        }
+    }
+
+    private void notifyAvailabilityListeners(CampsiteShard shard, ReservationsDates reservationsDates) {
+        for (AvailabilityListener availabilityListener : availabilityListeners) {
+            availabilityListener.availabilityChanged(shard.getCampsiteId(), reservationsDates);
+        }
+    }
+
     public List<LocalDate> getCampsiteAvailability(LocalDate startDate, LocalDate endDate) {
+        return getCampsiteAvailability(startDate, endDate, null);
+    }
+
+    /**
+     * Free days of the given campsite, or the days on which at least one campsite is free when no id is given.
+     * Reads the published snapshots only, so it never waits for a booking.
+     */
+    public List<LocalDate> getCampsiteAvailability(LocalDate startDate, LocalDate endDate, Integer campsiteId) {
+
+        CampsiteShard shard = campsiteId != null ? shardFor(campsiteId) : null;
 
-        lock.lock();
         try {
-            return campsiteAvailabilityData.stream().filter(date -> isEqualOrAfter(startDate, date) &&
-                    isEqualOrBefore(endDate, date)).collect(Collectors.toList());
+            if (shard != null) {
+                return availableDatesOf(shard.getSnapshot(), startDate, endDate);
+            }
+            return availableDatesOfAnyCampsite(startDate, endDate);
         } catch (Exception exception) {
             throw new RuntimeException("Exception while reading data for campsite");
-        } finally {
-            lock.unlock();
         }
     }
 
-    public boolean addReservation(ReservationDetails reservationDetails) {
+    /**
+     * Free ranges of the given campsite, or ranges of days on which at least one campsite is free when no id is
+     * given, as the dates of the longest stay each range allows. Runs of free days are found a calendar word at a
+     * time, so the cost grows with the number of ranges and the window length over 64, not with the days.
+     */
+    public List<ReservationsDates> getCampsiteAvailableRanges(LocalDate startDate, LocalDate endDate,
+                                                             Integer campsiteId) {
 
-        lock.lock();
+        CampsiteShard shard = campsiteId != null ? shardFor(campsiteId) : null;
 
         try {
-
-            if (datesAvailableForReservation(reservationDetails.getReservationsDates())) {
-                reservations.put(reservationDetails.getReservationId(), reservationDetails);
-                deleteCampsiteAvailabilityData(reservationDetails.getReservationsDates());
-            } else {
-                throw new RuntimeException("Campsite already booked for given dates. Please try other dates");
+            if (shard != null) {
+                return availableRangesOf(shard, startDate, endDate);
             }
-        } catch(RuntimeException runtimeException) {
-            throw runtimeException;
+            return availableRangesOfAnyCampsite(startDate, endDate);
         } catch (Exception exception) {
-            throw new RuntimeException("Exception while booking campsite");
+            throw new RuntimeException("Exception while reading data for campsite");
+        }
+    }
+
+    /**
+     * Free days of the given campsite, or of any campsite when no id is given, as a bitmap in which bit {@code n}
+     * of word {@code n / 64} stands for {@code startDate + n}. Days past the calendar are left out, so the bitmap
+     * may be shorter than the window.
+     */
+    public long[] getCampsiteAvailabilityBitmap(LocalDate startDate, LocalDate endDate, Integer campsiteId) {
+
+        CampsiteShard shard = campsiteId != null ? shardFor(campsiteId) : null;
+        long startDay = startDate.toEpochDay();
+        long endDay = Math.min(endDate.toEpochDay(), campsiteShards[0].getSnapshot().getLastDay());
+        if (startDay > endDay) {
+            return new long[0];
+        }
+
+        if (shard != null) {
+            long[] freeDays = new long[(int) ((endDay - startDay) >>> 6) + 1];
+            shard.getSnapshot().orAvailableInto(startDay, endDay, freeDays);
+            return freeDays;
+        }
+        return freeDaysOfAnyCampsite(startDay, endDay);
+    }
+
+    /**
+     * Hands the free ranges of the given campsite, or of every campsite in id order when no id is given, to the
+     * visitor as they are found. Each campsite is read from one snapshot and nothing is collected, so memory use
+     * does not grow with the number of campsites or days.
+     */
+    public void visitAvailableRanges(LocalDate startDate, LocalDate endDate, Integer campsiteId,
+                                     AvailableRangeVisitor visitor) {
+
+        if (campsiteId != null) {
+            visitAvailableRanges(shardFor(campsiteId), startDate, endDate, visitor);
+            return;
+        }
+        for (CampsiteShard shard : campsiteShards) {
+            visitAvailableRanges(shard, startDate, endDate, visitor);
+        }
+    }
+
+    /**
+     * True when every day of {@code [startDate, endDate]} is free on the given campsite, read from its snapshot.
+     */
+    public boolean isCampsiteAvailable(LocalDate startDate, LocalDate endDate, Integer campsiteId) {
+        return shardFor(campsiteId).getSnapshot().isAvailable(startDate.toEpochDay(), endDate.toEpochDay());
+    }
+
+    /**
+     * Version of the snapshot the given campsite's availability is read from, or the number of snapshots published
+     * on any campsite when no id is given. It grows with every change, so it changes whenever the availability may
+     * have. The newest version of any campsite would not do: versions are drawn before they are published, so a
+     * shard can publish an older version after another shard has published a newer one.
+     */
+    public long getAvailabilityVersion(Integer campsiteId) {
+
+        if (campsiteId != null) {
+            return shardFor(campsiteId).getSnapshot().getVersion();
+        }
+        return publishedSnapshots.get();
+    }
+
+    private List<LocalDate> availableDatesOf(AvailabilitySnapshot snapshot, LocalDate startDate, LocalDate endDate) {
+
+        List<LocalDate> availableDates = new ArrayList<>();
+        long endDay = endDate.toEpochDay();
+        long day = snapshot.nextAvailableDay(startDate.toEpochDay(), endDay);
+
+        while (day != AvailabilityCalendar.NO_DAY) {
+            availableDates.add(LocalDate.ofEpochDay(day));
+            day = snapshot.nextAvailableDay(day + 1, endDay);
+        }
+        return availableDates;
+    }
+
+    /*
+        Every shard ORs its free days into a bitmap of the requested window. Large parks fan the shards out over
+        the common pool so the search scales with cores instead of with the number of campsites.
+     */
+    private List<LocalDate> availableDatesOfAnyCampsite(LocalDate startDate, LocalDate endDate) {
+
+        AvailabilitySnapshot firstSnapshot = campsiteShards[0].getSnapshot();
+        long startDay = Math.max(startDate.toEpochDay(), firstSnapshot.getFirstDay());
+        long endDay = Math.min(endDate.toEpochDay(), firstSnapshot.getLastDay());
+
+        List<LocalDate> availableDates = new ArrayList<>();
+        if (startDay > endDay) {
+            return availableDates;
+        }
+
+        long[] freeDays = freeDaysOfAnyCampsite(startDay, endDay);
+        for (int word = 0; word < freeDays.length; word++) {
+            long bits = freeDays[word];
+            while (bits != 0) {
+                availableDates.add(LocalDate.ofEpochDay(startDay + (word << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return availableDates;
+    }
+
+    private long[] freeDaysOfAnyCampsite(long startDay, long endDay) {
+
+        int wordCount = (int) ((endDay - startDay) >>> 6) + 1;
+        Stream<CampsiteShard> shards = Arrays.stream(campsiteShards);
+        if (campsiteShards.length >= PARALLEL_SEARCH_THRESHOLD) {
+            shards = shards.parallel();
+        }
+
+        return shards.map(shard -> {
+            long[] shardFreeDays = new long[wordCount];
+            shard.getSnapshot().orAvailableInto(startDay, endDay, shardFreeDays);
+            return shardFreeDays;
+        }).reduce(CampsiteInMemoryDatabase::or).orElse(new long[wordCount]);
+    }
+
+    private List<ReservationsDates> availableRangesOf(CampsiteShard shard, LocalDate startDate, LocalDate endDate) {
+
+        List<ReservationsDates> availableRanges = new ArrayList<>();
+        visitAvailableRanges(shard, startDate, endDate,
+                (campsiteId, fromDay, toDay) -> availableRanges.add(range(fromDay, toDay)));
+        return availableRanges;
+    }
+
+    private static void visitAvailableRanges(CampsiteShard shard, LocalDate startDate, LocalDate endDate,
+                                             AvailableRangeVisitor visitor) {
+
+        AvailabilitySnapshot snapshot = shard.getSnapshot();
+        long endDay = Math.min(endDate.toEpochDay(), snapshot.getLastDay());
+        long day = snapshot.nextAvailableDay(startDate.toEpochDay(), endDay);
+
+        while (day != AvailabilityCalendar.NO_DAY) {
+            long bookedDay = snapshot.nextBookedDay(day, endDay);
+            long lastFreeDay = bookedDay != AvailabilityCalendar.NO_DAY ? bookedDay - 1 : endDay;
+            visitor.availableRange(shard.getCampsiteId(), day, lastFreeDay);
+            day = lastFreeDay + 2 <= endDay ? snapshot.nextAvailableDay(lastFreeDay + 2, endDay)
+                    : AvailabilityCalendar.NO_DAY;
+        }
+    }
+
+    private List<ReservationsDates> availableRangesOfAnyCampsite(LocalDate startDate, LocalDate endDate) {
+
+        AvailabilitySnapshot firstSnapshot = campsiteShards[0].getSnapshot();
+        long startDay = Math.max(startDate.toEpochDay(), firstSnapshot.getFirstDay());
+        long endDay = Math.min(endDate.toEpochDay(), firstSnapshot.getLastDay());
+
+        List<ReservationsDates> availableRanges = new ArrayList<>();
+        if (startDay > endDay) {
+            return availableRanges;
+        }
+
+        int wordCount = (int) ((endDay - startDay) >>> 6) + 1;
+        long[] freeDays = new long[wordCount];
+        for (CampsiteShard shard : campsiteShards) {
+            shard.getSnapshot().orAvailableInto(startDay, endDay, freeDays);
+        }
+
+        // Bits past endDay are never set, so a run that reaches the last word simply ends there.
+        long rangeStart = AvailabilityCalendar.NO_DAY;
+        for (int word = 0; word < wordCount; word++) {
+            long bits = freeDays[word];
+            int bit = 0;
+            while (bit < 64) {
+                long remaining = bits >>> bit;
+                if (rangeStart == AvailabilityCalendar.NO_DAY) {
+                    if (remaining == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(remaining);
+                    rangeStart = startDay + (word << 6) + bit;
+                } else {
+                    int run = Long.numberOfTrailingZeros(~remaining);
+                    if (bit + run >= 64) {
+                        break;
+                    }
+                    bit += run;
+                    availableRanges.add(range(rangeStart, startDay + (word << 6) + bit - 1));
+                    rangeStart = AvailabilityCalendar.NO_DAY;
+                }
+            }
+        }
+        if (rangeStart != AvailabilityCalendar.NO_DAY) {
+            availableRanges.add(range(rangeStart, endDay));
+        }
+        return availableRanges;
+    }
+
+    private static ReservationsDates range(long fromDay, long toDay) {
+        return ReservationsDates.builder()
+                .checkinDate(LocalDate.ofEpochDay(fromDay)).checkoutDate(LocalDate.ofEpochDay(toDay)).build();
+    }
+
+    private static long[] or(long[] first, long[] second) {
+        for (int word = 0; word < first.length; word++) {
+            first[word] |= second[word];
+        }
+        return first;
+    }
+
+    /**
+     * Books the reservation on its campsite, or on the first campsite free for its dates when it has none.
+     * Returns the reservation as booked, with its campsite id filled in.
+     */
+    public ReservationDetails addReservation(ReservationDetails reservationDetails) {
+        return tryAddReservation(reservationDetails).orElseThrow();
+    }
+
+    /**
+     * As {@link #addReservation}, but taken dates and unknown campsites come back as failures instead of exceptions.
+     */
+    public Result<ReservationDetails> tryAddReservation(ReservationDetails reservationDetails) {
+
+        if (replica) {
+            return readOnlyReplica();
+        }
+        if (offSequencer()) {
+            return sequenced(() -> tryAddReservation(reservationDetails), CampsiteInMemoryDatabase::shuttingDown);
+        }
+        return book(reservationDetails, this::insertReservation);
+    }
+
+    /*
+        Books the dates on the requested campsite, or on the first free one, and hands the reservation with its
+        campsite id to the recorder while the days are still locked. The recorder returns the write to wait for.
+     */
+    private Result<ReservationDetails> book(ReservationDetails reservationDetails,
+                                            Function<ReservationDetails, CompletableFuture<Void>> recorder) {
+
+        if (reservationDetails.getCampsiteId() != null) {
+            if (!isCampsite(reservationDetails.getCampsiteId())) {
+                return unknownCampsite(reservationDetails.getCampsiteId());
+            }
+            CompletableFuture<Void> saved = reserveOn(shardFor(reservationDetails.getCampsiteId()),
+                    reservationDetails, recorder);
+            if (saved != null) {
+                awaitSaved(saved, () -> revertAdded(reservationDetails));
+                return Result.success(reservationDetails);
+            }
+        } else {
+            ReservationsDates reservationsDates = reservationDetails.getReservationsDates();
+            long checkinDay = reservationsDates.getCheckinDate().toEpochDay();
+            long checkoutDay = reservationsDates.getCheckoutDate().toEpochDay();
+
+            // Start at a random campsite so that bookers without a preference spread over the shards.
+            int start = ThreadLocalRandom.current().nextInt(campsiteShards.length);
+            for (int count = 0; count < campsiteShards.length; count++) {
+                CampsiteShard shard = campsiteShards[(start + count) % campsiteShards.length];
+
+                if (shard.getCalendar().isAvailable(checkinDay, checkoutDay)) {
+                    ReservationDetails campsiteReservation = reservationDetails.toBuilder()
+                            .campsiteId(shard.getCampsiteId()).build();
+                    CompletableFuture<Void> saved = reserveOn(shard, campsiteReservation, recorder);
+                    if (saved != null) {
+                        awaitSaved(saved, () -> revertAdded(campsiteReservation));
+                        return Result.success(campsiteReservation);
+                    }
+                }
+            }
+        }
+
+        reservationMetrics.datesTaken();
+        return Result.failure(FailureReason.DATES_TAKEN, DATES_TAKEN_MESSAGE);
+    }
+
+    /*
+        Returns the pending journal write of the booking, or null when the dates are taken. Callers wait for the
+        write only after the day locks are released, so slow disks do not lengthen lock hold times.
+     */
+    private CompletableFuture<Void> reserveOn(CampsiteShard shard, ReservationDetails reservationDetails,
+                                              Function<ReservationDetails, CompletableFuture<Void>> recorder) {
+
+        ReservationsDates reservationsDates = reservationDetails.getReservationsDates();
+
+        if (bookingMode == BookingMode.LOCK_FREE) {
+            boolean booked = shard.getCalendar().tryBook(reservationsDates.getCheckinDate().toEpochDay(),
+                    reservationsDates.getCheckoutDate().toEpochDay());
+            CompletableFuture<Void> saved = booked ? recorder.apply(reservationDetails) : null;
+            availabilityChanged(shard, reservationsDates);
+            return saved;
+        }
+
+        CompletableFuture<Void> saved;
+        DayLockTable.DayLocks dayLocks = lock(shard, reservationsDates);
+        try {
+            if (!datesAvailableForReservation(shard, reservationsDates)) {
+                return null;
+            }
+            saved = recorder.apply(reservationDetails);
+            deleteCampsiteAvailabilityData(shard, reservationsDates);
         } finally {
-            lock.unlock();
+            dayLocks.unlock();
+        }
+
+        availabilityChanged(shard, reservationsDates);
+        return saved;
+    }
+
+    /**
+     * Sets the dates aside for the reservation, on its campsite or the first free one, for the given time. The days
+     * are taken as for a booking, but nothing is journalled until the hold is confirmed. Holds that are neither
+     * confirmed nor released by then expire on the next tick of a timer wheel, which frees their days.
+     */
+    public Result<Hold> tryPlaceHold(ReservationDetails reservationDetails, long ttlMillis) {
+
+        if (replica) {
+            return readOnlyReplica();
+        }
+        if (offSequencer()) {
+            return sequenced(() -> tryPlaceHold(reservationDetails, ttlMillis),
+                    CampsiteInMemoryDatabase::shuttingDown);
+        }
+
+        long expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+        AtomicReference<Hold> placed = new AtomicReference<>();
+        Result<ReservationDetails> booked = book(reservationDetails, campsiteReservation -> {
+            Hold hold = new Hold(campsiteReservation, expiresAtMillis);
+            holds.put(hold.getHoldId(), hold);
+            placed.set(hold);
+            return NOTHING_TO_SAVE;
+        });
+        if (!booked.isSuccess()) {
+            return booked.asFailure();
+        }
+
+        // The timeout only ever releases this very hold, so a hold confirmed before it is set is left alone.
+        Hold hold = placed.get();
+        hold.setExpiry(holdExpiry.schedule(hold, ttlMillis));
+        holdExpiry.start("hold-expiry");
+        return Result.success(hold);
+    }
+
+    /**
+     * Turns the hold into a reservation on the days it holds, with the hold id as reservation id. Fails when there
+     * is no such hold, including when it expired or was released.
+     */
+    public Result<ReservationDetails> tryConfirmHold(String holdId) {
+
+        if (offSequencer()) {
+            return sequenced(() -> tryConfirmHold(holdId), CampsiteInMemoryDatabase::shuttingDown);
+        }
+
+        Hold hold = holds.remove(holdId);
+        if (hold == null) {
+            return holdNotFound(holdId);
+        }
+        hold.cancelExpiry();
+        awaitSaved(insertReservation(hold.getReservationDetails()), () -> revertAdded(hold.getReservationDetails()));
+        return Result.success(hold.getReservationDetails());
+    }
+
+    /**
+     * Frees the days of the hold before it expires.
+     */
+    public Result<Void> tryReleaseHold(String holdId) {
+
+        Hold hold = holds.get(holdId);
+        if (hold == null || !releaseHold(hold)) {
+            return holdNotFound(holdId);
+        }
+        return Result.success();
+    }
+
+    /*
+        Called for expired holds too. Only the caller that takes the hold out of the table frees its days, so a
+        confirm racing with expiry either keeps the days as a reservation or loses the hold, never both.
+     */
+    private boolean releaseHold(Hold hold) {
+
+        if (offSequencer()) {
+            return sequenced(() -> releaseHold(hold), () -> false);
+        }
+
+        if (!holds.remove(hold.getHoldId(), hold)) {
+            return false;
         }
+        hold.cancelExpiry();
+
+        releaseDays(shardFor(hold.getReservationDetails().getCampsiteId()),
+                hold.getReservationDetails().getReservationsDates(), null);
         return true;
     }
 
-    public ReservationDetails findReservation(String reservationId) {
-        lock.lock();
-        ReservationDetails reservationDetails;
+    private static <T> Result<T> holdNotFound(String holdId) {
+        return Result.failure(FailureReason.HOLD_NOT_FOUND,
+                "No hold found with hold id " + holdId + ". It may have expired");
+    }
 
-        try {
-            reservationDetails = reservations.get(reservationId);
-            if (reservationDetails == null) {
-                throw new RuntimeException("Unable to find reservation with id : " + reservationId);
+    /**
+     * Books several reservations under one set of day locks, taken once for the union of their dates on every
+     * campsite they may land on. With {@link BatchMode#ALL_OR_NOTHING} either every reservation is booked or none
+     * is; with {@link BatchMode#BEST_EFFORT} the ones that fit are booked. Returns one result per reservation, in
+     * order.
+     */
+    public List<BatchReservationResult> addReservations(List<ReservationDetails> batch, BatchMode batchMode) {
+
+        if (replica) {
+            return failedBatch(batch.size(), FailureReason.READ_ONLY_REPLICA, READ_ONLY_REPLICA_MESSAGE);
+        }
+        if (offSequencer()) {
+            return sequenced(() -> addReservations(batch, batchMode),
+                    () -> failedBatch(batch.size(), FailureReason.SHUTTING_DOWN, SHUTTING_DOWN_MESSAGE));
+        }
+
+        int size = batch.size();
+        CampsiteShard[] requestedShards = new CampsiteShard[size];
+        String[] errorMessages = new String[size];
+        FailureReason[] failureReasons = new FailureReason[size];
+        boolean failed = false;
+
+        for (int index = 0; index < size; index++) {
+            Integer campsiteId = batch.get(index).getCampsiteId();
+            if (campsiteId == null) {
+                continue;
             }
+            if (isCampsite(campsiteId)) {
+                requestedShards[index] = shardFor(campsiteId);
+            } else {
+                errorMessages[index] = unknownCampsite(campsiteId).getMessage();
+                failureReasons[index] = FailureReason.UNKNOWN_CAMPSITE;
+                failed = true;
+            }
+        }
 
-        } catch (Exception exception) {
-            throw new RuntimeException(exception.getMessage());
-        } finally {
-            lock.unlock();
+        ReservationDetails[] booked = new ReservationDetails[size];
+        CampsiteShard[] bookedShards = new CampsiteShard[size];
+        List<CompletableFuture<Void>> saved = new ArrayList<>();
+
+        if (!failed || batchMode == BatchMode.BEST_EFFORT) {
+            List<DayLockTable.DayLocks> dayLocks = bookingMode == BookingMode.LOCKING
+                    ? lockForBatch(batch, requestedShards, errorMessages) : new ArrayList<>();
+            try {
+                for (int index = 0; index < size; index++) {
+                    if (errorMessages[index] != null) {
+                        continue;
+                    }
+                    ReservationDetails reservationDetails = batch.get(index);
+                    CampsiteShard shard = claimForBatch(requestedShards[index], reservationDetails.getReservationsDates());
+                    if (shard == null) {
+                        reservationMetrics.datesTaken();
+                        errorMessages[index] = DATES_TAKEN_MESSAGE;
+                        failureReasons[index] = FailureReason.DATES_TAKEN;
+                        failed = true;
+                        if (batchMode == BatchMode.ALL_OR_NOTHING) {
+                            break;
+                        }
+                        continue;
+                    }
+                    bookedShards[index] = shard;
+                    booked[index] = reservationDetails.getCampsiteId() != null ? reservationDetails
+                            : reservationDetails.toBuilder().campsiteId(shard.getCampsiteId()).build();
+                }
+
+                for (int index = 0; index < size; index++) {
+                    if (booked[index] == null) {
+                        continue;
+                    }
+                    if (failed && batchMode == BatchMode.ALL_OR_NOTHING) {
+                        addCampsiteAvailabilityData(bookedShards[index], booked[index].getReservationsDates());
+                        booked[index] = null;
+                    } else {
+                        saved.add(insertReservation(booked[index]));
+                    }
+                }
+            } finally {
+                for (int index = dayLocks.size() - 1; index >= 0; index--) {
+                    dayLocks.get(index).unlock();
+                }
+            }
+        }
+
+        for (int index = 0; index < size; index++) {
+            if (bookedShards[index] != null) {
+                availabilityChanged(bookedShards[index], batch.get(index).getReservationsDates());
+            }
         }
+        // A batch is saved as a whole: when any of its writes fails, every reservation it booked is taken back.
+        awaitSaved(CompletableFuture.allOf(saved.toArray(new CompletableFuture<?>[0])), () -> {
+            for (ReservationDetails reservationDetails : booked) {
+                if (reservationDetails != null) {
+                    revertAdded(reservationDetails);
+                }
+            }
+        });
 
-        return reservationDetails;
+        List<BatchReservationResult> results = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            BatchReservationResult.BatchReservationResultBuilder result = BatchReservationResult.builder()
+                    .reservationDetails(booked[index]);
+            if (booked[index] == null && errorMessages[index] != null) {
+                result.errorMessage(errorMessages[index]).failureReason(failureReasons[index]);
+            } else if (booked[index] == null) {
+                result.errorMessage("Reservation not booked because another reservation of the batch failed")
+                        .failureReason(FailureReason.BATCH_FAILED);
+            }
+            results.add(result.build());
+        }
+        return results;
     }
 
-    public boolean deleteReservation(String reservationId) {
-        lock.lock();
+    /*
+        Locks, per campsite, the union of the dates of every reservation that may land there: its own campsite when
+        it names one, any campsite otherwise. Campsites are locked in ascending id order, like updates do.
+     */
+    private List<DayLockTable.DayLocks> lockForBatch(List<ReservationDetails> batch, CampsiteShard[] requestedShards,
+                                                     String[] errorMessages) {
 
+        Map<Integer, List<ReservationsDates>> datesByCampsite = new TreeMap<>();
+        for (int index = 0; index < batch.size(); index++) {
+            if (errorMessages[index] != null) {
+                continue;
+            }
+            ReservationsDates reservationsDates = batch.get(index).getReservationsDates();
+            if (requestedShards[index] != null) {
+                datesByCampsite.computeIfAbsent(requestedShards[index].getCampsiteId(), campsiteId -> new ArrayList<>())
+                        .add(reservationsDates);
+            } else {
+                for (CampsiteShard shard : campsiteShards) {
+                    datesByCampsite.computeIfAbsent(shard.getCampsiteId(), campsiteId -> new ArrayList<>())
+                            .add(reservationsDates);
+                }
+            }
+        }
+
+        List<DayLockTable.DayLocks> dayLocks = new ArrayList<>(datesByCampsite.size());
         try {
-            if (!reservations.containsKey(reservationId)) {
-                throw new RuntimeException("No reservation found with reservation id " + reservationId);
+            for (Map.Entry<Integer, List<ReservationsDates>> campsiteDates : datesByCampsite.entrySet()) {
+                dayLocks.add(shardFor(campsiteDates.getKey()).getDayLockTable()
+                        .lock(campsiteDates.getValue().toArray(new ReservationsDates[0])));
+            }
+        } catch (RuntimeException runtimeException) {
+            for (int index = dayLocks.size() - 1; index >= 0; index--) {
+                dayLocks.get(index).unlock();
             }
+            throw runtimeException;
+        }
+        return dayLocks;
+    }
+
+    /*
+        Books the dates on the requested campsite, or on the first free one when none is requested, and returns
+        the campsite, or null when nothing is free. In LOCKING mode the caller already holds the day locks.
+     */
+    private CampsiteShard claimForBatch(CampsiteShard requestedShard, ReservationsDates reservationsDates) {
+
+        if (requestedShard != null) {
+            return claim(requestedShard, reservationsDates) ? requestedShard : null;
+        }
+
+        int start = ThreadLocalRandom.current().nextInt(campsiteShards.length);
+        for (int count = 0; count < campsiteShards.length; count++) {
+            CampsiteShard shard = campsiteShards[(start + count) % campsiteShards.length];
+            if (claim(shard, reservationsDates)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    private boolean claim(CampsiteShard shard, ReservationsDates reservationsDates) {
+
+        if (bookingMode == BookingMode.LOCK_FREE) {
+            boolean booked = shard.getCalendar().tryBook(reservationsDates.getCheckinDate().toEpochDay(),
+                    reservationsDates.getCheckoutDate().toEpochDay());
+            if (!booked) {
+                availabilityChanged(shard, reservationsDates);
+            }
+            return booked;
+        }
+
+        if (!datesAvailableForReservation(shard, reservationsDates)) {
+            return false;
+        }
+        deleteCampsiteAvailabilityData(shard, reservationsDates);
+        return true;
+    }
+
+    /*
+        A new reservation is journalled before it becomes visible, so no cancel or update of it can reach the
+        journal first.
+     */
+    private CompletableFuture<Void> insertReservation(ReservationDetails reservationDetails) {
+        CompletableFuture<Void> saved = reservationJournal.reservationAdded(reservationDetails);
+        reservations.insert(reservationDetails);
+        indexReservation(reservationDetails);
+        return saved;
+    }
+
+    /*
+        Swaps the expected reservation for its replacement, or removes it when the replacement is null, and
+        journals and re-indexes the change inside the same atomic map operation. Changes to one reservation
+        therefore reach the journal and the indexes in the order they were applied. Returns null when the
+        reservation is no longer the expected one.
+     */
+    private CompletableFuture<Void> replaceReservation(ReservationDetails expected, ReservationDetails replacement) {
+
+        AtomicReference<CompletableFuture<Void>> saved = new AtomicReference<>();
+        boolean replaced = reservations.replace(expected, replacement, () -> {
+            reindexReservation(expected, replacement);
+            saved.set(replacement != null ? reservationJournal.reservationUpdated(replacement)
+                    : reservationJournal.reservationCancelled(expected.getReservationId()));
+        });
+        return replaced ? saved.get() : null;
+    }
+
+    private void indexReservation(ReservationDetails reservationDetails) {
+
+        ReservationsDates reservationsDates = reservationDetails.getReservationsDates();
+        emailIndex.add(reservationDetails.getCustomer().getEmail(), reservationDetails.getReservationId());
+        shardFor(reservationDetails.getCampsiteId()).getOccupancyIndex().occupy(
+                reservationsDates.getCheckinDate().toEpochDay(), reservationsDates.getCheckoutDate().toEpochDay(),
+                reservationDetails.getReservationId());
+    }
+
+    /*
+        The replacement is indexed after the expected reservation is removed, so the days and the address it
+        keeps are not lost. A null replacement only removes the expected reservation.
+     */
+    private void reindexReservation(ReservationDetails expected, ReservationDetails replacement) {
+
+        ReservationsDates reservationsDates = expected.getReservationsDates();
+        emailIndex.remove(expected.getCustomer().getEmail(), expected.getReservationId());
+        shardFor(expected.getCampsiteId()).getOccupancyIndex().vacate(
+                reservationsDates.getCheckinDate().toEpochDay(), reservationsDates.getCheckoutDate().toEpochDay(),
+                expected.getReservationId());
+
+        if (replacement != null) {
+            indexReservation(replacement);
+        }
+    }
 
-            ReservationDetails reservationDetails = reservations.remove(reservationId);
-            return reservationDetails != null && deleteCampsiteAvailabilityData(reservationDetails.getReservationsDates());
+    private void awaitSaved(CompletableFuture<Void> saved, Runnable onFailed) {
+        awaitSaved(saved, null, onFailed);
+    }
+
+    /*
+        Waits for the journal write, then runs onSaved, when given. When the write fails, onFailed takes the change
+        back before the failure is thrown, so nothing the caller is told failed stays visible. On the sequencer's
+        writer thread the wait is handed to the caller instead, who waits once the writer has moved on and hands
+        both back to the writer.
+     */
+    private void awaitSaved(CompletableFuture<Void> saved, Runnable onSaved, Runnable onFailed) {
+
+        if (sequencer != null && sequencer.isWriterThread()) {
+            currentOperation.deferSave(() -> awaitSaved(saved, onSaved, onFailed));
+            return;
+        }
+        try {
+            saved.join();
         } catch (Exception exception) {
-            throw new RuntimeException(exception.getMessage());
-        } finally {
-            lock.unlock();
+            onWriter(onFailed);
+            throw new RuntimeException("Exception while saving reservation");
+        }
+        if (onSaved != null) {
+            onWriter(onSaved);
+        }
+    }
+
+    private void onWriter(Runnable change) {
+
+        if (offSequencer()) {
+            sequenced(() -> {
+                change.run();
+                return null;
+            });
+            return;
+        }
+        change.run();
+    }
+
+    /*
+        Takes back a booking whose write failed: removes the reservation and frees its days, unless a later change
+        has already moved on from it. The compensating cancel is journalled but not waited for.
+     */
+    private void revertAdded(ReservationDetails added) {
+
+        if (replaceReservation(added, null) != null) {
+            releaseDays(shardFor(added.getCampsiteId()), added.getReservationsDates(), null);
+        }
+    }
+
+    /*
+        Takes back an update whose write failed. Its old days are only freed once the update is saved, so the
+        reservation can always move back to them, freeing the new days it did not hold before. When a later change
+        has already moved on from the update, the update stands and its old days are freed as if it were saved.
+     */
+    private void revertUpdated(CampsiteShard oldShard, ReservationDetails oldReservationDetails,
+                               CampsiteShard newShard, ReservationDetails newReservationDetails) {
+
+        boolean sameCampsite = oldShard == newShard;
+        if (replaceReservation(newReservationDetails, oldReservationDetails) != null) {
+            releaseDays(newShard, newReservationDetails.getReservationsDates(),
+                    sameCampsite ? oldReservationDetails.getReservationsDates() : null);
+        } else {
+            releaseDays(oldShard, oldReservationDetails.getReservationsDates(),
+                    sameCampsite ? newReservationDetails.getReservationsDates() : null);
         }
     }
 
-    private boolean deleteCampsiteAvailabilityData(ReservationsDates reservationsDates) {
+    /*
+        Frees the given dates, except the days of keptDates when given, then tells listeners about the days actually
+        freed, if any. Days a reservation
+        gives up are only freed once the change is saved, so a failed write never has to win them back.
+     */
+    private void releaseDays(CampsiteShard shard, ReservationsDates reservationsDates, ReservationsDates keptDates) {
 
-        lock.lock();
+        DayLockTable.DayLocks dayLocks = bookingMode == BookingMode.LOCK_FREE ? DayLockTable.DayLocks.NONE
+                : lock(shard, reservationsDates);
         try {
-            LocalDate startDate = reservationsDates.getCheckinDate();
-            LocalDate endDate = reservationsDates.getCheckoutDate().plusDays(1);
+            shard.getCalendar().releaseExcept(reservationsDates.getCheckinDate().toEpochDay(),
+                    reservationsDates.getCheckoutDate().toEpochDay(),
+                    keptDates != null ? keptDates.getCheckinDate().toEpochDay() : AvailabilityCalendar.NO_DAY,
+                    keptDates != null ? keptDates.getCheckoutDate().toEpochDay() : AvailabilityCalendar.NO_DAY);
+        } finally {
+            dayLocks.unlock();
+        }
+        for (ReservationsDates freedDates : freedDates(reservationsDates, keptDates)) {
+            availabilityChanged(shard, freedDates);
+            daysFreed(shard, freedDates);
+        }
+    }
 
-            while (startDate.isBefore(endDate)) {
-                campsiteAvailabilityData.remove(startDate);
-                startDate = startDate.plusDays(1);
+    /*
+        The days of reservationsDates outside keptDates: none, one piece, or the two pieces either side of it.
+     */
+    private static List<ReservationsDates> freedDates(ReservationsDates reservationsDates,
+                                                      ReservationsDates keptDates) {
+
+        if (keptDates == null) {
+            return Collections.singletonList(reservationsDates);
+        }
+
+        List<ReservationsDates> freedDates = new ArrayList<>(2);
+        LocalDate checkinDate = reservationsDates.getCheckinDate();
+        LocalDate checkoutDate = reservationsDates.getCheckoutDate();
+        if (checkinDate.isBefore(keptDates.getCheckinDate())) {
+            LocalDate lastFreedDate = keptDates.getCheckinDate().minusDays(1);
+            freedDates.add(ReservationsDates.builder().checkinDate(checkinDate)
+                    .checkoutDate(checkoutDate.isBefore(lastFreedDate) ? checkoutDate : lastFreedDate).build());
+        }
+        if (checkoutDate.isAfter(keptDates.getCheckoutDate())) {
+            LocalDate firstFreedDate = keptDates.getCheckoutDate().plusDays(1);
+            freedDates.add(ReservationsDates.builder()
+                    .checkinDate(checkinDate.isAfter(firstFreedDate) ? checkinDate : firstFreedDate)
+                    .checkoutDate(checkoutDate).build());
+        }
+        return freedDates;
+    }
+
+    public ReservationDetails findReservation(String reservationId) {
+        return tryFindReservation(reservationId).orElseThrow();
+    }
+
+    public Result<ReservationDetails> tryFindReservation(String reservationId) {
+
+        ReservationDetails reservationDetails = reservations.get(reservationId);
+        if (reservationDetails == null) {
+            return Result.failure(FailureReason.RESERVATION_NOT_FOUND,
+                    "Unable to find reservation with id : " + reservationId);
+        }
+
+        return Result.success(reservationDetails);
+    }
+
+    /**
+     * Reservations made with the given email address, ignoring case, by checkin date. Reads the email index, so
+     * the cost grows with the customer's reservations rather than with all of them.
+     */
+    public List<ReservationDetails> findReservationsByEmail(String email) {
+
+        List<ReservationDetails> found = new ArrayList<>();
+        for (String reservationId : emailIndex.get(email)) {
+            ReservationDetails reservationDetails = reservations.get(reservationId);
+            if (reservationDetails != null && email.equalsIgnoreCase(reservationDetails.getCustomer().getEmail())) {
+                found.add(reservationDetails);
             }
+        }
+        found.sort(Comparator.comparing(reservationDetails ->
+                reservationDetails.getReservationsDates().getCheckinDate()));
+        return found;
+    }
+
+    /**
+     * Reservations on site on the given date, by campsite id. Reads one occupancy slot per campsite.
+     */
+    public List<ReservationDetails> findReservationsOnDate(LocalDate date) {
+
+        long day = date.toEpochDay();
+        List<ReservationDetails> found = new ArrayList<>();
+        for (CampsiteShard shard : campsiteShards) {
+            String reservationId = shard.getOccupancyIndex().occupant(day);
+            ReservationDetails reservationDetails = reservationId != null ? reservations.get(reservationId) : null;
+            if (reservationDetails != null && shard.getCampsiteId() == reservationDetails.getCampsiteId()
+                    && covers(reservationDetails.getReservationsDates(), day)) {
+                found.add(reservationDetails);
+            }
+        }
+        return found;
+    }
+
+    private static boolean covers(ReservationsDates reservationsDates, long day) {
+        return reservationsDates.getCheckinDate().toEpochDay() <= day
+                && day <= reservationsDates.getCheckoutDate().toEpochDay();
+    }
+
+    public boolean deleteReservation(String reservationId) {
+        tryDeleteReservation(reservationId).orElseThrow();
+        return true;
+    }
+
+    /**
+     * Cancels the reservation, retrying when a concurrent update moves it first. Fails only when there is no
+     * reservation with the given id.
+     */
+    public Result<Void> tryDeleteReservation(String reservationId) {
+
+        if (replica) {
+            return readOnlyReplica();
+        }
+        if (offSequencer()) {
+            return sequenced(() -> tryDeleteReservation(reservationId), CampsiteInMemoryDatabase::shuttingDown);
+        }
+
+        while (true) {
+            ReservationDetails reservationDetails = reservations.get(reservationId);
+            if (reservationDetails == null) {
+                return Result.failure(FailureReason.RESERVATION_NOT_FOUND,
+                        "No reservation found with reservation id " + reservationId);
+            }
+
+            // The days stay taken until the cancel is saved. An update may have moved the reservation meanwhile.
+            CampsiteShard shard = shardFor(reservationDetails.getCampsiteId());
+            CompletableFuture<Void> saved = replaceReservation(reservationDetails, null);
+            if (saved != null) {
+                awaitSaved(saved, () -> releaseDays(shard, reservationDetails.getReservationsDates(), null),
+                        () -> insertReservation(reservationDetails));
+                return Result.success();
+            }
+            reservationMetrics.concurrentChange();
+        }
+    }
+
+    private boolean deleteCampsiteAvailabilityData(CampsiteShard shard, ReservationsDates reservationsDates) {
+
+        try {
+            shard.getCalendar().book(reservationsDates.getCheckinDate().toEpochDay(),
+                    reservationsDates.getCheckoutDate().toEpochDay());
         } catch (Exception exception) {
-            System.out.println("Exception while deleting campsite availability data");
             throw new RuntimeException("Exception while deleting campsite availability data");
-        } finally {
-            lock.unlock();
         }
         return true;
     }
 
-    private boolean addCampsiteAvailabilityData(ReservationsDates reservationsDates) {
+    private boolean addCampsiteAvailabilityData(CampsiteShard shard, ReservationsDates reservationsDates) {
 
-        lock.lock();
         try {
-            LocalDate startDate = reservationsDates.getCheckinDate();
-            LocalDate endDate = reservationsDates.getCheckoutDate().plusDays(1);
-
-            while (startDate.isBefore(endDate)) {
-                campsiteAvailabilityData.add(startDate);
-                startDate = startDate.plusDays(1);
-            }
+            shard.getCalendar().release(reservationsDates.getCheckinDate().toEpochDay(),
+                    reservationsDates.getCheckoutDate().toEpochDay());
         } catch (Exception exception) {
-            System.out.println("Exception while adding reservation data");
             return false;
-        } finally {
-            lock.unlock();
         }
         return true;
     }
 
-    public boolean updateReservation(ReservationDetails oldReservationDetails,
-                                      ReservationDetails newReservationDetails) {
+    /**
+     * Moves a reservation to new dates, and to a new campsite when the new details name one. Returns the
+     * reservation as stored, with its campsite id filled in.
+     */
+    public ReservationDetails updateReservation(ReservationDetails oldReservationDetails,
+                                                ReservationDetails newReservationDetails) {
+        return tryUpdateReservation(oldReservationDetails, newReservationDetails).orElseThrow();
+    }
+
+    /**
+     * As {@link #updateReservation}, but taken dates, unknown campsites and lost races with another change come back
+     * as failures instead of exceptions.
+     */
+    public Result<ReservationDetails> tryUpdateReservation(ReservationDetails oldReservationDetails,
+                                                           ReservationDetails newReservationDetails) {
+
+        if (replica) {
+            return readOnlyReplica();
+        }
+        if (offSequencer()) {
+            return sequenced(() -> tryUpdateReservation(oldReservationDetails, newReservationDetails),
+                    CampsiteInMemoryDatabase::shuttingDown);
+        }
+
+        ReservationDetails campsiteReservation = newReservationDetails.getCampsiteId() != null ? newReservationDetails
+                : newReservationDetails.toBuilder().campsiteId(oldReservationDetails.getCampsiteId()).build();
+        if (!isCampsite(campsiteReservation.getCampsiteId())) {
+            return unknownCampsite(campsiteReservation.getCampsiteId());
+        }
+
+        CampsiteShard oldShard = shardFor(oldReservationDetails.getCampsiteId());
+        CampsiteShard newShard = shardFor(campsiteReservation.getCampsiteId());
 
-        lock.lock();
+        if (bookingMode == BookingMode.LOCK_FREE) {
+            return updateReservationLockFree(oldShard, oldReservationDetails, newShard, campsiteReservation);
+        }
+
+        CompletableFuture<Void> saved = null;
+        FailureReason failureReason = null;
+        List<DayLockTable.DayLocks> dayLocks = lockForUpdate(oldShard, oldReservationDetails.getReservationsDates(),
+                newShard, campsiteReservation.getReservationsDates());
         try {
 
-                reservations.put(newReservationDetails.getReservationId(), newReservationDetails);
-                addCampsiteAvailabilityData(oldReservationDetails.getReservationsDates());
-                deleteCampsiteAvailabilityData(newReservationDetails.getReservationsDates());
+            if (!oldReservationDetails.equals(reservations.get(oldReservationDetails.getReservationId()))) {
+                failureReason = FailureReason.CONCURRENT_CHANGE;
+            } else {
+                boolean available = oldShard == newShard
+                        ? datesAvailableForUpdate(newShard, oldReservationDetails.getReservationsDates(),
+                                campsiteReservation.getReservationsDates())
+                        : datesAvailableForReservation(newShard, campsiteReservation.getReservationsDates());
+
+                if (!available) {
+                    failureReason = FailureReason.DATES_TAKEN;
+                } else {
+                    saved = replaceReservation(oldReservationDetails, campsiteReservation);
+                    if (saved == null) {
+                        failureReason = FailureReason.CONCURRENT_CHANGE;
+                    } else {
+                        deleteCampsiteAvailabilityData(newShard, campsiteReservation.getReservationsDates());
+                    }
+                }
+            }
         } catch (Exception exception) {
             throw new RuntimeException(exception.getMessage());
         } finally {
-            lock.unlock();
+            for (int index = dayLocks.size() - 1; index >= 0; index--) {
+                dayLocks.get(index).unlock();
+            }
         }
-        return true;
+
+        if (failureReason != null) {
+            return updateFailed(failureReason);
+        }
+        availabilityChanged(newShard, campsiteReservation.getReservationsDates());
+        awaitUpdateSaved(saved, oldShard, oldReservationDetails, newShard, campsiteReservation);
+        return Result.success(campsiteReservation);
+    }
+
+    /*
+        The old days are kept until the update is saved, then freed except those the new dates still hold.
+     */
+    private void awaitUpdateSaved(CompletableFuture<Void> saved, CampsiteShard oldShard,
+                                  ReservationDetails oldReservationDetails, CampsiteShard newShard,
+                                  ReservationDetails newReservationDetails) {
+
+        awaitSaved(saved, () -> releaseDays(oldShard, oldReservationDetails.getReservationsDates(),
+                        oldShard == newShard ? newReservationDetails.getReservationsDates() : null),
+                () -> revertUpdated(oldShard, oldReservationDetails, newShard, newReservationDetails));
+    }
+
+    /**
+     * Turns this database into a replica of a primary: from now on reservations only change through
+     * {@link #applyReplicated}, and bookings, updates, cancels and holds fail with
+     * {@link FailureReason#READ_ONLY_REPLICA}.
+     */
+    public void startReplicating() {
+        replica = true;
     }
 
+    /**
+     * Makes the stored reservation with the given id the one replicated from the primary, or removes it when the
+     * replicated one is null, booking and releasing days to match. Applying the same change twice is harmless.
+     * Changes are applied in the primary's order, in which no two reservations ever hold the same day.
+     */
+    public void applyReplicated(String reservationId, ReservationDetails replicated) {
 
+        if (offSequencer()) {
+            sequenced(() -> {
+                applyReplicated(reservationId, replicated);
+                return null;
+            });
+            return;
+        }
 
-    private boolean datesAvailableForReservation(ReservationsDates reservationsDates) {
+        ReservationDetails current = reservations.get(reservationId);
+        if (current == null ? replicated == null : current.equals(replicated)) {
+            return;
+        }
+        if (replicated != null && !isCampsite(replicated.getCampsiteId())) {
+            throw new IllegalStateException("Replicated reservation " + reservationId + " is on campsite "
+                    + replicated.getCampsiteId() + ", which this replica does not have");
+        }
 
-        lock.lock();
+        // A change that cannot be saved is taken back, so the follower applies and saves it again on retry.
+        awaitSaved(replicate(current, replicated), () -> replicate(replicated, current));
+    }
+
+    /*
+        Replaces current with replicated, either of which may be null, and returns the journal write. Only the
+        replication thread changes a replica, so the current reservation cannot have moved.
+     */
+    private CompletableFuture<Void> replicate(ReservationDetails current, ReservationDetails replicated) {
+
+        CampsiteShard oldShard = current != null ? shardFor(current.getCampsiteId()) : null;
+        CampsiteShard newShard = replicated != null ? shardFor(replicated.getCampsiteId()) : null;
+        CompletableFuture<Void> saved;
+        List<DayLockTable.DayLocks> dayLocks = current == null
+                ? Collections.singletonList(lock(newShard, replicated.getReservationsDates()))
+                : replicated == null ? Collections.singletonList(lock(oldShard, current.getReservationsDates()))
+                : lockForUpdate(oldShard, current.getReservationsDates(), newShard, replicated.getReservationsDates());
         try {
-            LocalDate currentDate = reservationsDates.getCheckinDate();
-            LocalDate finalEndDate = reservationsDates.getCheckoutDate().plusDays(1);
+            if (current == null) {
+                saved = insertReservation(replicated);
+            } else {
+                saved = replaceReservation(current, replicated);
+                addCampsiteAvailabilityData(oldShard, current.getReservationsDates());
+            }
+            if (replicated != null) {
+                deleteCampsiteAvailabilityData(newShard, replicated.getReservationsDates());
+            }
+        } finally {
+            for (int index = dayLocks.size() - 1; index >= 0; index--) {
+                dayLocks.get(index).unlock();
+            }
+        }
 
-            while (currentDate.isBefore(finalEndDate)) {
+        if (current != null) {
+            availabilityChanged(oldShard, current.getReservationsDates());
+        }
+        if (replicated != null) {
+            availabilityChanged(newShard, replicated.getReservationsDates());
+        }
+        return saved != null ? saved : NOTHING_TO_SAVE;
+    }
 
-                if (!campsiteAvailabilityData.contains(currentDate)) {
-                    return false;
-                }
+    /**
+     * Makes the stored reservations the given full copy of the primary's. Every reservation that differs from its
+     * copy is removed first, so no day the copy books is still held by a reservation it no longer has.
+     */
+    public void loadReplicated(Collection<ReservationDetails> replicated) {
 
-                currentDate = currentDate.plusDays(1);
+        Map<String, ReservationDetails> replicatedById = new HashMap<>();
+        for (ReservationDetails reservationDetails : replicated) {
+            replicatedById.put(reservationDetails.getReservationId(), reservationDetails);
+        }
+        for (ReservationDetails reservationDetails : new ArrayList<>(reservations.values())) {
+            if (!reservationDetails.equals(replicatedById.get(reservationDetails.getReservationId()))) {
+                applyReplicated(reservationDetails.getReservationId(), null);
             }
+        }
+        for (ReservationDetails reservationDetails : replicated) {
+            applyReplicated(reservationDetails.getReservationId(), reservationDetails);
+        }
+    }
+
+    private static <T> Result<T> readOnlyReplica() {
+        return Result.failure(FailureReason.READ_ONLY_REPLICA, READ_ONLY_REPLICA_MESSAGE);
+    }
 
+    private static <T> Result<T> shuttingDown() {
+        return Result.failure(FailureReason.SHUTTING_DOWN, SHUTTING_DOWN_MESSAGE);
+    }
+
+    private static List<BatchReservationResult> failedBatch(int size, FailureReason failureReason,
+                                                            String errorMessage) {
+
+        List<BatchReservationResult> results = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            results.add(BatchReservationResult.builder().failureReason(failureReason).errorMessage(errorMessage)
+                    .build());
+        }
+        return results;
+    }
+
+    private Result<ReservationDetails> updateFailed(FailureReason failureReason) {
+
+        if (failureReason == FailureReason.DATES_TAKEN) {
+            reservationMetrics.datesTaken();
+            return Result.failure(failureReason, NEW_DATES_TAKEN_MESSAGE);
+        }
+        reservationMetrics.concurrentChange();
+        return Result.failure(failureReason, CONCURRENT_CHANGE_MESSAGE);
+    }
+
+    /*
+        Moving between campsites locks the lower campsite id first, so two moves in opposite directions
+        cannot deadlock.
+     */
+    private List<DayLockTable.DayLocks> lockForUpdate(CampsiteShard oldShard, ReservationsDates oldReservationDates,
+                                                      CampsiteShard newShard, ReservationsDates newReservationDates) {
+
+        List<DayLockTable.DayLocks> dayLocks = new ArrayList<>(2);
+
+        if (oldShard == newShard) {
+            dayLocks.add(lock(oldShard, oldReservationDates, newReservationDates));
+        } else if (oldShard.getCampsiteId() < newShard.getCampsiteId()) {
+            dayLocks.add(lock(oldShard, oldReservationDates));
+            dayLocks.add(lock(newShard, newReservationDates));
+        } else {
+            dayLocks.add(lock(newShard, newReservationDates));
+            dayLocks.add(lock(oldShard, oldReservationDates));
+        }
+        return dayLocks;
+    }
+
+    /*
+        The sequencer's writer is the only thread changing calendars, so it needs no day locks.
+     */
+    private DayLockTable.DayLocks lock(CampsiteShard shard, ReservationsDates... reservationsDates) {
+        return bookingMode == BookingMode.SEQUENCER ? DayLockTable.DayLocks.NONE
+                : shard.getDayLockTable().lock(reservationsDates);
+    }
+
+    /*
+        Claims the new days the reservation does not hold yet, swaps the reservation in, then hands back the old
+        days it no longer needs once the update is saved. If a concurrent cancel or update wins the swap, the claim
+        is rolled back.
+     */
+    private Result<ReservationDetails> updateReservationLockFree(CampsiteShard oldShard,
+                                                                 ReservationDetails oldReservationDetails,
+                                                                 CampsiteShard newShard,
+                                                                 ReservationDetails newReservationDetails) {
+
+        long oldCheckinDay = oldReservationDetails.getReservationsDates().getCheckinDate().toEpochDay();
+        long oldCheckoutDay = oldReservationDetails.getReservationsDates().getCheckoutDate().toEpochDay();
+        long newCheckinDay = newReservationDetails.getReservationsDates().getCheckinDate().toEpochDay();
+        long newCheckoutDay = newReservationDetails.getReservationsDates().getCheckoutDate().toEpochDay();
+
+        // Days are only kept across the move when the reservation stays on the same campsite.
+        boolean sameCampsite = oldShard == newShard;
+        long heldFromDay = sameCampsite ? oldCheckinDay : AvailabilityCalendar.NO_DAY;
+        long heldToDay = sameCampsite ? oldCheckoutDay : AvailabilityCalendar.NO_DAY;
+
+        if (!oldReservationDetails.equals(reservations.get(oldReservationDetails.getReservationId()))) {
+            return updateFailed(FailureReason.CONCURRENT_CHANGE);
+        }
+
+        if (!newShard.getCalendar().tryBookExcept(newCheckinDay, newCheckoutDay, heldFromDay, heldToDay)) {
+            availabilityChanged(newShard, newReservationDetails.getReservationsDates());
+            return updateFailed(FailureReason.DATES_TAKEN);
+        }
+
+        CompletableFuture<Void> saved = replaceReservation(oldReservationDetails, newReservationDetails);
+        if (saved == null) {
+            newShard.getCalendar().releaseExcept(newCheckinDay, newCheckoutDay, heldFromDay, heldToDay);
+            availabilityChanged(newShard, newReservationDetails.getReservationsDates());
+            return updateFailed(FailureReason.CONCURRENT_CHANGE);
+        }
+
+        availabilityChanged(newShard, newReservationDetails.getReservationsDates());
+        awaitUpdateSaved(saved, oldShard, oldReservationDetails, newShard, newReservationDetails);
+        return Result.success(newReservationDetails);
+    }
+
+    private CampsiteShard shardFor(Integer campsiteId) {
+
+        if (!isCampsite(campsiteId)) {
+            throw new RuntimeException(unknownCampsite(campsiteId).getMessage());
+        }
+        return campsiteShards[campsiteId - 1];
+    }
+
+    private boolean isCampsite(Integer campsiteId) {
+        return campsiteId != null && campsiteId >= 1 && campsiteId <= campsiteShards.length;
+    }
+
+    private static <T> Result<T> unknownCampsite(Integer campsiteId) {
+        return Result.failure(FailureReason.UNKNOWN_CAMPSITE, "No campsite found with campsite id " + campsiteId);
+    }
+
+    private boolean datesAvailableForReservation(CampsiteShard shard, ReservationsDates reservationsDates) {
+
+        try {
+            return shard.getCalendar().isAvailable(reservationsDates.getCheckinDate().toEpochDay(),
+                    reservationsDates.getCheckoutDate().toEpochDay());
         } catch (Exception exception) {
             throw new RuntimeException("Exception while reading data for campsite");
-        } finally {
-            lock.unlock();
         }
+    }
 
-        return true;
+    private boolean datesAvailableForUpdate(CampsiteShard shard, ReservationsDates oldReservationDates,
+                                            ReservationsDates newReservationDates) {
+
+        return shard.getCalendar().isAvailableExcept(newReservationDates.getCheckinDate().toEpochDay(),
+                newReservationDates.getCheckoutDate().toEpochDay(),
+                oldReservationDates.getCheckinDate().toEpochDay(),
+                oldReservationDates.getCheckoutDate().toEpochDay());
     }
 }
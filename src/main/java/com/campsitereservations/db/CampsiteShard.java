@@ -0,0 +1,95 @@
+package com.campsitereservations.db;
+
+import com.campsitereservations.metrics.ReservationMetrics;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Calendar, day locks and occupancy of a single campsite. Shards share nothing, so bookings on different
+ * campsites never touch the same lock or calendar word. Readers use the latest published
+ * {@link AvailabilitySnapshot} instead of the live calendar.
+ */
+public class CampsiteShard {
+
+    private final int campsiteId;
+    private final AvailabilityCalendar calendar;
+    private final DayLockTable dayLockTable;
+    private final OccupancyIndex occupancyIndex;
+    private final boolean copyUnderDayLocks;
+    private final AtomicReference<AvailabilitySnapshot> snapshot = new AtomicReference<>();
+
+    public CampsiteShard(int campsiteId, AvailabilityCalendar calendar) {
+        this(campsiteId, calendar, ReservationMetrics.NONE, BookingMode.LOCKING);
+    }
+
+    public CampsiteShard(int campsiteId, AvailabilityCalendar calendar, ReservationMetrics reservationMetrics,
+                         BookingMode bookingMode) {
+        this.campsiteId = campsiteId;
+        this.copyUnderDayLocks = bookingMode == BookingMode.LOCKING;
+        this.calendar = calendar;
+        this.dayLockTable = new DayLockTable(reservationMetrics);
+        this.occupancyIndex = new OccupancyIndex((int) (calendar.getLastDay() - calendar.getFirstDay() + 1));
+    }
+
+    public int getCampsiteId() {
+        return campsiteId;
+    }
+
+    public AvailabilityCalendar getCalendar() {
+        return calendar;
+    }
+
+    public DayLockTable getDayLockTable() {
+        return dayLockTable;
+    }
+
+    public OccupancyIndex getOccupancyIndex() {
+        return occupancyIndex;
+    }
+
+    public AvailabilitySnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Copies the whole calendar into a snapshot and publishes it. Only consistent while nobody is half way through
+     * a calendar change: at startup, on the sequencer's writer between operations, or under {@link
+     * DayLockTable#lockAll()}.
+     */
+    public void publishSnapshot(LongSupplier nextVersion) {
+
+        AvailabilitySnapshot current;
+        AvailabilitySnapshot next;
+        do {
+            current = snapshot.get();
+            next = new AvailabilitySnapshot(nextVersion.getAsLong(), calendar.copy());
+        } while (!snapshot.compareAndSet(current, next));
+    }
+
+    /**
+     * Publishes a snapshot that takes the days from fromDay to toDay from the calendar and every other day from
+     * the current snapshot. In LOCKING mode the days are copied under their own day locks, where no booking is
+     * half applied, so bookings on other days are never blocked; callers must call this after changing the
+     * calendar. A snapshot published meanwhile by a change to other days makes the copy start over from it, so no
+     * change is lost. In LOCK_FREE mode a copy may catch a claim half way, which the snapshot published after that
+     * claim succeeds or rolls back corrects.
+     */
+    public void publishChange(LongSupplier nextVersion, long fromDay, long toDay) {
+
+        DayLockTable.DayLocks dayLocks = copyUnderDayLocks ? dayLockTable.lockDays(fromDay, toDay)
+                : DayLockTable.DayLocks.NONE;
+        try {
+            AvailabilitySnapshot current;
+            AvailabilitySnapshot next;
+            do {
+                current = snapshot.get();
+                AvailabilityCalendar copy = current == null ? calendar.copy()
+                        : current.getCalendar().copyDays(calendar, fromDay, toDay);
+                next = new AvailabilitySnapshot(nextVersion.getAsLong(), copy);
+            } while (!snapshot.compareAndSet(current, next));
+        } finally {
+            dayLocks.unlock();
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.campsitereservations.db;
 
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 @Getter
+@EqualsAndHashCode
 @Builder
 public class Customer {
     private String firstName;
@@ -0,0 +1,139 @@
+package com.campsitereservations.db;
+
+import com.campsitereservations.metrics.ReservationMetrics;
+
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Day locks, striped over a fixed array: day d is guarded by stripe {@code d mod 64}. The 32-day booking window
+ * fits in the stripes, so bookings for disjoint dates inside it never share a lock; only days 64 apart do. Callers
+ * lock every stripe a booking touches, always in ascending stripe order, so overlapping bookings cannot deadlock.
+ * The table never grows as the window moves on, and locking allocates nothing but the returned handle. Wait time is
+ * only measured when a stripe is contended, so uncontended bookings read the clock once for the hold time.
+ */
+public class DayLockTable {
+
+    private static final int STRIPES = Long.SIZE;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReservationMetrics reservationMetrics;
+
+    public DayLockTable() {
+        this(ReservationMetrics.NONE);
+    }
+
+    public DayLockTable(ReservationMetrics reservationMetrics) {
+        this.reservationMetrics = reservationMetrics;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripes[stripe] = new ReentrantLock();
+        }
+    }
+
+    public DayLocks lock(ReservationsDates... reservationsDates) {
+
+        long stripeMask = 0;
+        for (ReservationsDates dates : reservationsDates) {
+            stripeMask |= stripeMask(dates.getCheckinDate().toEpochDay(), dates.getCheckoutDate().toEpochDay());
+        }
+
+        long waitNanos = acquire(stripeMask);
+        reservationMetrics.lockAcquired(waitNanos);
+        return new DayLocks(this, stripeMask, reservationMetrics, System.nanoTime());
+    }
+
+    public DayLocks lock(LocalDate startDate, LocalDate endDate) {
+        return lock(ReservationsDates.builder().checkinDate(startDate).checkoutDate(endDate).build());
+    }
+
+    /**
+     * Locks the stripes of the days from startDay to endDay inclusive, without counting it as booking lock time.
+     * Used to copy the days a booking changed into a snapshot while no other booking can be half way through them.
+     */
+    public DayLocks lockDays(long startDay, long endDay) {
+
+        long stripeMask = stripeMask(startDay, endDay);
+        acquire(stripeMask);
+        return new DayLocks(this, stripeMask, null, 0);
+    }
+
+    /**
+     * Locks every stripe, so no booking is half way through a calendar change while they are held. Not counted as
+     * booking lock time. Only meant for rare whole-calendar changes such as moving the booking window.
+     */
+    public DayLocks lockAll() {
+
+        acquire(-1L);
+        return new DayLocks(this, -1L, null, 0);
+    }
+
+    /*
+        Locks the given stripes in ascending order and returns the time spent waiting for contended ones.
+     */
+    private long acquire(long stripeMask) {
+
+        long acquired = 0;
+        long waitNanos = 0;
+        try {
+            for (long remaining = stripeMask; remaining != 0; remaining &= remaining - 1) {
+                int stripe = Long.numberOfTrailingZeros(remaining);
+                ReentrantLock stripeLock = stripes[stripe];
+                if (!stripeLock.tryLock()) {
+                    long waitStart = System.nanoTime();
+                    stripeLock.lock();
+                    waitNanos += System.nanoTime() - waitStart;
+                }
+                acquired |= 1L << stripe;
+            }
+        } catch (RuntimeException runtimeException) {
+            new DayLocks(this, acquired, null, 0).unlock();
+            throw runtimeException;
+        }
+        return waitNanos;
+    }
+
+    /*
+        The stripes of the days from startDay to endDay inclusive: all of them once the range wraps around.
+     */
+    private static long stripeMask(long startDay, long endDay) {
+
+        if (endDay < startDay) {
+            return 0;
+        }
+        if (endDay - startDay >= STRIPES - 1) {
+            return -1L;
+        }
+        int first = (int) Math.floorMod(startDay, (long) STRIPES);
+        int last = (int) Math.floorMod(endDay, (long) STRIPES);
+        long upFromFirst = -1L << first;
+        long upToLast = -1L >>> (STRIPES - 1 - last);
+        return first <= last ? upFromFirst & upToLast : upFromFirst | upToLast;
+    }
+
+    public static class DayLocks {
+
+        public static final DayLocks NONE = new DayLocks(null, 0, null, 0);
+
+        private final DayLockTable dayLockTable;
+        private final long acquired;
+        private final ReservationMetrics reservationMetrics;
+        private final long acquiredNanos;
+
+        private DayLocks(DayLockTable dayLockTable, long acquired, ReservationMetrics reservationMetrics,
+                         long acquiredNanos) {
+            this.dayLockTable = dayLockTable;
+            this.acquired = acquired;
+            this.reservationMetrics = reservationMetrics;
+            this.acquiredNanos = acquiredNanos;
+        }
+
+        public void unlock() {
+            for (long remaining = acquired; remaining != 0; remaining &= ~Long.highestOneBit(remaining)) {
+                dayLockTable.stripes[Long.numberOfTrailingZeros(Long.highestOneBit(remaining))].unlock();
+            }
+            if (reservationMetrics != null) {
+                reservationMetrics.lockReleased(System.nanoTime() - acquiredNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.campsitereservations.db;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids of the reservations made with each email address, ignoring case. Each address is updated atomically, so
+ * adds and removals for the same customer never lose each other.
+ */
+public class EmailIndex {
+
+    private final ConcurrentHashMap<String, Set<String>> reservationIds = new ConcurrentHashMap<>();
+
+    public void add(String email, String reservationId) {
+        reservationIds.compute(key(email), (key, ids) -> {
+            Set<String> updatedIds = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            updatedIds.add(reservationId);
+            return updatedIds;
+        });
+    }
+
+    public void remove(String email, String reservationId) {
+        reservationIds.computeIfPresent(key(email), (key, ids) -> {
+            ids.remove(reservationId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    public Set<String> get(String email) {
+        Set<String> ids = reservationIds.get(key(email));
+        return ids != null ? ids : Collections.emptySet();
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
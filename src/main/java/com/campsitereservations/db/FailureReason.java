@@ -0,0 +1,54 @@
+package com.campsitereservations.db;
+
+/**
+ * Why a booking, update, cancel, hold, waitlist request, lookup, availability search, replica read or idempotent
+ * retry did not go through, including because the service was shutting down. Each reason has a short fixed tag,
+ * such as "dates-taken" or "email", under which it is counted.
+ */
+public enum FailureReason {
+    DATES_TAKEN("dates-taken"),
+    CONCURRENT_CHANGE("concurrent-change"),
+    RESERVATION_NOT_FOUND("reservation-not-found"),
+    UNKNOWN_CAMPSITE("unknown-campsite", true),
+    BATCH_FAILED("batch-failed"),
+    MISSING_FIELDS("missing-fields", true),
+    EMAIL("email", true),
+    DATE_FORMAT("date-format", true),
+    TOO_SOON("too-soon", true),
+    TOO_FAR_AHEAD("too-far-ahead", true),
+    STAY_TOO_LONG("stay-too-long", true),
+    CHECKOUT_BEFORE_CHECKIN("checkout-before-checkin", true),
+    SEARCH_DATES("search-dates", true),
+    BATCH_SIZE("batch-size", true),
+    HOLD_NOT_FOUND("hold-not-found"),
+    HOLD_TTL("hold-ttl", true),
+    WAITLIST_ENTRY_NOT_FOUND("waitlist-entry-not-found"),
+    READ_ONLY_REPLICA("read-only-replica"),
+    REPLICA_BEHIND("replica-behind"),
+    SHUTTING_DOWN("shutting-down"),
+    IDEMPOTENCY_KEY("idempotency-key", true),
+    IDEMPOTENCY_KEY_REUSED("idempotency-key-reused", true);
+
+    private final String tag;
+    private final boolean invalidInput;
+
+    FailureReason(String tag) {
+        this(tag, false);
+    }
+
+    FailureReason(String tag, boolean invalidInput) {
+        this.tag = tag;
+        this.invalidInput = invalidInput;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * True when the request itself was wrong, rather than the campsite or reservation it asked for.
+     */
+    public boolean isInvalidInput() {
+        return invalidInput;
+    }
+}
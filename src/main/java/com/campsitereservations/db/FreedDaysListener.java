@@ -0,0 +1,11 @@
+package com.campsitereservations.db;
+
+/**
+ * Told after a cancel, a move to other dates or the end of a hold gave days of a campsite back to the calendar.
+ * Some of the days may have been taken again by the time it is told.
+ */
+@FunctionalInterface
+public interface FreedDaysListener {
+
+    void daysFreed(int campsiteId, ReservationsDates freedDates);
+}
@@ -0,0 +1,51 @@
+package com.campsitereservations.db;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps every reservation as an object on the heap.
+ */
+public class HeapReservationStore implements ReservationStore {
+
+    private final ConcurrentHashMap<String, ReservationDetails> reservations = new ConcurrentHashMap<>();
+
+    @Override
+    public ReservationDetails get(String reservationId) {
+        return reservations.get(reservationId);
+    }
+
+    @Override
+    public void insert(ReservationDetails reservationDetails) {
+        reservations.put(reservationDetails.getReservationId(), reservationDetails);
+    }
+
+    @Override
+    public boolean replace(ReservationDetails expected, ReservationDetails replacement, Runnable onReplace) {
+
+        boolean[] replaced = new boolean[1];
+        reservations.computeIfPresent(expected.getReservationId(), (reservationId, current) -> {
+            if (!current.equals(expected)) {
+                return current;
+            }
+            onReplace.run();
+            replaced[0] = true;
+            return replacement;
+        });
+        return replaced[0];
+    }
+
+    @Override
+    public Collection<ReservationDetails> values() {
+        return reservations.values();
+    }
+
+    @Override
+    public int size() {
+        return reservations.size();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,36 @@
+package com.campsitereservations.db;
+
+import lombok.Getter;
+
+/**
+ * Dates set aside for a reservation that is not made yet, until the hold is confirmed, released or expires. The
+ * hold id is the id the reservation gets when the hold is confirmed.
+ */
+public class Hold {
+
+    @Getter
+    private final ReservationDetails reservationDetails;
+    @Getter
+    private final long expiresAtMillis;
+    private volatile TimerWheel.Timeout<Hold> expiry;
+
+    Hold(ReservationDetails reservationDetails, long expiresAtMillis) {
+        this.reservationDetails = reservationDetails;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getHoldId() {
+        return reservationDetails.getReservationId();
+    }
+
+    void setExpiry(TimerWheel.Timeout<Hold> expiry) {
+        this.expiry = expiry;
+    }
+
+    void cancelExpiry() {
+        TimerWheel.Timeout<Hold> timeout = expiry;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.campsitereservations.db;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reservation id occupying each day of one campsite, in a ring of days addressed like the campsite's
+ * {@link AvailabilityCalendar}. A day belongs to at most one reservation, so lookups are a single array read.
+ */
+public class OccupancyIndex {
+
+    private final AtomicReferenceArray<String> occupants;
+
+    public OccupancyIndex(int capacityDays) {
+        this.occupants = new AtomicReferenceArray<>(capacityDays);
+    }
+
+    public void occupy(long fromDay, long toDay, String reservationId) {
+        for (long day = fromDay; day <= toDay; day++) {
+            occupants.set(slot(day), reservationId);
+        }
+    }
+
+    /**
+     * Clears the days still held by the given reservation. Days another reservation has taken since are kept.
+     */
+    public void vacate(long fromDay, long toDay, String reservationId) {
+        for (long day = fromDay; day <= toDay; day++) {
+            occupants.compareAndSet(slot(day), reservationId, null);
+        }
+    }
+
+    /**
+     * Id of the reservation on the given day, or null. Slots are reused as the calendar moves forward, so callers
+     * check that the reservation found actually covers the day.
+     */
+    public String occupant(long day) {
+        return occupants.get(slot(day));
+    }
+
+    private int slot(long day) {
+        return (int) Math.floorMod(day, (long) occupants.length());
+    }
+}
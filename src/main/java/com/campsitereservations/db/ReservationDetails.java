@@ -1,12 +1,15 @@
 package com.campsitereservations.db;
 
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 @Getter
-@Builder
+@EqualsAndHashCode
+@Builder(toBuilder = true)
 public class ReservationDetails {
     private String reservationId;
+    private Integer campsiteId;
     private Customer customer;
     private ReservationsDates reservationsDates;
 }
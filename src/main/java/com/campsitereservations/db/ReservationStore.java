@@ -0,0 +1,33 @@
+package com.campsitereservations.db;
+
+import java.util.Collection;
+
+/**
+ * Where the reservations themselves are kept. Calendars and locks stay with {@link CampsiteInMemoryDatabase};
+ * a store only maps reservation ids to their details.
+ */
+public interface ReservationStore {
+
+    /**
+     * Returns the reservation with the given id, or null when there is none.
+     */
+    ReservationDetails get(String reservationId);
+
+    void insert(ReservationDetails reservationDetails);
+
+    /**
+     * Swaps {@code expected} for {@code replacement}, or removes it when the replacement is null, provided the
+     * stored reservation still equals {@code expected}. {@code onReplace} runs inside the same atomic step, so
+     * callers can journal the change in the order it was applied. Returns false when nothing was replaced.
+     */
+    boolean replace(ReservationDetails expected, ReservationDetails replacement, Runnable onReplace);
+
+    /**
+     * Weakly consistent view of every stored reservation.
+     */
+    Collection<ReservationDetails> values();
+
+    int size();
+
+    void close();
+}
@@ -1,11 +1,13 @@
 package com.campsitereservations.db;
 
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.time.LocalDate;
 
 @Getter
+@EqualsAndHashCode
 @Builder
 public class ReservationsDates {
     private LocalDate checkinDate;
@@ -0,0 +1,61 @@
+package com.campsitereservations.db;
+
+import lombok.Getter;
+
+/**
+ * Outcome of an operation that can fail for ordinary reasons, such as dates already taken or bad input: either a
+ * value, or a {@link FailureReason} with the message shown to the client. Failures are plain values, so turning a
+ * request away costs no exception and no stack trace.
+ */
+@Getter
+public final class Result<T> {
+
+    private static final Result<Void> SUCCESS = new Result<>(null, null, null);
+
+    private final T value;
+    private final FailureReason failureReason;
+    private final String message;
+
+    private Result(T value, FailureReason failureReason, String message) {
+        this.value = value;
+        this.failureReason = failureReason;
+        this.message = message;
+    }
+
+    public static Result<Void> success() {
+        return SUCCESS;
+    }
+
+    public static <T> Result<T> success(T value) {
+        return new Result<>(value, null, null);
+    }
+
+    public static <T> Result<T> failure(FailureReason failureReason, String message) {
+        return new Result<>(null, failureReason, message);
+    }
+
+    public boolean isSuccess() {
+        return failureReason == null;
+    }
+
+    /**
+     * The same failure, for a caller returning a different value type.
+     */
+    @SuppressWarnings("unchecked")
+    public <U> Result<U> asFailure() {
+        if (isSuccess()) {
+            throw new IllegalStateException("Not a failure");
+        }
+        return (Result<U>) this;
+    }
+
+    /**
+     * The value, or a RuntimeException with the failure message, for callers that work with exceptions.
+     */
+    public T orElseThrow() {
+        if (!isSuccess()) {
+            throw new RuntimeException(message);
+        }
+        return value;
+    }
+}
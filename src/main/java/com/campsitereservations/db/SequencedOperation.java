@@ -0,0 +1,56 @@
+package com.campsitereservations.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A booking operation queued on the {@link BookingSequencer}. The writer thread applies it and collects the waits for
+ * the journal writes it started; the caller runs them once the operation completes, so the writer never waits on
+ * disk.
+ */
+class SequencedOperation<T> {
+
+    private final Supplier<T> operation;
+    private final List<Runnable> pendingSaves = new ArrayList<>(1);
+    private final CompletableFuture<Void> completed = new CompletableFuture<>();
+    private T result;
+    private RuntimeException failure;
+
+    SequencedOperation(Supplier<T> operation) {
+        this.operation = operation;
+    }
+
+    void apply() {
+        try {
+            result = operation.get();
+        } catch (RuntimeException runtimeException) {
+            failure = runtimeException;
+        }
+    }
+
+    void deferSave(Runnable awaitSave) {
+        pendingSaves.add(awaitSave);
+    }
+
+    void complete() {
+        completed.complete(null);
+    }
+
+    List<Runnable> getPendingSaves() {
+        return pendingSaves;
+    }
+
+    /**
+     * Waits until the writer has applied the operation and published its availability, then returns its result or
+     * rethrows its failure.
+     */
+    T await() {
+        completed.join();
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,271 @@
+package com.campsitereservations.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timer wheel in the style of Varghese and Lauck: a ring of buckets, one per tick, each a doubly linked list
+ * of the timeouts due on that tick modulo the ring size, with the number of further turns they wait. Scheduling and
+ * cancelling are a queue offer from any thread; the ticking thread moves them into or out of their bucket in
+ * constant time and expires a bucket per tick. Live timeouts cost one small object each and no thread.
+ */
+public class TimerWheel<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickMillis;
+    private final List<Bucket<T>> buckets;
+    private final int mask;
+    private final LongSupplier clock;
+    private final Consumer<T> expiry;
+    private final long startMillis;
+    private final Queue<Timeout<T>> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout<T>> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private long nextTick;
+    private volatile Thread ticker;
+    private volatile boolean running = true;
+
+    /**
+     * Timeouts come due as {@link #advance()} finds the clock past them; nothing ticks until {@link #start} is
+     * called.
+     */
+    public TimerWheel(long tickMillis, int wheelSize, LongSupplier clock, Consumer<T> expiry) {
+
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Timer wheel size must be a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        this.mask = wheelSize - 1;
+        this.clock = clock;
+        this.expiry = expiry;
+        this.startMillis = clock.getAsLong();
+
+        for (int index = 0; index < wheelSize; index++) {
+            buckets.add(new Bucket<>());
+        }
+    }
+
+    /**
+     * Hands the item to the expiry callback once the delay has passed, give or take a tick, unless the returned
+     * timeout is cancelled first.
+     */
+    public Timeout<T> schedule(T item, long delayMillis) {
+
+        Timeout<T> timeout = new Timeout<>(this, item, clock.getAsLong() + Math.max(delayMillis, 0));
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Timeouts scheduled and neither expired nor cancelled.
+     */
+    public int size() {
+        return pending.get();
+    }
+
+    /**
+     * Files the timeouts scheduled and cancelled since the last call, then runs every tick the clock has passed and
+     * returns the number of timeouts expired. The expiry callback runs on the calling thread; an exception it
+     * throws is logged and the other timeouts still expire.
+     */
+    public synchronized int advance() {
+
+        long lastTick = (clock.getAsLong() - startMillis) / tickMillis;
+        transferScheduled();
+        removeCancelled();
+        int expired = 0;
+        for (; nextTick <= lastTick; nextTick++) {
+            transferScheduled();
+            removeCancelled();
+            expired += expire(buckets.get((int) nextTick & mask));
+        }
+        return expired;
+    }
+
+    /**
+     * Starts a daemon thread that advances the wheel every tick. Later calls do nothing.
+     */
+    public void start(String threadName) {
+
+        if (ticker != null) {
+            return;
+        }
+        synchronized (this) {
+            if (ticker == null && running) {
+                Thread thread = new Thread(this::run, threadName);
+                thread.setDaemon(true);
+                thread.start();
+                ticker = thread;
+            }
+        }
+    }
+
+    public void close() {
+
+        running = false;
+        Thread thread = ticker;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+
+        while (running) {
+            try {
+                advance();
+            } catch (RuntimeException runtimeException) {
+                LOGGER.error("Timer wheel tick failed", runtimeException);
+            }
+            long nextTickMillis = startMillis + nextTick * tickMillis;
+            long sleepMillis = nextTickMillis - clock.getAsLong();
+            if (sleepMillis > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleepMillis));
+            }
+        }
+    }
+
+    /*
+        Timeouts due before the tick being run expire on it, not a full turn later.
+     */
+    private void transferScheduled() {
+
+        for (Timeout<T> timeout = scheduled.poll(); timeout != null; timeout = scheduled.poll()) {
+            if (timeout.state != Timeout.PENDING) {
+                continue;
+            }
+            long dueTick = Math.max((timeout.deadlineMillis - startMillis + tickMillis - 1) / tickMillis, nextTick);
+            timeout.remainingTurns = (dueTick - nextTick) / buckets.size();
+            buckets.get((int) dueTick & mask).add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+
+        for (Timeout<T> timeout = cancelled.poll(); timeout != null; timeout = cancelled.poll()) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private int expire(Bucket<T> bucket) {
+
+        int expired = 0;
+        Timeout<T> timeout = bucket.head;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            if (timeout.remainingTurns > 0) {
+                timeout.remainingTurns--;
+            } else {
+                bucket.remove(timeout);
+                if (Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)) {
+                    pending.decrementAndGet();
+                    expired++;
+                    try {
+                        expiry.accept(timeout.item);
+                    } catch (RuntimeException runtimeException) {
+                        LOGGER.error("Timeout expiry failed", runtimeException);
+                    }
+                }
+            }
+            timeout = next;
+        }
+        return expired;
+    }
+
+    public static final class Timeout<T> {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerWheel<T> timerWheel;
+        private final T item;
+        private final long deadlineMillis;
+        private volatile int state = PENDING;
+
+        // Touched by the ticking thread alone.
+        private long remainingTurns;
+        private Bucket<T> bucket;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(TimerWheel<T> timerWheel, T item, long deadlineMillis) {
+            this.timerWheel = timerWheel;
+            this.item = item;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * Stops the timeout from expiring. Returns false when it already expired or was cancelled.
+         */
+        @SuppressWarnings("unchecked")
+        public boolean cancel() {
+
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            timerWheel.pending.decrementAndGet();
+            timerWheel.cancelled.add(this);
+            return true;
+        }
+    }
+
+    private static final class Bucket<T> {
+
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        private void add(Timeout<T> timeout) {
+
+            timeout.bucket = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        private void remove(Timeout<T> timeout) {
+
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+}
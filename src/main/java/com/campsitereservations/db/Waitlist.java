@@ -0,0 +1,209 @@
+package com.campsitereservations.db;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Customers waiting for taken dates, offered a hold on them as soon as a cancel, a move or an ended hold frees
+ * them, instead of polling available-dates. Waiters are kept in a skip list ordered by checkin day, then by when
+ * they joined, so the ones whose stay overlaps a freed range are found in O(log n) plus their number. They are
+ * offered the days in the order they joined. Matching runs on a thread of its own, so cancels never wait for it.
+ */
+@Component
+@Scope("singleton")
+public class Waitlist implements FreedDaysListener {
+
+    private static final long DEFAULT_HOLD_SECONDS = 900;
+
+    // Index keys put the checkin day above the join sequence; epoch days fit in the top 21 bits until the year 7700.
+    private static final int SEQUENCE_BITS = 42;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private final CampsiteInMemoryDatabase campsiteInMemoryDatabase;
+    private final long holdMillis;
+    private final ConcurrentSkipListMap<Long, WaitlistEntry> waiters = new ConcurrentSkipListMap<>();
+    private final Map<String, WaitlistEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong joinSequence = new AtomicLong();
+    private final AtomicLong longestStayDays = new AtomicLong();
+    private ExecutorService matcher;
+
+    public Waitlist(CampsiteInMemoryDatabase campsiteInMemoryDatabase) {
+        this(campsiteInMemoryDatabase, DEFAULT_HOLD_SECONDS);
+    }
+
+    @Autowired
+    public Waitlist(CampsiteInMemoryDatabase campsiteInMemoryDatabase,
+                    @Value("${campsite.waitlist.hold-seconds:900}") long holdSeconds) {
+        this.campsiteInMemoryDatabase = campsiteInMemoryDatabase;
+        this.holdMillis = TimeUnit.SECONDS.toMillis(holdSeconds);
+    }
+
+    @PostConstruct
+    public void initialize() {
+
+        matcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "waitlist-matcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        campsiteInMemoryDatabase.addFreedDaysListener(this);
+    }
+
+    @PreDestroy
+    public void close() {
+        matcher.shutdownNow();
+    }
+
+    /**
+     * Puts the customer on the waitlist for the dates of the reservation, on its campsite or on any. When the dates
+     * are free already, and no one who joined earlier is owed them, the hold is offered straight away.
+     */
+    public WaitlistEntry join(String waitlistId, ReservationDetails reservationDetails) {
+
+        WaitlistEntry entry = new WaitlistEntry(waitlistId, reservationDetails, joinSequence.incrementAndGet());
+        longestStayDays.accumulateAndGet(entry.getCheckoutDay() - entry.getCheckinDay(), Math::max);
+        entries.put(waitlistId, entry);
+        waiters.put(key(entry.getCheckinDay(), entry.getSequence()), entry);
+
+        // Behind any freed days still being matched, so earlier waiters are offered them first.
+        try {
+            matcher.submit(() -> offer(entry, reservationDetails.getCampsiteId())).get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while joining the waitlist");
+        } catch (ExecutionException executionException) {
+            throw new RuntimeException(executionException.getCause().getMessage());
+        }
+        return entry;
+    }
+
+    public Result<WaitlistEntry> find(String waitlistId) {
+
+        WaitlistEntry entry = entries.get(waitlistId);
+        return entry != null ? Result.success(entry) : notFound(waitlistId);
+    }
+
+    /**
+     * Takes the customer off the waitlist, releasing the hold they were offered if they still have it.
+     */
+    public Result<Void> leave(String waitlistId) {
+
+        WaitlistEntry entry = entries.remove(waitlistId);
+        if (entry == null) {
+            return notFound(waitlistId);
+        }
+        synchronized (entry) {
+            if (entry.getStatus() == WaitlistEntry.Status.OFFERED) {
+                campsiteInMemoryDatabase.tryReleaseHold(entry.getHold().getHoldId());
+            }
+            entry.left();
+            waiters.remove(key(entry.getCheckinDay(), entry.getSequence()), entry);
+        }
+        return Result.success();
+    }
+
+    public int getWaitingCount() {
+        return waiters.size();
+    }
+
+    /**
+     * Drops the entries whose checkin is before the given date, once that day has left the booking window.
+     */
+    public int dropBefore(LocalDate date) {
+
+        long day = date.toEpochDay();
+        int dropped = 0;
+        for (Iterator<WaitlistEntry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            WaitlistEntry entry = iterator.next();
+            if (entry.getCheckinDay() < day) {
+                iterator.remove();
+                synchronized (entry) {
+                    entry.left();
+                    waiters.remove(key(entry.getCheckinDay(), entry.getSequence()), entry);
+                }
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    @Override
+    public void daysFreed(int campsiteId, ReservationsDates freedDates) {
+        try {
+            matcher.execute(() -> match(campsiteId, freedDates));
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            // Closed; nobody is waiting any more.
+        }
+    }
+
+    /*
+        A stay overlaps the freed days when it checks in no later than their last day and checks out no earlier
+        than their first, so only checkins from the longest stay before the first day need looking at.
+     */
+    private void match(int campsiteId, ReservationsDates freedDates) {
+
+        long freedFirstDay = freedDates.getCheckinDate().toEpochDay();
+        long freedLastDay = freedDates.getCheckoutDate().toEpochDay();
+        long earliestCheckinDay = Math.max(freedFirstDay - longestStayDays.get(), 0);
+
+        List<WaitlistEntry> candidates = new ArrayList<>(waiters.subMap(key(earliestCheckinDay, 0), true,
+                key(freedLastDay, MAX_SEQUENCE), true).values());
+        candidates.sort(Comparator.comparingLong(WaitlistEntry::getSequence));
+
+        for (WaitlistEntry entry : candidates) {
+            Integer wantedCampsiteId = entry.getReservationDetails().getCampsiteId();
+            if (entry.getCheckoutDay() >= freedFirstDay
+                    && (wantedCampsiteId == null || wantedCampsiteId == campsiteId)) {
+                offer(entry, campsiteId);
+            }
+        }
+    }
+
+    /*
+        Runs on the matcher thread only. Holding the entry keeps a concurrent leave from missing the hold.
+     */
+    private void offer(WaitlistEntry entry, Integer campsiteId) {
+
+        synchronized (entry) {
+            if (entry.getStatus() != WaitlistEntry.Status.WAITING) {
+                return;
+            }
+            ReservationDetails reservationDetails = campsiteId != null
+                    ? entry.getReservationDetails().toBuilder().campsiteId(campsiteId).build()
+                    : entry.getReservationDetails();
+            Result<Hold> held = campsiteInMemoryDatabase.tryPlaceHold(reservationDetails, holdMillis);
+            if (held.isSuccess()) {
+                entry.offered(held.getValue());
+                waiters.remove(key(entry.getCheckinDay(), entry.getSequence()), entry);
+            }
+        }
+    }
+
+    private static long key(long checkinDay, long sequence) {
+        return checkinDay << SEQUENCE_BITS | sequence;
+    }
+
+    private static <T> Result<T> notFound(String waitlistId) {
+        return Result.failure(FailureReason.WAITLIST_ENTRY_NOT_FOUND,
+                "No waitlist entry found with waitlist id " + waitlistId);
+    }
+}
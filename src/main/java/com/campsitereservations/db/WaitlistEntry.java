@@ -0,0 +1,46 @@
+package com.campsitereservations.db;
+
+import lombok.Getter;
+
+/**
+ * A customer waiting for dates that were taken when they asked. The reservation details hold the wanted dates,
+ * the campsite when they want a particular one, and the id the reservation gets once an offered hold is confirmed.
+ */
+@Getter
+public class WaitlistEntry {
+
+    public enum Status {
+        WAITING,
+        OFFERED,
+        LEFT
+    }
+
+    private final String waitlistId;
+    private final ReservationDetails reservationDetails;
+    private final long sequence;
+    private volatile Status status = Status.WAITING;
+    private volatile Hold hold;
+
+    WaitlistEntry(String waitlistId, ReservationDetails reservationDetails, long sequence) {
+        this.waitlistId = waitlistId;
+        this.reservationDetails = reservationDetails;
+        this.sequence = sequence;
+    }
+
+    long getCheckinDay() {
+        return reservationDetails.getReservationsDates().getCheckinDate().toEpochDay();
+    }
+
+    long getCheckoutDay() {
+        return reservationDetails.getReservationsDates().getCheckoutDate().toEpochDay();
+    }
+
+    void offered(Hold hold) {
+        this.hold = hold;
+        this.status = Status.OFFERED;
+    }
+
+    void left() {
+        this.status = Status.LEFT;
+    }
+}
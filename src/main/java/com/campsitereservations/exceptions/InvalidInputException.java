@@ -2,7 +2,21 @@ package com.campsitereservations.exceptions;
 
 public class InvalidInputException extends Exception{
 
+    private final String reason;
+
     public InvalidInputException(String message) {
+        this("invalid-input", message);
+    }
+
+    /**
+     * The reason is a short fixed tag, such as "email" or "date-format", under which the rejection is counted.
+     */
+    public InvalidInputException(String reason, String message) {
         super(message);
+        this.reason = reason;
+    }
+
+    public String getReason() {
+        return reason;
     }
 }
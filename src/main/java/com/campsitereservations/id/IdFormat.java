@@ -0,0 +1,17 @@
+package com.campsitereservations.id;
+
+/**
+ * Shape of the ids handed out to new reservations. Selected with the {@code campsite.ids.format} property.
+ */
+public enum IdFormat {
+
+    /**
+     * 64-bit ids from a {@link SnowflakeIdGenerator}, ordered by creation time and written as 13 characters.
+     */
+    SNOWFLAKE,
+
+    /**
+     * Random version 4 UUIDs, as handed out before ids were pluggable.
+     */
+    UUID
+}
@@ -0,0 +1,15 @@
+package com.campsitereservations.id;
+
+import java.util.UUID;
+
+/**
+ * Random UUIDs. Every id draws 122 bits from the shared {@link java.security.SecureRandom}, which concurrent
+ * bookings contend on.
+ */
+public class RandomUuidIdGenerator implements ReservationIdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.campsitereservations.id;
+
+/**
+ * Hands out the ids of new reservations, holds and waitlist entries. Selected with the {@code campsite.ids.format}
+ * property; every id it returns must be unique across the nodes sharing a park.
+ */
+public interface ReservationIdGenerator {
+
+    /**
+     * Generator of node 0, for services built outside of Spring.
+     */
+    ReservationIdGenerator DEFAULT = new SnowflakeIdGenerator(0);
+
+    String nextId();
+}
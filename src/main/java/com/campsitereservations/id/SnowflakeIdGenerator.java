@@ -0,0 +1,112 @@
+package com.campsitereservations.id;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake ids: 41 bits of milliseconds since 2019, 10 bits of node and 12 bits of sequence within the
+ * millisecond, in a positive long. Ids of one node never repeat and always grow; ids of different nodes never meet.
+ *
+ * <p>The last timestamp and sequence share one {@link AtomicLong}, so taking an id is a single compare-and-set and
+ * no thread ever blocks. A node that hands out more than 4096 ids in a millisecond, or whose clock steps back,
+ * carries on from the last id into the following milliseconds until the clock catches up.
+ *
+ * <p>Ids are written as 13 characters of Crockford base32, most significant first, so they sort as text in the
+ * order they were created.
+ */
+public class SnowflakeIdGenerator implements ReservationIdGenerator {
+
+    public static final long EPOCH_MILLIS = 1546300800000L;
+    public static final int MAX_NODE_ID = 1023;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int digit = 0; digit < ALPHABET.length; digit++) {
+            DIGITS[ALPHABET[digit]] = (byte) digit;
+        }
+    }
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    // Timestamp and sequence of the last id, without the node.
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id should be between 0 and " + MAX_NODE_ID + " : " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        return encode(nextLongId());
+    }
+
+    /*
+        The first id of a millisecond starts its sequence at zero; any other is one past the last, which carries
+        into the next millisecond once the sequence is used up.
+     */
+    public long nextLongId() {
+
+        long first = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long timestampAndSequence = last.accumulateAndGet(first, (previous, start) -> Math.max(start, previous + 1));
+        return (timestampAndSequence >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                | nodeBits
+                | (timestampAndSequence & SEQUENCE_MASK);
+    }
+
+    public static String encode(long id) {
+
+        char[] encoded = new char[ENCODED_LENGTH];
+        for (int index = ENCODED_LENGTH - 1; index >= 0; index--) {
+            encoded[index] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(encoded);
+    }
+
+    /**
+     * Returns the id written by {@link #encode}, or null when the text is not one, so every id decoded prints back
+     * exactly as given.
+     */
+    public static Long decode(String encoded) {
+
+        if (encoded == null || encoded.length() != ENCODED_LENGTH) {
+            return null;
+        }
+        long id = 0;
+        for (int index = 0; index < ENCODED_LENGTH; index++) {
+            char character = encoded.charAt(index);
+            int digit = character < DIGITS.length ? DIGITS[character] : -1;
+            // The first character holds the top four bits only.
+            if (digit < 0 || index == 0 && digit > 15) {
+                return null;
+            }
+            id = id << 5 | digit;
+        }
+        return id;
+    }
+
+    public static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int nodeId(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+}
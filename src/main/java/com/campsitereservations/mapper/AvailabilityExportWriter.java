@@ -0,0 +1,106 @@
+package com.campsitereservations.mapper;
+
+import com.campsitereservations.db.AvailableRangeVisitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Writes free ranges as newline-delimited JSON, one {@code {"campsiteId":1,"fromDate":"2019-10-20",
+ * "toDate":"2019-10-22"}} line per range, straight into a fixed buffer that is drained to the stream whenever it
+ * fills. Nothing is kept per range, so an export of any size runs in the same memory.
+ */
+public class AvailabilityExportWriter implements AvailableRangeVisitor {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_LINE_LENGTH = 80;
+    private static final byte[] CAMPSITE_ID = ascii("{\"campsiteId\":");
+    private static final byte[] FROM_DATE = ascii(",\"fromDate\":\"");
+    private static final byte[] TO_DATE = ascii("\",\"toDate\":\"");
+    private static final byte[] LINE_END = ascii("\"}\n");
+
+    private final OutputStream outputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    public AvailabilityExportWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Appends one line. Stream failures are rethrown as {@link UncheckedIOException}, since the database drives
+     * the visit.
+     */
+    @Override
+    public void availableRange(int campsiteId, long fromDay, long toDay) {
+
+        if (position + MAX_LINE_LENGTH > buffer.length) {
+            drain();
+        }
+        put(CAMPSITE_ID);
+        putInt(campsiteId);
+        put(FROM_DATE);
+        putDate(fromDay);
+        put(TO_DATE);
+        putDate(toDay);
+        put(LINE_END);
+    }
+
+    public void flush() throws IOException {
+
+        outputStream.write(buffer, 0, position);
+        position = 0;
+        outputStream.flush();
+    }
+
+    private void drain() {
+        try {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    private void put(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void putInt(int value) {
+
+        int digits = 1;
+        for (int remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        putDigits(value, digits);
+    }
+
+    private void putDate(long epochDay) {
+
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        putDigits(date.getYear(), 4);
+        buffer[position++] = '-';
+        putDigits(date.getMonthValue(), 2);
+        buffer[position++] = '-';
+        putDigits(date.getDayOfMonth(), 2);
+    }
+
+    private void putDigits(int value, int digits) {
+
+        for (int index = position + digits - 1; index >= position; index--) {
+            buffer[index] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
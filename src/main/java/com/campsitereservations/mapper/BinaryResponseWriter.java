@@ -0,0 +1,328 @@
+package com.campsitereservations.mapper;
+
+import com.campsitereservations.contracts.AvailableDateRangeModel;
+import com.campsitereservations.contracts.AvailableDateRangesResponse;
+import com.campsitereservations.contracts.AvailableReservationDatesResponse;
+import com.campsitereservations.contracts.BatchReservationResponse;
+import com.campsitereservations.contracts.DeleteReservationResponse;
+import com.campsitereservations.contracts.ErrorDetails;
+import com.campsitereservations.contracts.HoldResponse;
+import com.campsitereservations.contracts.ReservationAddUpdateResponse;
+import com.campsitereservations.contracts.ReservationModel;
+import com.campsitereservations.contracts.ReservationsResponse;
+import com.campsitereservations.contracts.WaitlistResponse;
+import com.campsitereservations.util.DateUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes responses in the protobuf wire format: every field is a varint tag {@code field << 3 | type}
+ * followed by a varint (type 0) or by a varint length and that many bytes (type 2). Dates are epoch days,
+ * free days a bitmap from a base day, and the descriptive messages of the JSON responses are left out.
+ *
+ * <pre>
+ * Reservation                { 1 reservationId, 2 campsiteId, 3 firstName, 4 lastName, 5 email,
+ *                              6 checkinDay, 7 checkoutDay }
+ * AvailableDates             { 1 firstDay, 2 bitmap: bit n of byte n / 8 is set when firstDay + n is free }
+ * AvailableDateRanges        { 1 firstDay, 2 packed varints: per range its first day minus the last day of
+ *                              the previous range (firstDay for the first), then its last day minus its first }
+ * ReservationAddUpdate       { 1 Reservation }
+ * Reservations               { 1 repeated Reservation }
+ * BatchReservations          { 1 repeated ReservationAddUpdate }
+ * DeleteReservation          { }
+ * Hold                       { 1 Reservation, its id being the hold id, 2 expiresAt in epoch milliseconds }
+ * Waitlist                   { 1 waitlistId, 2 status, 3 Reservation, its id being the hold id once offered,
+ *                              4 holdExpiresAt in epoch milliseconds }
+ * </pre>
+ *
+ * Every response also has {@code 15 errorMessage} when it failed.
+ */
+public class BinaryResponseWriter {
+
+    public static final String MEDIA_TYPE = "application/x-campsite-binary";
+
+    private static final int VARINT = 0;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int ERROR_MESSAGE = 15;
+
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    public static boolean supports(Class<?> responseType) {
+        return responseType == AvailableReservationDatesResponse.class
+                || responseType == AvailableDateRangesResponse.class
+                || responseType == ReservationAddUpdateResponse.class
+                || responseType == ReservationsResponse.class
+                || responseType == BatchReservationResponse.class
+                || responseType == DeleteReservationResponse.class
+                || responseType == HoldResponse.class
+                || responseType == WaitlistResponse.class;
+    }
+
+    public static byte[] encode(Object response) {
+
+        BinaryResponseWriter writer = new BinaryResponseWriter();
+        if (response instanceof AvailableReservationDatesResponse) {
+            writer.availableDates((AvailableReservationDatesResponse) response);
+        } else if (response instanceof AvailableDateRangesResponse) {
+            writer.availableDateRanges((AvailableDateRangesResponse) response);
+        } else if (response instanceof ReservationAddUpdateResponse) {
+            writer.reservationAddUpdate((ReservationAddUpdateResponse) response);
+        } else if (response instanceof ReservationsResponse) {
+            writer.reservations((ReservationsResponse) response);
+        } else if (response instanceof BatchReservationResponse) {
+            writer.batchReservations((BatchReservationResponse) response);
+        } else if (response instanceof DeleteReservationResponse) {
+            writer.errorDetails(((DeleteReservationResponse) response).getErrorDetails());
+        } else if (response instanceof HoldResponse) {
+            writer.hold((HoldResponse) response);
+        } else if (response instanceof WaitlistResponse) {
+            writer.waitlist((WaitlistResponse) response);
+        } else {
+            throw new IllegalArgumentException("No binary encoding for " + response.getClass().getName());
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encodes available dates straight from a free-day bitmap as returned by the database, where bit {@code n} of
+     * word {@code n / 64} stands for {@code firstDay + n}.
+     */
+    public static byte[] encodeAvailableDates(long firstDay, long[] freeDays) {
+
+        BinaryResponseWriter writer = new BinaryResponseWriter();
+        writer.writeVarintField(1, firstDay);
+
+        int length = freeDays.length * 8;
+        while (length > 0 && (freeDays[(length - 1) >>> 3] >>> (((length - 1) & 7) << 3) & 0xFF) == 0) {
+            length--;
+        }
+        writer.writeTag(2, LENGTH_DELIMITED);
+        writer.writeVarint(length);
+        writer.ensureCapacity(length);
+        for (int index = 0; index < length; index++) {
+            writer.buffer[writer.position++] = (byte) (freeDays[index >>> 3] >>> ((index & 7) << 3));
+        }
+        return writer.toByteArray();
+    }
+
+    private void availableDates(AvailableReservationDatesResponse response) {
+
+        if (response.getAvailableDates() != null && !response.getAvailableDates().getDates().isEmpty()) {
+            List<String> dates = response.getAvailableDates().getDates();
+            long firstDay = epochDay(dates.get(0));
+            byte[] bitmap = new byte[(int) ((epochDay(dates.get(dates.size() - 1)) - firstDay) >>> 3) + 1];
+            for (String date : dates) {
+                long offset = epochDay(date) - firstDay;
+                bitmap[(int) (offset >>> 3)] |= (byte) (1 << (offset & 7));
+            }
+            writeVarintField(1, firstDay);
+            writeBytesField(2, bitmap, bitmap.length);
+        }
+        errorDetails(response.getErrorDetails());
+    }
+
+    private void availableDateRanges(AvailableDateRangesResponse response) {
+
+        List<AvailableDateRangeModel> ranges = response.getAvailableRanges();
+        if (ranges != null && !ranges.isEmpty()) {
+            long firstDay = epochDay(ranges.get(0).getFromDate());
+            writeVarintField(1, firstDay);
+
+            int start = beginMessage(2);
+            long previousDay = firstDay;
+            for (AvailableDateRangeModel range : ranges) {
+                long fromDay = epochDay(range.getFromDate());
+                long toDay = epochDay(range.getToDate());
+                writeVarint(fromDay - previousDay);
+                writeVarint(toDay - fromDay);
+                previousDay = toDay;
+            }
+            endMessage(start);
+        }
+        errorDetails(response.getErrorDetails());
+    }
+
+    private void reservationAddUpdate(ReservationAddUpdateResponse response) {
+
+        if (response.getReservationModel() != null) {
+            int start = beginMessage(1);
+            reservation(response.getReservationModel());
+            endMessage(start);
+        }
+        errorDetails(response.getErrorDetails());
+    }
+
+    private void hold(HoldResponse response) {
+
+        if (response.getReservationModel() != null) {
+            int start = beginMessage(1);
+            reservation(response.getReservationModel());
+            endMessage(start);
+        }
+        if (response.getExpiresAt() != null) {
+            writeVarintField(2, Instant.parse(response.getExpiresAt()).toEpochMilli());
+        }
+        errorDetails(response.getErrorDetails());
+    }
+
+    private void waitlist(WaitlistResponse response) {
+
+        writeStringField(1, response.getWaitlistId());
+        writeStringField(2, response.getStatus());
+        if (response.getReservationModel() != null) {
+            int start = beginMessage(3);
+            reservation(response.getReservationModel());
+            endMessage(start);
+        }
+        if (response.getHoldExpiresAt() != null) {
+            writeVarintField(4, Instant.parse(response.getHoldExpiresAt()).toEpochMilli());
+        }
+        errorDetails(response.getErrorDetails());
+    }
+
+    private void reservations(ReservationsResponse response) {
+
+        if (response.getReservations() != null) {
+            for (ReservationModel reservationModel : response.getReservations()) {
+                int start = beginMessage(1);
+                reservation(reservationModel);
+                endMessage(start);
+            }
+        }
+        errorDetails(response.getErrorDetails());
+    }
+
+    private void batchReservations(BatchReservationResponse response) {
+
+        if (response.getResults() != null) {
+            for (ReservationAddUpdateResponse result : response.getResults()) {
+                int start = beginMessage(1);
+                reservationAddUpdate(result);
+                endMessage(start);
+            }
+        }
+        errorDetails(response.getErrorDetails());
+    }
+
+    private void reservation(ReservationModel reservationModel) {
+
+        writeStringField(1, reservationModel.getReservationId());
+        if (reservationModel.getCampsiteId() != null) {
+            writeVarintField(2, reservationModel.getCampsiteId());
+        }
+        writeStringField(3, reservationModel.getFirstName());
+        writeStringField(4, reservationModel.getLastName());
+        writeStringField(5, reservationModel.getEmail());
+        if (reservationModel.getCheckinDate() != null) {
+            writeVarintField(6, epochDay(reservationModel.getCheckinDate()));
+        }
+        if (reservationModel.getCheckoutDate() != null) {
+            writeVarintField(7, epochDay(reservationModel.getCheckoutDate()));
+        }
+    }
+
+    private void errorDetails(ErrorDetails errorDetails) {
+        if (errorDetails != null) {
+            writeStringField(ERROR_MESSAGE, errorDetails.getErrorMessage());
+        }
+    }
+
+    /*
+        ASCII, which covers ids, dates and nearly every email, is copied char by char without an intermediate array.
+     */
+    private void writeStringField(int field, String value) {
+
+        if (value == null) {
+            return;
+        }
+        int length = value.length();
+        for (int index = 0; index < length; index++) {
+            if (value.charAt(index) >= 0x80) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeBytesField(field, bytes, bytes.length);
+                return;
+            }
+        }
+        writeTag(field, LENGTH_DELIMITED);
+        writeVarint(length);
+        ensureCapacity(length);
+        for (int index = 0; index < length; index++) {
+            buffer[position++] = (byte) value.charAt(index);
+        }
+    }
+
+    private void writeBytesField(int field, byte[] bytes, int length) {
+
+        writeTag(field, LENGTH_DELIMITED);
+        writeVarint(length);
+        ensureCapacity(length);
+        System.arraycopy(bytes, 0, buffer, position, length);
+        position += length;
+    }
+
+    private void writeVarintField(int field, long value) {
+        writeTag(field, VARINT);
+        writeVarint(value);
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeVarint(field << 3 | wireType);
+    }
+
+    private void writeVarint(long value) {
+
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /*
+        Embedded messages reserve one length byte and are shifted along in the rare case they need more.
+     */
+    private int beginMessage(int field) {
+
+        writeTag(field, LENGTH_DELIMITED);
+        ensureCapacity(1);
+        return ++position;
+    }
+
+    private void endMessage(int start) {
+
+        int length = position - start;
+        int lengthBytes = 1;
+        for (int remaining = length >>> 7; remaining != 0; remaining >>>= 7) {
+            lengthBytes++;
+        }
+        if (lengthBytes > 1) {
+            ensureCapacity(lengthBytes - 1);
+            System.arraycopy(buffer, start, buffer, start + lengthBytes - 1, length);
+        }
+        position = start - 1;
+        writeVarint(length);
+        position += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+
+    private byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private static long epochDay(String date) {
+
+        long epochDay = DateUtil.parseEpochDay(date);
+        return epochDay != DateUtil.INVALID_DATE ? epochDay : LocalDate.parse(date).toEpochDay();
+    }
+}
@@ -2,10 +2,14 @@ package com.campsitereservations.mapper;
 
 import com.campsitereservations.contracts.*;
 import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.Hold;
+import com.campsitereservations.db.WaitlistEntry;
 import com.campsitereservations.db.ReservationDetails;
 import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.db.Result;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Comparator;
 import java.util.List;
@@ -25,7 +29,7 @@ public class ReservationsMapper {
 
     public ReservationDetails mapToReservationDetails(String firstName, String lastName,
                                                       String email, String startDate, String endDate,
-                                                      String reservationId) {
+                                                      String reservationId, Integer campsiteId) {
 
         return ReservationDetails
                 .builder()
@@ -40,15 +44,70 @@ public class ReservationsMapper {
                                 .checkoutDate(LocalDate.parse(endDate))
                                 .build())
                 .reservationId(reservationId)
+                .campsiteId(campsiteId)
                 .build();
     }
 
+    public ReservationAddUpdateResponse mapToAddReservationResponse(Result<ReservationDetails> result) {
+        return result.isSuccess() ? mapToAddReservationResponse(result.getValue())
+                : mapToAddReservationFailedResponse(result.getMessage());
+    }
+
     public ReservationAddUpdateResponse mapToAddReservationExceptionResponse(Exception exception) {
+        return mapToAddReservationFailedResponse(exception.getMessage());
+    }
+
+    public ReservationAddUpdateResponse mapToAddReservationFailedResponse(String errorMessage) {
 
         return ReservationAddUpdateResponse
                 .builder()
                 .message("Campsite booking failed, Please check error details")
-                .errorDetails(ErrorDetails.builder().errorMessage(exception.getMessage()).build())
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
+                .build();
+    }
+
+    public BatchReservationResponse mapToBatchReservationResponse(List<ReservationAddUpdateResponse> results) {
+
+        long bookedCount = results.stream().filter(result -> result.getErrorDetails() == null).count();
+        return BatchReservationResponse
+                .builder()
+                .message(bookedCount + " of " + results.size() + " reservations booked")
+                .results(results)
+                .build();
+    }
+
+    public BatchReservationResponse mapToBatchReservationFailedResponse(Exception exception) {
+        return mapToBatchReservationFailedResponse(exception.getMessage());
+    }
+
+    public BatchReservationResponse mapToBatchReservationFailedResponse(String errorMessage) {
+
+        return BatchReservationResponse
+                .builder()
+                .message("Batch booking failed, Please check error details")
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
+                .build();
+    }
+
+    public ReservationsResponse mapToReservationsResponse(String search, List<ReservationDetails> reservations) {
+
+        return ReservationsResponse
+                .builder()
+                .message(reservations.size() + " reservations found for " + search)
+                .reservations(reservations.stream().map(this::mapToReservationModel).collect(Collectors.toList()))
+                .build();
+    }
+
+    public ReservationsResponse mapToReservationsFailedResponse(String search, Exception exception) {
+        return mapToReservationsFailedResponse(search, exception.getMessage());
+    }
+
+    public ReservationsResponse mapToReservationsFailedResponse(String search, String errorMessage) {
+
+        return ReservationsResponse
+                .builder()
+                .message("Failed to find reservations for " + search)
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
                 .build();
     }
 
@@ -61,14 +120,28 @@ public class ReservationsMapper {
                 .build();
     }
 
+    /**
+     * The updated reservation, or the requested one with the error details when the update failed.
+     */
+    public ReservationAddUpdateResponse mapToUpdateReservationResponse(ReservationDetails requestedReservation,
+                                                                       Result<ReservationDetails> result) {
+        return result.isSuccess() ? mapToUpdateReservationResponse(result.getValue())
+                : mapToUpdateFailedResponse(requestedReservation, result.getMessage());
+    }
+
     public ReservationAddUpdateResponse mapToUpdateExceptionResponse(ReservationDetails reservationDetails,
                                                                      Exception exception) {
+        return mapToUpdateFailedResponse(reservationDetails, exception.getMessage());
+    }
+
+    private ReservationAddUpdateResponse mapToUpdateFailedResponse(ReservationDetails reservationDetails,
+                                                                   String errorMessage) {
 
         return ReservationAddUpdateResponse
                 .builder()
                 .message("Campsite booking update failed")
                 .reservationModel(mapToReservationModel(reservationDetails))
-                .errorDetails(ErrorDetails.builder().errorMessage(exception.getMessage()).build())
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
                 .build();
     }
 
@@ -77,6 +150,7 @@ public class ReservationsMapper {
         return reservationDetails != null ? ReservationModel
                 .builder()
                 .reservationId(reservationDetails.getReservationId())
+                .campsiteId(reservationDetails.getCampsiteId())
                 .checkinDate(reservationDetails.getReservationsDates().getCheckinDate().toString())
                 .checkoutDate(reservationDetails.getReservationsDates().getCheckoutDate().toString())
                 .firstName(reservationDetails.getCustomer().getFirstName())
@@ -92,14 +166,128 @@ public class ReservationsMapper {
                 .build();
     }
 
+    public DeleteReservationResponse mapToDeleteReservationResponse(String reservationId, Result<Void> result) {
+        return result.isSuccess() ? mapToDeleteReservationResponse(reservationId)
+                : mapToDeleteReservationFailedResponse(reservationId, result.getMessage());
+    }
+
     public DeleteReservationResponse mapToDeleteReservationFailedResponse(String reservationId, Exception exception) {
+        return mapToDeleteReservationFailedResponse(reservationId, exception.getMessage());
+    }
+
+    private DeleteReservationResponse mapToDeleteReservationFailedResponse(String reservationId, String errorMessage) {
         return DeleteReservationResponse
                 .builder()
                 .message("Reservation cancellation failed for reservation id : " + reservationId)
-                .errorDetails(ErrorDetails.builder().errorMessage(exception.getMessage()).build())
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
+                .build();
+    }
+
+    public HoldResponse mapToHoldResponse(Result<Hold> result) {
+
+        if (!result.isSuccess()) {
+            return mapToHoldFailedResponse(result.getMessage());
+        }
+        Hold hold = result.getValue();
+        String expiresAt = Instant.ofEpochMilli(hold.getExpiresAtMillis()).toString();
+        return HoldResponse
+                .builder()
+                .message("Campsite held successfully until " + expiresAt + ". Hold Id : " + hold.getHoldId())
+                .holdId(hold.getHoldId())
+                .expiresAt(expiresAt)
+                .reservationModel(mapToReservationModel(hold.getReservationDetails()))
+                .build();
+    }
+
+    public HoldResponse mapToHoldExceptionResponse(Exception exception) {
+        return mapToHoldFailedResponse(exception.getMessage());
+    }
+
+    private HoldResponse mapToHoldFailedResponse(String errorMessage) {
+
+        return HoldResponse
+                .builder()
+                .message("Campsite hold failed, Please check error details")
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
                 .build();
     }
 
+    public HoldResponse mapToReleaseHoldResponse(String holdId, Result<Void> result) {
+
+        return result.isSuccess() ? HoldResponse
+                .builder()
+                .message("Hold released successfully for hold id : " + holdId)
+                .holdId(holdId)
+                .build()
+                : mapToReleaseHoldFailedResponse(holdId, result.getMessage());
+    }
+
+    public HoldResponse mapToReleaseHoldFailedResponse(String holdId, Exception exception) {
+        return mapToReleaseHoldFailedResponse(holdId, exception.getMessage());
+    }
+
+    private HoldResponse mapToReleaseHoldFailedResponse(String holdId, String errorMessage) {
+        return HoldResponse
+                .builder()
+                .message("Hold release failed for hold id : " + holdId)
+                .holdId(holdId)
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
+                .build();
+    }
+
+    /**
+     * The entry as it stands: still waiting, or offered a hold, whose id and expiry are then filled in.
+     */
+    public WaitlistResponse mapToWaitlistResponse(Result<WaitlistEntry> result) {
+
+        if (!result.isSuccess()) {
+            return mapToWaitlistFailedResponse(result.getMessage());
+        }
+        WaitlistEntry entry = result.getValue();
+        Hold hold = entry.getHold();
+        WaitlistResponse.WaitlistResponseBuilder response = WaitlistResponse
+                .builder()
+                .waitlistId(entry.getWaitlistId())
+                .status(entry.getStatus().name())
+                .reservationModel(mapToReservationModel(hold != null ? hold.getReservationDetails()
+                        : entry.getReservationDetails()));
+        if (entry.getStatus() == WaitlistEntry.Status.OFFERED) {
+            String expiresAt = Instant.ofEpochMilli(hold.getExpiresAtMillis()).toString();
+            return response
+                    .message("Campsite held for you until " + expiresAt + ". Confirm hold id : " + hold.getHoldId())
+                    .holdId(hold.getHoldId())
+                    .holdExpiresAt(expiresAt)
+                    .build();
+        }
+        return response
+                .message("On the waitlist. Waitlist Id : " + entry.getWaitlistId())
+                .build();
+    }
+
+    public WaitlistResponse mapToWaitlistExceptionResponse(Exception exception) {
+        return mapToWaitlistFailedResponse(exception.getMessage());
+    }
+
+    private WaitlistResponse mapToWaitlistFailedResponse(String errorMessage) {
+
+        return WaitlistResponse
+                .builder()
+                .message("Waitlist request failed, Please check error details")
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
+                .build();
+    }
+
+    public WaitlistResponse mapToLeaveWaitlistResponse(String waitlistId, Result<Void> result) {
+
+        return result.isSuccess() ? WaitlistResponse
+                .builder()
+                .message("Left the waitlist for waitlist id : " + waitlistId)
+                .waitlistId(waitlistId)
+                .status(WaitlistEntry.Status.LEFT.name())
+                .build()
+                : mapToWaitlistFailedResponse(result.getMessage());
+    }
+
     public AvailableReservationDatesResponse mapToAvailableReservationDatesResponse(String startDate,
                                                                                     String endDate,
                                                                                     List<LocalDate> dates) {
@@ -112,13 +300,49 @@ public class ReservationsMapper {
                 .build();
     }
 
+    public AvailableDateRangesResponse mapToAvailableDateRangesResponse(String startDate, String endDate,
+                                                                        List<ReservationsDates> ranges) {
+
+        List<AvailableDateRangeModel> availableRanges = ranges.stream()
+                .map(range -> AvailableDateRangeModel.builder()
+                        .fromDate(range.getCheckinDate().toString())
+                        .toDate(range.getCheckoutDate().toString())
+                        .build())
+                .collect(Collectors.toList());
+        return AvailableDateRangesResponse
+                .builder()
+                .message("Available date ranges for booking between " + startDate + " - " + endDate)
+                .availableRanges(availableRanges)
+                .build();
+    }
+
+    public AvailableDateRangesResponse mapToAvailableDateRangesFailedResponse(String startDate, String endDate,
+                                                                              Exception exception) {
+        return mapToAvailableDateRangesFailedResponse(startDate, endDate, exception.getMessage());
+    }
+
+    public AvailableDateRangesResponse mapToAvailableDateRangesFailedResponse(String startDate, String endDate,
+                                                                              String errorMessage) {
+
+        return AvailableDateRangesResponse
+                .builder()
+                .message("Failed to get date ranges for booking between " + startDate + " - " + endDate)
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
+                .build();
+    }
+
     public AvailableReservationDatesResponse mapToAvailableReservationDatesFailedResponse(
             String startDate, String endDate, Exception exception) {
+        return mapToAvailableReservationDatesFailedResponse(startDate, endDate, exception.getMessage());
+    }
+
+    public AvailableReservationDatesResponse mapToAvailableReservationDatesFailedResponse(
+            String startDate, String endDate, String errorMessage) {
 
         return AvailableReservationDatesResponse
                 .builder()
                 .message("Failed to get dates for booking between " + startDate + " - " + endDate)
-                .errorDetails(ErrorDetails.builder().errorMessage(exception.getMessage()).build())
+                .errorDetails(ErrorDetails.builder().errorMessage(errorMessage).build())
                 .build();
     }
 }
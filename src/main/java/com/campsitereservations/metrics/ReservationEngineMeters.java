@@ -0,0 +1,62 @@
+package com.campsitereservations.metrics;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Gauges and counters read from the engine when the registry is scraped: stored reservations, live holds, free
+ * campsite-days in the booking window and the available dates cache statistics. Nothing here runs on the request path.
+ * Not a {@code MeterBinder} bean: those are bound while the registry itself is created, before the database that
+ * records into the registry can exist.
+ */
+public class ReservationEngineMeters {
+
+    private final CampsiteInMemoryDatabase campsiteInMemoryDatabase;
+    private final AvailableDatesCache availableDatesCache;
+
+    public ReservationEngineMeters(CampsiteInMemoryDatabase campsiteInMemoryDatabase,
+                                   AvailableDatesCache availableDatesCache) {
+        this.campsiteInMemoryDatabase = campsiteInMemoryDatabase;
+        this.availableDatesCache = availableDatesCache;
+    }
+
+    public void bindTo(MeterRegistry meterRegistry) {
+
+        Gauge.builder("campsite.reservations", campsiteInMemoryDatabase, CampsiteInMemoryDatabase::getReservationCount)
+                .description("Reservations currently stored")
+                .register(meterRegistry);
+        Gauge.builder("campsite.available.days", campsiteInMemoryDatabase,
+                CampsiteInMemoryDatabase::getAvailableCampsiteDays)
+                .description("Free campsite-days left in the booking window")
+                .register(meterRegistry);
+        Gauge.builder("campsite.holds", campsiteInMemoryDatabase, CampsiteInMemoryDatabase::getHoldCount)
+                .description("Holds waiting to be confirmed, released or to expire")
+                .register(meterRegistry);
+
+        Gauge.builder("campsite.cache.size", availableDatesCache, AvailableDatesCache::size)
+                .description("Entries in the available dates cache")
+                .register(meterRegistry);
+        cacheCounter(meterRegistry, "hit", AvailableDatesCache::getHitCount);
+        cacheCounter(meterRegistry, "miss", AvailableDatesCache::getMissCount);
+        FunctionCounter.builder("campsite.cache.evictions", availableDatesCache, AvailableDatesCache::getEvictionCount)
+                .description("Available dates cache entries evicted to stay within the size limit")
+                .register(meterRegistry);
+        FunctionCounter.builder("campsite.cache.invalidations", availableDatesCache,
+                AvailableDatesCache::getInvalidationCount)
+                .description("Available dates cache entries dropped after a booking change")
+                .register(meterRegistry);
+    }
+
+    private void cacheCounter(MeterRegistry meterRegistry, String result,
+                              ToDoubleFunction<AvailableDatesCache> count) {
+        FunctionCounter.builder("campsite.cache.gets", availableDatesCache, count)
+                .description("Available dates cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
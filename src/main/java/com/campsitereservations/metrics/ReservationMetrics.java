@@ -0,0 +1,127 @@
+package com.campsitereservations.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the hot paths: request latency per operation, day lock wait and hold times, booking conflicts,
+ * validation rejections and expired holds. Every meter on a per-request path is registered up front, so recording
+ * is a clock read and a lock-free histogram update, without tag lookups.
+ */
+public class ReservationMetrics {
+
+    /**
+     * Records nothing; used where no registry is configured.
+     */
+    public static final ReservationMetrics NONE = new ReservationMetrics(new CompositeMeterRegistry());
+
+    public enum Operation {
+        AVAILABLE_DATES("available-dates"),
+        AVAILABLE_DATE_RANGES("available-date-ranges"),
+        AVAILABILITY_EXPORT("availability-export"),
+        ADD_RESERVATION("add-reservation"),
+        BATCH_RESERVATIONS("batch-reservations"),
+        CANCEL_RESERVATION("cancel-reservation"),
+        UPDATE_RESERVATION("update-reservation"),
+        RESERVATIONS_BY_EMAIL("reservations-by-email"),
+        RESERVATIONS_ON_DATE("reservations-on-date"),
+        PLACE_HOLD("place-hold"),
+        CONFIRM_HOLD("confirm-hold"),
+        RELEASE_HOLD("release-hold");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Operation, Timer> operationTimers = new EnumMap<>(Operation.class);
+    private final Timer lockWaitTimer;
+    private final Timer lockHoldTimer;
+    private final Counter datesTakenCounter;
+    private final Counter concurrentChangeCounter;
+    private final Counter expiredHoldsCounter;
+    private final Map<String, Counter> rejectionCounters = new ConcurrentHashMap<>();
+
+    public ReservationMetrics(MeterRegistry meterRegistry) {
+
+        this.meterRegistry = meterRegistry;
+        for (Operation operation : Operation.values()) {
+            operationTimers.put(operation, Timer.builder("campsite.operation")
+                    .description("Latency of reservation service operations")
+                    .tag("operation", operation.tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        lockWaitTimer = Timer.builder("campsite.lock.wait")
+                .description("Time spent waiting for the day locks of a booking")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        lockHoldTimer = Timer.builder("campsite.lock.hold")
+                .description("Time the day locks of a booking are held")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        datesTakenCounter = conflictCounter("dates-taken");
+        concurrentChangeCounter = conflictCounter("concurrent-change");
+        expiredHoldsCounter = Counter.builder("campsite.holds.expired")
+                .description("Holds that ran out before they were confirmed or released")
+                .register(meterRegistry);
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    public void operationCompleted(Operation operation, long startNanos) {
+        operationTimers.get(operation).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lockAcquired(long waitNanos) {
+        lockWaitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lockReleased(long holdNanos) {
+        lockHoldTimer.record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A booking or update found its dates taken.
+     */
+    public void datesTaken() {
+        datesTakenCounter.increment();
+    }
+
+    /**
+     * A cancel or update lost a race with another change to the same reservation.
+     */
+    public void concurrentChange() {
+        concurrentChangeCounter.increment();
+    }
+
+    public void holdExpired() {
+        expiredHoldsCounter.increment();
+    }
+
+    public void validationRejected(String reason) {
+        rejectionCounters.computeIfAbsent(reason, key -> Counter.builder("campsite.validation.rejections")
+                .description("Requests rejected by input validation")
+                .tag("reason", key)
+                .register(meterRegistry)).increment();
+    }
+
+    private Counter conflictCounter(String cause) {
+        return Counter.builder("campsite.booking.conflicts")
+                .description("Bookings and updates that lost their dates or raced another change")
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+}
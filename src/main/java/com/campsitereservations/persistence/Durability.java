@@ -0,0 +1,24 @@
+package com.campsitereservations.persistence;
+
+/**
+ * When a journalled change counts as saved. Selected with the {@code campsite.persistence.durability} property.
+ */
+public enum Durability {
+
+    /**
+     * Every change is written and forced to disk on its own before the request returns.
+     */
+    FSYNC_PER_OP,
+
+    /**
+     * Changes queued while the disk is busy are written together and share one force. Requests still only return
+     * once their change is on disk.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Requests return as soon as the change is queued. The log is forced in the background, so a crash can lose
+     * the last moments of bookings.
+     */
+    ASYNC
+}
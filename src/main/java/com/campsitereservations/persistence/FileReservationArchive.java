@@ -0,0 +1,56 @@
+package com.campsitereservations.persistence;
+
+import com.campsitereservations.db.ReservationDetails;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Appends completed reservations to {@code archive.log} as {@code [length][payload]} records, the payload being
+ * the {@link ReservationLogCodec} encoding of an add. Nothing reads the archive back on startup.
+ */
+public class FileReservationArchive implements ReservationArchive {
+
+    private static final String ARCHIVE_FILE = "archive.log";
+
+    private final FileOutputStream file;
+    private final DataOutputStream output;
+
+    public FileReservationArchive(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            file = new FileOutputStream(directory.resolve(ARCHIVE_FILE).toFile(), true);
+            output = new DataOutputStream(new BufferedOutputStream(file));
+        } catch (IOException ioException) {
+            throw new UncheckedIOException("Unable to open reservation archive in " + directory, ioException);
+        }
+    }
+
+    @Override
+    public synchronized void archive(ReservationDetails reservationDetails) {
+        try {
+            byte[] payload = ReservationLogCodec.encode(ReservationLogCodec.ADD, reservationDetails);
+            output.writeInt(payload.length);
+            output.write(payload);
+            output.flush();
+            file.getFD().sync();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException("Unable to archive reservation " + reservationDetails.getReservationId(),
+                    ioException);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            output.close();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.campsitereservations.persistence;
+
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationStore;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.id.SnowflakeIdGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Reservation store kept in memory-mapped files instead of on the heap.
+ *
+ * <p>Every reservation is a fixed-width record in {@code reservations.dat}: the id in 16 bytes, the campsite, the
+ * check-in and check-out epoch days and the offset of its customer in {@code customers.dat}. A UUID id fills all
+ * 16 bytes; a snowflake id fills the low 8 and leaves the high 8 zero, which no version 4 UUID does. Only the
+ * id-to-slot index lives on the heap, so opening the store maps the files and scans the records once instead of
+ * deserializing every reservation or customer.
+ *
+ * <p>Customers are deduplicated by a 64-bit hash of their encoded bytes, mapped to the offset of the entry with that
+ * hash; a match is confirmed against the bytes in the file, and a customer whose hash is taken by another is simply
+ * written again. The hashes are not rebuilt on startup, so a customer written before a restart is written once more
+ * the first time it books after it.
+ *
+ * <p>Records are never rewritten in place. An update writes a new record and moves the index entry over, so
+ * readers never see a half-written record, and the record's revision decides which copy wins if a crash leaves both
+ * behind. Slots freed by updates and cancels are only reused after the next restart.
+ */
+public class MappedReservationStore implements ReservationStore {
+
+    private static final String RECORD_FILE = "reservations.dat";
+    private static final String CUSTOMER_FILE = "customers.dat";
+
+    private static final int RECORD_BYTES = 48;
+    private static final int RECORDS_PER_CHUNK = 1 << 20;
+    private static final int CUSTOMER_CHUNK_BYTES = 16 << 20;
+    private static final int MAX_CUSTOMER_BYTES = 4096;
+    private static final int STRIPE_COUNT = 64;
+    private static final byte LIVE = 1;
+    private static final byte FREE = 0;
+
+    // Record layout
+    private static final int STATUS = 0;
+    private static final int CAMPSITE = 4;
+    private static final int ID_HIGH = 8;
+    private static final int ID_LOW = 16;
+    private static final int CHECKIN = 24;
+    private static final int CHECKOUT = 28;
+    private static final int CUSTOMER = 32;
+    private static final int REVISION = 40;
+
+    private final Path directory;
+    private final FileChannel recordChannel;
+    private final FileChannel customerChannel;
+    private final List<MappedByteBuffer> recordChunks = new CopyOnWriteArrayList<>();
+    private final List<MappedByteBuffer> customerChunks = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<UUID, Integer> index = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> customerOffsets = new ConcurrentHashMap<>();
+    // Decoding scratch space, so a read allocates only the strings it returns.
+    private final ThreadLocal<char[]> customerChars = ThreadLocal.withInitial(() -> new char[MAX_CUSTOMER_BYTES]);
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+    private final AtomicLong revision = new AtomicLong();
+
+    private final Object allocationLock = new Object();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private int nextSlot;
+    private long nextCustomerOffset;
+
+    public MappedReservationStore(Path directory) {
+
+        this.directory = directory;
+        for (int stripe = 0; stripe < STRIPE_COUNT; stripe++) {
+            stripes[stripe] = new ReentrantLock();
+        }
+
+        try {
+            Files.createDirectories(directory);
+            recordChannel = FileChannel.open(directory.resolve(RECORD_FILE), CREATE, READ, WRITE);
+            customerChannel = FileChannel.open(directory.resolve(CUSTOMER_FILE), CREATE, READ, WRITE);
+
+            long recordChunkBytes = (long) RECORD_BYTES * RECORDS_PER_CHUNK;
+            for (long position = 0; position < recordChannel.size(); position += recordChunkBytes) {
+                recordChunk(recordChunks.size());
+            }
+            for (long position = 0; position < customerChannel.size(); position += CUSTOMER_CHUNK_BYTES) {
+                customerChunk(customerChunks.size());
+            }
+
+            findCustomerTableEnd();
+            loadRecords();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException("Unable to open reservation store in " + directory, ioException);
+        }
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public ReservationDetails get(String reservationId) {
+
+        UUID id = parseId(reservationId);
+        Integer slot = id != null ? index.get(id) : null;
+        return slot != null ? readRecord(reservationId, slot) : null;
+    }
+
+    @Override
+    public void insert(ReservationDetails reservationDetails) {
+
+        UUID id = requireId(reservationDetails.getReservationId());
+        ReentrantLock stripe = stripeFor(id);
+        stripe.lock();
+        try {
+            Integer previousSlot = index.put(id, writeRecord(id, reservationDetails));
+            if (previousSlot != null) {
+                freeSlot(previousSlot);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public boolean replace(ReservationDetails expected, ReservationDetails replacement, Runnable onReplace) {
+
+        UUID id = parseId(expected.getReservationId());
+        if (id == null) {
+            return false;
+        }
+
+        ReentrantLock stripe = stripeFor(id);
+        stripe.lock();
+        try {
+            Integer slot = index.get(id);
+            if (slot == null || !expected.equals(readRecord(expected.getReservationId(), slot))) {
+                return false;
+            }
+
+            onReplace.run();
+            if (replacement != null) {
+                index.put(id, writeRecord(id, replacement));
+            } else {
+                index.remove(id);
+            }
+            freeSlot(slot);
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public Collection<ReservationDetails> values() {
+
+        List<ReservationDetails> reservations = new ArrayList<>(index.size());
+        for (Map.Entry<UUID, Integer> entry : index.entrySet()) {
+            reservations.add(readRecord(idString(entry.getKey()), entry.getValue()));
+        }
+        return reservations;
+    }
+
+    /**
+     * Forces both files to disk. Mapped writes survive a crash of the process without this, but not of the machine.
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : recordChunks) {
+            chunk.force();
+        }
+        for (MappedByteBuffer chunk : customerChunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() {
+
+        force();
+        try {
+            recordChannel.close();
+            customerChannel.close();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException("Unable to close reservation store in " + directory, ioException);
+        }
+    }
+
+    /*
+        The customer is written first, then every field of the record, and the status byte last, so a crash half
+        way through leaves a free slot rather than a broken reservation.
+     */
+    private int writeRecord(UUID id, ReservationDetails reservationDetails) {
+
+        long customerOffset = internCustomer(reservationDetails.getCustomer());
+        Integer campsiteId = reservationDetails.getCampsiteId();
+        ReservationsDates reservationsDates = reservationDetails.getReservationsDates();
+
+        int slot = allocateSlot();
+        ByteBuffer chunk = recordChunks.get(slot / RECORDS_PER_CHUNK);
+        int position = recordPosition(slot);
+
+        chunk.putInt(position + CAMPSITE, campsiteId != null ? campsiteId : 0);
+        chunk.putLong(position + ID_HIGH, id.getMostSignificantBits());
+        chunk.putLong(position + ID_LOW, id.getLeastSignificantBits());
+        chunk.putInt(position + CHECKIN, (int) reservationsDates.getCheckinDate().toEpochDay());
+        chunk.putInt(position + CHECKOUT, (int) reservationsDates.getCheckoutDate().toEpochDay());
+        chunk.putLong(position + CUSTOMER, customerOffset);
+        chunk.putLong(position + REVISION, revision.incrementAndGet());
+        chunk.put(position + STATUS, LIVE);
+        return slot;
+    }
+
+    private ReservationDetails readRecord(String reservationId, int slot) {
+
+        ByteBuffer chunk = recordChunks.get(slot / RECORDS_PER_CHUNK);
+        int position = recordPosition(slot);
+        int campsiteId = chunk.getInt(position + CAMPSITE);
+
+        return ReservationDetails
+                .builder()
+                .reservationId(reservationId)
+                .campsiteId(campsiteId != 0 ? campsiteId : null)
+                .customer(readCustomer(chunk.getLong(position + CUSTOMER)))
+                .reservationsDates(ReservationsDates
+                        .builder()
+                        .checkinDate(LocalDate.ofEpochDay(chunk.getInt(position + CHECKIN)))
+                        .checkoutDate(LocalDate.ofEpochDay(chunk.getInt(position + CHECKOUT)))
+                        .build())
+                .build();
+    }
+
+    private void freeSlot(int slot) {
+        recordChunks.get(slot / RECORDS_PER_CHUNK).put(recordPosition(slot) + STATUS, FREE);
+    }
+
+    private int allocateSlot() {
+
+        synchronized (allocationLock) {
+            Integer freeSlot = freeSlots.poll();
+            if (freeSlot != null) {
+                return freeSlot;
+            }
+            recordChunk(nextSlot / RECORDS_PER_CHUNK);
+            return nextSlot++;
+        }
+    }
+
+    private long internCustomer(Customer customer) {
+
+        byte[] entry = encodeCustomer(customer);
+        if (entry.length > MAX_CUSTOMER_BYTES) {
+            throw new IllegalArgumentException("Customer details are too long to store");
+        }
+
+        long offset = customerOffsets.computeIfAbsent(hash(entry), absent -> appendCustomer(entry));
+        return storedAt(offset, entry) ? offset : appendCustomer(entry);
+    }
+
+    /*
+        Entries are [length][first name][last name][email] and never straddle two chunks. When an entry does not fit
+        in what is left of a chunk, the rest of the chunk is skipped and its zero length tells readers to move on.
+     */
+    private long appendCustomer(byte[] entry) {
+
+        synchronized (allocationLock) {
+            int position = (int) (nextCustomerOffset % CUSTOMER_CHUNK_BYTES);
+            if (position + 2 + entry.length > CUSTOMER_CHUNK_BYTES) {
+                nextCustomerOffset += CUSTOMER_CHUNK_BYTES - position;
+            }
+
+            long offset = nextCustomerOffset;
+            ByteBuffer chunk = customerChunk((int) (offset / CUSTOMER_CHUNK_BYTES)).duplicate();
+            chunk.position((int) (offset % CUSTOMER_CHUNK_BYTES));
+            chunk.putShort((short) entry.length);
+            chunk.put(entry);
+
+            nextCustomerOffset += 2 + entry.length;
+            return offset;
+        }
+    }
+
+    private boolean storedAt(long offset, byte[] entry) {
+
+        ByteBuffer chunk = customerChunks.get((int) (offset / CUSTOMER_CHUNK_BYTES));
+        int position = (int) (offset % CUSTOMER_CHUNK_BYTES);
+        if ((chunk.getShort(position) & 0xffff) != entry.length) {
+            return false;
+        }
+        for (int index = 0; index < entry.length; index++) {
+            if (chunk.get(position + 2 + index) != entry[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Decodes the three strings straight from the mapped chunk; they were written by DataOutputStream.writeUTF,
+        so each is a length followed by modified UTF-8.
+     */
+    private Customer readCustomer(long offset) {
+
+        ByteBuffer chunk = customerChunks.get((int) (offset / CUSTOMER_CHUNK_BYTES));
+        int start = (int) (offset % CUSTOMER_CHUNK_BYTES) + 2;
+        int end = start + (chunk.getShort(start - 2) & 0xffff);
+        char[] chars = customerChars.get();
+
+        String[] fields = new String[3];
+        int position = start;
+        for (int field = 0; field < fields.length; field++) {
+            int fieldEnd = position + 2 + (chunk.getShort(position) & 0xffff);
+            if (fieldEnd > end) {
+                throw corruptCustomer(offset);
+            }
+            int length = 0;
+            for (position += 2; position < fieldEnd; length++) {
+                int first = chunk.get(position) & 0xff;
+                if (first < 0x80) {
+                    chars[length] = (char) first;
+                    position++;
+                } else if ((first & 0xe0) == 0xc0 && position + 1 < fieldEnd) {
+                    chars[length] = (char) (((first & 0x1f) << 6) | (chunk.get(position + 1) & 0x3f));
+                    position += 2;
+                } else if ((first & 0xf0) == 0xe0 && position + 2 < fieldEnd) {
+                    chars[length] = (char) (((first & 0x0f) << 12) | ((chunk.get(position + 1) & 0x3f) << 6)
+                            | (chunk.get(position + 2) & 0x3f));
+                    position += 3;
+                } else {
+                    throw corruptCustomer(offset);
+                }
+            }
+            fields[field] = new String(chars, 0, length);
+        }
+
+        return Customer
+                .builder()
+                .firstName(fields[0])
+                .lastName(fields[1])
+                .email(fields[2])
+                .build();
+    }
+
+    private static UncheckedIOException corruptCustomer(long offset) {
+        return new UncheckedIOException("Corrupt customer entry at offset " + offset, new UTFDataFormatException());
+    }
+
+    private static byte[] encodeCustomer(Customer customer) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeUTF(customer.getFirstName());
+            output.writeUTF(customer.getLastName());
+            output.writeUTF(customer.getEmail());
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+        return bytes.toByteArray();
+    }
+
+    // 64-bit FNV-1a.
+    private static long hash(byte[] entry) {
+
+        long hash = 0xcbf29ce484222325L;
+        for (byte value : entry) {
+            hash = (hash ^ (value & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /*
+        Walks the entry lengths to find where the next customer goes, without decoding any of them.
+     */
+    private void findCustomerTableEnd() {
+
+        long offset = 0;
+        while (offset / CUSTOMER_CHUNK_BYTES < customerChunks.size()) {
+            int position = (int) (offset % CUSTOMER_CHUNK_BYTES);
+            ByteBuffer chunk = customerChunks.get((int) (offset / CUSTOMER_CHUNK_BYTES));
+            int length = position + 2 <= CUSTOMER_CHUNK_BYTES ? chunk.getShort(position) & 0xffff : 0;
+
+            if (length == 0) {
+                // Either the unused tail of a chunk, or the end of the table.
+                long nextChunkOffset = offset - position + CUSTOMER_CHUNK_BYTES;
+                int nextChunk = (int) (nextChunkOffset / CUSTOMER_CHUNK_BYTES);
+                if (position == 0 || nextChunk >= customerChunks.size()
+                        || customerChunks.get(nextChunk).getShort(0) == 0) {
+                    break;
+                }
+                offset = nextChunkOffset;
+                continue;
+            }
+
+            offset += 2 + length;
+        }
+        nextCustomerOffset = offset;
+    }
+
+    /*
+        Rebuilds the id index from the live records. When a crash left both the old and the new record of an update
+        behind, the newer revision wins and the other slot is freed.
+     */
+    private void loadRecords() {
+
+        List<Integer> emptySlots = new ArrayList<>();
+        int slotCount = recordChunks.size() * RECORDS_PER_CHUNK;
+        int lastLiveSlot = -1;
+        long highestRevision = 0;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            ByteBuffer chunk = recordChunks.get(slot / RECORDS_PER_CHUNK);
+            int position = recordPosition(slot);
+
+            if (chunk.get(position + STATUS) != LIVE) {
+                emptySlots.add(slot);
+                continue;
+            }
+
+            lastLiveSlot = slot;
+            long slotRevision = chunk.getLong(position + REVISION);
+            highestRevision = Math.max(highestRevision, slotRevision);
+
+            UUID id = new UUID(chunk.getLong(position + ID_HIGH), chunk.getLong(position + ID_LOW));
+            Integer previousSlot = index.put(id, slot);
+            if (previousSlot != null) {
+                int staleSlot = revisionOf(previousSlot) > slotRevision ? slot : previousSlot;
+                index.put(id, staleSlot == slot ? previousSlot : slot);
+                freeSlot(staleSlot);
+                emptySlots.add(staleSlot);
+            }
+        }
+
+        nextSlot = lastLiveSlot + 1;
+        for (Integer slot : emptySlots) {
+            if (slot < nextSlot) {
+                freeSlots.add(slot);
+            }
+        }
+        revision.set(highestRevision);
+    }
+
+    private long revisionOf(int slot) {
+        return recordChunks.get(slot / RECORDS_PER_CHUNK).getLong(recordPosition(slot) + REVISION);
+    }
+
+    private static int recordPosition(int slot) {
+        return (slot % RECORDS_PER_CHUNK) * RECORD_BYTES;
+    }
+
+    private MappedByteBuffer recordChunk(int chunkIndex) {
+        return mapChunk(recordChannel, recordChunks, chunkIndex, (long) RECORD_BYTES * RECORDS_PER_CHUNK);
+    }
+
+    private MappedByteBuffer customerChunk(int chunkIndex) {
+        return mapChunk(customerChannel, customerChunks, chunkIndex, CUSTOMER_CHUNK_BYTES);
+    }
+
+    private MappedByteBuffer mapChunk(FileChannel channel, List<MappedByteBuffer> chunks, int chunkIndex,
+                                      long chunkBytes) {
+
+        while (chunks.size() <= chunkIndex) {
+            try {
+                chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, chunks.size() * chunkBytes, chunkBytes));
+            } catch (IOException ioException) {
+                throw new UncheckedIOException("Unable to grow reservation store in " + directory, ioException);
+            }
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private ReentrantLock stripeFor(UUID id) {
+        return stripes[(id.hashCode() & 0x7fffffff) % STRIPE_COUNT];
+    }
+
+    private static UUID requireId(String reservationId) {
+
+        UUID id = parseId(reservationId);
+        if (id == null) {
+            throw new IllegalArgumentException("Mapped reservation store needs snowflake or UUID reservation ids : " + reservationId);
+        }
+        return id;
+    }
+
+    /*
+        Only ids that print back exactly as given are accepted, since the store hands out idString() again.
+     */
+    private static UUID parseId(String reservationId) {
+
+        Long snowflakeId = SnowflakeIdGenerator.decode(reservationId);
+        if (snowflakeId != null) {
+            return new UUID(0, snowflakeId);
+        }
+        try {
+            UUID id = UUID.fromString(reservationId);
+            return id.getMostSignificantBits() != 0 && id.toString().equals(reservationId) ? id : null;
+        } catch (IllegalArgumentException illegalArgumentException) {
+            return null;
+        }
+    }
+
+    private static String idString(UUID id) {
+        return id.getMostSignificantBits() == 0 ? SnowflakeIdGenerator.encode(id.getLeastSignificantBits())
+                : id.toString();
+    }
+}
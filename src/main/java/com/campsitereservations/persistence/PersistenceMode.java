@@ -0,0 +1,20 @@
+package com.campsitereservations.persistence;
+
+public enum PersistenceMode {
+
+    /**
+     * Reservations live on the heap and are lost on restart.
+     */
+    NONE,
+
+    /**
+     * Reservations live on the heap; every change goes to the {@link WriteAheadLog} and is replayed on startup.
+     */
+    WAL,
+
+    /**
+     * Reservations live in the memory-mapped files of a {@link MappedReservationStore}, which are their own
+     * durable copy.
+     */
+    MAPPED
+}
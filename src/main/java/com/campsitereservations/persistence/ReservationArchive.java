@@ -0,0 +1,30 @@
+package com.campsitereservations.persistence;
+
+import com.campsitereservations.db.ReservationDetails;
+
+/**
+ * Keeps completed reservations once they leave the live reservation store.
+ */
+public interface ReservationArchive {
+
+    /**
+     * Archive that keeps nothing; used when persistence is switched off.
+     */
+    ReservationArchive NONE = new ReservationArchive() {
+
+        @Override
+        public void archive(ReservationDetails reservationDetails) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Stores the reservation durably before returning, so it can be dropped from the live store afterwards.
+     */
+    void archive(ReservationDetails reservationDetails);
+
+    void close();
+}
@@ -0,0 +1,69 @@
+package com.campsitereservations.persistence;
+
+import com.campsitereservations.db.ReservationDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Durable record of reservation changes. Every method returns a future that completes once the change is as
+ * durable as the configured {@link Durability} promises.
+ */
+public interface ReservationJournal {
+
+    CompletableFuture<Void> SAVED = CompletableFuture.completedFuture(null);
+
+    /**
+     * Journal that keeps nothing; used when persistence is switched off.
+     */
+    ReservationJournal NONE = new ReservationJournal() {
+
+        @Override
+        public CompletableFuture<Void> reservationAdded(ReservationDetails reservationDetails) {
+            return SAVED;
+        }
+
+        @Override
+        public CompletableFuture<Void> reservationUpdated(ReservationDetails reservationDetails) {
+            return SAVED;
+        }
+
+        @Override
+        public CompletableFuture<Void> reservationCancelled(String reservationId) {
+            return SAVED;
+        }
+
+        @Override
+        public Collection<ReservationDetails> recover() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void startSnapshots(Supplier<Collection<ReservationDetails>> reservations) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    CompletableFuture<Void> reservationAdded(ReservationDetails reservationDetails);
+
+    CompletableFuture<Void> reservationUpdated(ReservationDetails reservationDetails);
+
+    CompletableFuture<Void> reservationCancelled(String reservationId);
+
+    /**
+     * Rebuilds the reservations saved before the last shutdown or crash.
+     */
+    Collection<ReservationDetails> recover();
+
+    /**
+     * Starts taking periodic snapshots of the given reservations, which lets older log segments be dropped.
+     */
+    void startSnapshots(Supplier<Collection<ReservationDetails>> reservations);
+
+    void close();
+}
@@ -0,0 +1,110 @@
+package com.campsitereservations.persistence;
+
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Binary layout of a journalled change: a type byte, the reservation id, and for adds and updates the campsite,
+ * the dates as epoch days and the customer.
+ */
+public class ReservationLogCodec {
+
+    public static final byte ADD = 1;
+    public static final byte UPDATE = 2;
+    public static final byte CANCEL = 3;
+
+    private ReservationLogCodec() {
+    }
+
+    public static byte[] encode(byte type, ReservationDetails reservationDetails) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(type);
+            output.writeUTF(reservationDetails.getReservationId());
+            output.writeInt(reservationDetails.getCampsiteId() != null ? reservationDetails.getCampsiteId() : 0);
+            output.writeLong(reservationDetails.getReservationsDates().getCheckinDate().toEpochDay());
+            output.writeLong(reservationDetails.getReservationsDates().getCheckoutDate().toEpochDay());
+            output.writeUTF(reservationDetails.getCustomer().getFirstName());
+            output.writeUTF(reservationDetails.getCustomer().getLastName());
+            output.writeUTF(reservationDetails.getCustomer().getEmail());
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static byte[] encodeCancel(String reservationId) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(CANCEL);
+            output.writeUTF(reservationId);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Applies one encoded change to the reservations rebuilt so far. Replaying is last-writer-wins per
+     * reservation id, so applying a change twice or on top of a newer snapshot is harmless.
+     */
+    public static void apply(DataInput input, Map<String, ReservationDetails> reservations) throws IOException {
+
+        Change change = decode(input);
+        if (change.getReservationDetails() == null) {
+            reservations.remove(change.getReservationId());
+        } else {
+            reservations.put(change.getReservationId(), change.getReservationDetails());
+        }
+    }
+
+    public static Change decode(DataInput input) throws IOException {
+
+        byte type = input.readByte();
+        String reservationId = input.readUTF();
+
+        if (type == CANCEL) {
+            return new Change(type, reservationId, null);
+        }
+
+        int campsiteId = input.readInt();
+        LocalDate checkinDate = LocalDate.ofEpochDay(input.readLong());
+        LocalDate checkoutDate = LocalDate.ofEpochDay(input.readLong());
+        Customer customer = Customer.builder()
+                .firstName(input.readUTF())
+                .lastName(input.readUTF())
+                .email(input.readUTF())
+                .build();
+
+        return new Change(type, reservationId, ReservationDetails.builder()
+                .reservationId(reservationId)
+                .campsiteId(campsiteId != 0 ? campsiteId : null)
+                .customer(customer)
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate).checkoutDate(checkoutDate).build())
+                .build());
+    }
+
+    /**
+     * One decoded change: the reservation as added or updated, or none when it was cancelled.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Change {
+        private final byte type;
+        private final String reservationId;
+        private final ReservationDetails reservationDetails;
+    }
+}
@@ -0,0 +1,487 @@
+package com.campsitereservations.persistence;
+
+import com.campsitereservations.db.ReservationDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only binary log of reservation changes plus periodic snapshots.
+ *
+ * <p>Callers only encode and queue their change; a single writer thread drains the queue, frames each change as
+ * {@code [length][crc32][sequence][payload]} into a direct buffer and writes it through a {@link FileChannel}.
+ * How often the channel is forced depends on the {@link Durability}. A snapshot rolls the log over to a new
+ * segment, writes every live reservation to a temporary file and renames it into place; segments the snapshot
+ * makes redundant are then deleted. Recovery loads the snapshot and replays the remaining segments. A batch that
+ * fails to write is cut back off the segment, so the changes its callers take back are never replayed.
+ */
+public class WriteAheadLog implements ReservationJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int HEADER_BYTES = 16;
+    private static final int BUFFER_BYTES = 1024 * 1024;
+    private static final int MAX_BATCH = 4096;
+    private static final long ASYNC_FORCE_INTERVAL_MILLIS = 100;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int SNAPSHOT_MAGIC = 0x43534e50;
+
+    private final Path directory;
+    private final Durability durability;
+    private final long snapshotIntervalSeconds;
+
+    private final LinkedBlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CRC32 checksum = new CRC32();
+    private final Object segmentLock = new Object();
+
+    private FileChannel segment;
+    private int segmentNumber;
+    private long lastSequence;
+    // End of the last record acknowledged in the current segment, and its sequence.
+    private long committedPosition;
+    private long committedSequence;
+    private boolean unforcedWrites;
+    private long lastForceMillis;
+    private volatile boolean running;
+    private Thread writerThread;
+    private ScheduledExecutorService snapshotExecutor;
+
+    public WriteAheadLog(Path directory, Durability durability, long snapshotIntervalSeconds) {
+        this.directory = directory;
+        this.durability = durability;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    @Override
+    public CompletableFuture<Void> reservationAdded(ReservationDetails reservationDetails) {
+        return append(ReservationLogCodec.encode(ReservationLogCodec.ADD, reservationDetails));
+    }
+
+    @Override
+    public CompletableFuture<Void> reservationUpdated(ReservationDetails reservationDetails) {
+        return append(ReservationLogCodec.encode(ReservationLogCodec.UPDATE, reservationDetails));
+    }
+
+    @Override
+    public CompletableFuture<Void> reservationCancelled(String reservationId) {
+        return append(ReservationLogCodec.encodeCancel(reservationId));
+    }
+
+    private CompletableFuture<Void> append(byte[] payload) {
+
+        if (!running) {
+            throw new IllegalStateException("Write-ahead log is not open");
+        }
+
+        if (durability == Durability.ASYNC) {
+            pendingWrites.add(new PendingWrite(payload, null));
+            return SAVED;
+        }
+
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        pendingWrites.add(new PendingWrite(payload, saved));
+        return saved;
+    }
+
+    @Override
+    public Collection<ReservationDetails> recover() {
+
+        try {
+            Files.createDirectories(directory);
+
+            Map<String, ReservationDetails> reservations = new HashMap<>();
+            int replayFromSegment = readSnapshot(reservations);
+            List<Integer> segmentNumbers = listSegments();
+
+            for (int number : segmentNumbers) {
+                if (number >= replayFromSegment) {
+                    replaySegment(segmentPath(number), reservations);
+                }
+            }
+
+            // Never append to a segment that may end in a torn record; start a fresh one instead.
+            segmentNumber = segmentNumbers.isEmpty() ? replayFromSegment
+                    : Math.max(segmentNumbers.get(segmentNumbers.size() - 1) + 1, replayFromSegment);
+            segment = openSegment(segmentNumber);
+            committedPosition = 0;
+            committedSequence = lastSequence;
+
+            running = true;
+            writerThread = new Thread(this::writeLoop, "write-ahead-log");
+            writerThread.setDaemon(true);
+            writerThread.start();
+
+            return reservations.values();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException("Unable to recover reservations from " + directory, ioException);
+        }
+    }
+
+    @Override
+    public void startSnapshots(Supplier<Collection<ReservationDetails>> reservations) {
+
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        snapshotExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(reservations.get());
+            } catch (Exception exception) {
+                LOGGER.error("Reservation snapshot failed", exception);
+            }
+        }, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes a snapshot of the given reservations and drops the log segments it makes redundant.
+     *
+     * <p>The segment that was current when the snapshot started is kept and replayed on recovery: a change can be
+     * queued an instant before it becomes visible in the reservation map, so the snapshot may just miss it.
+     * Replay is last-writer-wins per reservation, so replaying changes the snapshot already has is harmless.
+     */
+    public void snapshot(Collection<ReservationDetails> reservations) throws IOException {
+
+        int replayFromSegment;
+        synchronized (segmentLock) {
+            replayFromSegment = segmentNumber;
+            force();
+            segment.close();
+            segmentNumber++;
+            segment = openSegment(segmentNumber);
+            committedPosition = 0;
+        }
+
+        Path temporaryFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, CREATE, WRITE, TRUNCATE_EXISTING);
+             DataOutputStream output = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(replayFromSegment);
+            for (ReservationDetails reservationDetails : reservations) {
+                byte[] payload = ReservationLogCodec.encode(ReservationLogCodec.ADD, reservationDetails);
+                output.writeInt(payload.length);
+                output.write(payload);
+            }
+            output.writeInt(0);
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, directory.resolve(SNAPSHOT_FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+
+        for (int number : listSegments()) {
+            if (number < replayFromSegment) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+        }
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        try {
+            writerThread.join();
+            synchronized (segmentLock) {
+                force();
+                segment.close();
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ioException) {
+            LOGGER.error("Unable to close write-ahead log", ioException);
+        }
+    }
+
+    private void writeLoop() {
+
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH);
+
+        while (running || !pendingWrites.isEmpty()) {
+            try {
+                PendingWrite first = pendingWrites.poll(ASYNC_FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pendingWrites.drainTo(batch, MAX_BATCH - 1);
+                }
+
+                synchronized (segmentLock) {
+                    writeBatch(batch);
+                    if (unforcedWrites && System.currentTimeMillis() - lastForceMillis >= ASYNC_FORCE_INTERVAL_MILLIS) {
+                        force();
+                    }
+                }
+                complete(batch, null);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                complete(batch, interruptedException);
+                return;
+            } catch (Exception exception) {
+                LOGGER.error("Unable to write to write-ahead log", exception);
+                synchronized (segmentLock) {
+                    discardUncommitted();
+                }
+                complete(batch, exception);
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) throws IOException {
+
+        for (PendingWrite pendingWrite : batch) {
+            byte[] payload = pendingWrite.payload;
+            if (buffer.remaining() < HEADER_BYTES + payload.length) {
+                flushBuffer();
+            }
+
+            checksum.reset();
+            checksum.update(payload, 0, payload.length);
+            buffer.putInt(payload.length).putInt((int) checksum.getValue()).putLong(++lastSequence).put(payload);
+
+            if (durability == Durability.FSYNC_PER_OP) {
+                flushBuffer();
+                force();
+                commit();
+                pendingWrite.complete(null);
+            }
+        }
+
+        flushBuffer();
+        if (durability == Durability.GROUP_COMMIT) {
+            force();
+        }
+        commit();
+    }
+
+    private void commit() throws IOException {
+        committedPosition = segment.position();
+        committedSequence = lastSequence;
+    }
+
+    /*
+        Drops what a failed write left in the buffer and cuts the segment back to the last acknowledged record, so
+        none of the changes whose callers were told they failed is replayed, and hands their sequences out again.
+        When the segment cannot be cut back either, later writes go to a fresh segment.
+     */
+    private void discardUncommitted() {
+
+        buffer.clear();
+        lastSequence = committedSequence;
+        unforcedWrites = true;
+        try {
+            segment.truncate(committedPosition);
+            segment.position(committedPosition);
+        } catch (IOException truncateFailure) {
+            LOGGER.error("Unable to cut back write-ahead log segment {}; rolling over", segmentNumber,
+                    truncateFailure);
+            try {
+                segment.close();
+            } catch (IOException closeFailure) {
+                truncateFailure.addSuppressed(closeFailure);
+            }
+            try {
+                segmentNumber++;
+                segment = openSegment(segmentNumber);
+                committedPosition = 0;
+            } catch (IOException openFailure) {
+                LOGGER.error("Unable to open write-ahead log segment {}", segmentNumber, openFailure);
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+            unforcedWrites = true;
+        }
+        buffer.clear();
+    }
+
+    private void force() throws IOException {
+
+        if (unforcedWrites) {
+            segment.force(false);
+            unforcedWrites = false;
+        }
+        lastForceMillis = System.currentTimeMillis();
+    }
+
+    private static void complete(List<PendingWrite> batch, Exception failure) {
+        for (PendingWrite pendingWrite : batch) {
+            pendingWrite.complete(failure);
+        }
+    }
+
+    private int readSnapshot(Map<String, ReservationDetails> reservations) throws IOException {
+
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+
+            if (input.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a reservation snapshot : " + snapshotFile);
+            }
+
+            int replayFromSegment = input.readInt();
+            byte[] payload = new byte[BUFFER_BYTES];
+            int length;
+            while ((length = input.readInt()) > 0) {
+                input.readFully(payload, 0, length);
+                ReservationLogCodec.apply(new DataInputStream(new ByteArrayInputStream(payload, 0, length)),
+                        reservations);
+            }
+            return replayFromSegment;
+        }
+    }
+
+    /*
+        Replays a segment up to its first incomplete or corrupt record. Anything after that was torn by a crash
+        and was never acknowledged, so it is cut off.
+     */
+    private void replaySegment(Path segmentFile, Map<String, ReservationDetails> reservations) throws IOException {
+
+        long validBytes = 0;
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(segmentFile), 1 << 16))) {
+
+            byte[] payload = new byte[BUFFER_BYTES];
+            while (true) {
+                int length;
+                int expectedChecksum;
+                long sequence;
+                try {
+                    length = input.readInt();
+                    if (length <= 0 || length > BUFFER_BYTES - HEADER_BYTES) {
+                        break;
+                    }
+                    expectedChecksum = input.readInt();
+                    sequence = input.readLong();
+                    input.readFully(payload, 0, length);
+                } catch (EOFException eofException) {
+                    break;
+                }
+
+                checksum.reset();
+                checksum.update(payload, 0, length);
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    break;
+                }
+
+                ReservationLogCodec.apply(new DataInputStream(new ByteArrayInputStream(payload, 0, length)),
+                        reservations);
+                lastSequence = Math.max(lastSequence, sequence);
+                validBytes += HEADER_BYTES + length;
+            }
+        }
+
+        if (validBytes < Files.size(segmentFile)) {
+            LOGGER.warn("Truncating torn tail of {} at {} bytes", segmentFile, validBytes);
+            try (FileChannel channel = FileChannel.open(segmentFile, WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+    }
+
+    private List<Integer> listSegments() throws IOException {
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        return openChannel(segmentPath(number));
+    }
+
+    /**
+     * Opens a segment file for writing, emptied. Tests override it to fail writes the way a full disk would.
+     */
+    protected FileChannel openChannel(Path segmentFile) throws IOException {
+        return FileChannel.open(segmentFile, CREATE, WRITE, TRUNCATE_EXISTING);
+    }
+
+    private static class PendingWrite {
+
+        private final byte[] payload;
+        private final CompletableFuture<Void> saved;
+
+        private PendingWrite(byte[] payload, CompletableFuture<Void> saved) {
+            this.payload = payload;
+            this.saved = saved;
+        }
+
+        private void complete(Exception failure) {
+            if (saved == null) {
+                return;
+            }
+            if (failure == null) {
+                saved.complete(null);
+            } else {
+                saved.completeExceptionally(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.campsitereservations.replication;
+
+/**
+ * What a follower promises about the reads it serves. Selected with the
+ * {@code campsite.replication.read-consistency} property.
+ */
+public enum ReadConsistency {
+
+    /**
+     * Reads carrying the {@value ReplicationNode#POSITION_HEADER} header a write on the primary returned wait until
+     * the follower has applied that write; other reads are served at once from whatever has been applied.
+     */
+    READ_YOUR_WRITES,
+
+    /**
+     * As READ_YOUR_WRITES, and besides every read waits until the follower is no more than
+     * {@code campsite.replication.max-staleness-millis} behind the primary.
+     */
+    BOUNDED_STALENESS
+}
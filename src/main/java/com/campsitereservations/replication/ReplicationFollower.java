@@ -0,0 +1,241 @@
+package com.campsitereservations.replication;
+
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.persistence.ReservationLogCodec;
+import com.campsitereservations.replication.ReplicationProtocol.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follower side of replication. A single thread connects to the primary, applies its changes to the local
+ * database in sequence order and reconnects when the connection drops, resuming from the last change applied.
+ * A full copy sent by the primary is applied only once it has arrived whole, so the local reservations always
+ * match the primary's at some sequence.
+ *
+ * <p>The follower is current as of the primary's time of the last change or heartbeat it processed; staleness is
+ * how long ago that was by the local clock, so it assumes the two clocks agree, as NTP keeps them to within a few
+ * milliseconds. While connected and idle, heartbeats keep the staleness under about 50 milliseconds.
+ */
+public class ReplicationFollower implements ReplicationNode {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationFollower.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+    private static final int READ_TIMEOUT_MILLIS = 5_000;
+    private static final long RECONNECT_MILLIS = 500;
+
+    private final CampsiteInMemoryDatabase campsiteInMemoryDatabase;
+    private final String primaryHost;
+    private final int primaryPort;
+    private final ReadConsistency readConsistency;
+    private final long maxStalenessMillis;
+    private final long readTimeoutMillis;
+
+    private final Object progress = new Object();
+    private volatile long epoch;
+    private volatile long position;
+    private volatile long currentAsOfMillis;
+    private volatile boolean running;
+    private volatile Socket socket;
+    private Thread thread;
+
+    // Touched by the replication thread alone.
+    private List<ReservationDetails> snapshot;
+    private boolean connected;
+
+    public ReplicationFollower(CampsiteInMemoryDatabase campsiteInMemoryDatabase, String primaryHost,
+                               int primaryPort, ReadConsistency readConsistency, long maxStalenessMillis,
+                               long readTimeoutMillis) {
+        this.campsiteInMemoryDatabase = campsiteInMemoryDatabase;
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+        this.readConsistency = readConsistency;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Turns the database into a read-only replica and starts following the primary.
+     */
+    public void start() {
+
+        campsiteInMemoryDatabase.startReplicating();
+        running = true;
+        thread = new Thread(this::follow, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close() {
+
+        running = false;
+        closeSocket();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Milliseconds since the moment on the primary this follower is current as of.
+     */
+    public long getStalenessMillis() {
+        return currentAsOfMillis == 0 ? Long.MAX_VALUE : Math.max(System.currentTimeMillis() - currentAsOfMillis, 0);
+    }
+
+    @Override
+    public boolean isReadable(Long minimumPosition) {
+        return (minimumPosition == null || position >= minimumPosition)
+                && (readConsistency != ReadConsistency.BOUNDED_STALENESS || getStalenessMillis() <= maxStalenessMillis);
+    }
+
+    @Override
+    public Result<Void> awaitReadable(Long minimumPosition) {
+
+        long deadline = System.currentTimeMillis() + readTimeoutMillis;
+        synchronized (progress) {
+            while (!isReadable(minimumPosition)) {
+                long waitMillis = deadline - System.currentTimeMillis();
+                if (waitMillis <= 0) {
+                    return behind(minimumPosition);
+                }
+                try {
+                    progress.wait(waitMillis);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return behind(minimumPosition);
+                }
+            }
+        }
+        return Result.success();
+    }
+
+    private Result<Void> behind(Long minimumPosition) {
+
+        long appliedPosition = position;
+        if (minimumPosition != null && appliedPosition < minimumPosition) {
+            return Result.failure(FailureReason.REPLICA_BEHIND, "Replica is at position " + appliedPosition
+                    + " and has not reached position " + minimumPosition + " yet. Please try again");
+        }
+        long stalenessMillis = getStalenessMillis();
+        return Result.failure(FailureReason.REPLICA_BEHIND, (stalenessMillis == Long.MAX_VALUE
+                ? "Replica has not copied the primary yet"
+                : "Replica is " + stalenessMillis + " ms behind the primary, more than the " + maxStalenessMillis
+                + " ms allowed") + ". Please try again");
+    }
+
+    private void follow() {
+
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(new InetSocketAddress(primaryHost, primaryPort), CONNECT_TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                connection.setSoTimeout(READ_TIMEOUT_MILLIS);
+
+                DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(connection.getOutputStream()));
+                output.writeInt(ReplicationProtocol.MAGIC);
+                output.writeLong(epoch);
+                output.writeLong(position);
+                output.flush();
+
+                DataInputStream input = new DataInputStream(
+                        new BufferedInputStream(connection.getInputStream(), 1 << 16));
+                LOGGER.info("Following primary {}:{} from position {}", primaryHost, primaryPort, position);
+                connected = true;
+                while (running) {
+                    receive(ReplicationProtocol.readFrame(input));
+                }
+            } catch (IOException ioException) {
+                if (running && connected) {
+                    LOGGER.warn("Lost primary {}:{} at position {}: {}", primaryHost, primaryPort, position,
+                            ioException.getMessage());
+                }
+            } catch (RuntimeException runtimeException) {
+                LOGGER.error("Unable to apply change from primary at position {}", position, runtimeException);
+            } finally {
+                connected = false;
+                snapshot = null;
+                socket = null;
+            }
+            pause();
+        }
+    }
+
+    private void receive(Frame frame) throws IOException {
+
+        switch (frame.type()) {
+            case ReplicationProtocol.HEARTBEAT:
+                advance(position, frame.primaryMillis);
+                break;
+            case ReplicationProtocol.SNAPSHOT_START:
+                snapshot = new ArrayList<>();
+                break;
+            case ReplicationProtocol.SNAPSHOT_END:
+                campsiteInMemoryDatabase.loadReplicated(snapshot);
+                LOGGER.info("Copied {} reservations from primary at position {}", snapshot.size(), frame.sequence);
+                snapshot = null;
+                epoch = ReplicationProtocol.controlValue(frame.payload);
+                advance(frame.sequence, frame.primaryMillis);
+                break;
+            default:
+                ReservationLogCodec.Change change = ReservationLogCodec.decode(
+                        new DataInputStream(new ByteArrayInputStream(frame.payload)));
+                if (snapshot != null) {
+                    snapshot.add(change.getReservationDetails());
+                } else if (frame.sequence > position) {
+                    campsiteInMemoryDatabase.applyReplicated(change.getReservationId(),
+                            change.getReservationDetails());
+                    advance(frame.sequence, frame.primaryMillis);
+                }
+        }
+    }
+
+    private void advance(long appliedPosition, long primaryMillis) {
+        synchronized (progress) {
+            position = appliedPosition;
+            currentAsOfMillis = primaryMillis;
+            progress.notifyAll();
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RECONNECT_MILLIS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void closeSocket() {
+
+        Socket connection = socket;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException ioException) {
+                LOGGER.debug("Unable to close connection to primary", ioException);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.campsitereservations.replication;
+
+import com.campsitereservations.db.Result;
+
+/**
+ * This node's place in the stream of changes the primary hands out, numbered from one. Every response carries the
+ * position in the {@value #POSITION_HEADER} header, and reads sending it back wait until the node has got there.
+ */
+public interface ReplicationNode {
+
+    String POSITION_HEADER = "X-Replication-Position";
+
+    /**
+     * A node that replicates nothing and can always be read.
+     */
+    ReplicationNode NONE = new ReplicationNode() {
+
+        @Override
+        public long getPosition() {
+            return 0;
+        }
+
+        @Override
+        public boolean isReadable(Long minimumPosition) {
+            return true;
+        }
+
+        @Override
+        public Result<Void> awaitReadable(Long minimumPosition) {
+            return Result.success();
+        }
+    };
+
+    /**
+     * On the primary the last change handed out; on a follower the last one applied.
+     */
+    long getPosition();
+
+    /**
+     * True when a read may be served straight away: the node has reached the given position, if any, and is as
+     * fresh as its {@link ReadConsistency} asks.
+     */
+    boolean isReadable(Long minimumPosition);
+
+    /**
+     * Waits, for a bounded time, until {@link #isReadable} holds. Fails with
+     * {@link com.campsitereservations.db.FailureReason#REPLICA_BEHIND} when it does not in time.
+     */
+    Result<Void> awaitReadable(Long minimumPosition);
+}
@@ -0,0 +1,334 @@
+package com.campsitereservations.replication;
+
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.persistence.ReservationJournal;
+import com.campsitereservations.persistence.ReservationLogCodec;
+import com.campsitereservations.replication.ReplicationProtocol.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Primary side of replication, in front of the durable journal. The database journals every add, update and cancel
+ * inside the step that commits it, under the day locks of its dates, so the order in which changes reach the
+ * journal is one the calendars allow: a day is always freed before it is booked again. Here each change is given
+ * the next sequence number in that order and queued to every connected follower, which applies them in turn.
+ *
+ * <p>Alongside, the primary keeps a map of the reservations as of the last sequence, and the most recent changes.
+ * A follower that connects behind is sent the changes it missed, or, when they are no longer kept or it copied
+ * from an earlier run of the primary, the map, cut at one sequence. Every follower has a thread and a queue of its
+ * own; one that falls too far behind is disconnected and catches up from scratch, so a slow follower never holds
+ * up bookings.
+ */
+public class ReplicationPrimary implements ReservationJournal, ReplicationNode {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationPrimary.class);
+
+    private static final int BACKLOG_FRAMES = 1 << 16;
+    private static final int MAX_QUEUED_FRAMES = 1 << 16;
+    private static final long HEARTBEAT_MILLIS = 50;
+
+    private final ReservationJournal reservationJournal;
+    private final int port;
+    // Tells a follower whether what it copied came from this run of the primary, whose sequence started at zero.
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final Object sequenceLock = new Object();
+    private final Map<String, ReservationDetails> replicated = new HashMap<>();
+    private final ArrayDeque<Frame> backlog = new ArrayDeque<>();
+    private final List<FollowerLink> followers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile long position;
+    private ServerSocket serverSocket;
+
+    public ReplicationPrimary(ReservationJournal reservationJournal, int port) {
+        this.reservationJournal = reservationJournal;
+        this.port = port;
+    }
+
+    @Override
+    public CompletableFuture<Void> reservationAdded(ReservationDetails reservationDetails) {
+        CompletableFuture<Void> saved = reservationJournal.reservationAdded(reservationDetails);
+        publish(ReservationLogCodec.encode(ReservationLogCodec.ADD, reservationDetails),
+                reservationDetails.getReservationId(), reservationDetails);
+        return saved;
+    }
+
+    @Override
+    public CompletableFuture<Void> reservationUpdated(ReservationDetails reservationDetails) {
+        CompletableFuture<Void> saved = reservationJournal.reservationUpdated(reservationDetails);
+        publish(ReservationLogCodec.encode(ReservationLogCodec.UPDATE, reservationDetails),
+                reservationDetails.getReservationId(), reservationDetails);
+        return saved;
+    }
+
+    @Override
+    public CompletableFuture<Void> reservationCancelled(String reservationId) {
+        CompletableFuture<Void> saved = reservationJournal.reservationCancelled(reservationId);
+        publish(ReservationLogCodec.encodeCancel(reservationId), reservationId, null);
+        return saved;
+    }
+
+    @Override
+    public Collection<ReservationDetails> recover() {
+        return reservationJournal.recover();
+    }
+
+    /**
+     * Called once the database has loaded its reservations and before it takes any booking, which makes them the
+     * state at sequence zero. Starts listening for followers.
+     */
+    @Override
+    public void startSnapshots(Supplier<Collection<ReservationDetails>> reservations) {
+
+        reservationJournal.startSnapshots(reservations);
+        synchronized (sequenceLock) {
+            for (ReservationDetails reservationDetails : reservations.get()) {
+                replicated.put(reservationDetails.getReservationId(), reservationDetails);
+            }
+        }
+
+        try {
+            serverSocket = new ServerSocket(port);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException("Unable to listen for replication followers on port " + port,
+                    ioException);
+        }
+        Thread acceptor = new Thread(this::acceptFollowers, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOGGER.info("Replicating to followers on port {}", serverSocket.getLocalPort());
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean isReadable(Long minimumPosition) {
+        return true;
+    }
+
+    @Override
+    public Result<Void> awaitReadable(Long minimumPosition) {
+        return Result.success();
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    @Override
+    public void close() {
+
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ioException) {
+            LOGGER.warn("Unable to stop listening for replication followers", ioException);
+        }
+        for (FollowerLink follower : followers) {
+            follower.disconnect();
+        }
+        reservationJournal.close();
+    }
+
+    private void publish(byte[] payload, String reservationId, ReservationDetails reservationDetails) {
+
+        synchronized (sequenceLock) {
+            Frame frame = new Frame(position + 1, System.currentTimeMillis(), payload);
+            if (reservationDetails != null) {
+                replicated.put(reservationId, reservationDetails);
+            } else {
+                replicated.remove(reservationId);
+            }
+            backlog.addLast(frame);
+            if (backlog.size() > BACKLOG_FRAMES) {
+                backlog.removeFirst();
+            }
+            for (FollowerLink follower : followers) {
+                follower.queue(frame);
+            }
+            position = frame.sequence;
+        }
+    }
+
+    private void acceptFollowers() {
+
+        while (!closed.get()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread thread = new Thread(new FollowerLink(socket), "replication-to-"
+                        + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException ioException) {
+                if (!closed.get()) {
+                    LOGGER.warn("Unable to accept replication follower", ioException);
+                }
+            }
+        }
+    }
+
+    private final class FollowerLink implements Runnable {
+
+        private final Socket socket;
+        private final LinkedBlockingQueue<Frame> queue = new LinkedBlockingQueue<>();
+        private volatile boolean overflowed;
+
+        // What the follower is sent before the queue: the changes it missed, or a copy of every reservation.
+        private List<Frame> missed;
+        private List<ReservationDetails> snapshot;
+        private long snapshotSequence;
+
+        private FollowerLink(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+
+            try (Socket connection = socket) {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+                if (input.readInt() != ReplicationProtocol.MAGIC) {
+                    throw new IOException("Not a replication follower");
+                }
+                long followerEpoch = input.readLong();
+                long followerPosition = input.readLong();
+
+                register(followerEpoch, followerPosition);
+                long sentSequence = catchUp(output, followerPosition);
+                LOGGER.info("Follower {} connected at position {}", connection.getRemoteSocketAddress(),
+                        sentSequence);
+
+                while (!overflowed && !closed.get()) {
+                    Frame frame = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (frame == null) {
+                        ReplicationProtocol.writeFrame(output, new Frame(sentSequence, System.currentTimeMillis(),
+                                ReplicationProtocol.control(ReplicationProtocol.HEARTBEAT, 0)));
+                    }
+                    for (; frame != null; frame = queue.poll()) {
+                        ReplicationProtocol.writeFrame(output, frame);
+                        sentSequence = frame.sequence;
+                    }
+                    output.flush();
+                }
+                if (overflowed) {
+                    LOGGER.warn("Disconnecting follower {}, more than {} changes behind",
+                            connection.getRemoteSocketAddress(), MAX_QUEUED_FRAMES);
+                }
+            } catch (IOException ioException) {
+                LOGGER.info("Follower {} disconnected: {}", socket.getRemoteSocketAddress(),
+                        ioException.getMessage());
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            } finally {
+                followers.remove(this);
+            }
+        }
+
+        /*
+            Cut under the sequence lock, so the follower gets every change after what it is sent first exactly once.
+         */
+        private void register(long followerEpoch, long followerPosition) {
+
+            synchronized (sequenceLock) {
+                Frame oldest = backlog.peekFirst();
+                boolean resumable = followerEpoch == epoch && followerPosition <= position
+                        && (followerPosition == position || oldest != null && oldest.sequence <= followerPosition + 1);
+                if (resumable) {
+                    missed = new ArrayList<>();
+                    for (Frame frame : backlog) {
+                        if (frame.sequence > followerPosition) {
+                            missed.add(frame);
+                        }
+                    }
+                } else {
+                    snapshot = new ArrayList<>(replicated.values());
+                    snapshotSequence = position;
+                }
+                followers.add(this);
+            }
+        }
+
+        private long catchUp(DataOutputStream output, long followerPosition) throws IOException {
+
+            if (snapshot == null) {
+                long sentSequence = followerPosition;
+                for (Frame frame : missed) {
+                    ReplicationProtocol.writeFrame(output, frame);
+                    sentSequence = frame.sequence;
+                }
+                missed = null;
+                output.flush();
+                return sentSequence;
+            }
+
+            long now = System.currentTimeMillis();
+            ReplicationProtocol.writeFrame(output, new Frame(snapshotSequence, now,
+                    ReplicationProtocol.control(ReplicationProtocol.SNAPSHOT_START, epoch)));
+            for (ReservationDetails reservationDetails : snapshot) {
+                ReplicationProtocol.writeFrame(output, new Frame(snapshotSequence, now,
+                        ReservationLogCodec.encode(ReservationLogCodec.ADD, reservationDetails)));
+            }
+            ReplicationProtocol.writeFrame(output, new Frame(snapshotSequence, now,
+                    ReplicationProtocol.control(ReplicationProtocol.SNAPSHOT_END, epoch)));
+            snapshot = null;
+            output.flush();
+            return snapshotSequence;
+        }
+
+        /*
+            Called under the sequence lock.
+         */
+        private void queue(Frame frame) {
+
+            if (overflowed) {
+                return;
+            }
+            if (queue.size() >= MAX_QUEUED_FRAMES) {
+                overflowed = true;
+                queue.clear();
+                return;
+            }
+            queue.add(frame);
+        }
+
+        private void disconnect() {
+            try {
+                socket.close();
+            } catch (IOException ioException) {
+                LOGGER.debug("Unable to close follower connection", ioException);
+            }
+        }
+    }
+}
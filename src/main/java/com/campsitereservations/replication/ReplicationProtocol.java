@@ -0,0 +1,81 @@
+package com.campsitereservations.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format between primary and followers. A follower opens the connection with {@code [magic][epoch][position]}:
+ * the primary run it last copied from and the last change it applied. The primary then sends frames of
+ * {@code [length][sequence][primary millis][payload]}, the payload being a change as encoded by
+ * {@link com.campsitereservations.persistence.ReservationLogCodec} or one of the control messages below. Frames
+ * come in sequence order; the primary millis is when the primary sequenced the change, or sent the message.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x43535250;
+
+    /**
+     * Nothing new since the sequence of the frame.
+     */
+    static final byte HEARTBEAT = 16;
+
+    /**
+     * A full copy of the reservations at the sequence of the frame follows, as ADD changes. The payload carries the
+     * epoch of the primary.
+     */
+    static final byte SNAPSHOT_START = 17;
+
+    static final byte SNAPSHOT_END = 18;
+
+    static final int MAX_PAYLOAD_BYTES = 1 << 20;
+
+    private ReplicationProtocol() {
+    }
+
+    static byte[] control(byte type, long value) {
+        return ByteBuffer.allocate(9).put(type).putLong(value).array();
+    }
+
+    static long controlValue(byte[] payload) {
+        return ByteBuffer.wrap(payload, 1, 8).getLong();
+    }
+
+    static void writeFrame(DataOutputStream output, Frame frame) throws IOException {
+        output.writeInt(frame.payload.length);
+        output.writeLong(frame.sequence);
+        output.writeLong(frame.primaryMillis);
+        output.write(frame.payload);
+    }
+
+    static Frame readFrame(DataInputStream input) throws IOException {
+
+        int length = input.readInt();
+        if (length <= 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Corrupt replication frame of " + length + " bytes");
+        }
+        long sequence = input.readLong();
+        long primaryMillis = input.readLong();
+        byte[] payload = new byte[length];
+        input.readFully(payload);
+        return new Frame(sequence, primaryMillis, payload);
+    }
+
+    static final class Frame {
+
+        final long sequence;
+        final long primaryMillis;
+        final byte[] payload;
+
+        Frame(long sequence, long primaryMillis, byte[] payload) {
+            this.sequence = sequence;
+            this.primaryMillis = primaryMillis;
+            this.payload = payload;
+        }
+
+        byte type() {
+            return payload[0];
+        }
+    }
+}
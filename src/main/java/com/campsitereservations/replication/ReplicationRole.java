@@ -0,0 +1,23 @@
+package com.campsitereservations.replication;
+
+/**
+ * Part this node plays in replication. Selected with the {@code campsite.replication.role} property.
+ */
+public enum ReplicationRole {
+
+    /**
+     * A single node; nothing is replicated.
+     */
+    NONE,
+
+    /**
+     * Takes every booking and streams each committed change to the followers connected to
+     * {@code campsite.replication.port}.
+     */
+    PRIMARY,
+
+    /**
+     * Copies the primary's reservations and serves reads from them. Bookings, updates and cancels are turned away.
+     */
+    FOLLOWER
+}
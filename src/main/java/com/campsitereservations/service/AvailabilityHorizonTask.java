@@ -0,0 +1,43 @@
+package com.campsitereservations.service;
+
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Waitlist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Moves the booking window forward every midnight, by as many days as have passed since it last moved, and drops
+ * waitlist entries for the days it left behind.
+ */
+@Component
+public class AvailabilityHorizonTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AvailabilityHorizonTask.class);
+
+    private final CampsiteInMemoryDatabase campsiteInMemoryDatabase;
+    private final Waitlist waitlist;
+
+    @Autowired
+    public AvailabilityHorizonTask(CampsiteInMemoryDatabase campsiteInMemoryDatabase, Waitlist waitlist) {
+        this.campsiteInMemoryDatabase = campsiteInMemoryDatabase;
+        this.waitlist = waitlist;
+    }
+
+    @Scheduled(cron = "${campsite.horizon.cron:0 0 0 * * *}")
+    public void advanceHorizon() {
+
+        LocalDate today = LocalDate.now();
+        if (!today.isAfter(campsiteInMemoryDatabase.getHorizonFirstDate())) {
+            return;
+        }
+        int archived = campsiteInMemoryDatabase.advanceHorizon(today);
+        int dropped = waitlist.dropBefore(today);
+        LOGGER.info("Booking window now starts on {}; {} completed reservations archived, {} waitlist entries dropped",
+                today, archived, dropped);
+    }
+}
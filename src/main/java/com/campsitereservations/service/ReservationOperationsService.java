@@ -1,154 +1,559 @@
 package com.campsitereservations.service;
 
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.contracts.AvailableDateRangesResponse;
 import com.campsitereservations.contracts.AvailableReservationDatesResponse;
+import com.campsitereservations.contracts.BatchReservationItem;
+import com.campsitereservations.contracts.BatchReservationRequest;
+import com.campsitereservations.contracts.BatchReservationResponse;
 import com.campsitereservations.contracts.DeleteReservationResponse;
+import com.campsitereservations.contracts.HoldResponse;
 import com.campsitereservations.contracts.ReservationAddUpdateResponse;
+import com.campsitereservations.contracts.ReservationsResponse;
+import com.campsitereservations.db.BatchMode;
+import com.campsitereservations.db.BatchReservationResult;
 import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.Hold;
 import com.campsitereservations.db.ReservationDetails;
 import com.campsitereservations.db.ReservationsDates;
-import com.campsitereservations.exceptions.InvalidInputException;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.id.ReservationIdGenerator;
+import com.campsitereservations.mapper.AvailabilityExportWriter;
+import com.campsitereservations.mapper.BinaryResponseWriter;
 import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.metrics.ReservationMetrics;
+import com.campsitereservations.metrics.ReservationMetrics.Operation;
+import com.campsitereservations.util.DateUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static com.campsitereservations.util.DateUtil.isEqualOrAfter;
-import static com.campsitereservations.util.DateUtil.isEqualOrBefore;
-import static com.campsitereservations.validation.FieldsValidator.validInputFields;
+import static com.campsitereservations.validation.FieldsValidator.checkInputFields;
 import static com.campsitereservations.validation.FieldsValidator.validString;
 
 @Service
 public class ReservationOperationsService {
 
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final String DATE_FORMAT_MESSAGE = "Invalid date format. Valid date format is yyyy-MM-dd";
+    private static final int PARALLEL_VALIDATION_THRESHOLD = 16;
+    private static final long DEFAULT_HOLD_TTL_SECONDS = 600;
+    private static final long MAX_HOLD_TTL_SECONDS = 1800;
+
     private CampsiteInMemoryDatabase campsiteInMemoryDatabase;
     private ReservationsMapper reservationsMapper;
+    private AvailableDatesCache availableDatesCache;
+    private ObjectMapper objectMapper;
+    private ReservationMetrics reservationMetrics;
+    private ReservationIdGenerator reservationIdGenerator;
+
+    public ReservationOperationsService(CampsiteInMemoryDatabase campsiteInMemoryDatabase,
+                                        ReservationsMapper reservationsMapper,
+                                        AvailableDatesCache availableDatesCache,
+                                        ObjectMapper objectMapper) {
+        this(campsiteInMemoryDatabase, reservationsMapper, availableDatesCache, objectMapper,
+                ReservationMetrics.NONE);
+    }
+
+    public ReservationOperationsService(CampsiteInMemoryDatabase campsiteInMemoryDatabase,
+                                        ReservationsMapper reservationsMapper,
+                                        AvailableDatesCache availableDatesCache,
+                                        ObjectMapper objectMapper,
+                                        ReservationMetrics reservationMetrics) {
+        this(campsiteInMemoryDatabase, reservationsMapper, availableDatesCache, objectMapper, reservationMetrics,
+                ReservationIdGenerator.DEFAULT);
+    }
 
     @Autowired
     public ReservationOperationsService(CampsiteInMemoryDatabase campsiteInMemoryDatabase,
-                                        ReservationsMapper reservationsMapper) {
+                                        ReservationsMapper reservationsMapper,
+                                        AvailableDatesCache availableDatesCache,
+                                        ObjectMapper objectMapper,
+                                        ReservationMetrics reservationMetrics,
+                                        ReservationIdGenerator reservationIdGenerator) {
         this.campsiteInMemoryDatabase = campsiteInMemoryDatabase;
         this.reservationsMapper = reservationsMapper;
+        this.availableDatesCache = availableDatesCache;
+        this.objectMapper = objectMapper;
+        this.reservationMetrics = reservationMetrics;
+        this.reservationIdGenerator = reservationIdGenerator;
     }
 
-    public AvailableReservationDatesResponse getAvailableDates(String startDate, String endDate) {
+    public AvailableReservationDatesResponse getAvailableDates(String startDate, String endDate, Integer campsiteId) {
+        long startNanos = System.nanoTime();
         try {
-            ReservationsDates reservationsDates = validateAndAdjustDates(startDate, endDate);
-            List<LocalDate> campsiteAvailability = campsiteInMemoryDatabase
-                    .getCampsiteAvailability(reservationsDates.getCheckinDate(), reservationsDates.getCheckoutDate());
-            return reservationsMapper.mapToAvailableReservationDatesResponse(reservationsDates.getCheckinDate().toString(),
-                    reservationsDates.getCheckoutDate().toString(), campsiteAvailability);
+            Result<ReservationsDates> searchDates = checkSearchDates(startDate, endDate);
+            if (!searchDates.isSuccess()) {
+                rejected(searchDates);
+                return reservationsMapper.mapToAvailableReservationDatesFailedResponse(startDate, endDate,
+                        searchDates.getMessage());
+            }
+            return availableDatesOf(searchDates.getValue(), campsiteId);
 
         } catch (Exception exception) {
             return reservationsMapper.mapToAvailableReservationDatesFailedResponse(startDate, endDate, exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.AVAILABLE_DATES, startNanos);
+        }
+    }
+
+    /**
+     * Same response as {@link #getAvailableDates(String, String, Integer)}, serialized to JSON. Successful
+     * responses are served from the {@link AvailableDatesCache} until a booking changes one of their days.
+     */
+    public byte[] getAvailableDatesJson(String startDate, String endDate, Integer campsiteId) {
+        long startNanos = System.nanoTime();
+        try {
+            Result<ReservationsDates> searchDates = checkSearchDates(startDate, endDate);
+            if (!searchDates.isSuccess()) {
+                rejected(searchDates);
+                return toJson(reservationsMapper.mapToAvailableReservationDatesFailedResponse(startDate, endDate,
+                        searchDates.getMessage()));
+            }
+            ReservationsDates reservationsDates = searchDates.getValue();
+            LocalDate checkinDate = reservationsDates.getCheckinDate();
+            LocalDate checkoutDate = reservationsDates.getCheckoutDate();
+
+            byte[] cachedResponse = availableDatesCache.get(checkinDate, checkoutDate, campsiteId);
+            if (cachedResponse != null) {
+                return cachedResponse;
+            }
+
+            // Read the generation before the calendar, so a booking in between keeps this response out of the cache.
+            long generation = availableDatesCache.generation(campsiteId);
+            byte[] response = toJson(availableDatesOf(reservationsDates, campsiteId));
+            availableDatesCache.put(checkinDate, checkoutDate, campsiteId, response, generation);
+            return response;
+
+        } catch (Exception exception) {
+            return toJson(reservationsMapper.mapToAvailableReservationDatesFailedResponse(startDate, endDate, exception));
+        } finally {
+            reservationMetrics.operationCompleted(Operation.AVAILABLE_DATES, startNanos);
         }
     }
 
-    private ReservationsDates validateAndAdjustDates(String startDate, String endDate) throws Exception{
+    /**
+     * Same dates as {@link #getAvailableDatesJson(String, String, Integer)} in the binary format of
+     * {@link BinaryResponseWriter}, encoded from the free-day bitmap of the requested window.
+     */
+    public byte[] getAvailableDatesBinary(String startDate, String endDate, Integer campsiteId) {
+        long startNanos = System.nanoTime();
+        try {
+            Result<ReservationsDates> searchDates = checkSearchDates(startDate, endDate);
+            if (!searchDates.isSuccess()) {
+                rejected(searchDates);
+                return BinaryResponseWriter.encode(reservationsMapper.mapToAvailableReservationDatesFailedResponse(
+                        startDate, endDate, searchDates.getMessage()));
+            }
+            ReservationsDates reservationsDates = searchDates.getValue();
+            long[] freeDays = campsiteInMemoryDatabase.getCampsiteAvailabilityBitmap(
+                    reservationsDates.getCheckinDate(), reservationsDates.getCheckoutDate(), campsiteId);
+            return BinaryResponseWriter.encodeAvailableDates(reservationsDates.getCheckinDate().toEpochDay(),
+                    freeDays);
 
+        } catch (Exception exception) {
+            return BinaryResponseWriter.encode(
+                    reservationsMapper.mapToAvailableReservationDatesFailedResponse(startDate, endDate, exception));
+        } finally {
+            reservationMetrics.operationCompleted(Operation.AVAILABLE_DATES, startNanos);
+        }
+    }
 
-        LocalDate startLocalDate = validString(startDate) ? LocalDate.parse(startDate) : LocalDate.now();
-        LocalDate endLocalDate = validString(endDate) ? LocalDate.parse(endDate) : LocalDate.now().plusDays(32);
+    /**
+     * Same dates as {@link #getAvailableDates(String, String, Integer)}, as ranges of consecutive free days.
+     */
+    public AvailableDateRangesResponse getAvailableDateRanges(String startDate, String endDate, Integer campsiteId) {
+        long startNanos = System.nanoTime();
+        try {
+            Result<ReservationsDates> searchDates = checkSearchDates(startDate, endDate);
+            if (!searchDates.isSuccess()) {
+                rejected(searchDates);
+                return reservationsMapper.mapToAvailableDateRangesFailedResponse(startDate, endDate,
+                        searchDates.getMessage());
+            }
+            ReservationsDates reservationsDates = searchDates.getValue();
+            List<ReservationsDates> availableRanges = campsiteInMemoryDatabase.getCampsiteAvailableRanges(
+                    reservationsDates.getCheckinDate(), reservationsDates.getCheckoutDate(), campsiteId);
+            return reservationsMapper.mapToAvailableDateRangesResponse(reservationsDates.getCheckinDate().toString(),
+                    reservationsDates.getCheckoutDate().toString(), availableRanges);
+
+        } catch (Exception exception) {
+            return reservationsMapper.mapToAvailableDateRangesFailedResponse(startDate, endDate, exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.AVAILABLE_DATE_RANGES, startNanos);
+        }
+    }
+
+    /**
+     * ETag of the binary available-dates response, which differs from the JSON one for the same availability.
+     */
+    public String getAvailableDatesBinaryETag(Integer campsiteId) {
+
+        String eTag = getAvailableDatesETag(campsiteId);
+        return eTag != null ? eTag.substring(0, eTag.length() - 1) + "-binary\"" : null;
+    }
+
+    /**
+     * Checks an availability export before anything is streamed and returns the dates it covers. Missing dates
+     * default as for available-dates.
+     */
+    public Result<ReservationsDates> validateAvailabilityExport(String startDate, String endDate,
+                                                               Integer campsiteId) {
+
+        Result<ReservationsDates> searchDates = checkSearchDates(startDate, endDate);
+        if (searchDates.isSuccess() && campsiteId != null
+                && (campsiteId < 1 || campsiteId > campsiteInMemoryDatabase.getCampsiteCount())) {
+            return Result.failure(FailureReason.UNKNOWN_CAMPSITE, "No campsite found with campsite id " + campsiteId);
+        }
+        return searchDates;
+    }
+
+    /**
+     * JSON body of a rejected availability export, the same as available-date-ranges answers.
+     */
+    public byte[] availabilityExportFailedJson(String startDate, String endDate, Result<?> failure) {
+        rejected(failure);
+        return toJson(reservationsMapper.mapToAvailableDateRangesFailedResponse(startDate, endDate,
+                failure.getMessage()));
+    }
+
+    /**
+     * Streams the free ranges of the given campsite, or of every campsite, as they are read from the
+     * availability snapshots. See {@link AvailabilityExportWriter} for the format.
+     */
+    public void exportAvailability(ReservationsDates exportDates, Integer campsiteId, OutputStream outputStream)
+            throws IOException {
+
+        long startNanos = System.nanoTime();
+        AvailabilityExportWriter availabilityExportWriter = new AvailabilityExportWriter(outputStream);
+        try {
+            campsiteInMemoryDatabase.visitAvailableRanges(exportDates.getCheckinDate(), exportDates.getCheckoutDate(),
+                    campsiteId, availabilityExportWriter);
+            availabilityExportWriter.flush();
+        } catch (UncheckedIOException uncheckedIOException) {
+            throw uncheckedIOException.getCause();
+        } finally {
+            reservationMetrics.operationCompleted(Operation.AVAILABILITY_EXPORT, startNanos);
+        }
+    }
+
+    public int getCampsiteCount() {
+        return campsiteInMemoryDatabase.getCampsiteCount();
+    }
+
+    /**
+     * ETag of the available-dates response for the campsite, or for any campsite when no id is given. It is built
+     * from the availability snapshot version and today's date, since default and past dates move at midnight.
+     * Returns null when there is no such campsite.
+     */
+    public String getAvailableDatesETag(Integer campsiteId) {
+        try {
+            return "\"" + campsiteInMemoryDatabase.getAvailabilityVersion(campsiteId) + "-"
+                    + LocalDate.now().toEpochDay() + "\"";
+        } catch (Exception exception) {
+            return null;
+        }
+    }
+
+    private AvailableReservationDatesResponse availableDatesOf(ReservationsDates reservationsDates, Integer campsiteId) {
+
+        List<LocalDate> campsiteAvailability = campsiteInMemoryDatabase
+                .getCampsiteAvailability(reservationsDates.getCheckinDate(), reservationsDates.getCheckoutDate(),
+                        campsiteId);
+        return reservationsMapper.mapToAvailableReservationDatesResponse(reservationsDates.getCheckinDate().toString(),
+                reservationsDates.getCheckoutDate().toString(), campsiteAvailability);
+    }
+
+    private byte[] toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException jsonProcessingException) {
+            throw new RuntimeException("Exception while writing available dates");
+        }
+    }
+
+    /*
+        Dates of an availability search. A missing checkin defaults to today and a missing checkout to 32 days on.
+     */
+    private Result<ReservationsDates> checkSearchDates(String startDate, String endDate) {
+
+        long today = LocalDate.now().toEpochDay();
+        long startDay = validString(startDate) ? DateUtil.parseEpochDay(startDate) : today;
+        long endDay = validString(endDate) ? DateUtil.parseEpochDay(endDate) : today + 32;
+        if (startDay == DateUtil.INVALID_DATE || endDay == DateUtil.INVALID_DATE) {
+            return Result.failure(FailureReason.DATE_FORMAT, DATE_FORMAT_MESSAGE);
+        }
 
         String errorMessage = null;
 
-        if (startLocalDate.isBefore(LocalDate.now())) {
+        if (startDay < today) {
             errorMessage = "Checkin date should be a future date ";
-        } else if (startLocalDate.isAfter(endLocalDate)) {
+        } else if (startDay > endDay) {
             errorMessage = "Checkin date should be before checkout date ";
-        } else if (endLocalDate.isBefore(LocalDate.now())) {
+        } else if (endDay < today) {
             errorMessage = "Checkout date should be a future date ";
-        } else if (endLocalDate.isBefore(startLocalDate)) {
+        } else if (endDay < startDay) {
             errorMessage = "Checkout date should be after checkin date ";
         }
 
         if (!StringUtils.isEmpty(errorMessage)) {
-            throw new InvalidInputException(errorMessage);
+            return Result.failure(FailureReason.SEARCH_DATES, errorMessage);
         }
 
-        return ReservationsDates.builder().checkinDate(startLocalDate).checkoutDate(endLocalDate).build();
+        return Result.success(ReservationsDates.builder().checkinDate(LocalDate.ofEpochDay(startDay))
+                .checkoutDate(LocalDate.ofEpochDay(endDay)).build());
     }
 
     public ReservationAddUpdateResponse addReservation(String firstName, String lastName, String email,
-                                                       String startDate, String endDate) {
+                                                       String startDate, String endDate, Integer campsiteId) {
 
+        long startNanos = System.nanoTime();
         try {
 
-            validInputFields(firstName, lastName, email, startDate, endDate);
-            ReservationDetails reservationDetails = reservationsMapper
-                    .mapToReservationDetails(firstName, lastName, email, startDate, endDate, getReservationUniqueId());
-            campsiteInMemoryDatabase.addReservation(reservationDetails);
-            return reservationsMapper.mapToAddReservationResponse(reservationDetails);
+            Result<Void> validation = checkInputFields(firstName, lastName, email, startDate, endDate);
+            Result<ReservationDetails> booked = validation.isSuccess()
+                    ? campsiteInMemoryDatabase.tryAddReservation(reservationsMapper.mapToReservationDetails(
+                            firstName, lastName, email, startDate, endDate, getReservationUniqueId(), campsiteId))
+                    : validation.asFailure();
+            rejected(booked);
+            return reservationsMapper.mapToAddReservationResponse(booked);
         } catch (Exception exception) {
             return reservationsMapper.mapToAddReservationExceptionResponse(exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.ADD_RESERVATION, startNanos);
+        }
+    }
+
+    /**
+     * Validates every reservation of the batch, in parallel for large batches, and books the valid ones in one
+     * database call. In ALL_OR_NOTHING mode, the default, a single invalid reservation rejects the whole batch.
+     */
+    public BatchReservationResponse addReservations(BatchReservationRequest batchReservationRequest) {
+
+        long startNanos = System.nanoTime();
+        try {
+            List<BatchReservationItem> items = batchReservationRequest.getReservations();
+            if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+                Result<Void> batchSize = Result.failure(FailureReason.BATCH_SIZE, "A batch should hold between 1 and "
+                        + MAX_BATCH_SIZE + " reservations");
+                rejected(batchSize);
+                return reservationsMapper.mapToBatchReservationFailedResponse(batchSize.getMessage());
+            }
+            BatchMode batchMode = batchReservationRequest.getBatchMode() != null
+                    ? batchReservationRequest.getBatchMode() : BatchMode.ALL_OR_NOTHING;
+
+            ReservationDetails[] reservations = new ReservationDetails[items.size()];
+            Result<?>[] failures = new Result<?>[items.size()];
+            IntStream indexes = IntStream.range(0, items.size());
+            if (items.size() >= PARALLEL_VALIDATION_THRESHOLD) {
+                indexes = indexes.parallel();
+            }
+            indexes.forEach(index -> {
+                BatchReservationItem item = items.get(index);
+                Result<Void> validation = checkInputFields(item.getFirstName(), item.getLastName(), item.getEmail(),
+                        item.getCheckinDate(), item.getCheckoutDate());
+                if (validation.isSuccess()) {
+                    reservations[index] = reservationsMapper.mapToReservationDetails(item.getFirstName(),
+                            item.getLastName(), item.getEmail(), item.getCheckinDate(), item.getCheckoutDate(),
+                            getReservationUniqueId(), item.getCampsiteId());
+                } else {
+                    failures[index] = validation;
+                }
+            });
+
+            boolean invalid = false;
+            List<ReservationDetails> validReservations = new ArrayList<>(items.size());
+            for (int index = 0; index < items.size(); index++) {
+                if (failures[index] != null) {
+                    invalid = true;
+                    rejected(failures[index]);
+                } else {
+                    validReservations.add(reservations[index]);
+                }
+            }
+
+            List<BatchReservationResult> bookingResults = invalid && batchMode == BatchMode.ALL_OR_NOTHING
+                    ? new ArrayList<>()
+                    : campsiteInMemoryDatabase.addReservations(validReservations, batchMode);
+
+            List<ReservationAddUpdateResponse> results = new ArrayList<>(items.size());
+            int booking = 0;
+            for (int index = 0; index < items.size(); index++) {
+                if (failures[index] != null) {
+                    results.add(reservationsMapper.mapToAddReservationFailedResponse(failures[index].getMessage()));
+                } else if (booking >= bookingResults.size()) {
+                    results.add(reservationsMapper.mapToAddReservationFailedResponse(
+                            "Reservation not booked because another reservation of the batch failed"));
+                } else {
+                    BatchReservationResult bookingResult = bookingResults.get(booking++);
+                    results.add(bookingResult.getErrorMessage() == null
+                            ? reservationsMapper.mapToAddReservationResponse(bookingResult.getReservationDetails())
+                            : reservationsMapper.mapToAddReservationFailedResponse(bookingResult.getErrorMessage()));
+                }
+            }
+            return reservationsMapper.mapToBatchReservationResponse(results);
+
+        } catch (Exception exception) {
+            return reservationsMapper.mapToBatchReservationFailedResponse(exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.BATCH_RESERVATIONS, startNanos);
         }
     }
 
     private String getReservationUniqueId() {
-        return UUID.randomUUID().toString();
+        return reservationIdGenerator.nextId();
     }
 
     public DeleteReservationResponse cancelReservation(String reservationId) {
 
+        long startNanos = System.nanoTime();
         try {
-            campsiteInMemoryDatabase.deleteReservation(reservationId);
-            return reservationsMapper.mapToDeleteReservationResponse(reservationId);
+            return reservationsMapper.mapToDeleteReservationResponse(reservationId,
+                    campsiteInMemoryDatabase.tryDeleteReservation(reservationId));
         } catch (Exception exception) {
             return reservationsMapper.mapToDeleteReservationFailedResponse(reservationId, exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.CANCEL_RESERVATION, startNanos);
         }
     }
 
-    public ReservationAddUpdateResponse updateReservation(String reservationId,
-                                                          String firstName, String lastName, String email,
-                                                          String startDate, String endDate) {
+    /**
+     * Holds the dates for the given number of seconds, ten minutes when none is given, so the customer can pay
+     * before the reservation is made. The hold is confirmed into a reservation with {@link #confirmHold}.
+     */
+    public HoldResponse placeHold(String firstName, String lastName, String email, String startDate, String endDate,
+                                  Integer campsiteId, Long ttlSeconds) {
 
-        ReservationDetails newReservation = null;
+        long startNanos = System.nanoTime();
         try {
-            validInputFields(firstName, lastName, email, startDate, endDate);
+            long holdSeconds = ttlSeconds != null ? ttlSeconds : DEFAULT_HOLD_TTL_SECONDS;
+            Result<Void> validation = holdSeconds < 1 || holdSeconds > MAX_HOLD_TTL_SECONDS
+                    ? Result.failure(FailureReason.HOLD_TTL, "Hold time should be between 1 and "
+                            + MAX_HOLD_TTL_SECONDS + " seconds")
+                    : checkInputFields(firstName, lastName, email, startDate, endDate);
+            Result<Hold> held = validation.isSuccess()
+                    ? campsiteInMemoryDatabase.tryPlaceHold(reservationsMapper.mapToReservationDetails(
+                            firstName, lastName, email, startDate, endDate, getReservationUniqueId(), campsiteId),
+                            TimeUnit.SECONDS.toMillis(holdSeconds))
+                    : validation.asFailure();
+            rejected(held);
+            return reservationsMapper.mapToHoldResponse(held);
+        } catch (Exception exception) {
+            return reservationsMapper.mapToHoldExceptionResponse(exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.PLACE_HOLD, startNanos);
+        }
+    }
 
-            ReservationDetails oldReservation = campsiteInMemoryDatabase.findReservation(reservationId);
-            newReservation = reservationsMapper.mapToReservationDetails(firstName, lastName, email,
-                    startDate, endDate, oldReservation.getReservationId());
+    public ReservationAddUpdateResponse confirmHold(String holdId) {
 
-            validateReservationUpdate(oldReservation.getReservationsDates(), newReservation.getReservationsDates());
-            campsiteInMemoryDatabase.updateReservation(oldReservation, newReservation);
+        long startNanos = System.nanoTime();
+        try {
+            return reservationsMapper.mapToAddReservationResponse(campsiteInMemoryDatabase.tryConfirmHold(holdId));
+        } catch (Exception exception) {
+            return reservationsMapper.mapToAddReservationExceptionResponse(exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.CONFIRM_HOLD, startNanos);
+        }
+    }
 
-            return reservationsMapper.mapToUpdateReservationResponse(newReservation);
+    public HoldResponse releaseHold(String holdId) {
 
+        long startNanos = System.nanoTime();
+        try {
+            return reservationsMapper.mapToReleaseHoldResponse(holdId, campsiteInMemoryDatabase.tryReleaseHold(holdId));
         } catch (Exception exception) {
-            return reservationsMapper.mapToUpdateExceptionResponse(newReservation, exception);
+            return reservationsMapper.mapToReleaseHoldFailedResponse(holdId, exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.RELEASE_HOLD, startNanos);
         }
     }
 
-    private void validateReservationUpdate(ReservationsDates oldReservationDates,
-                                           ReservationsDates newReservationDates) {
+    public ReservationsResponse findReservationsByEmail(String email) {
 
-        List<LocalDate> campsiteAvailability = campsiteInMemoryDatabase
-                .getCampsiteAvailability(newReservationDates.getCheckinDate(), newReservationDates.getCheckoutDate());
+        long startNanos = System.nanoTime();
+        try {
+            if (!validString(email)) {
+                Result<Void> invalidEmail = Result.failure(FailureReason.EMAIL, "Invalid email address : " + email);
+                rejected(invalidEmail);
+                return reservationsMapper.mapToReservationsFailedResponse("email " + email, invalidEmail.getMessage());
+            }
+            return reservationsMapper.mapToReservationsResponse("email " + email,
+                    campsiteInMemoryDatabase.findReservationsByEmail(email.trim()));
+        } catch (Exception exception) {
+            return reservationsMapper.mapToReservationsFailedResponse("email " + email, exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.RESERVATIONS_BY_EMAIL, startNanos);
+        }
+    }
 
-        Set<LocalDate> availableDates = new HashSet<>(campsiteAvailability);
+    public ReservationsResponse findReservationsOnDate(String date) {
 
-        LocalDate newCheckInDate = newReservationDates.getCheckinDate();
-        LocalDate newCheckoutDate = newReservationDates.getCheckoutDate();
+        long startNanos = System.nanoTime();
+        try {
+            long day = date != null ? DateUtil.parseEpochDay(date) : DateUtil.INVALID_DATE;
+            if (day == DateUtil.INVALID_DATE) {
+                Result<Void> invalidDate = Result.failure(FailureReason.DATE_FORMAT, DATE_FORMAT_MESSAGE);
+                rejected(invalidDate);
+                return reservationsMapper.mapToReservationsFailedResponse("date " + date, invalidDate.getMessage());
+            }
+            return reservationsMapper.mapToReservationsResponse("date " + date,
+                    campsiteInMemoryDatabase.findReservationsOnDate(LocalDate.ofEpochDay(day)));
+        } catch (Exception exception) {
+            return reservationsMapper.mapToReservationsFailedResponse("date " + date, exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.RESERVATIONS_ON_DATE, startNanos);
+        }
+    }
 
-        while (newCheckInDate.isBefore(newCheckoutDate.plusDays(1))) {
+    public ReservationAddUpdateResponse updateReservation(String reservationId,
+                                                          String firstName, String lastName, String email,
+                                                          String startDate, String endDate, Integer campsiteId) {
 
-            if (!availableDates.contains(newCheckInDate) &&
-                    (isEqualOrAfter(newCheckInDate, oldReservationDates.getCheckinDate()) &&
-                            isEqualOrBefore(newCheckInDate, oldReservationDates.getCheckoutDate()))) {
+        long startNanos = System.nanoTime();
+        ReservationDetails newReservation = null;
+        try {
+            Result<Void> validation = checkInputFields(firstName, lastName, email, startDate, endDate);
+            if (!validation.isSuccess()) {
+                rejected(validation);
+                return reservationsMapper.mapToUpdateReservationResponse(null, validation.asFailure());
+            }
 
-                throw new RuntimeException("Campsite is not available for new checkin and checkout dates");
+            Result<ReservationDetails> oldReservation = campsiteInMemoryDatabase.tryFindReservation(reservationId);
+            if (!oldReservation.isSuccess()) {
+                return reservationsMapper.mapToUpdateReservationResponse(null, oldReservation);
             }
+            newReservation = reservationsMapper.mapToReservationDetails(firstName, lastName, email,
+                    startDate, endDate, reservationId, campsiteId);
 
-            newCheckInDate = newCheckInDate.plusDays(1);
+            Result<ReservationDetails> updatedReservation = campsiteInMemoryDatabase
+                    .tryUpdateReservation(oldReservation.getValue(), newReservation);
+            rejected(updatedReservation);
+            return reservationsMapper.mapToUpdateReservationResponse(newReservation, updatedReservation);
+
+        } catch (Exception exception) {
+            return reservationsMapper.mapToUpdateExceptionResponse(newReservation, exception);
+        } finally {
+            reservationMetrics.operationCompleted(Operation.UPDATE_RESERVATION, startNanos);
         }
     }
 
-
+    private void rejected(Result<?> result) {
+        if (!result.isSuccess() && result.getFailureReason().isInvalidInput()) {
+            reservationMetrics.validationRejected(result.getFailureReason().getTag());
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package com.campsitereservations.service;
+
+import com.campsitereservations.contracts.WaitlistResponse;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.db.Waitlist;
+import com.campsitereservations.db.WaitlistEntry;
+import com.campsitereservations.id.ReservationIdGenerator;
+import com.campsitereservations.mapper.ReservationsMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import static com.campsitereservations.validation.FieldsValidator.checkInputFields;
+
+/**
+ * Waitlist requests: the same fields as a booking, checked the same way. A customer who is offered a hold confirms
+ * it through {@link ReservationOperationsService#confirmHold}.
+ */
+@Service
+public class WaitlistService {
+
+    private Waitlist waitlist;
+    private ReservationsMapper reservationsMapper;
+    private ReservationIdGenerator reservationIdGenerator;
+
+    @Autowired
+    public WaitlistService(Waitlist waitlist, ReservationsMapper reservationsMapper,
+                           ReservationIdGenerator reservationIdGenerator) {
+        this.waitlist = waitlist;
+        this.reservationsMapper = reservationsMapper;
+        this.reservationIdGenerator = reservationIdGenerator;
+    }
+
+    public WaitlistResponse joinWaitlist(String firstName, String lastName, String email,
+                                         String startDate, String endDate, Integer campsiteId) {
+        try {
+            Result<Void> validation = checkInputFields(firstName, lastName, email, startDate, endDate);
+            Result<WaitlistEntry> joined = validation.isSuccess()
+                    ? Result.success(waitlist.join(reservationIdGenerator.nextId(),
+                            reservationsMapper.mapToReservationDetails(firstName, lastName, email, startDate, endDate,
+                                    reservationIdGenerator.nextId(), campsiteId)))
+                    : validation.asFailure();
+            return reservationsMapper.mapToWaitlistResponse(joined);
+        } catch (Exception exception) {
+            return reservationsMapper.mapToWaitlistExceptionResponse(exception);
+        }
+    }
+
+    public WaitlistResponse getWaitlistEntry(String waitlistId) {
+        return reservationsMapper.mapToWaitlistResponse(waitlist.find(waitlistId));
+    }
+
+    public WaitlistResponse leaveWaitlist(String waitlistId) {
+        try {
+            return reservationsMapper.mapToLeaveWaitlistResponse(waitlistId, waitlist.leave(waitlistId));
+        } catch (Exception exception) {
+            return reservationsMapper.mapToWaitlistExceptionResponse(exception);
+        }
+    }
+}
@@ -4,6 +4,9 @@ import java.time.LocalDate;
 
 public class DateUtil {
 
+    public static final long INVALID_DATE = Long.MIN_VALUE;
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
     public static boolean isEqualOrAfter(LocalDate firstDate, LocalDate secondDate) {
         return secondDate.isEqual(firstDate) || secondDate.isAfter(firstDate);
     }
@@ -11,4 +14,61 @@ public class DateUtil {
     public static boolean isEqualOrBefore(LocalDate firstDate, LocalDate secondDate) {
         return secondDate.isEqual(firstDate) || secondDate.isBefore(firstDate);
     }
+
+    /**
+     * Parses yyyy-MM-dd into an epoch day using the same arithmetic as LocalDate.toEpochDay, or returns
+     * {@link #INVALID_DATE}. Unlike LocalDate.parse it allocates nothing.
+     */
+    public static long parseEpochDay(String date) {
+
+        if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return INVALID_DATE;
+        }
+
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 2);
+        int day = parseDigits(date, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID_DATE;
+        }
+
+        long epochDay = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        epochDay += (367 * month - 362) / 12;
+        epochDay += day - 1;
+        if (month > 2) {
+            epochDay -= isLeapYear(year) ? 1 : 2;
+        }
+        return epochDay - DAYS_0000_TO_1970;
+    }
+
+    private static int parseDigits(String text, int start, int count) {
+
+        int value = 0;
+        for (int index = start; index < start + count; index++) {
+            char character = text.charAt(index);
+            if (character < '0' || character > '9') {
+                return -1;
+            }
+            value = value * 10 + (character - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
 }
@@ -1,39 +1,50 @@
 package com.campsitereservations.validation;
 
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.Result;
 import com.campsitereservations.exceptions.InvalidInputException;
-import org.springframework.util.StringUtils;
+import com.campsitereservations.util.DateUtil;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.time.ZoneId;
+
+/**
+ * Validates booking input without allocating on the success path: emails are checked by a scanner equivalent to
+ * {@code ^[_A-Za-z0-9-\+]+(\.[_A-Za-z0-9-]+)*@[A-Za-z0-9-]+(\.[A-Za-z0-9]+)*(\.[A-Za-z]{2,})$}, dates are parsed
+ * straight into epoch days, and today's epoch day is only recomputed after midnight. Only failures build messages,
+ * and they are returned as {@link Result} failures rather than thrown.
+ */
 public class FieldsValidator {
 
     private static final int MAX_BOOKING_DAYS = 3;
     private static final int LATEST_BOOKING_DAY = 1;
     private static final int EARLIEST_BOOKING_DAY = 31;
-    private static final String DATE_FORMAT = "yyyy-MM-dd";
-    private static final String EMAIL_PATTERN = "^[_A-Za-z0-9-\\+]+(\\.[_A-Za-z0-9-]+)*@"
-                    + "[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
-
 
-    private static void validateEmail(String emailAddress) throws Exception {
-            Matcher matcher = Pattern.compile(EMAIL_PATTERN).matcher(emailAddress);
-             if (!matcher.matches()) {
-                 throw new InvalidInputException("Invalid email address : " + emailAddress);
-             }
-    }
+    private static volatile Today today = Today.now();
 
     public static boolean validInputFields(String firstName, String lastName, String email,
                                            String startDate, String endDate) throws Exception {
 
+        Result<Void> result = checkInputFields(firstName, lastName, email, startDate, endDate);
+        if (!result.isSuccess()) {
+            throw new InvalidInputException(result.getFailureReason().getTag(), result.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * As {@link #validInputFields}, but invalid input comes back as a failure instead of an exception.
+     */
+    public static Result<Void> checkInputFields(String firstName, String lastName, String email,
+                                                String startDate, String endDate) {
+
         if (validString(startDate) && validString(endDate) && validString(firstName) && validString(lastName) &&
                 validString(email)) {
 
-            validateEmail(email);
-            validateCheckinCheckoutDates(startDate, endDate);
-            return true;
+            if (!isValidEmail(email)) {
+                return Result.failure(FailureReason.EMAIL, "Invalid email address : " + email);
+            }
+            return checkCheckinCheckoutDates(startDate, endDate);
         }
 
         StringBuilder strBuilder = new StringBuilder();
@@ -44,57 +55,156 @@ public class FieldsValidator {
                 .append("startDate=").append(startDate).append("\n")
                 .append("endDate=").append(endDate).append("\n");
 
-        throw new InvalidInputException(strBuilder.toString());
+        return Result.failure(FailureReason.MISSING_FIELDS, strBuilder.toString());
     }
 
-    private static boolean validateCheckinCheckoutDates(String startDate, String endDate) throws Exception {
+    private static Result<Void> checkCheckinCheckoutDates(String startDate, String endDate) {
 
-        LocalDate checkInDate = null;
-        LocalDate checkoutDate = null;
-        try {
-            checkInDate = LocalDate.from(DateTimeFormatter.ofPattern(DATE_FORMAT).parse(startDate));
-            checkoutDate = LocalDate.from(DateTimeFormatter.ofPattern(DATE_FORMAT).parse(endDate));
-        } catch (Exception exception) {
-            throw new InvalidInputException("Invalid checkin - checkout date format. Valid date format is  yyyy-MM-dd");
+        long checkinDay = DateUtil.parseEpochDay(startDate);
+        long checkoutDay = DateUtil.parseEpochDay(endDate);
+        if (checkinDay == DateUtil.INVALID_DATE || checkoutDay == DateUtil.INVALID_DATE) {
+            return Result.failure(FailureReason.DATE_FORMAT, "Invalid checkin - checkout date format. Valid date format is  yyyy-MM-dd");
         }
 
-        validateReservationDates(checkInDate, checkoutDate);
-
-        return true;
+        Result<Void> range = checkCheckInAndCheckoutDateRange(checkinDay, checkoutDay);
+        return range.isSuccess() ? checkBookingDate(checkinDay) : range;
     }
 
+    /**
+     * True when the string has at least one character that {@link String#trim()} would keep.
+     */
     public static boolean validString(String inputString) {
-        return !StringUtils.isEmpty(inputString.trim());
-    }
-
-    private static boolean validateReservationDates(LocalDate checkinDate, LocalDate checkoutDate) throws Exception {
 
-        validateCheckInAndCheckoutDateRange(checkinDate, checkoutDate);
-        validateBookingDate(checkinDate);
-        return true;
+        if (inputString == null) {
+            return false;
+        }
+        for (int index = 0; index < inputString.length(); index++) {
+            if (inputString.charAt(index) > ' ') {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static boolean validateBookingDate(LocalDate checkinDate) throws Exception {
+    private static Result<Void> checkBookingDate(long checkinDay) {
 
-        if (checkinDate.minusDays(LATEST_BOOKING_DAY).isBefore(LocalDate.now())) {
-            throw new InvalidInputException("Invalid booking date. You should book at least 1 day in advance ");
-        } else if (checkinDate.minusDays(EARLIEST_BOOKING_DAY).isAfter(LocalDate.now())) {
-            throw new InvalidInputException("Invalid booking date. You can book upto 1 month in advance");
+        long todayEpochDay = todayEpochDay();
+        if (checkinDay - LATEST_BOOKING_DAY < todayEpochDay) {
+            return Result.failure(FailureReason.TOO_SOON, "Invalid booking date. You should book at least 1 day in advance ");
+        } else if (checkinDay - EARLIEST_BOOKING_DAY > todayEpochDay) {
+            return Result.failure(FailureReason.TOO_FAR_AHEAD, "Invalid booking date. You can book upto 1 month in advance");
         }
 
-        return true;
+        return Result.success();
     }
 
-    private static boolean validateCheckInAndCheckoutDateRange(LocalDate checkinDate, LocalDate checkoutDate) throws Exception {
+    private static Result<Void> checkCheckInAndCheckoutDateRange(long checkinDay, long checkoutDay) {
 
-        if (checkoutDate.minusDays(MAX_BOOKING_DAYS).isAfter(checkinDate)) {
-            throw new InvalidInputException("Invalid checkin & checkout dates: "
-                    + checkinDate.toString() + " & " + checkoutDate.toString() +
+        if (checkoutDay - MAX_BOOKING_DAYS > checkinDay) {
+            return Result.failure(FailureReason.STAY_TOO_LONG, "Invalid checkin & checkout dates: "
+                    + LocalDate.ofEpochDay(checkinDay) + " & " + LocalDate.ofEpochDay(checkoutDay) +
                     " . Campsite cannot be booked for more than 3 days");
-        } else if (checkoutDate.isBefore(checkinDate)) {
-            throw new InvalidInputException("Invalid checkout date: " + checkoutDate.toString() +
+        } else if (checkoutDay < checkinDay) {
+            return Result.failure(FailureReason.CHECKOUT_BEFORE_CHECKIN, "Invalid checkout date: " + LocalDate.ofEpochDay(checkoutDay) +
                     " . Checkout data should be after checkin date.");
         }
-        return true;
+        return Result.success();
+    }
+
+    /*
+        Local part: a run of [_A-Za-z0-9-+], then any number of '.' followed by a run of [_A-Za-z0-9-].
+        Domain: a run of [A-Za-z0-9-], then one or more '.' followed by a run of [A-Za-z0-9], the last of which
+        must be at least two letters.
+     */
+    private static boolean isValidEmail(String email) {
+
+        int length = email.length();
+        int index = 0;
+        while (index < length && (isWordCharacter(email.charAt(index)) || email.charAt(index) == '+')) {
+            index++;
+        }
+        if (index == 0) {
+            return false;
+        }
+
+        while (index < length && email.charAt(index) == '.') {
+            int start = ++index;
+            while (index < length && isWordCharacter(email.charAt(index))) {
+                index++;
+            }
+            if (index == start) {
+                return false;
+            }
+        }
+
+        if (index == length || email.charAt(index) != '@') {
+            return false;
+        }
+
+        int domainStart = ++index;
+        while (index < length && (isLetterOrDigit(email.charAt(index)) || email.charAt(index) == '-')) {
+            index++;
+        }
+        if (index == domainStart) {
+            return false;
+        }
+
+        int labelLength = 0;
+        boolean lettersOnly = false;
+        while (index < length) {
+            if (email.charAt(index) != '.') {
+                return false;
+            }
+            int start = ++index;
+            lettersOnly = true;
+            while (index < length && isLetterOrDigit(email.charAt(index))) {
+                lettersOnly &= isLetter(email.charAt(index));
+                index++;
+            }
+            labelLength = index - start;
+            if (labelLength == 0) {
+                return false;
+            }
+        }
+        return lettersOnly && labelLength >= 2;
+    }
+
+    private static boolean isWordCharacter(char character) {
+        return isLetterOrDigit(character) || character == '_' || character == '-';
+    }
+
+    private static boolean isLetterOrDigit(char character) {
+        return isLetter(character) || (character >= '0' && character <= '9');
+    }
+
+    private static boolean isLetter(char character) {
+        return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z');
+    }
+
+    private static long todayEpochDay() {
+
+        Today current = today;
+        if (System.currentTimeMillis() >= current.nextMidnightMillis) {
+            current = Today.now();
+            today = current;
+        }
+        return current.epochDay;
+    }
+
+    private static final class Today {
+
+        private final long epochDay;
+        private final long nextMidnightMillis;
+
+        private Today(long epochDay, long nextMidnightMillis) {
+            this.epochDay = epochDay;
+            this.nextMidnightMillis = nextMidnightMillis;
+        }
+
+        private static Today now() {
+            LocalDate date = LocalDate.now();
+            return new Today(date.toEpochDay(),
+                    date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
     }
 }
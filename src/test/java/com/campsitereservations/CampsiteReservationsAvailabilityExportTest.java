@@ -0,0 +1,117 @@
+package com.campsitereservations;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.service.ReservationOperationsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    The availability export streams the same free ranges as available-date-ranges, one NDJSON line per range in
+    campsite and date order, for parks large enough to drain the write buffer many times.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class CampsiteReservationsAvailabilityExportTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void exportMatchesAvailableRanges() throws Exception {
+
+        CampsiteInMemoryDatabase park = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 500);
+        park.initialize();
+        ReservationOperationsService reservationOperationsService = new ReservationOperationsService(park,
+                new ReservationsMapper(), new AvailableDatesCache(park, 16), objectMapper);
+        LocalDate today = LocalDate.now();
+
+        Random random = new Random(11);
+        for (int booking = 0; booking < 2000; booking++) {
+            LocalDate checkinDate = today.plusDays(random.nextInt(32));
+            try {
+                park.addReservation(reservation(checkinDate, checkinDate.plusDays(random.nextInt(3)),
+                        1 + random.nextInt(500)));
+            } catch (RuntimeException alreadyBooked) {
+                // Overlapping bookings are expected.
+            }
+        }
+
+        ReservationsDates exportDates = reservationOperationsService.validateAvailabilityExport(null, null, null)
+                .getValue();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        reservationOperationsService.exportAvailability(exportDates, null, outputStream);
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+
+        int line = 0;
+        for (int campsiteId = 1; campsiteId <= 500; campsiteId++) {
+            for (ReservationsDates range : park.getCampsiteAvailableRanges(exportDates.getCheckinDate(),
+                    exportDates.getCheckoutDate(), campsiteId)) {
+                JsonNode exported = objectMapper.readTree(lines[line++]);
+                assertEquals(campsiteId, exported.get("campsiteId").asInt());
+                assertEquals(range.getCheckinDate().toString(), exported.get("fromDate").asText());
+                assertEquals(range.getCheckoutDate().toString(), exported.get("toDate").asText());
+            }
+        }
+        assertEquals(lines.length, line);
+    }
+
+    @Test
+    public void exportEndpointStreamsNdjson() throws Exception {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(1);
+        String exportRequest = "/v1/api/availability-export?checkinDate=" + checkinDate
+                + "&checkoutDate=" + checkinDate.plusDays(1) + "&campsiteId=1";
+
+        MvcResult asyncResult = mockMvc.perform(get(exportRequest)).andReturn();
+        String export = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(1, export.split("\n").length);
+        assertEquals(1, objectMapper.readTree(export).get("campsiteId").asInt());
+
+        asyncResult = mockMvc.perform(get("/v1/api/availability-export?campsiteId=9")).andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, LocalDate checkoutDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkoutDate).build())
+                .build();
+    }
+}
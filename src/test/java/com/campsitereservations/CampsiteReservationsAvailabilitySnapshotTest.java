@@ -0,0 +1,162 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.AvailabilityCalendar;
+import com.campsitereservations.db.AvailabilitySnapshot;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.CampsiteShard;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.DayLockTable;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Every committed change publishes a newer availability snapshot, a snapshot never holds half of a booking, even
+    while other bookings change the same calendar words, and available-dates answers 304 to a conditional GET while the snapshot has not moved
+    on.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class CampsiteReservationsAvailabilitySnapshotTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void everyChangePublishesANewerSnapshot() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 2);
+            database.initialize();
+            try {
+                LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+                long initialVersion = database.getAvailabilityVersion(2);
+                long initialAnyVersion = database.getAvailabilityVersion(null);
+                ReservationDetails reservationDetails = database.addReservation(reservation(checkinDate, 2));
+                long bookedVersion = database.getAvailabilityVersion(2);
+                long bookedAnyVersion = database.getAvailabilityVersion(null);
+
+                assertTrue(bookedVersion > initialVersion);
+                assertTrue(bookedAnyVersion > initialAnyVersion);
+                assertEquals(0, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(2), 2).size());
+                assertEquals(3, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(2), 1).size());
+
+                // A change on any other campsite moves the any-campsite version on as well.
+                database.addReservation(reservation(checkinDate, 1));
+                assertTrue(database.getAvailabilityVersion(null) > bookedAnyVersion);
+
+                database.deleteReservation(reservationDetails.getReservationId());
+                assertTrue(database.getAvailabilityVersion(2) > bookedVersion);
+                assertEquals(3, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(2), 2).size());
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    @Test
+    public void snapshotsNeverHoldHalfABooking() {
+
+        // Days 16380 to 16387 wrap around the calendar ring, so the stay spans the last and the first word. The
+        // stays either side share those words and are booked meanwhile by other writers, on other day locks.
+        CampsiteShard shard = new CampsiteShard(1, new AvailabilityCalendar(64, 256 * 64));
+        shard.getCalendar().release(64, 64 + 256 * 64 - 1);
+        AtomicLong version = new AtomicLong();
+        shard.publishSnapshot(version::incrementAndGet);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (long firstDay = 16372; firstDay <= 16388; firstDay += 8) {
+            long stayFirstDay = firstDay;
+            writers.add(CompletableFuture.runAsync(
+                    () -> bookAndRelease(shard, version, running, stayFirstDay, stayFirstDay + 7)));
+        }
+
+        try {
+            for (int read = 0; read < 1_000_000; read++) {
+                AvailabilitySnapshot snapshot = shard.getSnapshot();
+                for (long firstDay = 16372; firstDay <= 16388; firstDay += 8) {
+                    assertEquals(snapshot.isAvailable(firstDay, firstDay),
+                            snapshot.isAvailable(firstDay + 7, firstDay + 7));
+                }
+            }
+        } finally {
+            running.set(false);
+            writers.forEach(CompletableFuture::join);
+        }
+        assertTrue(shard.getSnapshot().isAvailable(16372, 16395));
+    }
+
+    /*
+        Books and releases the stay, each change made under its day locks and published after them, the way the
+        database does.
+     */
+    private static void bookAndRelease(CampsiteShard shard, AtomicLong version, AtomicBoolean running,
+                                       long firstDay, long lastDay) {
+
+        LocalDate firstDate = LocalDate.ofEpochDay(firstDay);
+        LocalDate lastDate = LocalDate.ofEpochDay(lastDay);
+        while (running.get()) {
+            DayLockTable.DayLocks dayLocks = shard.getDayLockTable().lock(firstDate, lastDate);
+            shard.getCalendar().book(firstDay, lastDay);
+            dayLocks.unlock();
+            shard.publishChange(version::incrementAndGet, firstDay, lastDay);
+
+            dayLocks = shard.getDayLockTable().lock(firstDate, lastDate);
+            shard.getCalendar().release(firstDay, lastDay);
+            dayLocks.unlock();
+            shard.publishChange(version::incrementAndGet, firstDay, lastDay);
+        }
+    }
+
+    @Test
+    public void conditionalGetAnswersNotModified() throws Exception {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(25);
+        String availableDatesRequest = "/v1/api/available-dates?checkinDate=" + checkinDate
+                + "&checkoutDate=" + checkinDate.plusDays(3);
+
+        String eTag = mockMvc.perform(get(availableDatesRequest))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(eTag);
+
+        mockMvc.perform(get(availableDatesRequest).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
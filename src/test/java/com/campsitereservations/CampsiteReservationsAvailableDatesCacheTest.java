@@ -0,0 +1,122 @@
+package com.campsitereservations;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/*
+    Bookings only drop the cached windows they overlap, responses computed before a booking never land in the cache
+    after it unless it was on another campsite, nor hide a window cached since, and a window not read lately goes
+    first when the cache is full.
+ */
+public class CampsiteReservationsAvailableDatesCacheTest {
+
+    private static final byte[] RESPONSE = {'{', '}'};
+
+    @Test
+    public void bookingsInvalidateOnlyOverlappingWindows() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 2);
+            database.initialize();
+            AvailableDatesCache cache = new AvailableDatesCache(database, 16);
+
+            LocalDate today = LocalDate.now();
+            cache.put(today.plusDays(1), today.plusDays(5), null, RESPONSE, cache.generation(null));
+            cache.put(today.plusDays(1), today.plusDays(5), 2, RESPONSE, cache.generation(2));
+            cache.put(today.plusDays(10), today.plusDays(12), 1, RESPONSE, cache.generation(1));
+            cache.put(today.plusDays(1), today.plusDays(5), 1, RESPONSE, cache.generation(1));
+
+            ReservationDetails reservationDetails = database.addReservation(reservation(today.plusDays(4), 1));
+
+            assertNull(cache.get(today.plusDays(1), today.plusDays(5), null));
+            assertNull(cache.get(today.plusDays(1), today.plusDays(5), 1));
+            assertArrayEquals(RESPONSE, cache.get(today.plusDays(1), today.plusDays(5), 2));
+            assertArrayEquals(RESPONSE, cache.get(today.plusDays(10), today.plusDays(12), 1));
+
+            database.deleteReservation(reservationDetails.getReservationId());
+            assertEquals(2, cache.size());
+            assertEquals(2, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+        }
+    }
+
+    @Test
+    public void responsesReadBeforeABookingAreNotCached() {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 2);
+        database.initialize();
+        AvailableDatesCache cache = new AvailableDatesCache(database, 16);
+
+        LocalDate today = LocalDate.now();
+        long generation = cache.generation(null);
+        long otherCampsiteGeneration = cache.generation(2);
+        database.addReservation(reservation(today.plusDays(20), 1));
+        cache.put(today, today.plusDays(5), null, RESPONSE, generation);
+        cache.put(today, today.plusDays(5), 2, RESPONSE, otherCampsiteGeneration);
+
+        assertNull(cache.get(today, today.plusDays(5), null));
+        assertArrayEquals(RESPONSE, cache.get(today, today.plusDays(5), 2));
+    }
+
+    @Test
+    public void latePutsNeverHideACachedWindow() {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 2);
+        database.initialize();
+        AvailableDatesCache cache = new AvailableDatesCache(database, 16);
+
+        // A response read before a booking elsewhere in the window arrives after a fresh one was cached.
+        LocalDate today = LocalDate.now();
+        long staleGeneration = cache.generation(null);
+        database.addReservation(reservation(today.plusDays(20), 1));
+        byte[] fresh = {'[', ']'};
+        cache.put(today, today.plusDays(5), null, fresh, cache.generation(null));
+        cache.put(today, today.plusDays(5), null, RESPONSE, staleGeneration);
+
+        assertArrayEquals(fresh, cache.get(today, today.plusDays(5), null));
+        assertEquals(1, cache.size());
+        database.close();
+    }
+
+    @Test
+    public void leastRecentlyReadWindowIsEvicted() {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase();
+        database.initialize();
+        AvailableDatesCache cache = new AvailableDatesCache(database, 2);
+
+        LocalDate today = LocalDate.now();
+        cache.put(today, today.plusDays(1), null, RESPONSE, cache.generation(null));
+        cache.put(today, today.plusDays(2), null, RESPONSE, cache.generation(null));
+        cache.get(today, today.plusDays(1), null);
+        cache.put(today, today.plusDays(3), null, RESPONSE, cache.generation(null));
+
+        assertArrayEquals(RESPONSE, cache.get(today, today.plusDays(1), null));
+        assertNull(cache.get(today, today.plusDays(2), null));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
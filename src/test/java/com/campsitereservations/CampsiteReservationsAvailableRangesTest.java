@@ -0,0 +1,89 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+    Free ranges are the per-day availability folded into runs of consecutive days, for one campsite or for any.
+ */
+public class CampsiteReservationsAvailableRangesTest {
+
+    @Test
+    public void rangesSkipBookedDays() {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase();
+        database.initialize();
+        LocalDate today = LocalDate.now();
+
+        database.addReservation(reservation(today.plusDays(3), today.plusDays(5), 1));
+        List<ReservationsDates> ranges = database.getCampsiteAvailableRanges(today, today.plusDays(40), 1);
+
+        assertEquals(2, ranges.size());
+        assertEquals(today, ranges.get(0).getCheckinDate());
+        assertEquals(today.plusDays(2), ranges.get(0).getCheckoutDate());
+        assertEquals(today.plusDays(6), ranges.get(1).getCheckinDate());
+        assertEquals(today.plusDays(31), ranges.get(1).getCheckoutDate());
+    }
+
+    @Test
+    public void rangesMatchAvailableDates() {
+
+        Random random = new Random(7);
+        for (int run = 0; run < 20; run++) {
+
+            CampsiteInMemoryDatabase park = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 3);
+            park.initialize();
+            LocalDate today = LocalDate.now();
+
+            for (int booking = 0; booking < 15; booking++) {
+                LocalDate checkinDate = today.plusDays(random.nextInt(32));
+                LocalDate checkoutDate = checkinDate.plusDays(random.nextInt(3));
+                try {
+                    park.addReservation(reservation(checkinDate, checkoutDate, 1 + random.nextInt(3)));
+                } catch (RuntimeException alreadyBooked) {
+                    // Overlapping bookings are expected.
+                }
+            }
+
+            LocalDate startDate = today.plusDays(random.nextInt(10));
+            LocalDate endDate = startDate.plusDays(random.nextInt(40));
+            for (Integer campsiteId : new Integer[]{null, 1, 2, 3}) {
+                assertEquals(park.getCampsiteAvailability(startDate, endDate, campsiteId),
+                        days(park.getCampsiteAvailableRanges(startDate, endDate, campsiteId)));
+            }
+        }
+    }
+
+    private static List<LocalDate> days(List<ReservationsDates> ranges) {
+        List<LocalDate> days = new ArrayList<>();
+        for (ReservationsDates range : ranges) {
+            for (LocalDate day = range.getCheckinDate(); !day.isAfter(range.getCheckoutDate()); day = day.plusDays(1)) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, LocalDate checkoutDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkoutDate).build())
+                .build();
+    }
+}
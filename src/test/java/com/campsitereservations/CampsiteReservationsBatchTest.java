@@ -0,0 +1,140 @@
+package com.campsitereservations;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.contracts.BatchReservationItem;
+import com.campsitereservations.contracts.BatchReservationRequest;
+import com.campsitereservations.contracts.BatchReservationResponse;
+import com.campsitereservations.db.BatchMode;
+import com.campsitereservations.db.BatchReservationResult;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.service.ReservationOperationsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/*
+    A batch either books all of its reservations or none of them, or in best-effort mode books the ones that fit,
+    and reports a result for every reservation.
+ */
+public class CampsiteReservationsBatchTest {
+
+    @Test
+    public void allOrNothingBatchRollsBackOnConflict() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 2);
+            database.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            List<ReservationDetails> batch = new ArrayList<>();
+            batch.add(reservation(checkinDate, null));
+            batch.add(reservation(checkinDate, null));
+            batch.add(reservation(checkinDate.plusDays(10), 1));
+            batch.add(reservation(checkinDate.plusDays(1), 2));
+
+            List<BatchReservationResult> results = database.addReservations(batch, BatchMode.ALL_OR_NOTHING);
+
+            assertEquals(4, results.size());
+            assertEquals("Campsite already booked for given dates. Please try other dates",
+                    results.get(3).getErrorMessage());
+            for (BatchReservationResult result : results) {
+                assertNull(result.getReservationDetails());
+            }
+            assertEquals(16, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(15), 1).size());
+            assertEquals(16, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(15), 2).size());
+
+            batch.remove(3);
+            results = database.addReservations(batch, BatchMode.ALL_OR_NOTHING);
+            for (BatchReservationResult result : results) {
+                assertNull(result.getErrorMessage());
+                assertNotNull(database.findReservation(result.getReservationDetails().getReservationId()));
+            }
+            assertEquals(0, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(2)).size());
+        }
+    }
+
+    @Test
+    public void bestEffortBatchBooksWhatFits() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1);
+            database.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            List<BatchReservationResult> results = database.addReservations(Arrays.asList(
+                    reservation(checkinDate, null),
+                    reservation(checkinDate.plusDays(2), null),
+                    reservation(checkinDate.plusDays(3), 7),
+                    reservation(checkinDate.plusDays(3), null)), BatchMode.BEST_EFFORT);
+
+            assertNotNull(results.get(0).getReservationDetails());
+            assertEquals("Campsite already booked for given dates. Please try other dates",
+                    results.get(1).getErrorMessage());
+            assertEquals("No campsite found with campsite id 7", results.get(2).getErrorMessage());
+            assertEquals(1, (int) results.get(3).getReservationDetails().getCampsiteId());
+            assertEquals(0, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(5)).size());
+        }
+    }
+
+    @Test
+    public void invalidItemRejectsAllOrNothingBatch() {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase();
+        database.initialize();
+        ReservationOperationsService reservationOperationsService = new ReservationOperationsService(database,
+                new ReservationsMapper(), new AvailableDatesCache(database, 16), new ObjectMapper());
+
+        LocalDate checkinDate = LocalDate.now().plusDays(3);
+        BatchReservationRequest batchReservationRequest = BatchReservationRequest.builder()
+                .reservations(Arrays.asList(
+                        item(checkinDate, "test@test.com"),
+                        item(checkinDate.plusDays(5), "not-an-email")))
+                .build();
+
+        BatchReservationResponse response = reservationOperationsService.addReservations(batchReservationRequest);
+        assertEquals("0 of 2 reservations booked", response.getMessage());
+        assertEquals("Reservation not booked because another reservation of the batch failed",
+                response.getResults().get(0).getErrorDetails().getErrorMessage());
+        assertEquals("Invalid email address : not-an-email",
+                response.getResults().get(1).getErrorDetails().getErrorMessage());
+
+        batchReservationRequest.setBatchMode(BatchMode.BEST_EFFORT);
+        response = reservationOperationsService.addReservations(batchReservationRequest);
+        assertEquals("1 of 2 reservations booked", response.getMessage());
+        assertNotNull(response.getResults().get(0).getReservationModel().getReservationId());
+    }
+
+    private static BatchReservationItem item(LocalDate checkinDate, String email) {
+        return BatchReservationItem.builder()
+                .firstName("Amit").lastName("Ganvir").email(email)
+                .checkinDate(checkinDate.toString()).checkoutDate(checkinDate.plusDays(2).toString())
+                .build();
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
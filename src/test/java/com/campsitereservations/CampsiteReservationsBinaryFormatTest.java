@@ -0,0 +1,157 @@
+package com.campsitereservations;
+
+import com.campsitereservations.contracts.AvailableReservationDatesModel;
+import com.campsitereservations.contracts.AvailableReservationDatesResponse;
+import com.campsitereservations.contracts.ErrorDetails;
+import com.campsitereservations.contracts.ReservationModel;
+import com.campsitereservations.contracts.ReservationsResponse;
+import com.campsitereservations.mapper.BinaryResponseWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Clients accepting the binary media type get the same dates and reservations as JSON clients, encoded in the
+    protobuf wire format; everyone else keeps getting JSON. Runs on its own park, since it books.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "campsite.sites.count=2")
+@AutoConfigureMockMvc
+public class CampsiteReservationsBinaryFormatTest {
+
+    private static final MediaType BINARY = MediaType.parseMediaType(BinaryResponseWriter.MEDIA_TYPE);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void encodesContractsInWireFormat() {
+
+        LocalDate today = LocalDate.now();
+        List<String> dates = Arrays.asList(today.toString(), today.plusDays(1).toString(), today.plusDays(9).toString());
+        List<Object[]> fields = decode(BinaryResponseWriter.encode(AvailableReservationDatesResponse.builder()
+                .availableDates(AvailableReservationDatesModel.builder().dates(dates).build()).build()));
+        assertEquals(dates, availableDates(fields));
+
+        ReservationModel reservationModel = ReservationModel.builder().reservationId("id-1").campsiteId(300)
+                .firstName("Amit").lastName("Ganvir").email("test@test.com")
+                .checkinDate(today.toString()).checkoutDate(today.plusDays(2).toString()).build();
+        fields = decode(BinaryResponseWriter.encode(ReservationsResponse.builder()
+                .reservations(Arrays.asList(reservationModel, reservationModel))
+                .errorDetails(ErrorDetails.builder().errorMessage("partial").build()).build()));
+        assertEquals(3, fields.size());
+
+        List<Object[]> reservation = decode((byte[]) fields.get(1)[1]);
+        assertEquals("id-1", string(reservation.get(0)));
+        assertEquals(300L, reservation.get(1)[1]);
+        assertEquals("test@test.com", string(reservation.get(4)));
+        assertEquals(today.plusDays(2).toEpochDay(), reservation.get(6)[1]);
+        assertEquals(15, fields.get(2)[0]);
+        assertEquals("partial", string(fields.get(2)));
+    }
+
+    @Test
+    public void negotiatesBinaryAvailableDates() throws Exception {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(20);
+        String availableDatesRequest = "/v1/api/available-dates?checkinDate=" + checkinDate
+                + "&checkoutDate=" + checkinDate.plusDays(5);
+
+        byte[] json = mockMvc.perform(get(availableDatesRequest))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] binary = mockMvc.perform(get(availableDatesRequest).accept(BINARY))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BINARY))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<String> jsonDates = new ArrayList<>();
+        for (JsonNode date : new ObjectMapper().readTree(json).get("availableDates").get("dates")) {
+            jsonDates.add(date.asText());
+        }
+        assertEquals(jsonDates, availableDates(decode(binary)));
+
+        byte[] reservation = mockMvc.perform(post("/v1/api/add-reservation?firstName=Amit&lastName=Ganvir"
+                + "&email=test@test.com&checkinDate=" + checkinDate.plusDays(10)
+                + "&checkoutDate=" + checkinDate.plusDays(11)).accept(BINARY))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BINARY))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<Object[]> reservationFields = decode((byte[]) decode(reservation).get(0)[1]);
+        assertEquals(checkinDate.plusDays(10).toEpochDay(), reservationFields.get(5)[1]);
+    }
+
+    private static List<String> availableDates(List<Object[]> fields) {
+
+        if (fields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long firstDay = (Long) fields.get(0)[1];
+        byte[] bitmap = (byte[]) fields.get(1)[1];
+        List<String> dates = new ArrayList<>();
+        for (int day = 0; day < bitmap.length * 8; day++) {
+            if ((bitmap[day >>> 3] & (1 << (day & 7))) != 0) {
+                dates.add(LocalDate.ofEpochDay(firstDay + day).toString());
+            }
+        }
+        return dates;
+    }
+
+    private static String string(Object[] field) {
+        return new String((byte[]) field[1], StandardCharsets.UTF_8);
+    }
+
+    /*
+        Each field as {field number, Long value or byte[] payload}.
+     */
+    private static List<Object[]> decode(byte[] message) {
+
+        List<Object[]> fields = new ArrayList<>();
+        int[] position = {0};
+        while (position[0] < message.length) {
+            long tag = varint(message, position);
+            if ((tag & 7) == 0) {
+                fields.add(new Object[]{(int) (tag >>> 3), varint(message, position)});
+            } else {
+                int length = (int) varint(message, position);
+                fields.add(new Object[]{(int) (tag >>> 3),
+                        Arrays.copyOfRange(message, position[0], position[0] + length)});
+                position[0] += length;
+            }
+        }
+        return fields;
+    }
+
+    private static long varint(byte[] message, int[] position) {
+
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = message[position[0]++];
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.HeapReservationStore;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.metrics.ReservationMetrics;
+import com.campsitereservations.persistence.ReservationArchive;
+import com.campsitereservations.persistence.ReservationJournal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+    Builds on CampsiteReservationsConcurrencyTest, but talks to the database directly so that every run
+    starts from a fresh calendar. Throughput per thread count is measured by CampsiteInMemoryDatabaseBenchmark.
+ */
+public class CampsiteReservationsContentionTest {
+
+    private static final int BOOKINGS_PER_THREAD = 2000;
+
+    @Test
+    public void disjointBookingsNeverWaitForEachOther() throws Exception {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1, ReservationJournal.NONE,
+                    new HeapReservationStore(), ReservationArchive.NONE, new ReservationMetrics(meterRegistry));
+            database.initialize();
+            try {
+                int threadCount = 8;
+                AtomicInteger failedBookings = new AtomicInteger();
+                runBookAndCancelLoop(database, threadCount, failedBookings);
+
+                // Every thread owns its own 3 days, so nobody should ever be turned away.
+                assertEquals(0, failedBookings.get());
+
+                // Nor kept waiting: the days of different threads fall on different lock stripes, and wait time
+                // is only recorded when a stripe is contended. Only the locking mode takes day locks.
+                Timer lockWait = meterRegistry.get("campsite.lock.wait").timer();
+                long expectedLocks = bookingMode == BookingMode.LOCKING ? 2L * threadCount * BOOKINGS_PER_THREAD : 0;
+                assertEquals(expectedLocks, lockWait.count());
+                assertEquals(0, lockWait.totalTime(TimeUnit.NANOSECONDS), 0);
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    @Test
+    public void overlappingBookingsNeverDoubleBook() throws Exception {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode);
+            database.initialize();
+            try {
+                int threadCount = 40;
+                ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+                CountDownLatch startLatch = new CountDownLatch(1);
+                AtomicInteger successfulBookings = new AtomicInteger();
+                AtomicInteger failureBookings = new AtomicInteger();
+
+                // Each user wants 3 days overlapping the next user's first day, like the users of the concurrency
+                // test.
+                for (int count = 0; count < threadCount; count++) {
+                    LocalDate checkinDate = LocalDate.now().plusDays(1 + (count % 10) * 2);
+                    executorService.submit(() -> {
+                        startLatch.await();
+                        try {
+                            database.addReservation(reservation(UUID.randomUUID().toString(),
+                                    checkinDate, checkinDate.plusDays(2)));
+                            successfulBookings.incrementAndGet();
+                        } catch (RuntimeException runtimeException) {
+                            failureBookings.incrementAndGet();
+                        }
+                        return null;
+                    });
+                }
+
+                startLatch.countDown();
+                executorService.shutdown();
+                executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+                assertEquals(threadCount, successfulBookings.get() + failureBookings.get());
+                assertEquals(successfulBookings.get(), reservedDays(database) / 3);
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    @Test
+    public void bookingsWithoutCampsiteSpreadOverAllCampsites() throws Exception {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 8);
+            database.initialize();
+            try {
+                int threadCount = 40;
+                ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+                CountDownLatch startLatch = new CountDownLatch(1);
+                AtomicInteger successfulBookings = new AtomicInteger();
+                LocalDate checkinDate = LocalDate.now().plusDays(5);
+
+                // Everybody wants the same 3 days on any campsite, so every campsite gets exactly one of them.
+                for (int count = 0; count < threadCount; count++) {
+                    executorService.submit(() -> {
+                        startLatch.await();
+                        try {
+                            database.addReservation(reservation(UUID.randomUUID().toString(),
+                                    checkinDate, checkinDate.plusDays(2)));
+                            successfulBookings.incrementAndGet();
+                        } catch (RuntimeException runtimeException) {
+                            // Sold out
+                        }
+                        return null;
+                    });
+                }
+
+                startLatch.countDown();
+                executorService.shutdown();
+                executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+                assertEquals(8, successfulBookings.get());
+                assertEquals(0, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(2)).size());
+                assertEquals(2, database.getCampsiteAvailability(checkinDate.minusDays(1), checkinDate.plusDays(3))
+                        .size());
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    private void runBookAndCancelLoop(CampsiteInMemoryDatabase database, int threadCount,
+                                      AtomicInteger failedBookings) throws Exception {
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        for (int thread = 0; thread < threadCount; thread++) {
+            LocalDate checkinDate = LocalDate.now().plusDays(1 + thread * 3);
+
+            results.add(executorService.submit(() -> {
+                startLatch.await();
+                for (int booking = 0; booking < BOOKINGS_PER_THREAD; booking++) {
+                    ReservationDetails reservationDetails = reservation(checkinDate + "-" + booking,
+                            checkinDate, checkinDate.plusDays(2));
+                    try {
+                        database.addReservation(reservationDetails);
+                        database.deleteReservation(reservationDetails.getReservationId());
+                    } catch (RuntimeException runtimeException) {
+                        failedBookings.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        startLatch.countDown();
+
+        for (Future<?> result : results) {
+            result.get();
+        }
+
+        executorService.shutdown();
+    }
+
+    private int reservedDays(CampsiteInMemoryDatabase database) {
+        LocalDate startDate = LocalDate.now();
+        LocalDate endDate = LocalDate.now().plusDays(31);
+        return 32 - database.getCampsiteAvailability(startDate, endDate).size();
+    }
+
+    private static ReservationDetails reservation(String reservationId, LocalDate checkinDate,
+                                                  LocalDate checkoutDate) {
+        return ReservationDetails
+                .builder()
+                .reservationId(reservationId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate).checkoutDate(checkoutDate).build())
+                .build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.campsitereservations;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.contracts.BatchReservationRequest;
+import com.campsitereservations.contracts.ReservationAddUpdateResponse;
+import com.campsitereservations.db.BatchMode;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.service.ReservationOperationsService;
+import com.campsitereservations.validation.FieldsValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+    Taken dates, unknown campsites, missing reservations, lost races, invalid input and changes sent after shutdown
+    come back as failures with a reason and the same messages the exceptions used to carry, in every booking mode.
+    Bad availability searches and lookups are turned away the same way.
+ */
+public class CampsiteReservationsFailureResultTest {
+
+    @Test
+    public void bookingFailuresCarryReasons() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 2);
+            database.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(4);
+
+            Result<ReservationDetails> booked = database.tryAddReservation(reservation(checkinDate, 1));
+            assertTrue(booked.isSuccess());
+
+            assertFailure(FailureReason.DATES_TAKEN, "Campsite already booked for given dates. Please try other dates",
+                    database.tryAddReservation(reservation(checkinDate.plusDays(1), 1)));
+            assertFailure(FailureReason.UNKNOWN_CAMPSITE, "No campsite found with campsite id 3",
+                    database.tryAddReservation(reservation(checkinDate, 3)));
+
+            Result<ReservationDetails> other = database.tryAddReservation(reservation(checkinDate.plusDays(5), 1));
+            assertFailure(FailureReason.DATES_TAKEN, "Campsite is not available for new checkin and checkout dates",
+                    database.tryUpdateReservation(other.getValue(), other.getValue().toBuilder()
+                            .reservationsDates(dates(checkinDate.plusDays(1))).build()));
+
+            // The first update wins; the second still holds the reservation as it was before.
+            ReservationDetails stale = booked.getValue();
+            assertTrue(database.tryUpdateReservation(stale, stale.toBuilder()
+                    .reservationsDates(dates(checkinDate.plusDays(10))).build()).isSuccess());
+            assertFailure(FailureReason.CONCURRENT_CHANGE,
+                    "Reservation was modified by another request. Please try again",
+                    database.tryUpdateReservation(stale, stale.toBuilder()
+                            .reservationsDates(dates(checkinDate.plusDays(15))).build()));
+
+            assertTrue(database.tryDeleteReservation(stale.getReservationId()).isSuccess());
+            assertFailure(FailureReason.RESERVATION_NOT_FOUND,
+                    "No reservation found with reservation id " + stale.getReservationId(),
+                    database.tryDeleteReservation(stale.getReservationId()));
+            assertFailure(FailureReason.RESERVATION_NOT_FOUND,
+                    "Unable to find reservation with id : " + stale.getReservationId(),
+                    database.tryFindReservation(stale.getReservationId()));
+            database.close();
+        }
+    }
+
+    @Test
+    public void updatesOnlyConflictWithOtherReservations() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1);
+            database.initialize();
+            ReservationOperationsService service = new ReservationOperationsService(database,
+                    new ReservationsMapper(), new AvailableDatesCache(database, 16), new ObjectMapper());
+            LocalDate day = LocalDate.now().plusDays(5);
+
+            // A stay checking out on its checkin day keeps that day when it grows around it on the same campsite.
+            String reservationId = service.addReservation("Amit", "Ganvir", "test@test.com", day.toString(),
+                    day.toString(), 1).getReservationModel().getReservationId();
+            ReservationAddUpdateResponse grown = service.updateReservation(reservationId, "Amit", "Ganvir",
+                    "test@test.com", day.minusDays(1).toString(), day.plusDays(1).toString(), 1);
+            assertNull(grown.getErrorDetails());
+            assertEquals(day.minusDays(1).toString(), grown.getReservationModel().getCheckinDate());
+            assertNull(service.updateReservation(reservationId, "Amit", "Ganvir", "test@test.com", day.toString(),
+                    day.toString(), 1).getErrorDetails());
+
+            service.addReservation("Amit", "Ganvir", "test@test.com", day.plusDays(1).toString(),
+                    day.plusDays(1).toString(), 1);
+            assertEquals("Campsite is not available for new checkin and checkout dates",
+                    service.updateReservation(reservationId, "Amit", "Ganvir", "test@test.com", day.toString(),
+                            day.plusDays(1).toString(), 1).getErrorDetails().getErrorMessage());
+            database.close();
+        }
+    }
+
+    @Test
+    public void changesAfterShutdownAreTurnedAway() {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(BookingMode.SEQUENCER, 1);
+        database.initialize();
+        LocalDate checkinDate = LocalDate.now().plusDays(4);
+        ReservationDetails booked = database.addReservation(reservation(checkinDate, 1));
+        database.close();
+
+        String message = "Reservations are shutting down. Please try again later";
+        assertFailure(FailureReason.SHUTTING_DOWN, message,
+                database.tryAddReservation(reservation(checkinDate.plusDays(5), 1)));
+        assertFailure(FailureReason.SHUTTING_DOWN, message, database.tryUpdateReservation(booked,
+                booked.toBuilder().reservationsDates(dates(checkinDate.plusDays(10))).build()));
+        assertFailure(FailureReason.SHUTTING_DOWN, message, database.tryDeleteReservation(booked.getReservationId()));
+        assertEquals(FailureReason.SHUTTING_DOWN, database.addReservations(
+                Collections.singletonList(reservation(checkinDate.plusDays(15), 1)), BatchMode.ALL_OR_NOTHING)
+                .get(0).getFailureReason());
+    }
+
+    @Test
+    public void invalidInputCarriesReasons() {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(4);
+        String checkin = checkinDate.toString();
+        String checkout = checkinDate.plusDays(1).toString();
+
+        assertTrue(FieldsValidator.checkInputFields("Amit", "Ganvir", "test@test.com", checkin, checkout)
+                .isSuccess());
+        assertEquals(FailureReason.EMAIL, FieldsValidator.checkInputFields("Amit", "Ganvir", "test@test",
+                checkin, checkout).getFailureReason());
+        assertEquals(FailureReason.DATE_FORMAT, FieldsValidator.checkInputFields("Amit", "Ganvir", "test@test.com",
+                checkin, "tomorrow").getFailureReason());
+        assertEquals(FailureReason.TOO_SOON, FieldsValidator.checkInputFields("Amit", "Ganvir", "test@test.com",
+                LocalDate.now().toString(), LocalDate.now().plusDays(1).toString()).getFailureReason());
+        assertEquals(FailureReason.STAY_TOO_LONG, FieldsValidator.checkInputFields("Amit", "Ganvir", "test@test.com",
+                checkin, checkinDate.plusDays(5).toString()).getFailureReason());
+        assertEquals(FailureReason.MISSING_FIELDS, FieldsValidator.checkInputFields("Amit", null, "test@test.com",
+                checkin, checkout).getFailureReason());
+        assertTrue(FailureReason.EMAIL.isInvalidInput());
+        assertTrue(!FailureReason.DATES_TAKEN.isInvalidInput());
+    }
+
+    @Test
+    public void badSearchesAndLookupsCarryReasons() {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 1);
+        database.initialize();
+        ReservationOperationsService service = new ReservationOperationsService(database, new ReservationsMapper(),
+                new AvailableDatesCache(database, 16), new ObjectMapper());
+        String today = LocalDate.now().toString();
+        String tomorrow = LocalDate.now().plusDays(1).toString();
+        String dateFormat = "Invalid date format. Valid date format is yyyy-MM-dd";
+
+        assertTrue(service.validateAvailabilityExport(today, tomorrow, 1).isSuccess());
+        assertFailure(FailureReason.UNKNOWN_CAMPSITE, "No campsite found with campsite id 2",
+                service.validateAvailabilityExport(today, tomorrow, 2));
+        assertFailure(FailureReason.DATE_FORMAT, dateFormat, service.validateAvailabilityExport("2019/01/01", null,
+                null));
+        assertFailure(FailureReason.SEARCH_DATES, "Checkin date should be before checkout date ",
+                service.validateAvailabilityExport(tomorrow, today, null));
+        assertEquals("Checkin date should be a future date ", service.getAvailableDates(
+                LocalDate.now().minusDays(1).toString(), null, null).getErrorDetails().getErrorMessage());
+
+        assertEquals("Invalid email address :  ", service.findReservationsByEmail(" ").getErrorDetails()
+                .getErrorMessage());
+        assertEquals(dateFormat, service.findReservationsOnDate("2019-02-29").getErrorDetails().getErrorMessage());
+        assertEquals(dateFormat, service.findReservationsOnDate(null).getErrorDetails().getErrorMessage());
+        assertEquals("A batch should hold between 1 and 100 reservations", service.addReservations(
+                new BatchReservationRequest(null, Collections.emptyList())).getErrorDetails().getErrorMessage());
+        database.close();
+    }
+
+    private static void assertFailure(FailureReason failureReason, String message, Result<?> result) {
+        assertEquals(failureReason, result.getFailureReason());
+        assertEquals(message, result.getMessage());
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(dates(checkinDate))
+                .build();
+    }
+
+    private static ReservationsDates dates(LocalDate checkinDate) {
+        return ReservationsDates.builder().checkinDate(checkinDate).checkoutDate(checkinDate.plusDays(2)).build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.campsitereservations;
+
+import com.campsitereservations.validation.FieldsValidator;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+    The hand-rolled email scanner of FieldsValidator agrees with the regex it replaced, and its date parsing with
+    java.time, except that days past the end of the month are rejected instead of moved back to its last day.
+ */
+public class CampsiteReservationsFieldsValidatorTest {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[_A-Za-z0-9-\\+]+(\\.[_A-Za-z0-9-]+)*@"
+            + "[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$");
+
+    @Test
+    public void emailScannerMatchesRegex() {
+
+        String[] emails = {"test@test.com", "a.b-c_d+e@x-y.z1.co", "a+b.c+d@x.com", "a@b.c", "a@b.c1", "a@b",
+                "@b.com", "a@.com", "a..b@x.com", "a.@x.com", "a@x..com", "a@x-y.com", "a@x.y-z.com", "a@x.com.",
+                "a@@x.com", "a b@x.com", "a@x.c0m", "A_1@B-2.Cd", "a@x.1.com", ""};
+        for (String email : emails) {
+            assertEquals(email, EMAIL_PATTERN.matcher(email).matches(), isValidEmail(email));
+        }
+
+        char[] alphabet = {'a', 'Z', '0', '-', '+', '_', '.', '@', ' ', 'c', 'o', 'm'};
+        Random random = new Random(42);
+        for (int count = 0; count < 200_000; count++) {
+            char[] email = new char[1 + random.nextInt(12)];
+            for (int index = 0; index < email.length; index++) {
+                email[index] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String candidate = new String(email);
+            assertEquals(candidate, EMAIL_PATTERN.matcher(candidate).matches(), isValidEmail(candidate));
+        }
+    }
+
+    @Test
+    public void datesFollowBookingRules() {
+
+        LocalDate today = LocalDate.now();
+        assertEquals(null, validate(today.plusDays(1), today.plusDays(3)));
+        assertEquals(null, validate(today.plusDays(31), today.plusDays(31)));
+        assertEquals("Invalid booking date. You should book at least 1 day in advance ",
+                validate(today, today.plusDays(1)));
+        assertEquals("Invalid booking date. You can book upto 1 month in advance",
+                validate(today.plusDays(32), today.plusDays(33)));
+        assertEquals("Invalid checkin & checkout dates: " + today.plusDays(1) + " & " + today.plusDays(5)
+                + " . Campsite cannot be booked for more than 3 days", validate(today.plusDays(1), today.plusDays(5)));
+        assertEquals("Invalid checkout date: " + today.plusDays(1) + " . Checkout data should be after checkin date.",
+                validate(today.plusDays(2), today.plusDays(1)));
+
+        String invalidFormat = "Invalid checkin - checkout date format. Valid date format is  yyyy-MM-dd";
+        // The SMART DateTimeFormatter used before turned this into 2019-02-28 and took the booking.
+        assertEquals(invalidFormat, validate("2019-02-29", "2019-03-01"));
+        assertEquals(invalidFormat, validate("2019-13-01", "2019-03-01"));
+        assertEquals(invalidFormat, validate("2019/01/01", "2019-03-01"));
+        assertEquals(invalidFormat, validate("19-01-01", "2019-03-01"));
+    }
+
+    private static boolean isValidEmail(String email) {
+        LocalDate checkinDate = LocalDate.now().plusDays(1);
+        try {
+            FieldsValidator.validInputFields("Amit", "Ganvir", email, checkinDate.toString(),
+                    checkinDate.plusDays(1).toString());
+            return true;
+        } catch (Exception exception) {
+            // Blank emails are turned away before the email check, with the other missing fields.
+            return !exception.getMessage().startsWith("Invalid email address")
+                    && !exception.getMessage().startsWith("Invalid input parameters");
+        }
+    }
+
+    private static String validate(LocalDate checkinDate, LocalDate checkoutDate) {
+        return validate(checkinDate.toString(), checkoutDate.toString());
+    }
+
+    private static String validate(String checkinDate, String checkoutDate) {
+        try {
+            FieldsValidator.validInputFields("Amit", "Ganvir", "test@test.com", checkinDate, checkoutDate);
+            return null;
+        } catch (Exception exception) {
+            return exception.getMessage();
+        }
+    }
+}
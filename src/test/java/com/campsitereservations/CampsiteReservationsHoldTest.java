@@ -0,0 +1,196 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.Hold;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.db.Result;
+import com.campsitereservations.db.TimerWheel;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    A hold takes its days like a booking until it is confirmed into a reservation, released, or expires on the timer
+    wheel, in every booking mode. Runs on its own park, since it books through the endpoints.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "campsite.sites.count=4")
+@AutoConfigureMockMvc
+public class CampsiteReservationsHoldTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void holdsTakeDaysUntilConfirmedOrReleased() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1);
+            database.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            Result<Hold> held = database.tryPlaceHold(reservation(checkinDate, null), 60_000);
+            assertTrue(held.isSuccess());
+            assertEquals(Integer.valueOf(1), held.getValue().getReservationDetails().getCampsiteId());
+            assertEquals(1, database.getHoldCount());
+            assertEquals(FailureReason.DATES_TAKEN,
+                    database.tryAddReservation(reservation(checkinDate.plusDays(1), 1)).getFailureReason());
+            assertEquals(FailureReason.DATES_TAKEN,
+                    database.tryPlaceHold(reservation(checkinDate, 1), 60_000).getFailureReason());
+
+            String holdId = held.getValue().getHoldId();
+            Result<ReservationDetails> confirmed = database.tryConfirmHold(holdId);
+            assertTrue(confirmed.isSuccess());
+            assertEquals(held.getValue().getReservationDetails(), database.findReservation(holdId));
+            assertEquals(0, database.getHoldCount());
+            assertEquals(FailureReason.HOLD_NOT_FOUND, database.tryConfirmHold(holdId).getFailureReason());
+            assertEquals(FailureReason.HOLD_NOT_FOUND, database.tryReleaseHold(holdId).getFailureReason());
+            assertFalse(database.isCampsiteAvailable(checkinDate, checkinDate, 1));
+
+            LocalDate laterDate = checkinDate.plusDays(5);
+            Result<Hold> released = database.tryPlaceHold(reservation(laterDate, 1), 60_000);
+            assertFalse(database.isCampsiteAvailable(laterDate, laterDate.plusDays(2), 1));
+            assertTrue(database.tryReleaseHold(released.getValue().getHoldId()).isSuccess());
+            assertTrue(database.isCampsiteAvailable(laterDate, laterDate.plusDays(2), 1));
+            assertTrue(database.tryAddReservation(reservation(laterDate, 1)).isSuccess());
+            database.close();
+        }
+    }
+
+    @Test
+    public void expiredHoldsFreeTheirDays() throws Exception {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1);
+            database.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            Result<Hold> held = database.tryPlaceHold(reservation(checkinDate, 1), 200);
+            assertFalse(database.isCampsiteAvailable(checkinDate, checkinDate, 1));
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (database.getHoldCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, database.getHoldCount());
+            assertTrue(System.currentTimeMillis() >= held.getValue().getExpiresAtMillis());
+            assertTrue(database.isCampsiteAvailable(checkinDate, checkinDate.plusDays(2), 1));
+            assertEquals(FailureReason.HOLD_NOT_FOUND,
+                    database.tryConfirmHold(held.getValue().getHoldId()).getFailureReason());
+            database.close();
+        }
+    }
+
+    @Test
+    public void timerWheelExpiresEachTimeoutOnceWithinATick() {
+
+        AtomicLong clock = new AtomicLong(1_000);
+        long[] expiredAt = new long[5_000];
+        TimerWheel<Integer> timerWheel = new TimerWheel<>(10, 16, clock::get,
+                item -> expiredAt[item] = clock.get());
+
+        Random random = new Random(7);
+        List<TimerWheel.Timeout<Integer>> timeouts = new ArrayList<>();
+        for (int item = 0; item < expiredAt.length; item++) {
+            // Up to six turns of the wheel.
+            timeouts.add(timerWheel.schedule(item, random.nextInt(1_000)));
+        }
+        for (int item = 0; item < expiredAt.length; item += 3) {
+            assertTrue(timeouts.get(item).cancel());
+        }
+        assertEquals(expiredAt.length - (expiredAt.length + 2) / 3, timerWheel.size());
+
+        int expired = 0;
+        while (clock.get() < 2_100) {
+            clock.addAndGet(5);
+            expired += timerWheel.advance();
+        }
+
+        assertEquals(expiredAt.length - (expiredAt.length + 2) / 3, expired);
+        assertEquals(0, timerWheel.size());
+        for (int item = 0; item < expiredAt.length; item++) {
+            long deadline = timeouts.get(item).getDeadlineMillis();
+            if (item % 3 == 0) {
+                assertEquals(0, expiredAt[item]);
+                assertFalse(timeouts.get(item).cancel());
+            } else {
+                assertTrue(expiredAt[item] >= deadline);
+                assertTrue(expiredAt[item] < deadline + 10);
+            }
+        }
+    }
+
+    @Test
+    public void holdEndpoints() throws Exception {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(3);
+        String held = mockMvc.perform(post("/v1/api/place-hold?firstName=Amit&lastName=Ganvir&email=test@test.com"
+                + "&checkinDate=" + checkinDate + "&checkoutDate=" + checkinDate.plusDays(1) + "&campsiteId=1"
+                + "&ttlSeconds=60"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode hold = objectMapper.readTree(held);
+        String holdId = hold.get("holdId").asText();
+        assertEquals(holdId, hold.get("reservationModel").get("reservationId").asText());
+        assertTrue(hold.get("expiresAt").isTextual());
+
+        JsonNode confirmed = objectMapper.readTree(mockMvc.perform(post("/v1/api/confirm-hold?holdId=" + holdId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals(holdId, confirmed.get("reservationModel").get("reservationId").asText());
+        assertEquals("Campsite booked successfully. Reservation Id : " + holdId, confirmed.get("message").asText());
+
+        JsonNode released = objectMapper.readTree(mockMvc.perform(delete("/v1/api/release-hold?holdId=" + holdId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("No hold found with hold id " + holdId + ". It may have expired",
+                released.get("errorDetails").get("errorMessage").asText());
+
+        JsonNode tooLong = objectMapper.readTree(mockMvc.perform(post("/v1/api/place-hold?firstName=Amit"
+                + "&lastName=Ganvir&email=test@test.com&checkinDate=" + checkinDate.plusDays(5)
+                + "&checkoutDate=" + checkinDate.plusDays(6) + "&ttlSeconds=86400"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("Hold time should be between 1 and 1800 seconds",
+                tooLong.get("errorDetails").get("errorMessage").asText());
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.id.SnowflakeIdGenerator;
+import com.campsitereservations.persistence.MappedReservationStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+    Snowflake ids never repeat and always grow, across threads, bursts and a clock that steps back, print as text
+    that sorts the same way, and are kept by the mapped store next to UUID ids.
+ */
+public class CampsiteReservationsIdGeneratorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void concurrentIdsAreUniqueAndGrowInEveryThread() {
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        int idsPerThread = 100_000;
+
+        List<CompletableFuture<List<String>>> threads = IntStream.range(0, 8)
+                .mapToObj(thread -> CompletableFuture.supplyAsync(() -> {
+                    List<String> ids = new ArrayList<>(idsPerThread);
+                    for (int count = 0; count < idsPerThread; count++) {
+                        ids.add(generator.nextId());
+                    }
+                    return ids;
+                }))
+                .collect(Collectors.toList());
+
+        Set<String> allIds = new HashSet<>();
+        for (CompletableFuture<List<String>> thread : threads) {
+            List<String> ids = thread.join();
+            for (int index = 1; index < ids.size(); index++) {
+                assertTrue(ids.get(index).compareTo(ids.get(index - 1)) > 0);
+                assertTrue(SnowflakeIdGenerator.decode(ids.get(index))
+                        > SnowflakeIdGenerator.decode(ids.get(index - 1)));
+            }
+            allIds.addAll(ids);
+        }
+        assertEquals(8 * idsPerThread, allIds.size());
+    }
+
+    @Test
+    public void burstsAndClockStepsBackCarryOnFromTheLastId() {
+
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH_MILLIS + 1_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID, clock::get);
+
+        long previous = 0;
+        for (int count = 0; count < 5_000; count++) {
+            long id = generator.nextLongId();
+            assertTrue(id > previous);
+            assertEquals(SnowflakeIdGenerator.MAX_NODE_ID, SnowflakeIdGenerator.nodeId(id));
+            previous = id;
+        }
+        // 4096 ids in the first millisecond, the rest borrowed from the next.
+        assertEquals(clock.get() + 1, SnowflakeIdGenerator.timestampMillis(previous));
+
+        clock.addAndGet(-500);
+        long afterStepBack = generator.nextLongId();
+        assertTrue(afterStepBack > previous);
+        assertEquals(clock.get() + 501, SnowflakeIdGenerator.timestampMillis(afterStepBack));
+
+        clock.addAndGet(600);
+        long caughtUp = generator.nextLongId();
+        assertEquals(clock.get(), SnowflakeIdGenerator.timestampMillis(caughtUp));
+        assertEquals(0, caughtUp & 0xfff);
+    }
+
+    @Test
+    public void encodedIdsDecodeBackExactly() {
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+        for (int count = 0; count < 1_000; count++) {
+            long id = generator.nextLongId();
+            String encoded = SnowflakeIdGenerator.encode(id);
+            assertEquals(13, encoded.length());
+            assertEquals(Long.valueOf(id), SnowflakeIdGenerator.decode(encoded));
+        }
+        assertEquals("0000000000000", SnowflakeIdGenerator.encode(0));
+        assertEquals("FZZZZZZZZZZZZ", SnowflakeIdGenerator.encode(-1));
+        assertEquals(Long.valueOf(-1), SnowflakeIdGenerator.decode("FZZZZZZZZZZZZ"));
+
+        String encoded = generator.nextId();
+        assertNull(SnowflakeIdGenerator.decode(encoded.toLowerCase()));
+        assertNull(SnowflakeIdGenerator.decode(encoded + "0"));
+        assertNull(SnowflakeIdGenerator.decode("G000000000000"));
+        assertNull(SnowflakeIdGenerator.decode("0000000000I00"));
+        assertNull(SnowflakeIdGenerator.decode(UUID.randomUUID().toString()));
+    }
+
+    @Test
+    public void mappedStoreKeepsSnowflakeAndUuidIds() throws Exception {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        MappedReservationStore store = new MappedReservationStore(directory);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        LocalDate checkinDate = LocalDate.now().plusDays(2);
+
+        ReservationDetails snowflake = reservation(generator.nextId(), checkinDate);
+        ReservationDetails uuid = reservation(UUID.randomUUID().toString(), checkinDate.plusDays(5));
+        store.insert(snowflake);
+        store.insert(uuid);
+        assertNull(store.get(snowflake.getReservationId().toLowerCase()));
+        assertNull(store.get(new UUID(0, SnowflakeIdGenerator.decode(snowflake.getReservationId())).toString()));
+        store.close();
+
+        MappedReservationStore reopenedStore = new MappedReservationStore(directory);
+        assertEquals(snowflake, reopenedStore.get(snowflake.getReservationId()));
+        assertEquals(uuid, reopenedStore.get(uuid.getReservationId()));
+        assertEquals(new HashSet<>(Arrays.asList(snowflake, uuid)),
+                new HashSet<>(reopenedStore.values()));
+        reopenedStore.close();
+    }
+
+    private static ReservationDetails reservation(String reservationId, LocalDate checkinDate) {
+        return ReservationDetails
+                .builder()
+                .reservationId(reservationId)
+                .campsiteId(1)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
@@ -0,0 +1,202 @@
+package com.campsitereservations;
+
+import com.campsitereservations.cache.IdempotencyCache;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.Result;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Requests sent again with the same Idempotency-Key get the first response, concurrent ones wait for it instead of
+    running, and keys are dropped when they expire or the cache is full. Runs on its own park, since it books through
+    the endpoints.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "campsite.sites.count=6")
+@AutoConfigureMockMvc
+public class CampsiteReservationsIdempotencyTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void concurrentDuplicatesRunOnce() throws Exception {
+
+        IdempotencyCache idempotencyCache = new IdempotencyCache(100, TimeUnit.MINUTES.toNanos(1), System::nanoTime);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+
+        CompletableFuture<Result<Object>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyCache.execute("key", "add-reservation", () -> {
+                    runs.incrementAndGet();
+                    running.countDown();
+                    await(release);
+                    return new Object();
+                }), executor);
+        running.await();
+        List<CompletableFuture<Result<Object>>> duplicates = IntStream.range(0, 15)
+                .mapToObj(duplicate -> CompletableFuture.supplyAsync(() ->
+                        idempotencyCache.execute("key", "add-reservation", () -> {
+                            runs.incrementAndGet();
+                            return new Object();
+                        }), executor))
+                .collect(Collectors.toList());
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (idempotencyCache.getReplayCount() < 15 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        Object response = first.join().getValue();
+        for (CompletableFuture<Result<Object>> duplicate : duplicates) {
+            assertSame(response, duplicate.join().getValue());
+        }
+        assertEquals(1, runs.get());
+        assertEquals(15, idempotencyCache.getReplayCount());
+        assertSame(response, idempotencyCache.execute("key", "add-reservation", Object::new).getValue());
+        executor.shutdown();
+    }
+
+    @Test
+    public void keysExpireAreBoundedAndNeverReusedForOtherRequests() {
+
+        AtomicLong clock = new AtomicLong();
+        IdempotencyCache idempotencyCache = new IdempotencyCache(3, 1_000, clock::get);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertEquals(Integer.valueOf(1), idempotencyCache.execute("a", "cancel 1", runs::incrementAndGet).getValue());
+        assertEquals(Integer.valueOf(1), idempotencyCache.execute("a", "cancel 1", runs::incrementAndGet).getValue());
+        assertEquals(FailureReason.IDEMPOTENCY_KEY_REUSED,
+                idempotencyCache.execute("a", "cancel 2", runs::incrementAndGet).getFailureReason());
+        assertEquals(FailureReason.IDEMPOTENCY_KEY,
+                idempotencyCache.execute(new String(new char[256]).replace('\0', 'k'), "cancel 1",
+                        runs::incrementAndGet).getFailureReason());
+        assertEquals(Integer.valueOf(2), idempotencyCache.execute(null, "cancel 1", runs::incrementAndGet).getValue());
+
+        clock.set(1_000);
+        assertEquals(Integer.valueOf(3), idempotencyCache.execute("a", "cancel 2", runs::incrementAndGet).getValue());
+        assertEquals(1, idempotencyCache.size());
+
+        for (String key : new String[]{"b", "c", "d"}) {
+            idempotencyCache.execute(key, "cancel 1", runs::incrementAndGet);
+        }
+        assertEquals(3, idempotencyCache.size());
+        assertEquals(1, idempotencyCache.getEvictionCount());
+        assertEquals(Integer.valueOf(7), idempotencyCache.execute("a", "cancel 2", runs::incrementAndGet).getValue());
+        assertEquals(Integer.valueOf(5), idempotencyCache.execute("c", "cancel 1", runs::incrementAndGet).getValue());
+
+        // A key still running outlives the keys used while it runs, even past max-entries.
+        AtomicInteger slowRuns = new AtomicInteger();
+        assertEquals(Integer.valueOf(1), idempotencyCache.execute("slow", "cancel 3", () -> {
+            for (String key : new String[]{"f", "g", "h"}) {
+                idempotencyCache.execute(key, "cancel 1", runs::incrementAndGet);
+            }
+            return slowRuns.incrementAndGet();
+        }).getValue());
+        assertEquals(Integer.valueOf(1), idempotencyCache.execute("slow", "cancel 3", slowRuns::incrementAndGet)
+                .getValue());
+        assertEquals(3, idempotencyCache.size());
+
+        try {
+            idempotencyCache.execute("e", "cancel 1", () -> {
+                throw new IllegalStateException("failed");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals(Integer.valueOf(11), idempotencyCache.execute("e", "cancel 1", runs::incrementAndGet)
+                    .getValue());
+        }
+    }
+
+    @Test
+    public void retriedBookingsAndCancelsKeepTheirFirstResponse() throws Exception {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(3);
+        String key = UUID.randomUUID().toString();
+        String booking = "/v1/api/add-reservation?firstName=Amit&lastName=Ganvir&email=retry@test.com&campsiteId=1"
+                + "&checkinDate=" + checkinDate + "&checkoutDate=" + checkinDate.plusDays(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<JsonNode>> retries = IntStream.range(0, 8)
+                .mapToObj(retry -> CompletableFuture.supplyAsync(() -> json(post(booking), key, 200), executor))
+                .collect(Collectors.toList());
+        Set<String> reservationIds = new HashSet<>();
+        for (CompletableFuture<JsonNode> retry : retries) {
+            reservationIds.add(retry.join().get("reservationModel").get("reservationId").asText());
+        }
+        executor.shutdown();
+        assertEquals(1, reservationIds.size());
+        assertEquals(1, json(get("/v1/api/reservations-by-email?email=retry@test.com"), null, 200)
+                .get("reservations").size());
+        assertTrue(json(post(booking), null, 200).get("errorDetails").get("errorMessage").asText()
+                .contains("already booked"));
+
+        String reservationId = reservationIds.iterator().next();
+        String cancelKey = UUID.randomUUID().toString();
+        JsonNode cancelled = json(delete("/v1/api/cancel-reservation?reservationId=" + reservationId), cancelKey, 200);
+        assertEquals(cancelled, json(delete("/v1/api/cancel-reservation?reservationId=" + reservationId),
+                cancelKey, 200));
+        assertTrue(json(delete("/v1/api/cancel-reservation?reservationId=" + reservationId), cancelKey + "-new", 200)
+                .get("errorDetails").isObject());
+
+        assertTrue(json(post(booking.replace("campsiteId=1", "campsiteId=2")), key, 422)
+                .get("errorDetails").get("errorMessage").asText().contains("different request"));
+    }
+
+    private JsonNode json(MockHttpServletRequestBuilder request, String idempotencyKey, int expectedStatus) {
+        try {
+            if (idempotencyKey != null) {
+                request.header(IdempotencyCache.HEADER, idempotencyKey);
+            }
+            return objectMapper.readTree(mockMvc.perform(request)
+                    .andExpect(status().is(expectedStatus))
+                    .andReturn().getResponse().getContentAsString());
+        } catch (Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.AvailabilityCalendar;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+    Runs the same 40 users against the lock-free booking mode. The double booking guarantee must not change:
+    10 users get the campsite and 30 get an error message. A claim never fails on days that were only taken by a
+    claim that rolled back.
+ */
+@TestPropertySource(properties = "campsite.booking.mode=LOCK_FREE")
+public class CampsiteReservationsLockFreeConcurrencyTest extends CampsiteReservationsConcurrencyTest {
+
+    @Test
+    public void claimsNeverFailOnDaysOfARolledBackClaim() throws Exception {
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 5000; round++) {
+                AvailabilityCalendar calendar = new AvailabilityCalendar(0, 256);
+                calendar.release(0, 255);
+                calendar.book(150, 150);
+                CyclicBarrier startBarrier = new CyclicBarrier(2);
+
+                // The second claim takes days 80 to 127 before it reaches the booked day 150 and rolls back, so
+                // the first claim may find days 80 to 100 taken for a moment.
+                Future<Boolean> first = executorService.submit(() -> {
+                    startBarrier.await();
+                    return calendar.tryBook(10, 100);
+                });
+                Future<Boolean> second = executorService.submit(() -> {
+                    startBarrier.await();
+                    return calendar.tryBook(80, 150);
+                });
+
+                assertFalse(second.get());
+                assertTrue("Round " + round, first.get());
+                calendar.release(10, 100);
+                assertTrue(calendar.isAvailable(0, 149));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.campsitereservations;
+
+import com.campsitereservations.cache.AvailableDatesCache;
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.HeapReservationStore;
+import com.campsitereservations.mapper.ReservationsMapper;
+import com.campsitereservations.metrics.ReservationMetrics;
+import com.campsitereservations.persistence.ReservationArchive;
+import com.campsitereservations.persistence.ReservationJournal;
+import com.campsitereservations.service.ReservationOperationsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Every service operation is timed, lost bookings and bad input are counted by cause, day locks report wait and
+    hold times, and the whole set is scraped from the Prometheus endpoint. Runs on its own park, since it books.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "campsite.sites.count=3")
+@AutoConfigureMockMvc
+public class CampsiteReservationsMetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void recordsOperationsConflictsAndRejections() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            ReservationMetrics reservationMetrics = new ReservationMetrics(meterRegistry);
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1, ReservationJournal.NONE,
+                    new HeapReservationStore(), ReservationArchive.NONE, reservationMetrics);
+            database.initialize();
+            ReservationOperationsService service = new ReservationOperationsService(database,
+                    new ReservationsMapper(), new AvailableDatesCache(database, 16), new ObjectMapper(),
+                    reservationMetrics);
+
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+            String reservationId = service.addReservation("Amit", "Ganvir", "test@test.com", checkinDate.toString(),
+                    checkinDate.plusDays(1).toString(), null).getReservationModel().getReservationId();
+            service.addReservation("Amit", "Ganvir", "test@test.com", checkinDate.toString(),
+                    checkinDate.plusDays(1).toString(), null);
+            service.addReservation("Amit", "Ganvir", "not-an-email", checkinDate.toString(),
+                    checkinDate.plusDays(1).toString(), null);
+            service.getAvailableDates(checkinDate.toString(), "2019/01/01", null);
+            service.cancelReservation(reservationId);
+
+            assertEquals(3, meterRegistry.get("campsite.operation").tag("operation", "add-reservation")
+                    .timer().count());
+            assertEquals(1, meterRegistry.get("campsite.operation").tag("operation", "available-dates")
+                    .timer().count());
+            assertEquals(1, meterRegistry.get("campsite.operation").tag("operation", "cancel-reservation")
+                    .timer().count());
+            assertEquals(1.0, meterRegistry.get("campsite.booking.conflicts").tag("cause", "dates-taken")
+                    .counter().count(), 0);
+            assertEquals(1.0, meterRegistry.get("campsite.validation.rejections").tag("reason", "email")
+                    .counter().count(), 0);
+            assertEquals(1.0, meterRegistry.get("campsite.validation.rejections").tag("reason", "date-format")
+                    .counter().count(), 0);
+
+            // Only the locking mode takes day locks, for the booking and the cancel; the lost booking already
+            // finds its dates taken in the snapshot.
+            long expectedLocks = bookingMode == BookingMode.LOCKING ? 2 : 0;
+            assertEquals(expectedLocks, meterRegistry.get("campsite.lock.wait").timer().count());
+            assertEquals(expectedLocks, meterRegistry.get("campsite.lock.hold").timer().count());
+            database.close();
+        }
+    }
+
+    @Test
+    public void exposesMetricsToPrometheus() throws Exception {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(5);
+        mockMvc.perform(get("/v1/api/available-dates?checkinDate=" + checkinDate
+                + "&checkoutDate=" + checkinDate.plusDays(2)))
+                .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("campsite_operation_seconds_count{operation=\"available-dates\",}"));
+        assertTrue(scrape.contains("campsite_operation_seconds_bucket{operation=\"add-reservation\""));
+        assertTrue(scrape.contains("campsite_lock_wait_seconds_count"));
+        assertTrue(scrape.contains("campsite_available_days 96.0"));
+        assertTrue(scrape.contains("campsite_reservations 0.0"));
+        assertTrue(scrape.contains("campsite_cache_gets_total{result=\"miss\",}"));
+    }
+}
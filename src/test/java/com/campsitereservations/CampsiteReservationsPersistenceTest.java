@@ -0,0 +1,417 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.persistence.Durability;
+import com.campsitereservations.persistence.MappedReservationStore;
+import com.campsitereservations.persistence.ReservationJournal;
+import com.campsitereservations.persistence.WriteAheadLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/*
+    Bookings survive a restart, from a write-ahead log or a memory-mapped store, and changes whose journal write
+    fails are taken back and never replayed.
+ */
+public class CampsiteReservationsPersistenceTest {
+
+    private static final String SAVE_FAILED = "Exception while saving reservation";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void reservationsSurviveRestartFromSnapshotAndLogTail() throws Exception {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        WriteAheadLog writeAheadLog = new WriteAheadLog(directory, Durability.GROUP_COMMIT, 3600);
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 2, writeAheadLog);
+        database.initialize();
+
+        LocalDate checkinDate = LocalDate.now().plusDays(2);
+        ReservationDetails first = database.addReservation(reservation("first", checkinDate, null));
+        ReservationDetails second = database.addReservation(reservation("second", checkinDate.plusDays(5), 2));
+        ReservationDetails third = database.addReservation(reservation("third", checkinDate.plusDays(10), null));
+
+        writeAheadLog.snapshot(snapshotOf(database, first, second, third));
+
+        // Changes after the snapshot only live in the log tail.
+        database.deleteReservation(second.getReservationId());
+        database.updateReservation(third, reservation("third", checkinDate.plusDays(15), 1));
+        writeAheadLog.close();
+
+        WriteAheadLog reopenedLog = new WriteAheadLog(directory, Durability.GROUP_COMMIT, 3600);
+        CampsiteInMemoryDatabase recovered = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 2, reopenedLog);
+        recovered.initialize();
+
+        assertEquals(first.getCampsiteId(), recovered.findReservation("first").getCampsiteId());
+        assertEquals(checkinDate.plusDays(15),
+                recovered.findReservation("third").getReservationsDates().getCheckinDate());
+        assertEquals(1, (int) recovered.findReservation("third").getCampsiteId());
+        assertEquals(3, recovered.getCampsiteAvailability(checkinDate.plusDays(5), checkinDate.plusDays(7), 2).size());
+        assertEquals(0, recovered.getCampsiteAvailability(checkinDate.plusDays(15), checkinDate.plusDays(17), 1).size());
+        reopenedLog.close();
+    }
+
+    @Test
+    public void failedJournalWritesLeaveNothingBehind() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            FailingJournal failingJournal = new FailingJournal();
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1, failingJournal);
+            database.initialize();
+            try {
+                LocalDate checkinDate = LocalDate.now().plusDays(2);
+                ReservationDetails kept = database.addReservation(reservation(uniqueId(), checkinDate, 1));
+
+                failingJournal.failing = true;
+                ReservationDetails added = reservation(uniqueId(), checkinDate.plusDays(5), 1);
+                assertEquals(SAVE_FAILED, failureOf(() -> database.addReservation(added)));
+                assertEquals(SAVE_FAILED, failureOf(() -> database.updateReservation(kept,
+                        reservation(kept.getReservationId(), checkinDate.plusDays(1), 1))));
+                assertEquals(SAVE_FAILED, failureOf(() -> database.deleteReservation(kept.getReservationId())));
+                failingJournal.failing = false;
+
+                assertEquals(kept, database.findReservation(kept.getReservationId()));
+                assertEquals(1, database.getReservationCount());
+                assertEquals(1, database.findReservationsByEmail("test@test.com").size());
+                assertEquals(0, database.getCampsiteAvailability(checkinDate, checkinDate.plusDays(2), 1).size());
+                assertEquals(1, database.getCampsiteAvailability(checkinDate.plusDays(3), checkinDate.plusDays(3),
+                        1).size());
+                assertEquals(3, database.getCampsiteAvailability(checkinDate.plusDays(5), checkinDate.plusDays(7),
+                        1).size());
+
+                // Retrying the booking the client was told failed does not run into itself.
+                assertEquals(added, database.addReservation(added));
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    @Test
+    public void failedLogWritesAreNeverReplayed() throws Exception {
+
+        // A write can fail half way through its records, or a force after they all reached the file.
+        for (boolean failForce : new boolean[]{false, true}) {
+
+            Path directory = temporaryFolder.newFolder().toPath();
+            FailingWriteAheadLog writeAheadLog = new FailingWriteAheadLog(directory, failForce);
+            writeAheadLog.recover();
+
+            LocalDate checkinDate = LocalDate.now().plusDays(2);
+            writeAheadLog.reservationAdded(reservation("kept", checkinDate, 1)).join();
+            writeAheadLog.failing = true;
+            CompletableFuture<Void> failed = writeAheadLog.reservationAdded(reservation("failed",
+                    checkinDate.plusDays(5), 1));
+            assertNotNull(failureOf(failed::join));
+            writeAheadLog.failing = false;
+            writeAheadLog.reservationAdded(reservation("later", checkinDate.plusDays(10), 1)).join();
+            writeAheadLog.close();
+
+            WriteAheadLog reopenedLog = new WriteAheadLog(directory, Durability.GROUP_COMMIT, 3600);
+            Set<String> replayed = reopenedLog.recover().stream().map(ReservationDetails::getReservationId)
+                    .collect(Collectors.toSet());
+            reopenedLog.close();
+            assertEquals(new HashSet<>(Arrays.asList("kept", "later")), replayed);
+        }
+    }
+
+    @Test
+    public void reservationsSurviveRestartOfMappedStore() throws Exception {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        MappedReservationStore store = new MappedReservationStore(directory);
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 2,
+                ReservationJournal.NONE, store);
+        database.initialize();
+
+        LocalDate checkinDate = LocalDate.now().plusDays(2);
+        ReservationDetails first = database.addReservation(reservation(uniqueId(), checkinDate, 1));
+        ReservationDetails second = database.addReservation(reservation(uniqueId(), checkinDate.plusDays(5), 2));
+        ReservationDetails third = database.addReservation(reservation(uniqueId(), checkinDate.plusDays(10), null));
+        database.deleteReservation(second.getReservationId());
+        database.updateReservation(third, reservation(third.getReservationId(), checkinDate.plusDays(15), 1));
+        store.close();
+
+        MappedReservationStore reopenedStore = new MappedReservationStore(directory);
+        CampsiteInMemoryDatabase recovered = new CampsiteInMemoryDatabase(BookingMode.LOCKING, 2,
+                ReservationJournal.NONE, reopenedStore);
+        recovered.initialize();
+
+        assertEquals(2, reopenedStore.size());
+        assertEquals(first.getCustomer(), recovered.findReservation(first.getReservationId()).getCustomer());
+        assertEquals(checkinDate.plusDays(15),
+                recovered.findReservation(third.getReservationId()).getReservationsDates().getCheckinDate());
+        assertEquals(3, recovered.getCampsiteAvailability(checkinDate.plusDays(5), checkinDate.plusDays(7), 2).size());
+        assertEquals(0, recovered.getCampsiteAvailability(checkinDate.plusDays(15), checkinDate.plusDays(17), 1).size());
+
+        // Customers are decoded straight from the mapped file, multi-byte characters included.
+        Customer customer = Customer.builder().firstName("Zoë").lastName("Ñandú").email("予約@test.com").build();
+        ReservationDetails fourth = reservation(uniqueId(), checkinDate.plusDays(20), 2).toBuilder()
+                .customer(customer).build();
+        reopenedStore.insert(fourth);
+        assertEquals(customer, reopenedStore.get(fourth.getReservationId()).getCustomer());
+        assertEquals(first.getCustomer(), reopenedStore.get(first.getReservationId()).getCustomer());
+        reopenedStore.close();
+    }
+
+    @Test
+    public void reopensMappedStoreWithEveryRecord() throws Exception {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        MappedReservationStore store = new MappedReservationStore(directory);
+
+        List<ReservationDetails> inserted = new ArrayList<>();
+        LocalDate checkinDate = LocalDate.now().plusDays(1);
+        for (int count = 0; count < 1_000; count++) {
+            ReservationDetails reservationDetails = reservation(uniqueId(), checkinDate.plusDays(count % 30),
+                    1 + count % 8);
+            store.insert(reservationDetails);
+            inserted.add(reservationDetails);
+        }
+        store.close();
+
+        MappedReservationStore reopenedStore = new MappedReservationStore(directory);
+        try {
+            assertEquals(inserted.size(), reopenedStore.size());
+            for (ReservationDetails reservationDetails : inserted) {
+                assertEquals(reservationDetails, reopenedStore.get(reservationDetails.getReservationId()));
+            }
+        } finally {
+            reopenedStore.close();
+        }
+    }
+
+    private static String failureOf(Runnable change) {
+        try {
+            change.run();
+            return null;
+        } catch (RuntimeException runtimeException) {
+            return runtimeException.getMessage();
+        }
+    }
+
+    private static String uniqueId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static List<ReservationDetails> snapshotOf(CampsiteInMemoryDatabase database,
+                                                       ReservationDetails... reservations) {
+        List<ReservationDetails> snapshot = new ArrayList<>();
+        for (ReservationDetails reservationDetails : reservations) {
+            snapshot.add(database.findReservation(reservationDetails.getReservationId()));
+        }
+        return snapshot;
+    }
+
+    private static ReservationDetails reservation(String reservationId, LocalDate checkinDate, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(reservationId)
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+
+    /*
+        Write-ahead log whose segment writes, or the forces after them, fail while failing is set.
+     */
+    private static class FailingWriteAheadLog extends WriteAheadLog {
+
+        private final boolean failForce;
+        private volatile boolean failing;
+
+        private FailingWriteAheadLog(Path directory, boolean failForce) {
+            super(directory, Durability.GROUP_COMMIT, 3600);
+            this.failForce = failForce;
+        }
+
+        @Override
+        protected FileChannel openChannel(Path segmentFile) throws IOException {
+            return new FailingChannel(super.openChannel(segmentFile));
+        }
+
+        private class FailingChannel extends FileChannel {
+
+            private final FileChannel channel;
+
+            private FailingChannel(FileChannel channel) {
+                this.channel = channel;
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                if (failing && !failForce) {
+                    ByteBuffer firstHalf = source.duplicate();
+                    firstHalf.limit(source.position() + source.remaining() / 2);
+                    source.position(source.position() + channel.write(firstHalf));
+                    throw new IOException("No space left on device");
+                }
+                return channel.write(source);
+            }
+
+            @Override
+            public void force(boolean metaData) throws IOException {
+                if (failing && failForce) {
+                    throw new IOException("Input/output error");
+                }
+                channel.force(metaData);
+            }
+
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                return channel.read(destination);
+            }
+
+            @Override
+            public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+                return channel.read(destinations, offset, length);
+            }
+
+            @Override
+            public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+                return channel.write(sources, offset, length);
+            }
+
+            @Override
+            public long position() throws IOException {
+                return channel.position();
+            }
+
+            @Override
+            public FileChannel position(long newPosition) throws IOException {
+                channel.position(newPosition);
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public FileChannel truncate(long size) throws IOException {
+                channel.truncate(size);
+                return this;
+            }
+
+            @Override
+            public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+                return channel.transferTo(position, count, target);
+            }
+
+            @Override
+            public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+                return channel.transferFrom(source, position, count);
+            }
+
+            @Override
+            public int read(ByteBuffer destination, long position) throws IOException {
+                return channel.read(destination, position);
+            }
+
+            @Override
+            public int write(ByteBuffer source, long position) throws IOException {
+                return channel.write(source, position);
+            }
+
+            @Override
+            public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+                return channel.map(mode, position, size);
+            }
+
+            @Override
+            public FileLock lock(long position, long size, boolean shared) throws IOException {
+                return channel.lock(position, size, shared);
+            }
+
+            @Override
+            public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+                return channel.tryLock(position, size, shared);
+            }
+
+            @Override
+            protected void implCloseChannel() throws IOException {
+                channel.close();
+            }
+        }
+    }
+
+    /*
+        Journal whose writes fail with an IOException while failing is set, as a full or broken disk would.
+     */
+    private static class FailingJournal implements ReservationJournal {
+
+        private volatile boolean failing;
+
+        @Override
+        public CompletableFuture<Void> reservationAdded(ReservationDetails reservationDetails) {
+            return write();
+        }
+
+        @Override
+        public CompletableFuture<Void> reservationUpdated(ReservationDetails reservationDetails) {
+            return write();
+        }
+
+        @Override
+        public CompletableFuture<Void> reservationCancelled(String reservationId) {
+            return write();
+        }
+
+        private CompletableFuture<Void> write() {
+            CompletableFuture<Void> saved = new CompletableFuture<>();
+            if (failing) {
+                saved.completeExceptionally(new IOException("No space left on device"));
+            } else {
+                saved.complete(null);
+            }
+            return saved;
+        }
+
+        @Override
+        public Collection<ReservationDetails> recover() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void startSnapshots(Supplier<Collection<ReservationDetails>> reservations) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
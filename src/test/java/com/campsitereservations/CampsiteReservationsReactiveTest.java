@@ -0,0 +1,90 @@
+package com.campsitereservations;
+
+import com.campsitereservations.cache.IdempotencyCache;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+    With spring.main.web-application-type=reactive the same endpoints are served by the WebFlux router: available
+    dates with conditional GET support, bookings that move the ETag on, missing parameters rejected with 400, and
+    retries sent with an Idempotency-Key answered with the first response.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class CampsiteReservationsReactiveTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    public void servesReservationsOnWebFlux() {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(25);
+        String availableDatesRequest = "/v1/api/available-dates?checkinDate=" + checkinDate
+                + "&checkoutDate=" + checkinDate.plusDays(3);
+
+        String eTag = webTestClient.get().uri(availableDatesRequest)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.availableDates.dates").isArray()
+                .returnResult().getResponseHeaders().getETag();
+        assertNotNull(eTag);
+
+        webTestClient.get().uri(availableDatesRequest).header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        webTestClient.post().uri("/v1/api/add-reservation?firstName=Amit&lastName=Ganvir&email=test@test.com"
+                + "&checkinDate=" + checkinDate + "&checkoutDate=" + checkinDate.plusDays(1))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.reservationModel.reservationId").isNotEmpty();
+
+        webTestClient.get().uri(availableDatesRequest).header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.availableDates.dates.length()").isEqualTo(2);
+
+        webTestClient.get().uri("/v1/api/availability-export?checkinDate=" + checkinDate
+                + "&checkoutDate=" + checkinDate.plusDays(3))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/x-ndjson")
+                .expectBody(String.class).isEqualTo("{\"campsiteId\":1,\"fromDate\":\"" + checkinDate.plusDays(2)
+                + "\",\"toDate\":\"" + checkinDate.plusDays(3) + "\"}\n");
+
+        webTestClient.post().uri("/v1/api/add-reservation?firstName=Amit")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        String booking = "/v1/api/add-reservation?firstName=Amit&lastName=Ganvir&email=retry@test.com"
+                + "&checkinDate=" + checkinDate.plusDays(2) + "&checkoutDate=" + checkinDate.plusDays(3);
+        String booked = book(booking, "reactive-retry");
+        assertTrue(booked.contains("reservationId"));
+        assertEquals(booked, book(booking, "reactive-retry"));
+
+        webTestClient.post().uri(booking.replace("retry@", "other@")).header(IdempotencyCache.HEADER, "reactive-retry")
+                .exchange()
+                .expectStatus().isEqualTo(422)
+                .expectBody().jsonPath("$.errorDetails.errorMessage").isNotEmpty();
+    }
+
+    private String book(String booking, String idempotencyKey) {
+        return webTestClient.post().uri(booking).header(IdempotencyCache.HEADER, idempotencyKey)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+    }
+}
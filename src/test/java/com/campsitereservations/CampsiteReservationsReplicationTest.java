@@ -0,0 +1,241 @@
+package com.campsitereservations;
+
+import com.campsitereservations.replication.ReplicationNode;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+    A primary and two followers, each its own JVM on loopback. Under concurrent bookings and cancels on the primary,
+    a follower read carrying the position a write returned always sees that write, and the time until it does is the
+    replication lag, whose p99 stays under a second. Afterwards the followers, and one started late, hold the primary's reservations, and turn
+    writes away.
+ */
+public class CampsiteReservationsReplicationTest {
+
+    private static final int SITES = 8;
+    private static final int WRITERS = 4;
+    private static final int BOOKINGS_PER_WRITER = 150;
+    private static final long STARTUP_TIMEOUT_MILLIS = 240_000;
+    // Half the followers' default read timeout of 2 seconds.
+    private static final long MAX_P99_LAG_MICROS = 1_000_000;
+
+    private final List<Process> processes = new ArrayList<>();
+    private final List<File> logs = new ArrayList<>();
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @After
+    public void stopNodes() throws Exception {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            process.waitFor();
+        }
+        for (File log : logs) {
+            Files.deleteIfExists(log.toPath());
+        }
+    }
+
+    @Test
+    public void followersServeReadYourWritesAndConverge() throws Exception {
+
+        int replicationPort = freePort();
+        String primary = startNode("PRIMARY", replicationPort);
+        List<String> followers = Arrays.asList(startNode("FOLLOWER", replicationPort),
+                startNode("FOLLOWER", replicationPort));
+        awaitStarted(primary);
+        for (String follower : followers) {
+            awaitStarted(follower);
+        }
+
+        List<CompletableFuture<List<Long>>> writers = IntStream.range(0, WRITERS)
+                .mapToObj(writer -> CompletableFuture.supplyAsync(() -> book(writer, primary, followers)))
+                .collect(Collectors.toList());
+        List<Long> lagMicros = new ArrayList<>();
+        for (CompletableFuture<List<Long>> writer : writers) {
+            lagMicros.addAll(writer.join());
+        }
+        Collections.sort(lagMicros);
+        // Followers wait up to the read timeout for a position; the lag should stay well inside it.
+        String lag = String.format("Replication lag over %d writes: p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                lagMicros.size(), percentile(lagMicros, 0.50) / 1_000.0, percentile(lagMicros, 0.99) / 1_000.0,
+                lagMicros.get(lagMicros.size() - 1) / 1_000.0);
+        assertTrue(lag, percentile(lagMicros, 0.99) < MAX_P99_LAG_MICROS);
+
+        // A follower started now copies the reservations whole instead of replaying the changes.
+        List<String> allFollowers = new ArrayList<>(followers);
+        allFollowers.add(startNode("FOLLOWER", replicationPort));
+        awaitStarted(allFollowers.get(2));
+
+        long primaryPosition = position(get(primary + "available-dates?" + window(1), null));
+        assertTrue(primaryPosition >= lagMicros.size());
+        for (int campsiteId = 1; campsiteId <= SITES; campsiteId++) {
+            JsonNode onPrimary = body(get(primary + "available-dates?" + window(campsiteId), null));
+            for (String follower : allFollowers) {
+                ResponseEntity<String> onFollower = get(follower + "available-dates?" + window(campsiteId),
+                        primaryPosition);
+                assertTrue(position(onFollower) >= primaryPosition);
+                assertEquals(onPrimary.get("availableDates"), body(onFollower).get("availableDates"));
+            }
+        }
+
+        LocalDate checkinDate = LocalDate.now().plusDays(2);
+        JsonNode rejected = body(restTemplate.postForEntity(followers.get(0) + "add-reservation?firstName=Amit"
+                + "&lastName=Ganvir&email=test@test.com&campsiteId=1&checkinDate=" + checkinDate + "&checkoutDate="
+                + checkinDate.plusDays(1), null, String.class));
+        assertTrue(rejected.get("errorDetails").get("errorMessage").asText().contains("read-only replica"));
+    }
+
+    /*
+        Every writer has campsites of its own, so what it reads back is decided by its own writes alone.
+     */
+    private List<Long> book(int writer, String primary, List<String> followers) {
+
+        List<Long> lagMicros = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int count = 0; count < BOOKINGS_PER_WRITER; count++) {
+            int campsiteId = writer + 1 + WRITERS * random.nextInt(SITES / WRITERS);
+            LocalDate checkinDate = LocalDate.now().plusDays(1 + random.nextInt(27));
+            String dates = "&campsiteId=" + campsiteId + "&checkinDate=" + checkinDate + "&checkoutDate="
+                    + checkinDate.plusDays(1);
+
+            ResponseEntity<String> added = restTemplate.postForEntity(primary + "add-reservation?firstName=Amit"
+                    + "&lastName=Ganvir&email=writer" + writer + "@test.com" + dates, null, String.class);
+            JsonNode reservation = body(added).get("reservationModel");
+            if (reservation == null || reservation.isNull()) {
+                continue;
+            }
+            String follower = followers.get(count % followers.size());
+            String datesQuery = "available-dates?" + dates.substring(1);
+
+            long start = System.nanoTime();
+            JsonNode afterAdd = body(get(follower + datesQuery, position(added)));
+            lagMicros.add((System.nanoTime() - start) / 1_000);
+            assertFalse(availableDates(afterAdd).contains(checkinDate.toString()));
+
+            // Most bookings are cancelled again, so the writer's campsites never fill up.
+            if (random.nextInt(4) != 0) {
+                ResponseEntity<String> cancelled = restTemplate.exchange(primary + "cancel-reservation?reservationId="
+                        + reservation.get("reservationId").asText(), HttpMethod.DELETE, null, String.class);
+                start = System.nanoTime();
+                JsonNode afterCancel = body(get(follower + datesQuery, position(cancelled)));
+                lagMicros.add((System.nanoTime() - start) / 1_000);
+                assertTrue(availableDates(afterCancel).contains(checkinDate.toString()));
+            }
+        }
+        return lagMicros;
+    }
+
+    private String startNode(String role, int replicationPort) throws IOException {
+
+        int httpPort = freePort();
+        File log = File.createTempFile("replication-" + role.toLowerCase(), ".log");
+        logs.add(log);
+        String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        Process process = new ProcessBuilder(javaBin, "-XX:TieredStopAtLevel=1", "-Xmx256m", "-cp", classPath,
+                CampsiteReservationsApplication.class.getName(),
+                "--server.port=" + httpPort,
+                "--campsite.replication.role=" + role,
+                "--campsite.replication.port=" + replicationPort,
+                "--campsite.sites.count=" + SITES,
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN")
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        processes.add(process);
+        return "http://localhost:" + httpPort + "/v1/api/";
+    }
+
+    private void awaitStarted(String node) throws Exception {
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (true) {
+            for (int index = 0; index < processes.size(); index++) {
+                if (!processes.get(index).isAlive()) {
+                    throw new AssertionError("Node exited: " + new String(Files.readAllBytes(logs.get(index).toPath())));
+                }
+            }
+            try {
+                if (get(node + "available-dates?" + window(1), null).getStatusCode().is2xxSuccessful()) {
+                    return;
+                }
+            } catch (RuntimeException notYetStarted) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new AssertionError("Node " + node + " did not start in time", notYetStarted);
+                }
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    private ResponseEntity<String> get(String url, Long position) {
+
+        HttpHeaders headers = new HttpHeaders();
+        if (position != null) {
+            headers.set(ReplicationNode.POSITION_HEADER, Long.toString(position));
+        }
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private JsonNode body(ResponseEntity<String> response) {
+        try {
+            return objectMapper.readTree(response.getBody());
+        } catch (IOException ioException) {
+            throw new AssertionError(ioException);
+        }
+    }
+
+    private static List<String> availableDates(JsonNode response) {
+
+        List<String> dates = new ArrayList<>();
+        response.get("availableDates").get("dates").forEach(date -> dates.add(date.asText()));
+        return dates;
+    }
+
+    private static long position(ResponseEntity<String> response) {
+        return Long.parseLong(response.getHeaders().getFirst(ReplicationNode.POSITION_HEADER));
+    }
+
+    private static String window(int campsiteId) {
+        LocalDate today = LocalDate.now();
+        return "campsiteId=" + campsiteId + "&checkinDate=" + today.plusDays(1) + "&checkoutDate=" + today.plusDays(30);
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(percentile * sorted.size()) - 1));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+}
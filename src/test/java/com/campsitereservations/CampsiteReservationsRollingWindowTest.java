@@ -0,0 +1,80 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.HeapReservationStore;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.persistence.ReservationArchive;
+import com.campsitereservations.persistence.ReservationJournal;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+    Advancing the booking window closes the days left behind, opens the days entering it, and archives the
+    reservations that checked out before the new first day.
+ */
+public class CampsiteReservationsRollingWindowTest {
+
+    @Test
+    public void advancingTheWindowArchivesCompletedReservations() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            List<ReservationDetails> archived = new CopyOnWriteArrayList<>();
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1, ReservationJournal.NONE,
+                    new HeapReservationStore(), archiving(archived));
+            database.initialize();
+            LocalDate today = LocalDate.now();
+
+            ReservationDetails completed = database.addReservation(reservation(today.plusDays(1)));
+            ReservationDetails upcoming = database.addReservation(reservation(today.plusDays(10)));
+
+            assertEquals(1, database.advanceHorizon(today.plusDays(5)));
+            assertEquals(0, database.advanceHorizon(today.plusDays(5)));
+
+            assertEquals(1, archived.size());
+            assertEquals(completed.getReservationId(), archived.get(0).getReservationId());
+            List<ReservationDetails> remaining = database.findReservationsByEmail("test@test.com");
+            assertEquals(1, remaining.size());
+            assertEquals(upcoming.getReservationId(), remaining.get(0).getReservationId());
+            assertEquals(0, database.findReservationsOnDate(today.plusDays(2)).size());
+
+            // Days before the window are closed, the five days entering it are open.
+            assertEquals(today.plusDays(5), database.getHorizonFirstDate());
+            assertEquals(29, database.getCampsiteAvailability(today, today.plusDays(40)).size());
+            assertEquals(6, database.getCampsiteAvailability(today.plusDays(31), today.plusDays(40)).size());
+        }
+    }
+
+    private static ReservationArchive archiving(List<ReservationDetails> archived) {
+        return new ReservationArchive() {
+
+            @Override
+            public void archive(ReservationDetails reservationDetails) {
+                archived.add(reservationDetails);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+    The email and date indexes follow every add, update and cancel, so lookups never need to scan all reservations.
+ */
+public class CampsiteReservationsSecondaryIndexTest {
+
+    @Test
+    public void indexesFollowAddUpdateAndCancel() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 2);
+            database.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            ReservationDetails first = database.addReservation(reservation(checkinDate, 1, "test@test.com"));
+            ReservationDetails second = database.addReservation(reservation(checkinDate.plusDays(1), 2,
+                    "Test@Test.com"));
+            database.addReservation(reservation(checkinDate.plusDays(10), 1, "other@test.com"));
+
+            List<ReservationDetails> byEmail = database.findReservationsByEmail("TEST@test.com");
+            assertEquals(2, byEmail.size());
+            assertEquals(first.getReservationId(), byEmail.get(0).getReservationId());
+            assertEquals(second.getReservationId(), byEmail.get(1).getReservationId());
+            assertEquals(2, database.findReservationsOnDate(checkinDate.plusDays(1)).size());
+
+            ReservationDetails moved = database.updateReservation(first,
+                    reservation(checkinDate.plusDays(5), 1, "new@test.com").toBuilder()
+                            .reservationId(first.getReservationId()).build());
+
+            assertEquals(1, database.findReservationsByEmail("test@test.com").size());
+            assertEquals(moved, database.findReservationsByEmail("new@test.com").get(0));
+            assertEquals(1, database.findReservationsOnDate(checkinDate.plusDays(1)).size());
+            assertEquals(moved, database.findReservationsOnDate(checkinDate.plusDays(7)).get(0));
+
+            database.deleteReservation(second.getReservationId());
+            assertTrue(database.findReservationsByEmail("test@test.com").isEmpty());
+            assertTrue(database.findReservationsOnDate(checkinDate.plusDays(1)).isEmpty());
+        }
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, Integer campsiteId, String email) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email(email).build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(2)).build())
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Runs the same 40 users against the sequencer booking mode, where one writer thread applies every booking in
+    order. 10 users get the campsite and 30 get an error message. Bookings sent while the sequencer closes are
+    either applied or turned away, never left waiting.
+ */
+@TestPropertySource(properties = "campsite.booking.mode=SEQUENCER")
+public class CampsiteReservationsSequencerConcurrencyTest extends CampsiteReservationsConcurrencyTest {
+
+    @Test
+    public void bookingsRacingCloseNeverHang() throws Exception {
+
+        CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(BookingMode.SEQUENCER, 4);
+        database.initialize();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> bookings = new ArrayList<>();
+        for (int count = 0; count < 400; count++) {
+            LocalDate checkinDate = LocalDate.now().plusDays(1 + count % 28);
+            bookings.add(executorService.submit(() -> database.tryAddReservation(ReservationDetails
+                    .builder()
+                    .reservationId(UUID.randomUUID().toString())
+                    .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                    .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                            .checkoutDate(checkinDate.plusDays(2)).build())
+                    .build())));
+        }
+        database.close();
+
+        // A booking claimed before the close is still applied; one sent after it is turned away straight away.
+        for (Future<?> booking : bookings) {
+            booking.get(10, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+    }
+}
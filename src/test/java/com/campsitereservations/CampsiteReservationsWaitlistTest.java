@@ -0,0 +1,221 @@
+package com.campsitereservations;
+
+import com.campsitereservations.db.BookingMode;
+import com.campsitereservations.db.CampsiteInMemoryDatabase;
+import com.campsitereservations.db.Customer;
+import com.campsitereservations.db.FailureReason;
+import com.campsitereservations.db.ReservationDetails;
+import com.campsitereservations.db.ReservationsDates;
+import com.campsitereservations.db.Waitlist;
+import com.campsitereservations.db.WaitlistEntry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    Days freed by a cancel, a move, a leave or an expired hold are offered as holds to the waiters whose stay they
+    fit, in the order they joined, in every booking mode. Joining waits for the matching already queued, which the
+    tests use to know matching is done. Runs on its own park, since it books through the endpoints.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "campsite.sites.count=5")
+@AutoConfigureMockMvc
+public class CampsiteReservationsWaitlistTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void freedDaysGoToWaitersInJoinOrder() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1);
+            database.initialize();
+            Waitlist waitlist = new Waitlist(database);
+            waitlist.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            ReservationDetails booked = database.addReservation(reservation(checkinDate, 2, null));
+            WaitlistEntry first = waitlist.join("first", reservation(checkinDate, 1, null));
+            WaitlistEntry second = waitlist.join("second", reservation(checkinDate.plusDays(1), 1, 1));
+            WaitlistEntry whole = waitlist.join("whole", reservation(checkinDate, 2, null));
+            WaitlistEntry free = waitlist.join("free", reservation(checkinDate.plusDays(10), 1, null));
+            assertEquals(WaitlistEntry.Status.WAITING, first.getStatus());
+            assertEquals(WaitlistEntry.Status.OFFERED, free.getStatus());
+            assertEquals(3, waitlist.getWaitingCount());
+
+            // The first waiter takes two of the three days; the others need one of them.
+            database.deleteReservation(booked.getReservationId());
+            matched(waitlist);
+            assertEquals(WaitlistEntry.Status.OFFERED, first.getStatus());
+            assertEquals(WaitlistEntry.Status.WAITING, second.getStatus());
+            assertEquals(WaitlistEntry.Status.WAITING, whole.getStatus());
+            assertFalse(database.isCampsiteAvailable(checkinDate, checkinDate, 1));
+
+            // Leaving releases the offered hold, which goes to the next waiter it fits.
+            assertTrue(waitlist.leave("first").isSuccess());
+            matched(waitlist);
+            assertEquals(WaitlistEntry.Status.LEFT, first.getStatus());
+            assertEquals(WaitlistEntry.Status.OFFERED, second.getStatus());
+            assertEquals(WaitlistEntry.Status.WAITING, whole.getStatus());
+
+            String holdId = second.getHold().getHoldId();
+            assertEquals(holdId, database.tryConfirmHold(holdId).getValue().getReservationId());
+            assertEquals(FailureReason.WAITLIST_ENTRY_NOT_FOUND, waitlist.leave("first").getFailureReason());
+            waitlist.close();
+            database.close();
+        }
+    }
+
+    @Test
+    public void expiredOffersGoToTheNextWaiter() throws Exception {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1);
+            database.initialize();
+            Waitlist waitlist = new Waitlist(database, 1);
+            waitlist.initialize();
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            ReservationDetails booked = database.addReservation(reservation(checkinDate, 1, 1));
+            WaitlistEntry first = waitlist.join("first", reservation(checkinDate, 1, null));
+            WaitlistEntry second = waitlist.join("second", reservation(checkinDate, 1, null));
+            database.deleteReservation(booked.getReservationId());
+            matched(waitlist);
+            assertEquals(WaitlistEntry.Status.OFFERED, first.getStatus());
+            assertEquals(WaitlistEntry.Status.WAITING, second.getStatus());
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (second.getStatus() != WaitlistEntry.Status.OFFERED && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(WaitlistEntry.Status.OFFERED, second.getStatus());
+            assertEquals(FailureReason.HOLD_NOT_FOUND,
+                    database.tryConfirmHold(first.getHold().getHoldId()).getFailureReason());
+            assertTrue(database.tryConfirmHold(second.getHold().getHoldId()).isSuccess());
+            waitlist.close();
+            database.close();
+        }
+    }
+
+    @Test
+    public void movesOnlyFreeTheDaysTheyGiveUp() {
+
+        for (BookingMode bookingMode : BookingMode.values()) {
+
+            CampsiteInMemoryDatabase database = new CampsiteInMemoryDatabase(bookingMode, 1);
+            database.initialize();
+            List<ReservationsDates> freedDates = new CopyOnWriteArrayList<>();
+            database.addFreedDaysListener((campsiteId, dates) -> freedDates.add(dates));
+            LocalDate checkinDate = LocalDate.now().plusDays(3);
+
+            // Shrinking a stay frees the days either side of the new one, but not the days it keeps.
+            ReservationDetails booked = database.addReservation(reservation(checkinDate, 4, 1));
+            ReservationDetails shrunk = database.updateReservation(booked, moved(booked, checkinDate.plusDays(1), 2));
+            assertEquals(Arrays.asList(dates(checkinDate, checkinDate), dates(checkinDate.plusDays(4),
+                    checkinDate.plusDays(4))), freedDates);
+
+            // Growing it frees nothing.
+            freedDates.clear();
+            database.updateReservation(shrunk, moved(shrunk, checkinDate, 4));
+            assertEquals(Collections.emptyList(), freedDates);
+            database.close();
+        }
+    }
+
+    @Test
+    public void waitlistEndpoints() throws Exception {
+
+        LocalDate checkinDate = LocalDate.now().plusDays(3);
+        String dates = "&checkinDate=" + checkinDate + "&checkoutDate=" + checkinDate.plusDays(1) + "&campsiteId=1";
+        String reservationId = json(mockMvc.perform(post("/v1/api/add-reservation?firstName=Amit&lastName=Ganvir"
+                + "&email=test@test.com" + dates)).andReturn().getResponse().getContentAsString())
+                .get("reservationModel").get("reservationId").asText();
+
+        JsonNode joined = json(mockMvc.perform(post("/v1/api/join-waitlist?firstName=Amit&lastName=Ganvir"
+                + "&email=waiting@test.com" + dates))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        String waitlistId = joined.get("waitlistId").asText();
+        assertEquals("WAITING", joined.get("status").asText());
+
+        mockMvc.perform(delete("/v1/api/cancel-reservation?reservationId=" + reservationId))
+                .andExpect(status().isOk());
+
+        JsonNode entry = joined;
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!"OFFERED".equals(entry.get("status").asText()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            entry = json(mockMvc.perform(get("/v1/api/waitlist-entry?waitlistId=" + waitlistId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+        }
+        assertEquals("OFFERED", entry.get("status").asText());
+
+        String holdId = entry.get("holdId").asText();
+        JsonNode confirmed = json(mockMvc.perform(post("/v1/api/confirm-hold?holdId=" + holdId))
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("waiting@test.com", confirmed.get("reservationModel").get("email").asText());
+
+        JsonNode left = json(mockMvc.perform(delete("/v1/api/leave-waitlist?waitlistId=" + waitlistId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("LEFT", left.get("status").asText());
+    }
+
+    /*
+        Joining queues behind the matching of every range freed so far and waits for it.
+     */
+    private static void matched(Waitlist waitlist) {
+        waitlist.join(UUID.randomUUID().toString(), reservation(LocalDate.now().plusDays(30), 0, 1));
+    }
+
+    private JsonNode json(String content) throws Exception {
+        return objectMapper.readTree(content);
+    }
+
+    private static ReservationDetails moved(ReservationDetails reservationDetails, LocalDate checkinDate, int nights) {
+        return reservationDetails.toBuilder().reservationsDates(dates(checkinDate, checkinDate.plusDays(nights)))
+                .build();
+    }
+
+    private static ReservationsDates dates(LocalDate checkinDate, LocalDate checkoutDate) {
+        return ReservationsDates.builder().checkinDate(checkinDate).checkoutDate(checkoutDate).build();
+    }
+
+    private static ReservationDetails reservation(LocalDate checkinDate, int nights, Integer campsiteId) {
+        return ReservationDetails
+                .builder()
+                .reservationId(UUID.randomUUID().toString())
+                .campsiteId(campsiteId)
+                .customer(Customer.builder().firstName("Amit").lastName("Ganvir").email("test@test.com").build())
+                .reservationsDates(ReservationsDates.builder().checkinDate(checkinDate)
+                        .checkoutDate(checkinDate.plusDays(nights)).build())
+                .build();
+    }
+}